@@ -0,0 +1,209 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import buildsa.BuildSuffixArray;
+import model.PackedText;
+import model.Query;
+
+/**
+ * A class to make the inputs of the benchmarks: texts of a given size, the
+ * index files that buildsa builds from them, and sets of queries drawn from
+ * them. Every input is made from a fixed seed, so runs of the benchmarks on
+ * different versions of the code measure the same work.
+ * <p>
+ * A text has one of two synthetic shapes, or is read from a FASTA file:
+ * <ul>
+ * <li>random - uniformly random bases, which is the best case for the
+ * searches, since suffixes diverge after about log4(n) bases.</li>
+ * <li>genome - bases shaped like a real genome: 41% GC content, about 40% of
+ * the bases in diverged copies of a few interspersed repeat families (like Alu
+ * and L1 elements), and microsatellites of short units repeated in tandem, so
+ * that many suffixes share long prefixes.</li>
+ * <li>any other value is read as the path of a FASTA file, whose first size
+ * bases are used.</li>
+ * </ul>
+ *
+ * @author Valerie Wray
+ *
+ */
+public final class BenchmarkInputs {
+    private static final long SEED = 701;
+    private static final long QUERY_SEED = 702;
+    private static final double GC_CONTENT = 0.41;
+    private static final int REPEAT_FAMILIES = 32;
+    private static final int SHORT_REPEAT_LENGTH = 300;
+    private static final int LONG_REPEAT_LENGTH = 6000;
+    private static final double REPEAT_DIVERGENCE = 0.12;
+    private static final int FASTA_LINE_LENGTH = 80;
+
+    /**
+     * The number of samples that the top-level Eytzinger index is built with,
+     * which fit in L2 cache.
+     */
+    private static final int EYTZINGER_SAMPLES = 32768;
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * Makes a text of the given shape.
+     *
+     * @param shape "random", "genome", or the path of a FASTA file
+     * @param size  the number of bases of the text, not counting the sentinel
+     * @return the packed text
+     * @throws IOException if the FASTA file cannot be read
+     */
+    public static PackedText text(String shape, int size) throws IOException {
+        Random random = new Random(SEED);
+        switch (shape) {
+        case "random":
+            return new PackedText.Builder(random).append(CharBuffer.wrap(randomBases(size, random))).build();
+        case "genome":
+            return new PackedText.Builder(random).append(CharBuffer.wrap(genomeBases(size, random))).build();
+        default:
+            return readFastaFile(Path.of(shape), size, random);
+        }
+    }
+
+    private static char[] randomBases(int size, Random random) {
+        char[] bases = new char[size];
+        for (int i = 0; i < size; i++) {
+            bases[i] = "ACGT".charAt(random.nextInt(4));
+        }
+        return bases;
+    }
+
+    private static char[] genomeBases(int size, Random random) {
+        char[][] families = new char[REPEAT_FAMILIES][];
+        for (int i = 0; i < families.length; i++) {
+            families[i] = backgroundBases(i % 4 == 0 ? LONG_REPEAT_LENGTH : SHORT_REPEAT_LENGTH, random);
+        }
+        char[] bases = new char[size];
+        int position = 0;
+        while (position < size) {
+            double kind = random.nextDouble();
+            if (kind < 0.4) {
+                // a diverged copy of a repeat family, truncated at its start
+                char[] family = families[random.nextInt(families.length)];
+                for (int i = random.nextInt(family.length / 2); i < family.length && position < size; i++) {
+                    bases[position++] = random.nextDouble() < REPEAT_DIVERGENCE ? backgroundBase(random)
+                            : family[i];
+                }
+            } else if (kind < 0.5) {
+                // a microsatellite
+                char[] unit = backgroundBases(1 + random.nextInt(6), random);
+                int end = Math.min(size, position + unit.length * (10 + random.nextInt(50)));
+                for (int i = 0; position < end; i++) {
+                    bases[position++] = unit[i % unit.length];
+                }
+            } else {
+                // unique sequence
+                int end = Math.min(size, position + 1 + random.nextInt(3000));
+                while (position < end) {
+                    bases[position++] = backgroundBase(random);
+                }
+            }
+        }
+        return bases;
+    }
+
+    private static char[] backgroundBases(int length, Random random) {
+        char[] bases = new char[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = backgroundBase(random);
+        }
+        return bases;
+    }
+
+    private static char backgroundBase(Random random) {
+        double r = random.nextDouble();
+        if (r < GC_CONTENT) {
+            return r < GC_CONTENT / 2 ? 'C' : 'G';
+        }
+        return r < (1 + GC_CONTENT) / 2 ? 'A' : 'T';
+    }
+
+    private static PackedText readFastaFile(Path file, int size, Random random) throws IOException {
+        PackedText.Builder builder = new PackedText.Builder(random);
+        try (BufferedReader bufferedReader = Files.newBufferedReader(file)) {
+            String line;
+            while (builder.length() < size && (line = bufferedReader.readLine()) != null) {
+                if (!line.isEmpty() && line.charAt(0) != '>') {
+                    builder.append(line.substring(0, Math.min(line.length(), size - builder.length())));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds an index file of a text with buildsa, with every secondary index
+     * that the query modes use: a prefix table, the LCP and LCP-LR arrays, an
+     * FM-index and a top-level Eytzinger index.
+     *
+     * @param text         the packed text
+     * @param directory    the directory to write the reference and index files
+     *                     in
+     * @param prefixLength the length of the prefixes of the prefix table
+     * @return the path of the index file
+     * @throws IOException if the files cannot be written
+     */
+    public static Path buildIndex(PackedText text, Path directory, int prefixLength) throws IOException {
+        Path reference = directory.resolve("reference.fna");
+        try (BufferedWriter writer = Files.newBufferedWriter(reference)) {
+            writer.write(">benchmark");
+            writer.newLine();
+            int length = text.length() - 1;
+            for (int start = 0; start < length; start += FASTA_LINE_LENGTH) {
+                writer.append(text.subSequence(start, Math.min(length, start + FASTA_LINE_LENGTH)));
+                writer.newLine();
+            }
+        }
+        Path indexFile = directory.resolve("index.bin");
+        int samplingInterval = Math.max(1, text.length() / EYTZINGER_SAMPLES);
+        BuildSuffixArray.main(new String[] { "--preftab", Integer.toString(prefixLength), "--lcplr", "--fmindex",
+                "32", "--eytzinger", Integer.toString(samplingInterval), reference.toString(),
+                indexFile.toString() });
+        return indexFile;
+    }
+
+    /**
+     * Makes a set of queries of a text. Half of them are substrings of the text
+     * at random positions, so they have at least one hit, and half of them are
+     * random bases, which mostly do not occur once they are longer than
+     * log4(n).
+     *
+     * @param text   the packed text
+     * @param count  the number of queries
+     * @param length the length of every query
+     * @return the list of {@link Query}
+     */
+    public static List<Query> queries(PackedText text, int count, int length) {
+        if (length >= text.length()) {
+            throw new IllegalArgumentException(
+                    "The queries must be shorter than the text, but were " + length + " bases long");
+        }
+        Random random = new Random(QUERY_SEED);
+        List<Query> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Query query = new Query("query" + i);
+            if (i % 2 == 0) {
+                int start = random.nextInt(text.length() - length);
+                query.appendSequence(text.subSequence(start, start + length));
+            } else {
+                query.appendSequence(CharBuffer.wrap(randomBases(length, random)));
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import buildsa.ParallelBucketSort;
+import buildsa.SaIs;
+import model.PrefixTable;
+
+/**
+ * Benchmarks of building the suffix array and the prefix table of a text, as
+ * buildsa does, without reading the FASTA file.
+ *
+ * @author Valerie Wray
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BuildBenchmark {
+
+    /**
+     * The prefix length of the prefix table to build.
+     */
+    @State(Scope.Benchmark)
+    public static class PrefixTableState {
+        @Param({ "8", "12" })
+        int prefixLength;
+    }
+
+    @Benchmark
+    public int[] buildSuffixArray(TextState textState) {
+        return SaIs.buildSuffixArray(textState.text);
+    }
+
+    @Benchmark
+    public int[] buildSuffixArrayParallel(TextState textState) {
+        return ParallelBucketSort.buildSuffixArray(textState.text, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public PrefixTable buildPrefixTable(TextState textState, PrefixTableState prefixTableState) {
+        return PrefixTable.build(textState.text, prefixTableState.prefixLength);
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.IndexFile;
+import model.SerializeableSuffixArray;
+
+/**
+ * Benchmarks of opening an index file, as querysa does before running any
+ * query. The file is in the page cache after the first iteration, so this
+ * measures the cost of mapping its sections and of reading the parts of it that
+ * are read onto the heap, not of reading it from disk.
+ *
+ * @author Valerie Wray
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class IndexLoadBenchmark {
+
+    @Benchmark
+    public SerializeableSuffixArray mapIndex(IndexState indexState) throws IOException {
+        return IndexFile.map(indexState.indexFile);
+    }
+}
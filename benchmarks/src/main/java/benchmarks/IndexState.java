@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import model.IndexFile;
+import model.SerializeableSuffixArray;
+
+/**
+ * The index file of the text that a benchmark runs on, built once per trial by
+ * {@link BenchmarkInputs#buildIndex(model.PackedText, Path, int)} in a
+ * temporary directory and mapped as querysa maps it.
+ *
+ * @author Valerie Wray
+ *
+ */
+@State(Scope.Benchmark)
+public class IndexState {
+    /**
+     * The length of the prefixes of the prefix table.
+     */
+    @Param({ "10" })
+    int prefixLength;
+
+    Path directory;
+    Path indexFile;
+    SerializeableSuffixArray index;
+
+    @Setup(Level.Trial)
+    public void setUp(TextState textState) throws IOException {
+        directory = Files.createTempDirectory("benchmarks");
+        indexFile = BenchmarkInputs.buildIndex(textState.text, directory, prefixLength);
+        index = IndexFile.map(indexFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index = null;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Query;
+import model.QueryMode;
+import querysa.QueryOptions;
+import querysa.QueryRunner;
+
+/**
+ * Benchmarks of running queries in each {@link QueryMode}, as querysa does,
+ * from the prefix table lookup to the interval of hits, on an index with every
+ * secondary index built. The score is the time per query.
+ *
+ * @author Valerie Wray
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryBenchmark {
+    static final int QUERY_COUNT = 4096;
+
+    @Param({ "NAIVE", "SIMPACCEL", "SUPERACCEL", "FMINDEX", "EYTZINGER", "MISMATCH", "SMEM" })
+    QueryMode queryMode;
+
+    @Param({ "20", "100", "1000" })
+    int queryLength;
+
+    /**
+     * Whether to run the queries in lexicographic order, as querysa --sorted
+     * does.
+     */
+    @Param({ "false" })
+    boolean sorted;
+
+    /**
+     * The number of bases that a hit may differ from the query in, in the
+     * mismatch query mode.
+     */
+    @Param({ "1" })
+    int mismatches;
+
+    /**
+     * The minimum length of a match in the smem query mode.
+     */
+    @Param({ "19" })
+    int minLength;
+
+    private List<Query> queries;
+    private QueryRunner queryRunner;
+
+    @Setup(Level.Trial)
+    public void setUp(TextState textState, IndexState indexState) {
+        queries = BenchmarkInputs.queries(textState.text, QUERY_COUNT, queryLength);
+        queryRunner = new QueryRunner(indexState.index, queryMode, 1,
+                new QueryOptions().setSorted(sorted).setMaxMismatches(mismatches).setMinLength(minLength));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queryRunner.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public List<Query> performQueries() {
+        queryRunner.performQueries(queries);
+        return queries;
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.EytzingerIndex;
+import model.IndexInterval;
+import model.PackedText;
+import model.Query;
+import model.SerializeableSuffixArray;
+import util.BackwardSearch;
+import util.BinarySearch;
+import util.SearchScratch;
+
+/**
+ * Benchmarks of the search that each query mode is built on, over the whole
+ * suffix array, without the prefix table or the reuse of the previous query:
+ * the naive binary search, the simple accelerant, the super accelerant, the
+ * backward search of the FM-index and the descent of the top-level Eytzinger
+ * index. Each binary search finds the first suffix starting with the pattern.
+ * The score is the time per pattern.
+ *
+ * @author Valerie Wray
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SearchBenchmark {
+    static final int PATTERN_COUNT = 4096;
+
+    @Param({ "20", "100", "1000" })
+    int queryLength;
+
+    private PackedText[] patterns;
+    private final SearchScratch scratch = new SearchScratch();
+    private final IndexInterval hitsRange = new IndexInterval(0, 0);
+
+    @Setup(Level.Trial)
+    public void setUp(TextState textState) {
+        List<Query> queries = BenchmarkInputs.queries(textState.text, PATTERN_COUNT, queryLength);
+        patterns = new PackedText[queries.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = PackedText.valueOf(queries.get(i).getSequence());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATTERN_COUNT)
+    public void binarySearch(IndexState indexState, Blackhole blackhole) {
+        SerializeableSuffixArray index = indexState.index;
+        int length = index.getText().length();
+        for (PackedText pattern : patterns) {
+            blackhole.consume(BinarySearch.binarySearch(index, pattern, 0, length, false, scratch));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATTERN_COUNT)
+    public void binarySearchWithLCP(IndexState indexState, Blackhole blackhole) {
+        SerializeableSuffixArray index = indexState.index;
+        int length = index.getText().length();
+        for (PackedText pattern : patterns) {
+            blackhole.consume(BinarySearch.binarySearchWithLCP(index, pattern, 0, length, false, scratch));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATTERN_COUNT)
+    public void binarySearchWithLcpLr(IndexState indexState, Blackhole blackhole) {
+        SerializeableSuffixArray index = indexState.index;
+        int length = index.getText().length();
+        for (PackedText pattern : patterns) {
+            blackhole.consume(BinarySearch.binarySearchWithLcpLr(index, pattern, 0, length, false, scratch));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATTERN_COUNT)
+    public void backwardSearch(IndexState indexState, Blackhole blackhole) {
+        SerializeableSuffixArray index = indexState.index;
+        for (PackedText pattern : patterns) {
+            blackhole.consume(BackwardSearch.backwardSearch(index, pattern, hitsRange).getStart());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATTERN_COUNT)
+    public void eytzingerBounds(IndexState indexState, Blackhole blackhole) {
+        EytzingerIndex eytzingerIndex = indexState.index.getEytzingerIndex();
+        for (PackedText pattern : patterns) {
+            blackhole.consume(eytzingerIndex.lowerRow(pattern));
+            blackhole.consume(eytzingerIndex.upperRow(pattern));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.PackedText;
+
+/**
+ * The text that a benchmark runs on, made once per trial by
+ * {@link BenchmarkInputs#text(String, int)}.
+ *
+ * @author Valerie Wray
+ *
+ */
+@State(Scope.Benchmark)
+public class TextState {
+    /**
+     * "random", "genome", or the path of a FASTA file.
+     */
+    @Param({ "random", "genome" })
+    String shape;
+
+    /**
+     * The number of bases of the text.
+     */
+    @Param({ "1048576", "16777216" })
+    int size;
+
+    PackedText text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        text = BenchmarkInputs.text(shape, size);
+    }
+}
@@ -1,27 +1,33 @@
 package buildsa;
 
 import java.io.BufferedReader;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
-import org.jsuffixarrays.Skew;
-
-import model.BasePair;
-import model.IndexInterval;
+import model.CompactLcpArray;
+import model.EytzingerIndex;
+import model.FmIndex;
+import model.IndexFile;
+import model.IntArray;
+import model.PackedText;
+import model.PrefixTable;
+import model.SequenceTable;
 import model.SerializeableSuffixArray;
 
 /**
  * A main class to build a suffix array. This program will read in a “genome” in
  * a FASTA file, build the suffix array for the "genome" text string, and output
- * the suffix array and original text string to a binary file. Additionally
- * (when an extra "preftab" option is provided) it will build a secondary index
- * to allow for the improved search heuristic. When invoked with this extra
- * option, it will also write this prefix table to the serialized file.
+ * the suffix array and original text string to a binary index file.
+ * Additionally (when an extra "preftab" option is provided) it will build a
+ * secondary index to allow for the improved search heuristic. When invoked
+ * with this extra option, it will also write this prefix table to the index
+ * file.
  * 
  * @author Valerie Wray
  *
@@ -43,9 +49,41 @@ public class BuildSuffixArray {
      *             the parameter k), then a prefix table will be built atop the
      *             suffix array, capable of jumping to the suffix array interval
      *             corresponding to any prefix of length k.</li>
+     *             <li>--lcp - if the option --lcp is passed in, then the longest
+     *             common prefix (LCP) array of the suffix array will be built and
+     *             written to the index file as well.</li>
+     *             <li>--lcplr - if the option --lcplr is passed in, then the LCP
+     *             array and the LCP-LR arrays needed by the super accelerant query
+     *             mode will be built and written to the index file as well.</li>
+     *             <li>--fmindex <rate> - if the option --fmindex is passed in (with
+     *             the parameter rate), then an FM-index will be built from the
+     *             suffix array, keeping every rate-th text position of the suffix
+     *             array, and written to the index file as well.</li>
+     *             <li>--eytzinger <interval> - if the option --eytzinger is
+     *             passed in (with the parameter interval), then a top-level index
+     *             of every interval-th suffix array row and the first 32 bases of
+     *             its suffix will be built in Eytzinger order for the eytzinger
+     *             query mode, and written to the index file as well.</li>
+     *             <li>--threads <n> - if the option --threads is passed in (with
+     *             the parameter n), then the suffix array will be built on n
+     *             threads by bucket sorting instead of with SA-IS. The suffix array
+     *             is the same either way.</li>
+     *             <li>--memory <MB> - if the option --memory is passed in (with
+     *             the parameter MB), then the suffix array will be built on disk,
+     *             sorting at most MB megabytes of suffixes at a time, and mapped
+     *             from a scratch file instead of being held on the heap. With
+     *             --threads, the parts are sorted on the n threads, which share
+     *             the MB megabytes. The suffix array is the same either way. Note
+     *             that the LCP array still needs 4 bytes per base of memory.</li>
+     *             <li>--scratch <directory> - the directory to write the scratch
+     *             files of --memory in (the system's temporary directory by
+     *             default).</li>
      *             <li>reference - the path to a FASTA file containing a "genome" of
      *             which to build the suffix array, which may be split over multiple
-     *             input lines</li>
+     *             input lines. A multi-FASTA file of several sequences (such as
+     *             the chromosomes or contigs of an assembly) keeps them apart: no
+     *             match spans two of them, and querysa reports each hit by its
+     *             sequence name and its position in that sequence.</li>
      *             <li>output - the name to use for the binary output file that
      *             contains a serialized version of the input string and the suffix
      *             array</li>
@@ -54,171 +92,350 @@ public class BuildSuffixArray {
      * @throws IOException if an error occurs during file I/O
      */
     public static void main(String[] args) throws IOException {
-        int k = "--preftab".equals(args[0]) ? Integer.parseInt(args[1]) : -1;
-        int i = k > 0 ? 2 : 0;
+        int k = -1;
+        boolean lcp = false;
+        boolean lcpLr = false;
+        int samplingRate = -1;
+        int samplingInterval = -1;
+        int threads = 1;
+        long memoryBudget = -1;
+        Path scratchDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+        int i = 0;
+        while (args[i].startsWith("--")) {
+            switch (args[i++]) {
+            case "--preftab":
+                k = Integer.parseInt(args[i++]);
+                break;
+            case "--lcp":
+                lcp = true;
+                break;
+            case "--lcplr":
+                lcp = true;
+                lcpLr = true;
+                break;
+            case "--fmindex":
+                samplingRate = Integer.parseInt(args[i++]);
+                break;
+            case "--eytzinger":
+                samplingInterval = Integer.parseInt(args[i++]);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(args[i++]);
+                break;
+            case "--memory":
+                memoryBudget = Long.parseLong(args[i++]) << 20;
+                break;
+            case "--scratch":
+                scratchDirectory = Path.of(args[i++]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
 
         String reference = args[i++];
         String output = args[i++];
 
-        String text = readFastaFile(reference);
-        System.out.println("Text length: " + text.length());
+        Instant phaseStart = Instant.now();
+        List<String> names = new ArrayList<>();
+        PackedText text = readFastaFile(reference, names);
+        System.out.println("Text length: " + text.length() + " in " + names.size() + " sequences");
+        phaseStart = reportPhase("Read reference", phaseStart);
 
-        Instant start = Instant.now();
-        text = replaceN(text.toUpperCase());
-        int[] suffixArray = buildSuffixArray(text);
+        Instant start = phaseStart;
+        IntArray suffixArray;
+        int[] groupedSuffixArray = null;
+        if (memoryBudget > 0) {
+            suffixArray = ExternalBucketSort.buildSuffixArray(text, memoryBudget, threads, scratchDirectory);
+        } else if (threads > 1) {
+            int[] buckets = new int[text.length()];
+            if (ParallelBucketSort.sortBuckets(text, buckets, threads)) {
+                groupedSuffixArray = buckets;
+            }
+            suffixArray = IntArray.of(buckets);
+        } else {
+            suffixArray = IntArray.of(buildSuffixArray(text));
+        }
+        phaseStart = reportPhase("Suffix array", phaseStart);
+        if (groupedSuffixArray != null) {
+            // the suffixes that share more than the bucket sort compares, in long
+            // or tandem repeats
+            ParallelBucketSort.sortGroups(groupedSuffixArray, threads);
+            phaseStart = reportPhase("Prefix doubling", phaseStart);
+        }
 
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(names.toArray(new String[0]),
+                text.getTerminators()));
 
         if (k > 0) {
             buildPrefixTable(serializeableSuffixArray, k);
+            phaseStart = reportPhase("Prefix table", phaseStart);
+        }
+        if (lcp) {
+            buildLcpArray(serializeableSuffixArray);
+            phaseStart = reportPhase("LCP array", phaseStart);
+        }
+        if (lcpLr) {
+            buildLcpLrArrays(serializeableSuffixArray);
+            phaseStart = reportPhase("LCP-LR arrays", phaseStart);
+        }
+        if (samplingRate > 0) {
+            buildFmIndex(serializeableSuffixArray, samplingRate);
+            phaseStart = reportPhase("FM-index", phaseStart);
+        }
+        if (samplingInterval > 0) {
+            buildEytzingerIndex(serializeableSuffixArray, samplingInterval);
+            phaseStart = reportPhase("Eytzinger index", phaseStart);
         }
 
         Instant end = Instant.now();
         System.out.println(Duration.between(start, end));
 
         writeToBinaryFile(serializeableSuffixArray, output);
+        reportPhase("Write index", end);
+    }
+
+    /**
+     * Prints how long a phase of the build took.
+     * 
+     * @param phase      the name of the phase
+     * @param phaseStart when the phase started
+     * @return when the phase ended, which is when the next one starts
+     */
+    private static Instant reportPhase(String phase, Instant phaseStart) {
+        Instant phaseEnd = Instant.now();
+        System.out.println(phase + ": " + Duration.between(phaseStart, phaseEnd));
+        return phaseEnd;
     }
 
     /**
-     * Reads in a FASTA file and returns a string containing the text.
+     * Reads in a FASTA file and returns the packed text, followed by the sentinel.
+     * Each occurrence of 'N' (or any other character that is not a base) is
+     * replaced with a randomly chosen base as the text is packed.
      * 
      * @param filename the file name
-     * @return the text string
+     * @return the packed text
      * @throws IOException if the file cannot be found
      */
-    protected static String readFastaFile(String filename) throws IOException {
-        StringBuilder inputString = new StringBuilder();
+    protected static PackedText readFastaFile(String filename) throws IOException {
+        return readFastaFile(filename, new ArrayList<>());
+    }
+
+    /**
+     * Reads in a FASTA file of one or more records and returns the packed text,
+     * with a separator after each record but the last, which is followed by the
+     * sentinel. The name of each record, the first word of its header line, is
+     * added to the given list.
+     * 
+     * @param filename the file name
+     * @param names    the list to add the record names to
+     * @return the packed text
+     * @throws IOException if the file cannot be found
+     */
+    protected static PackedText readFastaFile(String filename, List<String> names) throws IOException {
+        PackedText.Builder builder = new PackedText.Builder(new Random());
         BufferedReader bufferedReader = new BufferedReader(new FileReader(filename));
         String line = "";
         while ((line = bufferedReader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
             if (line.charAt(0) != '>') {
-                inputString = inputString.append(line);
+                if (names.isEmpty()) {
+                    // the bases before the first header line form a record without a name
+                    names.add("");
+                }
+                builder.append(line);
+            } else {
+                if (!names.isEmpty()) {
+                    builder.endRecord();
+                }
+                String[] words = line.substring(1).trim().split("\\s+", 2);
+                names.add(words[0]);
             }
         }
         bufferedReader.close();
-        return (inputString.append("$").substring(0));
+        if (names.isEmpty()) {
+            names.add("");
+        }
+        return builder.build();
     }
 
     /**
-     * Reads in the first entry in FASTA file and returns a string containing the
-     * text.
+     * Reads in the first entry in FASTA file and returns the packed text, followed
+     * by the sentinel.
      * 
      * @param filename the file name
-     * @return the text string
+     * @return the packed text
      * @throws IOException if the file cannot be found
      */
-    protected static String readFastaFileFirstEntry(String filename) throws IOException {
-        StringBuilder inputString = new StringBuilder();
+    protected static PackedText readFastaFileFirstEntry(String filename) throws IOException {
+        PackedText.Builder builder = new PackedText.Builder(new Random());
         BufferedReader bufferedReader = new BufferedReader(new FileReader(filename));
         boolean isFirst = true;
         String line = "";
         while ((line = bufferedReader.readLine()) != null) {
             if (line.charAt(0) != '>') {
-                inputString = inputString.append(line);
+                builder.append(line);
             } else if (!isFirst) {
                 break;
             }
             isFirst = false;
         }
         bufferedReader.close();
-        return (inputString.append("$").substring(0));
+        return builder.build();
     }
 
     /**
-     * Replaces each occurrence of 'N' in the input string with a randomly chosen
-     * character from A, C, T, or G.
+     * Builds the suffix array in linear time with {@link SaIs}, directly on the
+     * packed text.
      * 
-     * @param input the input string
-     * @return the string with 'N' replaced
+     * @param text the packed text from which to build the suffix array
+     * @return the suffix array as an array of integers
      */
-    protected static String replaceN(String input) {
-        Random random = new Random();
-        char[] charArray = input.toCharArray();
-        for (int i = 0; i < input.length(); i++) {
-            if (charArray[i] == 'N') {
-                charArray[i] = BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar();
-            }
-        }
-        return new String(charArray);
+    protected static int[] buildSuffixArray(PackedText text) {
+        return SaIs.buildSuffixArray(text);
     }
 
     /**
-     * Builds the suffix array using a call to jsuffixarray's Skew algorithm.
+     * Builds a prefix table with the specified length of prefixes, in a single
+     * pass over the text that counts the suffixes by their first k bases.
      * 
-     * @param text the text string from which to build the suffix array
-     * @return the suffix array as an array of integers
+     * @param serializeableSuffixArray {@link SerializeableSuffixArray}
+     * @param k                        the length of prefixes
      */
-    protected static int[] buildSuffixArray(String text) {
-        String paddedText = text.concat("000");
-        int[] inputArray = paddedText.chars().toArray();
-        Skew skew = new Skew();
-        int[] suffixArray = skew.buildSuffixArray(inputArray, 0, paddedText.length() - 3);
-        return (suffixArray);
+    protected static void buildPrefixTable(SerializeableSuffixArray serializeableSuffixArray, int k) {
+        serializeableSuffixArray.setPrefixTable(PrefixTable.build(serializeableSuffixArray.getText(), k));
     }
 
     /**
-     * Builds a prefix table with the specified length of prefixes.
+     * Builds the longest common prefix (LCP) array of the suffix array in linear
+     * time with Kasai's algorithm, in its permuted (Φ array) form: the LCP of each
+     * suffix with the suffix before it in the suffix array is computed in text
+     * order, where each LCP is at least one less than the previous one, so the
+     * comparisons never move backwards in the text. The permuted LCP values are
+     * computed in place in a single int array, and then compacted into a
+     * {@link CompactLcpArray} in suffix array order. LCPs end at the sentinel.
      * 
      * @param serializeableSuffixArray {@link SerializeableSuffixArray}
-     * @param k                        the length of prefixes
      */
-    protected static void buildPrefixTable(SerializeableSuffixArray serializeableSuffixArray, int k) {
-        IndexInterval[] prefixTable = new IndexInterval[(int) Math.pow(4, k)];
-        String text = serializeableSuffixArray.getText();
+    protected static void buildLcpArray(SerializeableSuffixArray serializeableSuffixArray) {
+        PackedText text = serializeableSuffixArray.getText();
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
         int textLength = text.length();
-        int[] suffixArray = serializeableSuffixArray.getSuffixArray();
-        boolean isValidPrefix = false;
-        String currentPrefix = null;
-        int startIndex = 0;
-        int endIndex = 0;
-        for (int suffixArrayIndex = 1; suffixArrayIndex < textLength; suffixArrayIndex++) {
-            int positionInText = suffixArray[suffixArrayIndex];
-            int difference = textLength - positionInText;
-            int endSubstringIndex = difference <= k ? textLength : positionInText + k + 1;
-            String suffix = text.substring(positionInText, endSubstringIndex);
-            if (!isValidPrefix) {
-                if (suffix.length() >= k + 1) {
-                    currentPrefix = suffix.substring(0, k);
-                    isValidPrefix = true;
-                    startIndex = suffixArrayIndex;
-                }
-            } else {
-                if (suffix.length() <= k) {
-                    endIndex = suffixArrayIndex;
-                    prefixTable[BasePair.convertDNAStringToInt(currentPrefix)] = new IndexInterval(startIndex,
-                            endIndex);
-                    startIndex = endIndex;
-                    isValidPrefix = false;
-                    continue;
-                }
-                String firstKCharsOfSuffix = suffix.substring(0, k);
-                if (!firstKCharsOfSuffix.equals(currentPrefix)) {
-                    endIndex = suffixArrayIndex;
-                    prefixTable[BasePair.convertDNAStringToInt(currentPrefix)] = new IndexInterval(startIndex,
-                            endIndex);
-                    startIndex = endIndex;
-                    currentPrefix = firstKCharsOfSuffix;
-                }
+        // first the suffix before each suffix in the suffix array (Φ), then its LCP
+        int[] permutedLcp = new int[textLength];
+        permutedLcp[suffixArray.get(0)] = -1;
+        for (int i = 1; i < textLength; i++) {
+            permutedLcp[suffixArray.get(i)] = suffixArray.get(i - 1);
+        }
+        int lcp = 0;
+        for (int position = 0; position < textLength; position++) {
+            int previous = permutedLcp[position];
+            if (previous < 0) {
+                permutedLcp[position] = 0;
+                lcp = 0;
+                continue;
+            }
+            int max = Math.min(text.limit(position) - position, text.limit(previous) - previous);
+            lcp = Math.min(lcp, max);
+            lcp += PackedText.matchLength(text, position + lcp, text, previous + lcp, max - lcp);
+            permutedLcp[position] = lcp;
+            if (lcp > 0) {
+                lcp--;
             }
         }
-        if (isValidPrefix) {
-            prefixTable[BasePair.convertDNAStringToInt(currentPrefix)] = new IndexInterval(startIndex, text.length());
+        serializeableSuffixArray.setLcpArray(CompactLcpArray.of(new IntArray() {
+            @Override
+            public int get(int index) {
+                return index == 0 ? 0 : permutedLcp[suffixArray.get(index)];
+            }
+
+            @Override
+            public int length() {
+                return textLength;
+            }
+        }));
+    }
+
+    /**
+     * Builds the LCP-LR arrays of the suffix array from its LCP array, for the super
+     * accelerant binary search. The search always probes the same tree of
+     * intervals (left, right), starting from (0, n) and halving at center = (left
+     * + right) / 2, so every center index belongs to exactly one interval. For
+     * each center, the left LCP array holds the LCP of the suffixes at left and
+     * center, and the right LCP array the LCP of the suffixes at center and right,
+     * where the suffix at n is an imaginary suffix sorting after all the others.
+     * The LCP of two suffixes is the minimum of the LCP array between them, which
+     * is computed for every interval of the tree in a single bottom-up pass.
+     * 
+     * @param serializeableSuffixArray {@link SerializeableSuffixArray} with an LCP
+     *                                 array
+     */
+    protected static void buildLcpLrArrays(SerializeableSuffixArray serializeableSuffixArray) {
+        IntArray lcpArray = serializeableSuffixArray.getLcpArray();
+        int[] leftLcp = new int[lcpArray.length()];
+        int[] rightLcp = new int[lcpArray.length()];
+        buildLcpLrArrays(lcpArray, 0, lcpArray.length(), leftLcp, rightLcp);
+        serializeableSuffixArray.setLeftLcpArray(CompactLcpArray.of(IntArray.of(leftLcp)));
+        serializeableSuffixArray.setRightLcpArray(CompactLcpArray.of(IntArray.of(rightLcp)));
+    }
+
+    /**
+     * Fills in the LCP-LR arrays for the centers of an interval of the search tree
+     * and all of the intervals below it.
+     * 
+     * @return the LCP of the suffixes at left and right
+     */
+    private static int buildLcpLrArrays(IntArray lcpArray, int left, int right, int[] leftLcp, int[] rightLcp) {
+        if (right - left == 1) {
+            return right < lcpArray.length() ? lcpArray.get(right) : 0;
         }
-        serializeableSuffixArray.setPrefixTable(prefixTable);
-        serializeableSuffixArray.setPrefixLength(k);
+        int center = (left + right) >>> 1;
+        leftLcp[center] = buildLcpLrArrays(lcpArray, left, center, leftLcp, rightLcp);
+        rightLcp[center] = buildLcpLrArrays(lcpArray, center, right, leftLcp, rightLcp);
+        return Math.min(leftLcp[center], rightLcp[center]);
+    }
+
+    /**
+     * Builds the FM-index of the text from the suffix array: its Burrows–Wheeler
+     * transform, occurrence checkpoints, C array and a suffix array sampled at
+     * every text position that is a multiple of the sampling rate.
+     * 
+     * @param serializeableSuffixArray {@link SerializeableSuffixArray}
+     * @param samplingRate             the number of text positions per suffix
+     *                                 array sample
+     */
+    protected static void buildFmIndex(SerializeableSuffixArray serializeableSuffixArray, int samplingRate) {
+        serializeableSuffixArray.setFmIndex(FmIndex.build(serializeableSuffixArray.getText(),
+                serializeableSuffixArray.getSuffixArray(), samplingRate));
+    }
+
+    /**
+     * Builds the top-level index of the suffix array, which samples every
+     * interval-th row of the suffix array with the first 32 bases of its suffix,
+     * laid out in Eytzinger order.
+     * 
+     * @param serializeableSuffixArray {@link SerializeableSuffixArray}
+     * @param samplingInterval         the number of suffix array rows per sample
+     */
+    protected static void buildEytzingerIndex(SerializeableSuffixArray serializeableSuffixArray,
+            int samplingInterval) {
+        serializeableSuffixArray.setEytzingerIndex(EytzingerIndex.build(serializeableSuffixArray.getText(),
+                serializeableSuffixArray.getSuffixArray(), samplingInterval));
     }
 
     /**
-     * Serializes a suffix array to a binary file.
+     * Writes a suffix array to a binary index file, in the format described by
+     * {@link IndexFile}.
      * 
-     * @param serializeableSuffixArray the suffix array to serialize
+     * @param serializeableSuffixArray the suffix array to write
      * @param outputFile               the output file
      * @throws IOException if there is an issue writing to the file
      */
     protected static void writeToBinaryFile(SerializeableSuffixArray serializeableSuffixArray, String outputFile)
             throws IOException {
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(outputFile));
-        objectOutputStream.writeObject(serializeableSuffixArray);
-        objectOutputStream.close();
+        IndexFile.write(serializeableSuffixArray, Path.of(outputFile));
     }
 }
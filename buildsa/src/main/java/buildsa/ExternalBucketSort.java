@@ -0,0 +1,381 @@
+package buildsa;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.IntArray;
+import model.MappedIntArray;
+import model.PackedText;
+
+/**
+ * A class to build suffix arrays with a bounded amount of memory, by sorting
+ * them a part at a time and keeping the sorted parts on disk. The suffixes are
+ * counted by their first {@link ParallelBucketSort#BUCKET_LENGTH} bases, and
+ * consecutive buckets are grouped into partitions that each fit in the memory
+ * budget. A bucket that does not fit on its own is split by the next
+ * {@link ParallelBucketSort#BUCKET_LENGTH} bases, up to the first
+ * {@link #KEY_LENGTH} bases, so a partition covers a range of the suffixes'
+ * first {@link #KEY_LENGTH} bases, with the bases after the end of a suffix
+ * read as A. The buckets of each length that need splitting are all counted in
+ * one scan of the text, so there are at most four counting scans.
+ * <p>
+ * The partitions cover increasing ranges, so each one is a run of the final
+ * suffix array. One more scan of the text puts each suffix in the run of its
+ * partition in a scratch file, and the runs are then read back one at a time on
+ * each thread, sorted in memory up to {@link ParallelBucketSort#DOUBLING_DEPTH}
+ * bases, and written back in place. More suffixes with the same first
+ * {@link #KEY_LENGTH} bases than fit in the budget, as in a collection of
+ * similar genomes, are not sorted in memory: the ones that end within the key
+ * are put in order at the start of their run, and the rest are left as a group.
+ * The suffix array is then mapped from the scratch file, so it is never on the
+ * heap as a whole; only the packed text and one partition per thread are. The
+ * groups are finally sorted in place in the scratch file by
+ * {@link PrefixDoubling}, with their ranks in a second scratch file.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ExternalBucketSort {
+    /**
+     * The number of bases of the keys that the partitions are ranges of.
+     */
+    static final int KEY_LENGTH = PackedText.BASES_PER_WORD;
+
+    private static final int SPLIT_BITS = 2 * ParallelBucketSort.BUCKET_LENGTH;
+    private static final int SHORT_LENGTH_SHIFT = 31;
+    /**
+     * The partitions' fields, each a long: the first key of its range, the last
+     * key, the number of suffixes, whether they all have the same key and are
+     * too many to sort in memory, and the index of its run in the suffix array.
+     */
+    private static final int FIRST_KEY = 0;
+    private static final int LAST_KEY = 1;
+    private static final int COUNT = 2;
+    private static final int EQUAL_KEYS = 3;
+    private static final int START = 4;
+
+    private ExternalBucketSort() {
+    }
+
+    /**
+     * Builds the suffix array of a packed text in a scratch file, sorting at most
+     * as many suffixes at a time as fit in the memory budget.
+     *
+     * @param text             the packed text, which must end in the sentinel
+     * @param memoryBudget     the number of bytes that the suffixes being sorted
+     *                         may take up at a time
+     * @param scratchDirectory the directory to write the scratch files in, which
+     *                         are deleted when the program exits
+     * @return the suffix array, mapped from the scratch file
+     * @throws IOException              if the scratch files cannot be written
+     * @throws IllegalArgumentException if the text does not end in the sentinel
+     */
+    public static IntArray buildSuffixArray(PackedText text, long memoryBudget, Path scratchDirectory)
+            throws IOException {
+        return buildSuffixArray(text, memoryBudget, 1, scratchDirectory);
+    }
+
+    /**
+     * Builds the suffix array of a packed text in a scratch file, sorting the
+     * partitions on the given number of threads. The memory budget is shared by
+     * the threads, so each sorts partitions of a share of it.
+     *
+     * @param text             the packed text, which must end in the sentinel
+     * @param memoryBudget     the number of bytes that the suffixes being sorted
+     *                         may take up at a time
+     * @param threads          the number of threads
+     * @param scratchDirectory the directory to write the scratch files in, which
+     *                         are deleted when the program exits
+     * @return the suffix array, mapped from the scratch file
+     * @throws IOException              if the scratch files cannot be written
+     * @throws IllegalArgumentException if the text does not end in the sentinel
+     *                                  or the number of threads is less than 1
+     */
+    public static IntArray buildSuffixArray(PackedText text, long memoryBudget, int threads,
+            Path scratchDirectory) throws IOException {
+        if (!text.hasSentinel()) {
+            throw new IllegalArgumentException("Bucket sorting needs a text that ends in the sentinel");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        int length = text.length();
+        int partitionSize = (int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(1, memoryBudget / Integer.BYTES / threads));
+        List<long[]> partitions = partition(ranges(text, partitionSize), partitionSize);
+
+        Path scratchFile = Files.createTempFile(scratchDirectory, "suffixarray", ".tmp");
+        scratchFile.toFile().deleteOnExit();
+        try (FileChannel channel = FileChannel.open(scratchFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedIntStore suffixArray = MappedIntStore.map(channel, 0, length);
+            distribute(text, partitions, suffixArray);
+
+            // each thread reads and writes only the runs of the partitions it takes
+            AtomicInteger nextPartition = new AtomicInteger();
+            AtomicBoolean hasGroups = new AtomicBoolean();
+            AtomicBoolean hasKeyGroups = new AtomicBoolean();
+            ParallelBucketSort.runInParallel(threads, thread -> {
+                int[] buffer = null;
+                int index;
+                while ((index = nextPartition.getAndIncrement()) < partitions.size()) {
+                    long[] partition = partitions.get(index);
+                    int from = (int) partition[START];
+                    int to = from + (int) partition[COUNT];
+                    if (partition[EQUAL_KEYS] != 0) {
+                        if (markKeyGroup(text, suffixArray, from, to)) {
+                            hasKeyGroups.set(true);
+                        }
+                    } else {
+                        if (buffer == null) {
+                            buffer = new int[Math.min(partitionSize, length)];
+                        }
+                        if (sortPartition(text, suffixArray, from, to, buffer)) {
+                            hasGroups.set(true);
+                        }
+                    }
+                }
+            });
+            if (hasKeyGroups.get()) {
+                // the groups of equal keys only share their first KEY_LENGTH bases
+                sortGroups(suffixArray, length, KEY_LENGTH, threads, scratchDirectory);
+            } else if (hasGroups.get()) {
+                sortGroups(suffixArray, length, ParallelBucketSort.DOUBLING_DEPTH, threads,
+                        scratchDirectory);
+            }
+            return MappedIntArray.map(channel, 0, length);
+        }
+    }
+
+    /**
+     * Returns the ranges of keys that the suffixes are counted in, in ascending
+     * order, each as its first key, its last key, its number of suffixes and
+     * whether it is a single key with more suffixes than fit in a partition. The
+     * extensions of each length are counted a level at a time, with one scan of
+     * the text for all the extensions of a level that need splitting.
+     */
+    private static List<long[]> ranges(PackedText text, int partitionSize) {
+        List<long[]> levelPrefixes = new ArrayList<>();
+        List<int[][]> levelCounts = new ArrayList<>();
+        long[] prefixes = { 0 };
+        for (int prefixBits = 0; prefixes.length > 0 && prefixBits < Long.SIZE; prefixBits += SPLIT_BITS) {
+            int[][] counts = countExtensions(text, prefixes, prefixBits);
+            levelPrefixes.add(prefixes);
+            levelCounts.add(counts);
+            List<Long> oversized = new ArrayList<>();
+            for (int i = 0; i < prefixes.length && prefixBits + SPLIT_BITS < Long.SIZE; i++) {
+                for (int extension = 0; extension < counts[i].length; extension++) {
+                    if (counts[i][extension] > partitionSize) {
+                        oversized.add((prefixes[i] << SPLIT_BITS) | extension);
+                    }
+                }
+            }
+            prefixes = oversized.stream().mapToLong(Long::longValue).toArray();
+        }
+        List<long[]> ranges = new ArrayList<>();
+        addRanges(0, 0, levelPrefixes, levelCounts, partitionSize, ranges);
+        return ranges;
+    }
+
+    /**
+     * Counts the suffixes that start with each of some prefixes by the
+     * {@link ParallelBucketSort#BUCKET_LENGTH} bases after it, in one scan of the
+     * text.
+     *
+     * @param prefixes   the prefixes, as their top bits of the key, in ascending
+     *                   order
+     * @param prefixBits the number of bits of each prefix
+     */
+    private static int[][] countExtensions(PackedText text, long[] prefixes, int prefixBits) {
+        int[][] counts = new int[prefixes.length][1 << SPLIT_BITS];
+        int shift = Long.SIZE - prefixBits - SPLIT_BITS;
+        int limit = -1;
+        for (int position = 0; position < text.length(); position++) {
+            if (position > limit) {
+                limit = text.limit(position);
+            }
+            long key = keyOf(text, position, limit);
+            int index = prefixBits == 0 ? 0 : Arrays.binarySearch(prefixes, key >>> (Long.SIZE - prefixBits));
+            if (index >= 0) {
+                counts[index][(int) (key >>> shift) & ((1 << SPLIT_BITS) - 1)]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the ranges of keys of the suffixes that start with a prefix, one for
+     * each of its extensions by {@link ParallelBucketSort#BUCKET_LENGTH} bases,
+     * with the number of suffixes in it. An extension with more suffixes than fit
+     * in a partition is split in turn by the bases after it, or if it is a whole
+     * key, added as a range of equal keys.
+     *
+     * @param prefix the prefix, as its top bits of the key
+     * @param level  the number of times the prefix has been extended
+     */
+    private static void addRanges(long prefix, int level, List<long[]> levelPrefixes, List<int[][]> levelCounts,
+            int partitionSize, List<long[]> ranges) {
+        int prefixBits = level * SPLIT_BITS;
+        int[] counts = levelCounts.get(level)[prefixBits == 0 ? 0
+                : Arrays.binarySearch(levelPrefixes.get(level), prefix)];
+        int shift = Long.SIZE - prefixBits - SPLIT_BITS;
+        for (int extension = 0; extension < counts.length; extension++) {
+            long extended = (prefix << SPLIT_BITS) | extension;
+            long first = extended << shift;
+            long last = first | ((1L << shift) - 1);
+            if (counts[extension] <= partitionSize) {
+                ranges.add(new long[] { first, last, counts[extension], 0 });
+            } else if (shift == 0) {
+                ranges.add(new long[] { first, last, counts[extension], 1 });
+            } else {
+                addRanges(extended, level + 1, levelPrefixes, levelCounts, partitionSize, ranges);
+            }
+        }
+    }
+
+    /**
+     * Groups consecutive ranges of keys into partitions of at most the given
+     * number of suffixes. A range of equal keys is a partition of its own.
+     */
+    private static List<long[]> partition(List<long[]> ranges, int partitionSize) {
+        List<long[]> partitions = new ArrayList<>();
+        long[] partition = null;
+        for (long[] range : ranges) {
+            if (partition == null || partition[EQUAL_KEYS] != 0 || range[EQUAL_KEYS] != 0
+                    || partition[COUNT] + range[COUNT] > partitionSize) {
+                partition = Arrays.copyOf(range, START + 1);
+                partitions.add(partition);
+            } else {
+                partition[LAST_KEY] = range[LAST_KEY];
+                partition[COUNT] += range[COUNT];
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Sets the start of each partition's run, and puts every suffix in the run of
+     * the partition whose range holds its key, in one scan of the text.
+     */
+    private static void distribute(PackedText text, List<long[]> partitions, IntStore suffixArray) {
+        // the first keys with the sign bit flipped, so that they compare unsigned
+        long[] firstKeys = new long[partitions.size()];
+        int[] next = new int[partitions.size()];
+        long start = 0;
+        for (int i = 0; i < firstKeys.length; i++) {
+            long[] partition = partitions.get(i);
+            firstKeys[i] = partition[FIRST_KEY] ^ Long.MIN_VALUE;
+            partition[START] = start;
+            next[i] = (int) start;
+            start += partition[COUNT];
+        }
+        int limit = -1;
+        for (int position = 0; position < text.length(); position++) {
+            if (position > limit) {
+                limit = text.limit(position);
+            }
+            int index = Arrays.binarySearch(firstKeys, keyOf(text, position, limit) ^ Long.MIN_VALUE);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            suffixArray.set(next[index]++, position);
+        }
+    }
+
+    /**
+     * Returns the key of a suffix: its first {@link #KEY_LENGTH} bases, with the
+     * ones after its end read as A, so that the keys of two suffixes are in the
+     * same order as the suffixes unless they are equal.
+     */
+    static long keyOf(PackedText text, int position, int limit) {
+        int remaining = limit - position;
+        if (remaining >= KEY_LENGTH) {
+            return text.wordAt(position);
+        }
+        return remaining == 0 ? 0 : text.wordAt(position) & (-1L << (Long.SIZE - 2 * remaining));
+    }
+
+    /**
+     * Sorts the run of a partition in memory.
+     *
+     * @return whether any suffixes were left as groups for prefix doubling
+     */
+    private static boolean sortPartition(PackedText text, IntStore suffixArray, int from, int to, int[] buffer) {
+        int size = to - from;
+        for (int i = 0; i < size; i++) {
+            buffer[i] = suffixArray.get(from + i);
+        }
+        boolean hasGroups = ParallelBucketSort.sort(text, buffer, 0, size, 0, ParallelBucketSort.DOUBLING_DEPTH);
+        for (int i = 0; i < size; i++) {
+            suffixArray.set(from + i, buffer[i]);
+        }
+        return hasGroups;
+    }
+
+    /**
+     * Orders the run of a partition whose suffixes all have the same key. The
+     * suffixes that end within the key only share the key's bases up to their
+     * end, followed by A, so they sort first: by their length, and then with the
+     * one ending at the later terminator first. They are put in that order at the
+     * start of the run, and the rest, which share the whole key, are marked as a
+     * group for prefix doubling.
+     *
+     * @return whether a group was marked
+     */
+    private static boolean markKeyGroup(PackedText text, IntStore suffixArray, int from, int to) {
+        long[] shortSuffixes = new long[16];
+        int shortCount = 0;
+        int groupStart = to;
+        for (int i = to - 1; i >= from; i--) {
+            int suffix = suffixArray.get(i);
+            int limit = text.limit(suffix);
+            if (limit - suffix >= KEY_LENGTH) {
+                suffixArray.set(--groupStart, suffix);
+            } else {
+                if (shortCount == shortSuffixes.length) {
+                    shortSuffixes = Arrays.copyOf(shortSuffixes, shortCount * 2);
+                }
+                shortSuffixes[shortCount++] = ((long) (limit - suffix) << SHORT_LENGTH_SHIFT)
+                        | (Integer.MAX_VALUE - limit);
+            }
+        }
+        Arrays.sort(shortSuffixes, 0, shortCount);
+        for (int i = 0; i < shortCount; i++) {
+            int limit = Integer.MAX_VALUE - (int) (shortSuffixes[i] & Integer.MAX_VALUE);
+            suffixArray.set(from + i, limit - (int) (shortSuffixes[i] >>> SHORT_LENGTH_SHIFT));
+        }
+        for (int i = groupStart + 1; i < to; i++) {
+            suffixArray.set(i, ~suffixArray.get(i));
+        }
+        return to - groupStart > 1;
+    }
+
+    /**
+     * Sorts the groups left in the suffix array in the scratch file by prefix
+     * doubling on the given number of threads, with the ranks in another scratch
+     * file.
+     *
+     * @param depth the number of bases that the suffixes of every group share
+     */
+    private static void sortGroups(IntStore suffixArray, int length, int depth, int threads,
+            Path scratchDirectory) throws IOException {
+        Path ranksFile = Files.createTempFile(scratchDirectory, "ranks", ".tmp");
+        ranksFile.toFile().deleteOnExit();
+        try (FileChannel ranksChannel = FileChannel.open(ranksFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            PrefixDoubling.sort(suffixArray, MappedIntStore.map(ranksChannel, 0, length), depth, threads);
+        } finally {
+            // a file that is still mapped cannot be deleted on every system, so it
+            // is otherwise left for deleteOnExit
+            ranksFile.toFile().delete();
+        }
+    }
+}
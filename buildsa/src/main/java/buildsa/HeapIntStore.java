@@ -0,0 +1,30 @@
+package buildsa;
+
+/**
+ * An {@link IntStore} backed by an array of integers on the heap.
+ *
+ * @author Valerie Wray
+ *
+ */
+class HeapIntStore implements IntStore {
+    private final int[] values;
+
+    HeapIntStore(int[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public int get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+}
@@ -0,0 +1,45 @@
+package buildsa;
+
+/**
+ * An interface for a writable array of integers used while building a suffix
+ * array, such as the ranks of the suffixes, that may live on the heap or be
+ * mapped from a scratch file.
+ *
+ * @author Valerie Wray
+ *
+ */
+interface IntStore {
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    int get(int index);
+
+    /**
+     * Sets the value at the given index.
+     *
+     * @param index the index
+     * @param value the value
+     */
+    void set(int index, int value);
+
+    /**
+     * Returns the number of values in the array.
+     *
+     * @return the length of the array
+     */
+    int length();
+
+    /**
+     * Wraps an array of integers on the heap.
+     *
+     * @param values the values
+     * @return the {@link IntStore}
+     */
+    static IntStore of(int[] values) {
+        return new HeapIntStore(values);
+    }
+}
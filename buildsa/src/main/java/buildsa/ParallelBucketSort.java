@@ -0,0 +1,399 @@
+package buildsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import model.PackedText;
+
+/**
+ * A class to build suffix arrays on several threads by bucket sorting. The
+ * suffixes are first distributed into buckets by their first
+ * {@link #BUCKET_LENGTH} bases, with each thread counting and then placing the
+ * suffixes of its own part of the text, and then the buckets are sorted
+ * independently by the threads, each with a multikey quicksort that compares
+ * 32 bases at a time. The suffixes that end within their first
+ * {@link #BUCKET_LENGTH} bases, just before the sentinel or a separator, go
+ * at the start of the bucket of their bases padded with A, since they sort
+ * before every other suffix in it. The quicksort stops at
+ * {@link #DOUBLING_DEPTH} bases, and the groups of suffixes that share that
+ * many are sorted afterwards by {@link PrefixDoubling} on the same threads, in
+ * time that grows with the logarithm of the length of the repeats they are in
+ * rather than with their length. The result is the same suffix array as the one built by
+ * {@link SaIs}, in the same memory if the text has no repeats of
+ * {@link #DOUBLING_DEPTH} bases, and otherwise with another int per base for
+ * the ranks of the prefix doubling.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ParallelBucketSort {
+    /**
+     * The number of bases that the suffixes are bucketed by.
+     */
+    static final int BUCKET_LENGTH = 8;
+    /**
+     * The number of bases after which the multikey quicksort leaves the suffixes
+     * that are still equal to be sorted by prefix doubling.
+     */
+    static final int DOUBLING_DEPTH = 512;
+
+    private static final int INSERTION_SORT_SIZE = 16;
+    private static final int SHORT_LENGTH_SHIFT = 31;
+    private static final int SHORT_BUCKET_SHIFT = 34;
+
+    private ParallelBucketSort() {
+    }
+
+    /**
+     * Builds the suffix array of a packed text on the given number of threads.
+     *
+     * @param text    the packed text, which must end in the sentinel
+     * @param threads the number of threads
+     * @return the suffix array, with one entry per position of the text
+     * @throws IllegalArgumentException if the text does not end in the sentinel
+     *                                  or the number of threads is less than 1
+     */
+    public static int[] buildSuffixArray(PackedText text, int threads) {
+        int[] suffixArray = new int[text.length()];
+        if (sortBuckets(text, suffixArray, threads)) {
+            sortGroups(suffixArray, threads);
+        }
+        return suffixArray;
+    }
+
+    /**
+     * Sorts the suffixes of a packed text into buckets on the given number of
+     * threads, and each bucket up to {@link #DOUBLING_DEPTH} bases, leaving the
+     * suffixes that share more marked as groups.
+     *
+     * @param text        the packed text, which must end in the sentinel
+     * @param suffixArray an array with room for every position of the text
+     * @param threads     the number of threads
+     * @return whether any groups were left for {@link #sortGroups(int[], int)}
+     * @throws IllegalArgumentException if the text does not end in the sentinel
+     *                                  or the number of threads is less than 1
+     */
+    public static boolean sortBuckets(PackedText text, int[] suffixArray, int threads) {
+        if (!text.hasSentinel()) {
+            throw new IllegalArgumentException("Bucket sorting needs a text that ends in the sentinel");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        int length = text.length();
+        int bucketCount = 1 << (2 * BUCKET_LENGTH);
+
+        // count the suffixes with at least BUCKET_LENGTH bases in each bucket,
+        // each thread over its part of the text
+        int[][] counts = new int[threads][bucketCount];
+        runInParallel(threads, thread -> {
+            int[] threadCounts = counts[thread];
+            int to = partStart(length, threads, thread + 1);
+            int limit = -1;
+            for (int position = partStart(length, threads, thread); position < to; position++) {
+                if (position > limit) {
+                    limit = text.limit(position);
+                }
+                if (position + BUCKET_LENGTH <= limit) {
+                    threadCounts[text.prefixCode(position, BUCKET_LENGTH)]++;
+                }
+            }
+        });
+        long[] shortSuffixes = shortSuffixes(text);
+        int[] shortCounts = new int[bucketCount];
+        for (long shortSuffix : shortSuffixes) {
+            shortCounts[(int) (shortSuffix >>> SHORT_BUCKET_SHIFT)]++;
+        }
+
+        // lay out the buckets, with the short suffixes first in each bucket and
+        // then the suffixes of each thread's part of the text
+        int[] bucketStarts = new int[bucketCount + 1];
+        int offset = 0;
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            bucketStarts[bucket] = offset;
+            offset += shortCounts[bucket];
+            for (int thread = 0; thread < threads; thread++) {
+                int count = counts[thread][bucket];
+                counts[thread][bucket] = offset;
+                offset += count;
+            }
+        }
+        bucketStarts[bucketCount] = offset;
+
+        // place the suffixes, with the short ones already sorted
+        placeShortSuffixes(shortSuffixes, suffixArray, bucketStarts);
+        runInParallel(threads, thread -> {
+            int[] next = counts[thread];
+            int to = partStart(length, threads, thread + 1);
+            int limit = -1;
+            for (int position = partStart(length, threads, thread); position < to; position++) {
+                if (position > limit) {
+                    limit = text.limit(position);
+                }
+                if (position + BUCKET_LENGTH <= limit) {
+                    suffixArray[next[text.prefixCode(position, BUCKET_LENGTH)]++] = position;
+                }
+            }
+        });
+
+        // sort the buckets, with each thread taking the next unsorted one
+        AtomicInteger nextBucket = new AtomicInteger();
+        AtomicBoolean hasGroups = new AtomicBoolean();
+        runInParallel(threads, thread -> {
+            int bucket;
+            while ((bucket = nextBucket.getAndIncrement()) < bucketCount) {
+                int from = bucketStarts[bucket] + shortCounts[bucket];
+                if (sort(text, suffixArray, from, bucketStarts[bucket + 1], BUCKET_LENGTH, DOUBLING_DEPTH)) {
+                    hasGroups.set(true);
+                }
+            }
+        });
+        return hasGroups.get();
+    }
+
+    /**
+     * Sorts the groups left by {@link #sortBuckets(PackedText, int[], int)} by
+     * prefix doubling on the given number of threads, with another int per base
+     * for the ranks.
+     *
+     * @param suffixArray the suffix array, with the groups marked
+     * @param threads     the number of threads
+     */
+    public static void sortGroups(int[] suffixArray, int threads) {
+        PrefixDoubling.sort(IntStore.of(suffixArray), IntStore.of(new int[suffixArray.length]), DOUBLING_DEPTH,
+                threads);
+    }
+
+    /**
+     * Returns the bucket of a suffix: its first {@link #BUCKET_LENGTH} bases,
+     * with the ones after its end read as A.
+     *
+     * @param text     the packed text
+     * @param position the start of the suffix
+     * @param limit    the terminator that the suffix ends at
+     * @return the bucket
+     */
+    static int bucketOf(PackedText text, int position, int limit) {
+        int code = text.prefixCode(position, BUCKET_LENGTH);
+        int remaining = limit - position;
+        if (remaining >= BUCKET_LENGTH) {
+            return code;
+        }
+        return remaining == 0 ? 0 : code & (-1 << (2 * (BUCKET_LENGTH - remaining)));
+    }
+
+    /**
+     * Finds the suffixes shorter than {@link #BUCKET_LENGTH} bases, the few just
+     * before each terminator, in sorted order. A shorter suffix sorts before a
+     * longer one with the same bases, and of two with the same bases and length,
+     * the one ending at the later terminator sorts first, so they are sorted by
+     * their bucket, then by their length and then by their terminator, each as
+     * a key of those three.
+     */
+    private static long[] shortSuffixes(PackedText text) {
+        int[] terminators = text.getTerminators();
+        long[] shortSuffixes = new long[terminators.length * BUCKET_LENGTH];
+        int count = 0;
+        int recordStart = 0;
+        for (int terminator : terminators) {
+            for (int position = Math.max(recordStart, terminator - BUCKET_LENGTH + 1); position <= terminator;
+                    position++) {
+                shortSuffixes[count++] = ((long) bucketOf(text, position, terminator) << SHORT_BUCKET_SHIFT)
+                        | ((long) (terminator - position) << SHORT_LENGTH_SHIFT) | (Integer.MAX_VALUE - terminator);
+            }
+            recordStart = terminator + 1;
+        }
+        shortSuffixes = Arrays.copyOf(shortSuffixes, count);
+        Arrays.sort(shortSuffixes);
+        return shortSuffixes;
+    }
+
+    /**
+     * Places the short suffixes at the start of their buckets, in sorted order.
+     */
+    private static void placeShortSuffixes(long[] shortSuffixes, int[] suffixArray, int[] bucketStarts) {
+        int[] next = bucketStarts.clone();
+        for (long shortSuffix : shortSuffixes) {
+            int terminator = Integer.MAX_VALUE - (int) (shortSuffix & Integer.MAX_VALUE);
+            int length = (int) (shortSuffix >>> SHORT_LENGTH_SHIFT) & (BUCKET_LENGTH - 1);
+            suffixArray[next[(int) (shortSuffix >>> SHORT_BUCKET_SHIFT)]++] = terminator - length;
+        }
+    }
+
+    /**
+     * Sorts the suffixes in a range of the suffix array whose first depth bases
+     * are all equal, with a multikey quicksort on 32 bases at a time, up to the
+     * maximum depth. The suffixes that are still equal there are left as groups
+     * for {@link PrefixDoubling}, with every suffix but the first of each group
+     * stored as its complement.
+     *
+     * @param text        the packed text
+     * @param suffixArray the suffix array
+     * @param from        the index of the first suffix to sort
+     * @param to          the index after the last suffix to sort
+     * @param depth       the number of bases that the suffixes share
+     * @param maxDepth    the number of bases after which to leave the suffixes
+     *                    that are still equal as a group
+     * @return whether any group was left
+     */
+    static boolean sort(PackedText text, int[] suffixArray, int from, int to, int depth, int maxDepth) {
+        boolean hasGroups = false;
+        while (to - from > INSERTION_SORT_SIZE) {
+            int pivot = suffixArray[(from + to) >>> 1];
+            int pivotLimit = text.limit(pivot);
+            int pivotRemaining = Math.min(pivotLimit - pivot - depth, PackedText.BASES_PER_WORD);
+            long pivotWord = keyWord(text, pivot + depth, pivotRemaining);
+            int lower = from;
+            int upper = to;
+            int i = from;
+            while (i < upper) {
+                int suffix = suffixArray[i];
+                int limit = text.limit(suffix);
+                int remaining = Math.min(limit - suffix - depth, PackedText.BASES_PER_WORD);
+                int comparison = Long.compareUnsigned(keyWord(text, suffix + depth, remaining), pivotWord);
+                if (comparison == 0) {
+                    comparison = Integer.compare(remaining, pivotRemaining);
+                }
+                if (comparison == 0 && remaining < PackedText.BASES_PER_WORD) {
+                    // both end at a terminator, and the later terminator sorts first
+                    comparison = Integer.compare(pivotLimit, limit);
+                }
+                if (comparison < 0) {
+                    suffixArray[i++] = suffixArray[lower];
+                    suffixArray[lower++] = suffix;
+                } else if (comparison > 0) {
+                    suffixArray[i] = suffixArray[--upper];
+                    suffixArray[upper] = suffix;
+                } else {
+                    i++;
+                }
+            }
+            hasGroups |= sort(text, suffixArray, from, lower, depth, maxDepth);
+            hasGroups |= sort(text, suffixArray, upper, to, depth, maxDepth);
+            if (pivotRemaining < PackedText.BASES_PER_WORD) {
+                // the equal suffixes end in this word, so there is only the pivot
+                return hasGroups;
+            }
+            from = lower;
+            to = upper;
+            depth += PackedText.BASES_PER_WORD;
+            if (depth >= maxDepth) {
+                return markGroup(suffixArray, from, to) || hasGroups;
+            }
+        }
+        boolean hasEqual = false;
+        for (int i = from + 1; i < to; i++) {
+            int suffix = suffixArray[i];
+            int j = i;
+            while (j > from) {
+                int comparison = compareSuffixes(text, suffixArray[j - 1], suffix, depth, maxDepth);
+                if (comparison <= 0) {
+                    hasEqual |= comparison == 0;
+                    break;
+                }
+                suffixArray[j] = suffixArray[j - 1];
+                j--;
+            }
+            suffixArray[j] = suffix;
+        }
+        // the neighbours that are equal up to the maximum depth form the groups
+        for (int i = to - 1; hasEqual && i > from; i--) {
+            if (compareSuffixes(text, suffixArray[i - 1], suffixArray[i], depth, maxDepth) == 0) {
+                suffixArray[i] = ~suffixArray[i];
+                hasGroups = true;
+            }
+        }
+        return hasGroups;
+    }
+
+    /**
+     * Marks the suffixes in a range as a group, if there are more than one.
+     *
+     * @return whether the range was marked
+     */
+    private static boolean markGroup(int[] suffixArray, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            suffixArray[i] = ~suffixArray[i];
+        }
+        return to - from > 1;
+    }
+
+    /**
+     * Returns the next bases of a suffix as a word, with the bases after its end
+     * cleared, so that comparing two such words and then the numbers of bases
+     * they hold compares the suffixes.
+     */
+    private static long keyWord(PackedText text, int position, int remaining) {
+        long word = text.wordAt(position);
+        if (remaining >= PackedText.BASES_PER_WORD) {
+            return word;
+        }
+        return remaining == 0 ? 0 : word & (-1L << (64 - (remaining << 1)));
+    }
+
+    /**
+     * Compares two suffixes whose first depth bases are equal, up to the maximum
+     * depth, returning 0 only if both have the same bases up to it.
+     */
+    private static int compareSuffixes(PackedText text, int first, int second, int depth, int maxDepth) {
+        int firstLimit = text.limit(first);
+        int secondLimit = text.limit(second);
+        int firstRemaining = firstLimit - first - depth;
+        int secondRemaining = secondLimit - second - depth;
+        boolean capped = Math.min(firstRemaining, secondRemaining) >= maxDepth - depth;
+        int max = capped ? maxDepth - depth : Math.min(firstRemaining, secondRemaining);
+        int matched = PackedText.matchLength(text, first + depth, text, second + depth, max);
+        if (matched == max) {
+            if (capped) {
+                return 0;
+            }
+            int comparison = Integer.compare(firstRemaining, secondRemaining);
+            return comparison != 0 ? comparison : Integer.compare(secondLimit, firstLimit);
+        }
+        return text.baseAt(first + depth + matched) - text.baseAt(second + depth + matched);
+    }
+
+    private static int partStart(int length, int parts, int part) {
+        return (int) ((long) length * part / parts);
+    }
+
+    /**
+     * Runs a task once for each thread index, on that many threads, and waits for
+     * all of them to finish.
+     */
+    static void runInParallel(int threads, IntConsumer task) {
+        if (threads == 1) {
+            task.accept(0);
+            return;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                int index = thread;
+                futures.add(executorService.submit(() -> task.accept(index)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the suffix array", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("A suffix array worker failed", e.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package buildsa;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class to finish sorting the suffixes that a bucket sort left in groups of
+ * equal prefixes, by the prefix doubling of Larsson and Sadakane. Each suffix
+ * is given the rank of its group, the index of the last suffix in it, so that
+ * two suffixes of a group whose first h bases are equal are ordered by the
+ * ranks of the suffixes h bases later. Sorting every group by those ranks
+ * doubles the number of bases its suffixes are known to share, so a group is
+ * sorted in a number of passes that grows with the logarithm of the longest
+ * repeat rather than with its length, which is what makes sorting a long
+ * repeat by comparing its bases quadratic.
+ * <p>
+ * The groups are passed in the suffix array itself: the first suffix of each
+ * group is stored as it is, and every other suffix of the group as its
+ * complement, which is negative. The ranks take an int per text position,
+ * which are only needed if there are any groups.
+ * <p>
+ * On several threads, each pass is split in two, so that the groups are sorted
+ * independently: every group is first sorted by the ranks as they were at the
+ * start of the pass, and only then are its parts of equal ranks given their
+ * own ranks. This doubles the depth exactly once per pass, where the single
+ * threaded sort uses the ranks it has already refined, and takes a long per
+ * suffix of the largest group on each thread for its keys.
+ *
+ * @author Valerie Wray
+ *
+ */
+class PrefixDoubling {
+    private static final int SELECTION_SORT_SIZE = 7;
+    private static final int MEDIAN_OF_NINE_SIZE = 40;
+
+    private final IntStore suffixArray;
+    private final IntStore ranks;
+    private int depth;
+
+    private PrefixDoubling(IntStore suffixArray, IntStore ranks, int depth) {
+        this.suffixArray = suffixArray;
+        this.ranks = ranks;
+        this.depth = depth;
+    }
+
+    /**
+     * Sorts the groups of suffixes marked in a suffix array. The suffixes in
+     * different groups must already be in order, and the suffixes of each group
+     * must share at least the given number of bases.
+     *
+     * @param suffixArray the suffix array, with the groups marked
+     * @param ranks       an array with room for the rank of every suffix
+     * @param depth       the number of bases that the suffixes of every group
+     *                    share, at least 1
+     */
+    static void sort(IntStore suffixArray, IntStore ranks, int depth) {
+        new PrefixDoubling(suffixArray, ranks, depth).sort();
+    }
+
+    /**
+     * Sorts the groups of suffixes marked in a suffix array on the given number
+     * of threads, each taking the next unsorted group of a pass.
+     *
+     * @param suffixArray the suffix array, with the groups marked
+     * @param ranks       an array with room for the rank of every suffix
+     * @param depth       the number of bases that the suffixes of every group
+     *                    share, at least 1
+     * @param threads     the number of threads
+     */
+    static void sort(IntStore suffixArray, IntStore ranks, int depth, int threads) {
+        PrefixDoubling prefixDoubling = new PrefixDoubling(suffixArray, ranks, depth);
+        if (threads == 1) {
+            prefixDoubling.sort();
+        } else {
+            prefixDoubling.sortInParallel(threads);
+        }
+    }
+
+    private void sort() {
+        int length = suffixArray.length();
+        rankGroups(length);
+        while (suffixArray.get(0) != -length) {
+            int i = 0;
+            int sortedLength = 0;
+            while (i < length) {
+                int suffix = suffixArray.get(i);
+                if (suffix < 0) {
+                    // a run of sorted suffixes, joined to the runs before it
+                    i -= suffix;
+                    sortedLength -= suffix;
+                } else {
+                    if (sortedLength > 0) {
+                        suffixArray.set(i - sortedLength, -sortedLength);
+                        sortedLength = 0;
+                    }
+                    int end = ranks.get(suffix) + 1;
+                    sortGroup(i, end - i);
+                    i = end;
+                }
+            }
+            if (sortedLength > 0) {
+                suffixArray.set(i - sortedLength, -sortedLength);
+            }
+            depth *= 2;
+        }
+        // every suffix is sorted, and its rank is its index
+        for (int position = 0; position < length; position++) {
+            suffixArray.set(ranks.get(position), position);
+        }
+    }
+
+    private void sortInParallel(int threads) {
+        int length = suffixArray.length();
+        rankGroups(length);
+        while (suffixArray.get(0) != -length) {
+            int[] groups = findGroups(length);
+            int groupCount = groups[0];
+            // the groups only read the ranks while they are sorted, and only
+            // write the ranks of their own suffixes once they all are
+            AtomicInteger nextGroup = new AtomicInteger();
+            ParallelBucketSort.runInParallel(threads, thread -> {
+                long[] keys = new long[0];
+                int group;
+                while ((group = nextGroup.getAndIncrement()) < groupCount) {
+                    keys = sortByKeys(groups[2 * group + 1], groups[2 * group + 2], keys);
+                }
+            });
+            AtomicInteger nextRankedGroup = new AtomicInteger();
+            ParallelBucketSort.runInParallel(threads, thread -> {
+                int group;
+                while ((group = nextRankedGroup.getAndIncrement()) < groupCount) {
+                    rankParts(groups[2 * group + 1], groups[2 * group + 2]);
+                }
+            });
+            depth *= 2;
+        }
+        // every suffix is sorted, and its rank is its index
+        for (int position = 0; position < length; position++) {
+            suffixArray.set(ranks.get(position), position);
+        }
+    }
+
+    /**
+     * Joins the runs of sorted suffixes and finds the groups left.
+     *
+     * @return the number of groups, followed by the start and end of each
+     */
+    private int[] findGroups(int length) {
+        int[] groups = new int[17];
+        int groupCount = 0;
+        int i = 0;
+        int sortedLength = 0;
+        while (i < length) {
+            int suffix = suffixArray.get(i);
+            if (suffix < 0) {
+                i -= suffix;
+                sortedLength -= suffix;
+            } else {
+                if (sortedLength > 0) {
+                    suffixArray.set(i - sortedLength, -sortedLength);
+                    sortedLength = 0;
+                }
+                int end = ranks.get(suffix) + 1;
+                if (groups.length < 2 * groupCount + 3) {
+                    groups = Arrays.copyOf(groups, groups.length * 2);
+                }
+                groups[2 * groupCount + 1] = i;
+                groups[2 * groupCount + 2] = end;
+                groupCount++;
+                i = end;
+            }
+        }
+        if (sortedLength > 0) {
+            suffixArray.set(i - sortedLength, -sortedLength);
+        }
+        groups[0] = groupCount;
+        return groups;
+    }
+
+    /**
+     * Sorts a group by the key of its suffixes, and marks its parts of equal
+     * keys as groups without ranking them.
+     *
+     * @param keys a buffer for the keys, which is grown if it is too small
+     * @return the buffer
+     */
+    private long[] sortByKeys(int from, int to, long[] keys) {
+        int length = to - from;
+        if (keys.length < length) {
+            keys = new long[Math.max(length, 2 * keys.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            keys[i] = ((long) key(from + i) << Integer.SIZE) | suffixArray.get(from + i);
+        }
+        Arrays.sort(keys, 0, length);
+        for (int i = 0; i < length; i++) {
+            int suffix = (int) keys[i];
+            boolean partStart = i == 0 || (keys[i] >>> Integer.SIZE) != (keys[i - 1] >>> Integer.SIZE);
+            suffixArray.set(from + i, partStart ? suffix : ~suffix);
+        }
+        return keys;
+    }
+
+    /**
+     * Gives the suffixes of each marked part of a sorted group the rank of the
+     * part, unmarks them and marks a part of one suffix as sorted.
+     */
+    private void rankParts(int from, int to) {
+        int i = from;
+        while (i < to) {
+            int end = i + 1;
+            while (end < to && suffixArray.get(end) < 0) {
+                end++;
+            }
+            for (int j = i; j < end; j++) {
+                int suffix = suffixArray.get(j);
+                if (suffix < 0) {
+                    suffix = ~suffix;
+                    suffixArray.set(j, suffix);
+                }
+                ranks.set(suffix, end - 1);
+            }
+            if (end - i == 1) {
+                suffixArray.set(i, -1);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Gives every suffix the rank of its group, unmarks the suffixes of the
+     * groups and replaces each run of sorted suffixes by its negated length.
+     */
+    private void rankGroups(int length) {
+        int sortedLength = 0;
+        int i = 0;
+        while (i < length) {
+            int end = i + 1;
+            while (end < length && suffixArray.get(end) < 0) {
+                end++;
+            }
+            if (end - i == 1) {
+                ranks.set(suffixArray.get(i), i);
+                sortedLength++;
+            } else {
+                if (sortedLength > 0) {
+                    suffixArray.set(i - sortedLength, -sortedLength);
+                    sortedLength = 0;
+                }
+                for (int j = i; j < end; j++) {
+                    int suffix = suffixArray.get(j);
+                    if (suffix < 0) {
+                        suffix = ~suffix;
+                        suffixArray.set(j, suffix);
+                    }
+                    ranks.set(suffix, end - 1);
+                }
+            }
+            i = end;
+        }
+        if (sortedLength > 0) {
+            suffixArray.set(i - sortedLength, -sortedLength);
+        }
+    }
+
+    /**
+     * Returns the rank of the suffix that starts depth bases after the suffix at
+     * the given index, which orders the suffixes of a group.
+     */
+    private int key(int index) {
+        return ranks.get(suffixArray.get(index) + depth);
+    }
+
+    /**
+     * Sorts a group by the key of its suffixes with a ternary-split quicksort,
+     * and gives each part of equal keys its own rank.
+     */
+    private void sortGroup(int from, int length) {
+        if (length < SELECTION_SORT_SIZE) {
+            selectionSortGroup(from, length);
+            return;
+        }
+        int pivot = choosePivot(from, length);
+        // partition into equal keys at both ends, smaller and larger keys in the
+        // middle, and then move the equal keys to the middle
+        int lowEqual = from;
+        int lower = from;
+        int upper = from + length - 1;
+        int highEqual = upper;
+        while (true) {
+            int key;
+            while (lower <= upper && (key = key(lower)) <= pivot) {
+                if (key == pivot) {
+                    swap(lowEqual++, lower);
+                }
+                lower++;
+            }
+            while (upper >= lower && (key = key(upper)) >= pivot) {
+                if (key == pivot) {
+                    swap(upper, highEqual--);
+                }
+                upper--;
+            }
+            if (lower > upper) {
+                break;
+            }
+            swap(lower++, upper--);
+        }
+        int end = from + length;
+        int count = Math.min(lowEqual - from, lower - lowEqual);
+        swapRanges(from, lower - count, count);
+        count = Math.min(highEqual - upper, end - highEqual - 1);
+        swapRanges(lower, end - count, count);
+
+        int smaller = lower - lowEqual;
+        int larger = highEqual - upper;
+        if (smaller > 0) {
+            sortGroup(from, smaller);
+        }
+        updateGroup(from + smaller, end - larger - 1);
+        if (larger > 0) {
+            sortGroup(end - larger, larger);
+        }
+    }
+
+    /**
+     * Sorts a small group by repeatedly moving the suffixes with the smallest
+     * key to its start.
+     */
+    private void selectionSortGroup(int from, int length) {
+        int first = from;
+        int last = from + length - 1;
+        while (first < last) {
+            int equalEnd = first + 1;
+            int smallest = key(first);
+            for (int i = first + 1; i <= last; i++) {
+                int key = key(i);
+                if (key < smallest) {
+                    smallest = key;
+                    swap(i, first);
+                    equalEnd = first + 1;
+                } else if (key == smallest) {
+                    swap(i, equalEnd++);
+                }
+            }
+            updateGroup(first, equalEnd - 1);
+            first = equalEnd;
+        }
+        if (first == last) {
+            ranks.set(suffixArray.get(first), first);
+            suffixArray.set(first, -1);
+        }
+    }
+
+    /**
+     * Gives the suffixes from first to last the rank of the last, and marks a
+     * group of one suffix as sorted.
+     */
+    private void updateGroup(int first, int last) {
+        for (int i = first; i <= last; i++) {
+            ranks.set(suffixArray.get(i), last);
+        }
+        if (first == last) {
+            suffixArray.set(first, -1);
+        }
+    }
+
+    private int choosePivot(int from, int length) {
+        int middle = from + (length >>> 1);
+        int first = from;
+        int last = from + length - 1;
+        if (length > MEDIAN_OF_NINE_SIZE) {
+            int step = length >>> 3;
+            first = medianOfThree(first, first + step, first + 2 * step);
+            middle = medianOfThree(middle - step, middle, middle + step);
+            last = medianOfThree(last - 2 * step, last - step, last);
+        }
+        return key(medianOfThree(first, middle, last));
+    }
+
+    private int medianOfThree(int a, int b, int c) {
+        int keyA = key(a);
+        int keyB = key(b);
+        int keyC = key(c);
+        if (keyA < keyB) {
+            return keyB < keyC ? b : keyA < keyC ? c : a;
+        }
+        return keyB > keyC ? b : keyA > keyC ? c : a;
+    }
+
+    private void swap(int i, int j) {
+        int suffix = suffixArray.get(i);
+        suffixArray.set(i, suffixArray.get(j));
+        suffixArray.set(j, suffix);
+    }
+
+    private void swapRanges(int first, int second, int count) {
+        for (int i = 0; i < count; i++) {
+            swap(first + i, second + i);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package buildsa;
+
+import java.util.Arrays;
+
+import model.IntArray;
+import model.PackedText;
+
+/**
+ * A class to build suffix arrays in linear time with the SA-IS (suffix array
+ * induced sorting) algorithm of Nong, Zhang and Chan. The text is read directly
+ * from its packed form as an alphabet of five symbols (the sentinel and the
+ * four bases), or of one more symbol per separator for a text of several
+ * records, so no int copy of the text is made. Each level of the recursion
+ * stores its reduced text in the unused upper half of the suffix array itself,
+ * so apart from the suffix array, the working memory is one bit per position
+ * for the suffix types and one int per symbol of the alphabet for the buckets.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class SaIs {
+
+    private SaIs() {
+    }
+
+    /**
+     * Builds the suffix array of a packed text.
+     *
+     * @param text the packed text, which must end in the sentinel
+     * @return the suffix array, with one entry per position of the text
+     * @throws IllegalArgumentException if the text does not end in the sentinel
+     */
+    public static int[] buildSuffixArray(PackedText text) {
+        if (!text.hasSentinel()) {
+            throw new IllegalArgumentException("SA-IS needs a text that ends in the sentinel");
+        }
+        int length = text.length();
+        int[] suffixArray = new int[length];
+        int[] terminators = text.getTerminators();
+        int terminatorCount = terminators.length;
+        if (terminatorCount == 1) {
+            sais(new IntArray() {
+                @Override
+                public int get(int index) {
+                    return text.isTerminator(index) ? 0 : text.baseAt(index) + 1;
+                }
+
+                @Override
+                public int length() {
+                    return length;
+                }
+            }, suffixArray, length, 5);
+            return suffixArray;
+        }
+        // each terminator is its own symbol, below the bases, with the later ones
+        // smaller, so the sentinel is still the only 0 and the suffixes ending at
+        // a later terminator sort first
+        long[] terminatorBits = new long[(length >>> 6) + 1];
+        for (int terminator : terminators) {
+            terminatorBits[terminator >>> 6] |= 1L << terminator;
+        }
+        sais(new IntArray() {
+            @Override
+            public int get(int index) {
+                if ((terminatorBits[index >>> 6] & (1L << index)) != 0) {
+                    return terminatorCount - 1 - Arrays.binarySearch(terminators, index);
+                }
+                return terminatorCount + text.baseAt(index);
+            }
+
+            @Override
+            public int length() {
+                return length;
+            }
+        }, suffixArray, length, terminatorCount + 4);
+        return suffixArray;
+    }
+
+    /**
+     * Builds the suffix array of a text whose last symbol is 0 and occurs nowhere
+     * else, into the first n entries of the given array.
+     *
+     * @param text         the text, with symbols from 0 to alphabetSize - 1
+     * @param suffixArray  the array to build the suffix array in, which is also
+     *                     used as working space
+     * @param n            the length of the text
+     * @param alphabetSize the number of distinct symbols the text may contain
+     */
+    private static void sais(IntArray text, int[] suffixArray, int n, int alphabetSize) {
+        if (n == 1) {
+            suffixArray[0] = 0;
+            return;
+        }
+        // a set bit marks an S-type suffix, which sorts before the suffix after it
+        long[] sTypes = new long[(n >>> 6) + 1];
+        setSType(sTypes, n - 1);
+        for (int i = n - 2; i >= 0; i--) {
+            int symbol = text.get(i);
+            int next = text.get(i + 1);
+            if (symbol < next || (symbol == next && isSType(sTypes, i + 1))) {
+                setSType(sTypes, i);
+            }
+        }
+        int[] buckets = new int[alphabetSize];
+
+        // sort the LMS substrings by inducing from the LMS suffixes in any order
+        bucketEnds(text, buckets, n);
+        Arrays.fill(suffixArray, 0, n, -1);
+        for (int i = 1; i < n; i++) {
+            if (isLms(sTypes, i)) {
+                suffixArray[--buckets[text.get(i)]] = i;
+            }
+        }
+        induce(text, suffixArray, sTypes, buckets, n);
+
+        // move the sorted LMS substrings to the front and name them
+        int lmsCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLms(sTypes, suffixArray[i])) {
+                suffixArray[lmsCount++] = suffixArray[i];
+            }
+        }
+        Arrays.fill(suffixArray, lmsCount, n, -1);
+        int names = 0;
+        int previous = -1;
+        for (int i = 0; i < lmsCount; i++) {
+            int position = suffixArray[i];
+            if (previous < 0 || !equalLmsSubstrings(text, sTypes, position, previous)) {
+                names++;
+                previous = position;
+            }
+            // LMS positions are at least two apart, so halving them keeps them distinct
+            suffixArray[lmsCount + (position >>> 1)] = names - 1;
+        }
+        for (int i = n - 1, j = n - 1; i >= lmsCount; i--) {
+            if (suffixArray[i] >= 0) {
+                suffixArray[j--] = suffixArray[i];
+            }
+        }
+
+        // sort the LMS suffixes by sorting the reduced text of their names
+        int reducedStart = n - lmsCount;
+        if (names < lmsCount) {
+            sais(slice(suffixArray, reducedStart, lmsCount), suffixArray, lmsCount, names);
+        } else {
+            for (int i = 0; i < lmsCount; i++) {
+                suffixArray[suffixArray[reducedStart + i]] = i;
+            }
+        }
+
+        // induce the whole suffix array from the sorted LMS suffixes
+        for (int i = 1, j = reducedStart; i < n; i++) {
+            if (isLms(sTypes, i)) {
+                suffixArray[j++] = i;
+            }
+        }
+        for (int i = 0; i < lmsCount; i++) {
+            suffixArray[i] = suffixArray[reducedStart + suffixArray[i]];
+        }
+        Arrays.fill(suffixArray, lmsCount, n, -1);
+        bucketEnds(text, buckets, n);
+        for (int i = lmsCount - 1; i >= 0; i--) {
+            int position = suffixArray[i];
+            suffixArray[i] = -1;
+            suffixArray[--buckets[text.get(position)]] = position;
+        }
+        induce(text, suffixArray, sTypes, buckets, n);
+    }
+
+    /**
+     * Induces the order of the L-type suffixes from the start of each bucket, and
+     * then that of the S-type suffixes from the end of each bucket.
+     */
+    private static void induce(IntArray text, int[] suffixArray, long[] sTypes, int[] buckets, int n) {
+        bucketStarts(text, buckets, n);
+        for (int i = 0; i < n; i++) {
+            int position = suffixArray[i] - 1;
+            if (position >= 0 && !isSType(sTypes, position)) {
+                suffixArray[buckets[text.get(position)]++] = position;
+            }
+        }
+        bucketEnds(text, buckets, n);
+        for (int i = n - 1; i >= 0; i--) {
+            int position = suffixArray[i] - 1;
+            if (position >= 0 && isSType(sTypes, position)) {
+                suffixArray[--buckets[text.get(position)]] = position;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the LMS substrings starting at two positions are equal, in
+     * both their symbols and their types, up to and including the next LMS
+     * position. The last LMS substring is the sentinel alone, which is unique, so
+     * the comparison never runs past the end of the text.
+     */
+    private static boolean equalLmsSubstrings(IntArray text, long[] sTypes, int first, int second) {
+        for (int d = 0;; d++) {
+            if (text.get(first + d) != text.get(second + d)
+                    || isSType(sTypes, first + d) != isSType(sTypes, second + d)) {
+                return false;
+            }
+            if (d > 0 && (isLms(sTypes, first + d) || isLms(sTypes, second + d))) {
+                return isLms(sTypes, first + d) && isLms(sTypes, second + d);
+            }
+        }
+    }
+
+    private static void bucketStarts(IntArray text, int[] buckets, int n) {
+        countSymbols(text, buckets, n);
+        int sum = 0;
+        for (int symbol = 0; symbol < buckets.length; symbol++) {
+            int count = buckets[symbol];
+            buckets[symbol] = sum;
+            sum += count;
+        }
+    }
+
+    private static void bucketEnds(IntArray text, int[] buckets, int n) {
+        countSymbols(text, buckets, n);
+        int sum = 0;
+        for (int symbol = 0; symbol < buckets.length; symbol++) {
+            sum += buckets[symbol];
+            buckets[symbol] = sum;
+        }
+    }
+
+    private static void countSymbols(IntArray text, int[] buckets, int n) {
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < n; i++) {
+            buckets[text.get(i)]++;
+        }
+    }
+
+    private static boolean isLms(long[] sTypes, int position) {
+        return position > 0 && isSType(sTypes, position) && !isSType(sTypes, position - 1);
+    }
+
+    private static boolean isSType(long[] sTypes, int position) {
+        return (sTypes[position >>> 6] & (1L << position)) != 0;
+    }
+
+    private static void setSType(long[] sTypes, int position) {
+        sTypes[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * Returns a view of part of an array as a text, for the reduced text of a
+     * recursion level.
+     */
+    private static IntArray slice(int[] values, int start, int length) {
+        return new IntArray() {
+            @Override
+            public int get(int index) {
+                return values[start + index];
+            }
+
+            @Override
+            public int length() {
+                return length;
+            }
+        };
+    }
+}
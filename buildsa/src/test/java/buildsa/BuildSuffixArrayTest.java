@@ -1,12 +1,25 @@
 package buildsa;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
-import model.IndexInterval;
+import model.BasePair;
+import model.CompactLcpArray;
+import model.IntArray;
+import model.PackedText;
+import model.PrefixTable;
 import model.SerializeableSuffixArray;
 
 /**
@@ -17,10 +30,13 @@ import model.SerializeableSuffixArray;
  */
 class BuildSuffixArrayTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     void testBuildSuffixArray() {
-        int[] suffixArray = BuildSuffixArray.buildSuffixArray("acaaca$");
-        assertEquals(7, suffixArray.length - 3);
+        int[] suffixArray = BuildSuffixArray.buildSuffixArray(PackedText.valueOf("acaaca$"));
+        assertArrayEquals(new int[] { 6, 5, 2, 3, 0, 4, 1 }, suffixArray);
     }
 
     /**
@@ -38,29 +54,126 @@ class BuildSuffixArrayTest {
     @Test
     void testBuildPrefixTable() {
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
-                new int[] { 6, 5, 2, 3, 0, 4, 1 }, "ACAACA$");
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
         BuildSuffixArray.buildPrefixTable(serializeableSuffixArray, 2);
-        IndexInterval[] prefixTable = serializeableSuffixArray.getPrefixTable();
+        PrefixTable prefixTable = serializeableSuffixArray.getPrefixTable();
         assertNotNull(prefixTable);
-        assertEquals(16, prefixTable.length);
+        assertEquals(2, prefixTable.getPrefixLength());
+        assertEquals(16, prefixTable.size());
         // prefix aa
-        assertEquals(2, prefixTable[0].getStart());
-        assertEquals(3, prefixTable[0].getEnd());
+        assertEquals(2, prefixTable.getStart(0, 2));
+        assertEquals(3, prefixTable.getEnd(0, 2));
         // prefix ac
-        assertEquals(3, prefixTable[1].getStart());
-        assertEquals(5, prefixTable[1].getEnd());
+        assertEquals(3, prefixTable.getStart(1, 2));
+        assertEquals(5, prefixTable.getEnd(1, 2));
         // prefix ag
-        assertNull(prefixTable[2]);
+        assertEquals(prefixTable.getStart(2, 2), prefixTable.getEnd(2, 2));
         // prefix at
-        assertNull(prefixTable[3]);
+        assertEquals(prefixTable.getStart(3, 2), prefixTable.getEnd(3, 2));
         // prefix ca
-        assertEquals(5, prefixTable[4].getStart());
-        assertEquals(7, prefixTable[4].getEnd());
+        assertEquals(5, prefixTable.getStart(4, 2));
+        assertEquals(7, prefixTable.getEnd(4, 2));
         // prefix cc
-        assertNull(prefixTable[5]);
+        assertEquals(prefixTable.getStart(5, 2), prefixTable.getEnd(5, 2));
         // prefix cg
-        assertNull(prefixTable[6]);
+        assertEquals(prefixTable.getStart(6, 2), prefixTable.getEnd(6, 2));
         // prefix ct
-        assertNull(prefixTable[7]);
+        assertEquals(prefixTable.getStart(7, 2), prefixTable.getEnd(7, 2));
+        // prefix a, which includes the suffix a$ that is shorter than k
+        assertEquals(1, prefixTable.getStart(0, 1));
+        assertEquals(5, prefixTable.getEnd(0, 1));
+    }
+
+    @Test
+    void testBuildLcpArray() {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        BuildSuffixArray.buildLcpArray(serializeableSuffixArray);
+        IntArray lcpArray = serializeableSuffixArray.getLcpArray();
+        int[] expected = { 0, 0, 1, 1, 3, 0, 2 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], lcpArray.get(i));
+        }
+    }
+
+    /**
+     * The search tree of ACAACA$ has the intervals (0, 7), (0, 3), (1, 3), (3, 7),
+     * (3, 5) and (5, 7), with centers 3, 1, 2, 5, 4 and 6.
+     */
+    @Test
+    void testBuildLcpLrArrays() {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        BuildSuffixArray.buildLcpArray(serializeableSuffixArray);
+        BuildSuffixArray.buildLcpLrArrays(serializeableSuffixArray);
+        IntArray leftLcpArray = serializeableSuffixArray.getLeftLcpArray();
+        IntArray rightLcpArray = serializeableSuffixArray.getRightLcpArray();
+        int[] expectedLeft = { 0, 0, 1, 0, 3, 0, 2 };
+        int[] expectedRight = { 0, 1, 1, 0, 0, 0, 0 };
+        for (int i = 1; i < expectedLeft.length; i++) {
+            assertEquals(expectedLeft[i], leftLcpArray.get(i), "left " + i);
+            assertEquals(expectedRight[i], rightLcpArray.get(i), "right " + i);
+        }
+    }
+
+    /**
+     * Checks the LCP array of a text with long repeats, whose LCP values do not
+     * fit in a byte, against a direct comparison of neighbouring suffixes.
+     */
+    @Test
+    void testBuildLcpArrayWithLongRepeats() {
+        Random random = new Random(3);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+        }
+        String unit = stringBuilder.toString();
+        String sequence = unit + unit.substring(0, 300) + unit + "$";
+        PackedText text = PackedText.valueOf(sequence);
+        int[] suffixArray = BuildSuffixArray.buildSuffixArray(text);
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+        BuildSuffixArray.buildLcpArray(serializeableSuffixArray);
+        IntArray lcpArray = serializeableSuffixArray.getLcpArray();
+        int max = 0;
+        for (int i = 1; i < suffixArray.length; i++) {
+            int expected = 0;
+            while (sequence.charAt(suffixArray[i - 1] + expected) == sequence.charAt(suffixArray[i] + expected)) {
+                expected++;
+            }
+            assertEquals(expected, lcpArray.get(i), "index " + i);
+            max = Math.max(max, expected);
+        }
+        assertTrue(max >= CompactLcpArray.OVERFLOW);
+    }
+
+    /**
+     * Reads a multi-FASTA file into a text with a separator after each record,
+     * and checks that the LCP values of its suffixes stop at the separators.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadMultiFastaFile() throws IOException {
+        Path reference = tempDir.resolve("reference.fna");
+        Files.writeString(reference, ">chr1 first chromosome\nACA\nAC\n>chr2\nACA\n\n>chrM\nACAAC\n");
+        List<String> names = new ArrayList<>();
+        PackedText text = BuildSuffixArray.readFastaFile(reference.toString(), names);
+        assertEquals("ACAAC$ACA$ACAAC$", text.toString());
+        assertEquals(List.of("chr1", "chr2", "chrM"), names);
+
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                BuildSuffixArray.buildSuffixArray(text), text);
+        BuildSuffixArray.buildLcpArray(serializeableSuffixArray);
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
+        for (int i = 1; i < suffixArray.length(); i++) {
+            int previous = suffixArray.get(i - 1);
+            int current = suffixArray.get(i);
+            int expected = 0;
+            while (!text.isTerminator(previous + expected)
+                    && text.charAt(previous + expected) == text.charAt(current + expected)) {
+                expected++;
+            }
+            assertEquals(expected, serializeableSuffixArray.getLcpArray().get(i), "index " + i);
+        }
     }
 }
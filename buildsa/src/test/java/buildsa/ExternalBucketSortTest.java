@@ -0,0 +1,154 @@
+package buildsa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import model.BasePair;
+import model.IntArray;
+import model.PackedText;
+
+/**
+ * Test class for {@link ExternalBucketSort}, which checks it against
+ * {@link SaIs}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ExternalBucketSortTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Builds the suffix array of a random text with budgets ranging from a few
+     * buckets per partition to the whole text in one partition.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testAgreesWithSaIs() throws IOException {
+        Random random = new Random(17);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+        }
+        String unit = stringBuilder.toString();
+        PackedText text = PackedText.valueOf(unit + unit.substring(5000) + "$");
+        int[] expected = SaIs.buildSuffixArray(text);
+        for (long memoryBudget : new long[] { 64, 4096, 1 << 20 }) {
+            IntArray suffixArray = ExternalBucketSort.buildSuffixArray(text, memoryBudget, tempDir);
+            assertEquals(expected.length, suffixArray.length());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], suffixArray.get(i), "budget " + memoryBudget + " index " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSeveralRecords() throws IOException {
+        Random random = new Random(19);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 200; record++) {
+            for (int i = random.nextInt(record % 2 == 0 ? 5 : 100); i > 0; i--) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+            }
+            stringBuilder.append('$');
+        }
+        PackedText text = PackedText.valueOf(stringBuilder.toString());
+        int[] expected = SaIs.buildSuffixArray(text);
+        IntArray suffixArray = ExternalBucketSort.buildSuffixArray(text, 4096, tempDir);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], suffixArray.get(i), "index " + i);
+        }
+    }
+
+    /**
+     * Builds the suffix array of a text whose largest buckets hold far more
+     * suffixes than fit in the budget, so that they are split by their next 8
+     * and 16 bases, and of tandem repeats, whose suffixes share more than
+     * {@link ParallelBucketSort#DOUBLING_DEPTH} bases.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testBucketsLargerThanBudget() throws IOException {
+        Random random = new Random(23);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            stringBuilder.append("ACGTACGTCCCCGGGG");
+            for (int j = 0; j < 16; j++) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+            }
+        }
+        String unit = stringBuilder.substring(0, 171);
+        while (stringBuilder.length() < 100000) {
+            stringBuilder.append(unit);
+        }
+        PackedText text = PackedText.valueOf(stringBuilder.append('$').toString());
+        int[] expected = SaIs.buildSuffixArray(text);
+        long memoryBudget = 1024;
+        IntArray suffixArray = ExternalBucketSort.buildSuffixArray(text, memoryBudget, tempDir);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], suffixArray.get(i), "index " + i);
+        }
+    }
+
+    /**
+     * Builds the suffix array of records of A of many lengths with a budget of a
+     * few suffixes, so that far more suffixes than fit have the same first
+     * {@link ExternalBucketSort#KEY_LENGTH} bases, both ones that end within them
+     * and ones that go on, and sorts them on one thread and on several.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testEqualKeysLargerThanBudget() throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 60; record++) {
+            stringBuilder.append("A".repeat(record * 7 % 100)).append('$');
+        }
+        stringBuilder.append("A".repeat(3000)).append("C").append("A".repeat(500)).append('$');
+        PackedText text = PackedText.valueOf(stringBuilder.toString());
+        int[] expected = SaIs.buildSuffixArray(text);
+        for (int threads : new int[] { 1, 3 }) {
+            IntArray suffixArray = ExternalBucketSort.buildSuffixArray(text, 16, threads, tempDir);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], suffixArray.get(i), "threads " + threads + " index " + i);
+            }
+        }
+    }
+
+    /**
+     * Builds the suffix array of a random text on several threads, which share
+     * the budget.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testThreads() throws IOException {
+        Random random = new Random(29);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+        }
+        PackedText text = PackedText.valueOf(stringBuilder.append('$').toString());
+        int[] expected = SaIs.buildSuffixArray(text);
+        IntArray suffixArray = ExternalBucketSort.buildSuffixArray(text, 4096, 4, tempDir);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], suffixArray.get(i), "index " + i);
+        }
+    }
+
+    @Test
+    void testRejectsThreadsBelowOne() {
+        PackedText text = PackedText.valueOf("ACGT$");
+        assertThrows(IllegalArgumentException.class, () -> ExternalBucketSort.buildSuffixArray(text, 16, 0, tempDir));
+    }
+}
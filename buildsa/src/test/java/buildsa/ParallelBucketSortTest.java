@@ -0,0 +1,116 @@
+package buildsa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import model.BasePair;
+import model.PackedText;
+
+/**
+ * Test class for {@link ParallelBucketSort}, which checks it against
+ * {@link SaIs}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ParallelBucketSortTest {
+
+    @Test
+    void testShortTexts() {
+        for (String sequence : new String[] { "$", "A$", "AAAAAAA$", "AAAAAAAA$", "AAAAAAAAA$", "ACAACA$",
+                "ACCAAGATAGCTAC$", "GATTACAGATTACAGATTACA$" }) {
+            for (int threads = 1; threads <= 3; threads++) {
+                assertArrayEquals(SaIs.buildSuffixArray(PackedText.valueOf(sequence)),
+                        ParallelBucketSort.buildSuffixArray(PackedText.valueOf(sequence), threads), sequence);
+            }
+        }
+    }
+
+    /**
+     * Checks random texts, some with a reduced alphabet or long repeats, so that
+     * buckets have to be sorted many words deep.
+     */
+    @Test
+    void testRandomTexts() {
+        Random random = new Random(13);
+        for (int length : new int[] { 100, 1000, 20000 }) {
+            for (int alphabet : new int[] { 1, 2, 4 }) {
+                StringBuilder stringBuilder = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(alphabet)).getDnaChar());
+                }
+                String unit = stringBuilder.toString();
+                String sequence = unit + unit.substring(length / 3) + "$";
+                int[] expected = SaIs.buildSuffixArray(PackedText.valueOf(sequence));
+                for (int threads : new int[] { 1, 4 }) {
+                    assertArrayEquals(expected, ParallelBucketSort.buildSuffixArray(PackedText.valueOf(sequence),
+                            threads), "length " + length + " alphabet " + alphabet + " threads " + threads);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks tandem repeats of a 171 base unit, as in alpha satellite DNA, with a
+     * few substitutions and records that repeat each other, whose suffixes share
+     * far more than {@link ParallelBucketSort#DOUBLING_DEPTH} bases.
+     */
+    @Test
+    void testTandemRepeats() {
+        Random random = new Random(171);
+        StringBuilder unit = new StringBuilder();
+        for (int i = 0; i < 171; i++) {
+            unit.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        while (stringBuilder.length() < 100000) {
+            stringBuilder.append(unit);
+        }
+        for (int i = 0; i < 5; i++) {
+            stringBuilder.setCharAt(random.nextInt(stringBuilder.length()), 'A');
+        }
+        String repeat = stringBuilder.toString();
+        for (String sequence : new String[] { repeat + "$", repeat + "$" + repeat.substring(171 * 50) + "$" }) {
+            int[] expected = SaIs.buildSuffixArray(PackedText.valueOf(sequence));
+            for (int threads : new int[] { 1, 2 }) {
+                assertArrayEquals(expected, ParallelBucketSort.buildSuffixArray(PackedText.valueOf(sequence),
+                        threads), "threads " + threads);
+            }
+        }
+    }
+
+    /**
+     * Checks texts of several records, with records shorter than a bucket and
+     * equal records, whose suffixes are ordered by their terminators.
+     */
+    @Test
+    void testSeveralRecords() {
+        Random random = new Random(21);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 300; record++) {
+            int length = random.nextInt(record % 3 == 0 ? ParallelBucketSort.BUCKET_LENGTH : 100);
+            for (int i = 0; i < length; i++) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(2)).getDnaChar());
+            }
+            stringBuilder.append(record % 7 == 0 ? "ACGTACGTAC$ACGTACGTAC$" : "$");
+        }
+        String sequence = stringBuilder.toString();
+        int[] expected = SaIs.buildSuffixArray(PackedText.valueOf(sequence));
+        for (int threads : new int[] { 1, 3 }) {
+            assertArrayEquals(expected, ParallelBucketSort.buildSuffixArray(PackedText.valueOf(sequence), threads),
+                    "threads " + threads);
+        }
+    }
+
+    @Test
+    void testRejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ParallelBucketSort.buildSuffixArray(PackedText.valueOf("ACA"), 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> ParallelBucketSort.buildSuffixArray(PackedText.valueOf("ACA$"), 0));
+    }
+}
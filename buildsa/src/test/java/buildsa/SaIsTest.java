@@ -0,0 +1,94 @@
+package buildsa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.jsuffixarrays.Skew;
+import org.junit.jupiter.api.Test;
+
+import model.BasePair;
+import model.PackedText;
+
+/**
+ * Test class for {@link SaIs}, which checks it against the Skew algorithm of
+ * jsuffixarrays.
+ *
+ * @author Valerie Wray
+ *
+ */
+class SaIsTest {
+
+    @Test
+    void testShortTexts() {
+        for (String sequence : new String[] { "$", "A$", "AA$", "ACAACA$", "ACCAAGATAGCTAC$", "TTTTTTTT$",
+                "ACACACACACAC$", "GATTACAGATTACAGATTACA$" }) {
+            assertArrayEquals(skew(sequence), SaIs.buildSuffixArray(PackedText.valueOf(sequence)), sequence);
+        }
+    }
+
+    /**
+     * Checks random texts, some with a reduced alphabet or long repeats so that
+     * the recursion goes several levels deep.
+     */
+    @Test
+    void testRandomTexts() {
+        Random random = new Random(5);
+        for (int length : new int[] { 10, 100, 1000, 5000 }) {
+            for (int alphabet : new int[] { 1, 2, 4 }) {
+                StringBuilder stringBuilder = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(alphabet)).getDnaChar());
+                }
+                String unit = stringBuilder.toString();
+                for (String sequence : new String[] { unit + "$", unit + unit.substring(length / 3) + unit + "$" }) {
+                    assertArrayEquals(skew(sequence), SaIs.buildSuffixArray(PackedText.valueOf(sequence)),
+                            "length " + length + " alphabet " + alphabet);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks texts of several records, some of them empty or equal to others, so
+     * that suffixes with the same bases are ordered by their terminators.
+     */
+    @Test
+    void testSeveralRecords() {
+        for (String sequence : new String[] { "A$A$", "AC$GAC$", "$$A$", "ACA$ACA$ACA$", "GATTACA$TACA$A$" }) {
+            assertArrayEquals(skew(sequence), SaIs.buildSuffixArray(PackedText.valueOf(sequence)), sequence);
+        }
+        Random random = new Random(9);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 40; record++) {
+            int length = random.nextInt(record % 3 == 0 ? 4 : 200);
+            for (int i = 0; i < length; i++) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(2)).getDnaChar());
+            }
+            stringBuilder.append('$');
+        }
+        String records = stringBuilder.toString();
+        String sequence = records + records;
+        assertArrayEquals(skew(sequence), SaIs.buildSuffixArray(PackedText.valueOf(sequence)));
+    }
+
+    @Test
+    void testRejectsTextWithoutSentinel() {
+        assertThrows(IllegalArgumentException.class, () -> SaIs.buildSuffixArray(PackedText.valueOf("ACA")));
+    }
+
+    /**
+     * Builds the suffix array with Skew, with each terminator a distinct symbol
+     * below the bases and the later ones smaller.
+     */
+    private static int[] skew(String sequence) {
+        int[] inputArray = new int[sequence.length() + 3];
+        int terminators = 0;
+        for (int i = sequence.length() - 1; i >= 0; i--) {
+            inputArray[i] = sequence.charAt(i) == PackedText.SENTINEL ? ++terminators : sequence.charAt(i) + 1000;
+        }
+        return Arrays.copyOf(new Skew().buildSuffixArray(inputArray, 0, sequence.length()), sequence.length());
+    }
+}
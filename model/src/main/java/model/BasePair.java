@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Arrays;
+
 /**
  * An enum to represent a DNA base pair.
  * 
@@ -9,6 +11,16 @@ package model;
 public enum BasePair {
     A('A'), C('C'), G('G'), T('T');
 
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (BasePair basePair : values()) {
+            CODES[basePair.basePair] = (byte) basePair.ordinal();
+            CODES[Character.toLowerCase(basePair.basePair)] = (byte) basePair.ordinal();
+        }
+    }
+
     private char basePair;
 
     private BasePair(char basePair) {
@@ -35,6 +47,45 @@ public enum BasePair {
         return null;
     }
 
+    /**
+     * Returns the 2-bit code of a base character (A=0, C=1, G=2, T=3), accepting
+     * lower case as well as upper case.
+     * 
+     * @param basePair the base character
+     * @return the code of the base, or -1 if the character is not a base
+     */
+    public static int codeOf(char basePair) {
+        return basePair < 128 ? CODES[basePair] : -1;
+    }
+
+    /**
+     * Returns the 2-bit code of the complement of a base (A-T, C-G).
+     * 
+     * @param code the code of the base
+     * @return the code of its complement
+     */
+    public static int complementOf(int code) {
+        return code ^ 3;
+    }
+
+    /**
+     * Returns the code of the reverse complement of a string of bases, given the
+     * code of the string as returned by {@link #convertDNAStringToInt(String)},
+     * without reading the bases again.
+     * 
+     * @param code   the code of the string of bases
+     * @param length the number of bases, at most 15
+     * @return the code of its reverse complement
+     */
+    public static int reverseComplementCode(int code, int length) {
+        int reverseComplement = 0;
+        for (int i = 0; i < length; i++) {
+            reverseComplement = (reverseComplement << 2) | complementOf(code & 3);
+            code >>>= 2;
+        }
+        return reverseComplement;
+    }
+
     public static BasePair convertIntToBasePair(int baseFourDigit) {
         if (baseFourDigit == 0) {
             return A;
@@ -60,10 +111,8 @@ public enum BasePair {
      */
     public static int convertDNAStringToInt(String prefix) {
         int sum = 0;
-        int j;
-        for (int i = prefix.length() - 1; i >= 0; i--) {
-            j = prefix.length() - 1 - i;
-            sum = sum + ((int) Math.pow(4, j)) * convertCharToBasePair(prefix.charAt(i)).ordinal();
+        for (int i = 0; i < prefix.length(); i++) {
+            sum = (sum << 2) | convertCharToBasePair(prefix.charAt(i)).ordinal();
         }
         return sum;
     }
@@ -0,0 +1,127 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * A class to represent a longest common prefix (LCP) array compactly. Entry i
+ * is the LCP of the suffixes at suffix array indices i - 1 and i (and entry 0
+ * is 0). Most LCP values in a genome are small, so each value is stored in a
+ * single byte, and the few values that do not fit are marked with
+ * {@link #OVERFLOW} and kept in a side table sorted by index.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class CompactLcpArray implements IntArray {
+    /**
+     * The byte value marking an entry whose LCP is in the overflow table.
+     */
+    public static final int OVERFLOW = 255;
+
+    private final ByteBuffer smallValues;
+    private final int length;
+    private final int[] overflowIndices;
+    private final int[] overflowValues;
+
+    /**
+     * Creates a new CompactLcpArray.
+     *
+     * @param smallValues     one byte per entry, holding either the LCP value or
+     *                        {@link #OVERFLOW}
+     * @param overflowIndices the sorted indices of the entries marked
+     *                        {@link #OVERFLOW}
+     * @param overflowValues  the LCP values of those entries
+     */
+    public CompactLcpArray(ByteBuffer smallValues, int[] overflowIndices, int[] overflowValues) {
+        this.smallValues = smallValues;
+        this.length = smallValues.limit();
+        this.overflowIndices = overflowIndices;
+        this.overflowValues = overflowValues;
+    }
+
+    /**
+     * Compacts an array of LCP values.
+     *
+     * @param lcpValues the LCP values
+     * @return the {@link CompactLcpArray}
+     */
+    public static CompactLcpArray of(IntArray lcpValues) {
+        int length = lcpValues.length();
+        byte[] smallValues = new byte[length];
+        int overflowCount = 0;
+        int[] overflowIndices = new int[16];
+        int[] overflowValues = new int[16];
+        for (int i = 0; i < length; i++) {
+            int value = lcpValues.get(i);
+            if (value < OVERFLOW) {
+                smallValues[i] = (byte) value;
+            } else {
+                smallValues[i] = (byte) OVERFLOW;
+                if (overflowCount == overflowIndices.length) {
+                    overflowIndices = Arrays.copyOf(overflowIndices, overflowCount * 2);
+                    overflowValues = Arrays.copyOf(overflowValues, overflowCount * 2);
+                }
+                overflowIndices[overflowCount] = i;
+                overflowValues[overflowCount++] = value;
+            }
+        }
+        return new CompactLcpArray(ByteBuffer.wrap(smallValues), Arrays.copyOf(overflowIndices, overflowCount),
+                Arrays.copyOf(overflowValues, overflowCount));
+    }
+
+    /**
+     * Maps the one-byte values of an LCP array from a file, with an overflow table
+     * that has already been read.
+     *
+     * @param channel         the file channel to map from
+     * @param position        the byte offset of the one-byte values in the file
+     * @param length          the number of entries
+     * @param overflowIndices the sorted indices of the entries marked
+     *                        {@link #OVERFLOW}
+     * @param overflowValues  the LCP values of those entries
+     * @return the {@link CompactLcpArray}
+     * @throws IOException if the file cannot be mapped
+     */
+    public static CompactLcpArray map(FileChannel channel, long position, int length, int[] overflowIndices,
+            int[] overflowValues) throws IOException {
+        return new CompactLcpArray(channel.map(MapMode.READ_ONLY, position, length), overflowIndices,
+                overflowValues);
+    }
+
+    @Override
+    public int get(int index) {
+        int value = smallValues.get(index) & 0xFF;
+        return value < OVERFLOW ? value : overflowValues[Arrays.binarySearch(overflowIndices, index)];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the one-byte values, as a read-only view positioned at the start.
+     *
+     * @return the one-byte values
+     */
+    public ByteBuffer getSmallValues() {
+        return smallValues.asReadOnlyBuffer().clear();
+    }
+
+    public int[] getOverflowIndices() {
+        return overflowIndices;
+    }
+
+    public int[] getOverflowValues() {
+        return overflowValues;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactLcpArray [length=" + length + ", overflows=" + overflowIndices.length + "]";
+    }
+}
@@ -0,0 +1,171 @@
+package model;
+
+/**
+ * A class to represent a small top-level index over a suffix array: every
+ * sampling interval-th suffix array row, with the first 32 bases of its suffix
+ * packed into a word, stored in Eytzinger (breadth-first) order. A search for a
+ * pattern walks down the implicit binary tree of the samples from the root, so
+ * the first levels of every search read the same few cache lines, and it only
+ * compares words, without touching the suffix array or the text. It returns the
+ * range of rows between the last sample that sorts before the pattern and the
+ * first sample that sorts after every suffix starting with it, which the hits
+ * of the pattern lie within.
+ * <p>
+ * The bases after the end of a sampled suffix are cleared, that is read as A,
+ * so a sample is only known to sort before or after the pattern if its word
+ * differs from the pattern's in the first bases of the pattern; the samples
+ * whose words agree with it there are inside the returned range.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class EytzingerIndex {
+    private final int samplingInterval;
+    private final int length;
+    private final long[] keys;
+    private final int[] rows;
+
+    /**
+     * Creates a new EytzingerIndex.
+     *
+     * @param samplingInterval the number of suffix array rows per sample
+     * @param length           the length of the suffix array
+     * @param keys             the words of the samples in Eytzinger order, from
+     *                         index 1, with index 0 unused
+     * @param rows             the suffix array rows of the samples in the same
+     *                         order
+     */
+    public EytzingerIndex(int samplingInterval, int length, long[] keys, int[] rows) {
+        this.samplingInterval = samplingInterval;
+        this.length = length;
+        this.keys = keys;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the top-level index of a suffix array.
+     *
+     * @param text             the packed text
+     * @param suffixArray      the suffix array of the text
+     * @param samplingInterval the number of suffix array rows per sample
+     * @return the {@link EytzingerIndex}
+     */
+    public static EytzingerIndex build(PackedText text, IntArray suffixArray, int samplingInterval) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException(
+                    "The sampling interval must be at least 1, but was " + samplingInterval);
+        }
+        int length = suffixArray.length();
+        int sampleCount = (length - 1) / samplingInterval + 1;
+        long[] sortedKeys = new long[sampleCount];
+        for (int sample = 0; sample < sampleCount; sample++) {
+            int position = suffixArray.get(sample * samplingInterval);
+            sortedKeys[sample] = keyWord(text, position);
+        }
+        long[] keys = new long[sampleCount + 1];
+        int[] rows = new int[sampleCount + 1];
+        fill(sortedKeys, samplingInterval, keys, rows, 0, 1);
+        return new EytzingerIndex(samplingInterval, length, keys, rows);
+    }
+
+    /**
+     * Lays out the samples of the subtree rooted at a node in order, returning
+     * the rank of the next sample to lay out.
+     */
+    private static int fill(long[] sortedKeys, int samplingInterval, long[] keys, int[] rows, int rank, int node) {
+        if (node < keys.length) {
+            rank = fill(sortedKeys, samplingInterval, keys, rows, rank, 2 * node);
+            keys[node] = sortedKeys[rank];
+            rows[node] = rank * samplingInterval;
+            rank++;
+            rank = fill(sortedKeys, samplingInterval, keys, rows, rank, 2 * node + 1);
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the first 32 bases of a suffix, with the bases after its end
+     * cleared.
+     */
+    private static long keyWord(PackedText text, int position) {
+        int remaining = text.limit(position) - position;
+        long word = text.wordAt(position);
+        if (remaining >= PackedText.BASES_PER_WORD) {
+            return word;
+        }
+        return remaining == 0 ? 0 : word & (-1L << (64 - (remaining << 1)));
+    }
+
+    /**
+     * Returns the row of the last sample that sorts before the pattern, which
+     * the hits of the pattern start after.
+     *
+     * @param pattern the packed pattern
+     * @return the row, or 0 if no sample is known to sort before the pattern
+     */
+    public int lowerRow(PackedText pattern) {
+        long mask = patternMask(pattern);
+        int node = search(pattern.wordAt(0) & mask, false);
+        int rank = node == 0 ? keys.length - 1 : rows[node] / samplingInterval;
+        return Math.max(0, (rank - 1) * samplingInterval);
+    }
+
+    /**
+     * Returns the row of the first sample that sorts after every suffix starting
+     * with the pattern, which the hits of the pattern end at or before.
+     *
+     * @param pattern the packed pattern
+     * @return the row, or the length of the suffix array if no sample is known to
+     *         sort after the pattern
+     */
+    public int upperRow(PackedText pattern) {
+        long mask = patternMask(pattern);
+        int node = search((pattern.wordAt(0) & mask) | ~mask, true);
+        return node == 0 ? length : rows[node];
+    }
+
+    /**
+     * Finds the node of the first sample whose word is at least the target, or
+     * greater than it if strict, by descending the tree and then backing up to
+     * the last node at which the descent went left.
+     *
+     * @return the node, or 0 if there is no such sample
+     */
+    private int search(long target, boolean strict) {
+        int node = 1;
+        while (node < keys.length) {
+            int comparison = Long.compareUnsigned(keys[node], target);
+            node = 2 * node + (comparison < 0 || (strict && comparison == 0) ? 1 : 0);
+        }
+        return node >>> (Integer.numberOfTrailingZeros(~node) + 1);
+    }
+
+    /**
+     * Returns a mask of the bits of the first (up to 32) bases of the pattern.
+     */
+    private static long patternMask(PackedText pattern) {
+        int bases = Math.min(pattern.length(), PackedText.BASES_PER_WORD);
+        return bases == 0 ? 0 : -1L << (64 - (bases << 1));
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public long[] getKeys() {
+        return keys;
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "EytzingerIndex [samplingInterval=" + samplingInterval + ", samples=" + (keys.length - 1) + "]";
+    }
+}
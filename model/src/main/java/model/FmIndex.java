@@ -0,0 +1,292 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A class to represent an FM-index of a text: the Burrows–Wheeler transform
+ * (BWT) of the text, packed at 2 bits per base, with occurrence checkpoints
+ * every {@link #CHECKPOINT_ROWS} rows, the C array and a suffix array sampled
+ * at every text position that is a multiple of the sampling rate. Row i of the
+ * BWT holds the base before the suffix at suffix array index i, so the rows of
+ * a backward search are suffix array indices. The sentinel is not stored in
+ * the words but tracked as a separate row, which holds an A in the words, and
+ * so are the separators of a text of several records. The suffix at the start
+ * of every record is sampled, so locating a row never LF-maps across a
+ * separator.
+ * <p>
+ * The index is also an {@link IntArray} view of the suffix array it was built
+ * from, whose values are located by LF-mapping from the nearest sampled row.
+ * With the default sampling rate it takes about 0.8 bytes per base: a quarter
+ * for the BWT, a quarter for the checkpoints, and the rest for the samples and
+ * the bits and ranks of the sampled rows. Its arrays may be mapped from an
+ * index file, and it never reads the text, so an index queried only through
+ * it keeps just these 0.8 bytes per base in memory.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class FmIndex implements IntArray {
+    /**
+     * The default number of text positions per suffix array sample.
+     */
+    public static final int DEFAULT_SAMPLING_RATE = 32;
+    /**
+     * The number of rows between two occurrence checkpoints.
+     */
+    public static final int CHECKPOINT_ROWS = 64;
+
+    private static final int CHECKPOINT_SHIFT = 6;
+    private static final long LOW_BITS = 0x5555555555555555L;
+
+    private final LongArray bwt;
+    private final int length;
+    private final int sentinelRow;
+    private final int[] separatorRows;
+    private final int[] counts;
+    private final IntArray occurrences;
+    private final int samplingRate;
+    private final LongArray sampledRows;
+    private final IntArray sampledRowRanks;
+    private final IntArray samples;
+
+    /**
+     * Creates a new FmIndex.
+     *
+     * @param bwt             the packed bases of the BWT, in the layout of
+     *                        {@link PackedText}
+     * @param length          the number of rows, including the sentinel row
+     * @param sentinelRow     the row holding the sentinel
+     * @param separatorRows   the rows holding a separator, in ascending order
+     * @param counts          the C array: for each base, the number of rows whose
+     *                        suffix starts with a smaller character
+     * @param occurrences     for each checkpoint, the number of each base in the
+     *                        rows before it, with the sentinel and the separators
+     *                        counted as an A
+     * @param samplingRate    the number of text positions per sample
+     * @param sampledRows     one bit per row, set if the row is sampled
+     * @param sampledRowRanks for each word of sampledRows, the number of sampled
+     *                        rows before it
+     * @param samples         the text positions of the sampled rows, in row order
+     */
+    public FmIndex(LongArray bwt, int length, int sentinelRow, int[] separatorRows, int[] counts,
+            IntArray occurrences, int samplingRate, LongArray sampledRows, IntArray sampledRowRanks, IntArray samples) {
+        this.bwt = bwt;
+        this.length = length;
+        this.sentinelRow = sentinelRow;
+        this.separatorRows = separatorRows;
+        this.counts = counts;
+        this.occurrences = occurrences;
+        this.samplingRate = samplingRate;
+        this.sampledRows = sampledRows;
+        this.sampledRowRanks = sampledRowRanks;
+        this.samples = samples;
+    }
+
+    /**
+     * Builds the FM-index of a text from its suffix array.
+     *
+     * @param text         the packed text, which must end in the sentinel
+     * @param suffixArray  the suffix array of the text
+     * @param samplingRate the number of text positions per suffix array sample
+     * @return the {@link FmIndex}
+     */
+    public static FmIndex build(PackedText text, IntArray suffixArray, int samplingRate) {
+        if (!text.hasSentinel()) {
+            throw new IllegalArgumentException("An FM-index needs a text that ends in the sentinel");
+        }
+        if (samplingRate < 1) {
+            throw new IllegalArgumentException("The sampling rate must be at least 1, but was " + samplingRate);
+        }
+        int length = text.length();
+        long[] bwt = new long[PackedText.wordsFor(length)];
+        int[] occurrences = new int[(((length - 1) >>> CHECKPOINT_SHIFT) + 2) * 4];
+        long[] sampledRows = new long[(length >>> 6) + 1];
+        int[] sampledRowRanks = new int[sampledRows.length];
+        int separatorCount = text.getTerminators().length - 1;
+        int[] samples = new int[(length - 1) / samplingRate + 1 + separatorCount];
+        int[] separatorRows = new int[separatorCount];
+        int[] running = new int[4];
+        int sentinelRow = -1;
+        int separatorRowCount = 0;
+        int sampleCount = 0;
+        for (int row = 0; row < length; row++) {
+            if ((row & (CHECKPOINT_ROWS - 1)) == 0) {
+                System.arraycopy(running, 0, occurrences, (row >>> CHECKPOINT_SHIFT) * 4, 4);
+            }
+            if ((row & 63) == 0) {
+                sampledRowRanks[row >>> 6] = sampleCount;
+            }
+            int position = suffixArray.get(row);
+            int base = 0;
+            boolean recordStart = false;
+            if (position == 0) {
+                sentinelRow = row;
+                recordStart = true;
+            } else if (separatorCount > 0 && text.isTerminator(position - 1)) {
+                separatorRows[separatorRowCount++] = row;
+                recordStart = true;
+            } else {
+                base = text.baseAt(position - 1);
+                bwt[row >>> 5] |= ((long) base) << (62 - ((row & 31) << 1));
+            }
+            running[base]++;
+            if (recordStart || position % samplingRate == 0) {
+                sampledRows[row >>> 6] |= 1L << (row & 63);
+                samples[sampleCount++] = position;
+            }
+        }
+        System.arraycopy(running, 0, occurrences, occurrences.length - 4, 4);
+        // the sentinel and separator rows were counted as an A, and the suffixes
+        // starting with a terminator sort first
+        running[0] -= 1 + separatorCount;
+        int[] counts = new int[4];
+        counts[0] = 1 + separatorCount;
+        for (int base = 1; base < 4; base++) {
+            counts[base] = counts[base - 1] + running[base - 1];
+        }
+        return new FmIndex(LongArray.of(bwt), length, sentinelRow, separatorRows, counts, IntArray.of(occurrences),
+                samplingRate, LongArray.of(sampledRows), IntArray.of(sampledRowRanks),
+                IntArray.of(Arrays.copyOf(samples, sampleCount)));
+    }
+
+    /**
+     * Counts the occurrences of a base in the rows of the BWT before the given
+     * row, starting from the checkpoint at or before it.
+     *
+     * @param base the code of the base (A=0, C=1, G=2, T=3)
+     * @param row  the row, from 0 to the length of the index
+     * @return the number of rows before the given one holding the base
+     */
+    public int occurrences(int base, int row) {
+        int count = occurrences.get(((row >>> CHECKPOINT_SHIFT) << 2) + base);
+        long pattern = LOW_BITS * base;
+        int lastWord = row >>> 5;
+        for (int word = (row >>> CHECKPOINT_SHIFT) << 1; word < lastWord; word++) {
+            count += Long.bitCount(matches(bwt.get(word), pattern));
+        }
+        int remaining = row & 31;
+        if (remaining > 0) {
+            count += Long.bitCount(matches(bwt.get(lastWord), pattern) & (-1L << (64 - (remaining << 1))));
+        }
+        if (base != 0) {
+            return count;
+        }
+        if (sentinelRow < row) {
+            count--;
+        }
+        return separatorRows.length == 0 ? count : count - separatorsBefore(row);
+    }
+
+    /**
+     * Counts the separator rows before the given row by binary search.
+     */
+    private int separatorsBefore(int row) {
+        int low = 0;
+        int high = separatorRows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (separatorRows[middle] < row) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Maps a row to the row of the suffix that starts one position earlier in the
+     * text (the LF-mapping).
+     *
+     * @param row a row other than the sentinel and separator rows
+     * @return the row of the previous suffix
+     */
+    public int lf(int row) {
+        int base = (int) (bwt.get(row >>> 5) >>> (62 - ((row & 31) << 1))) & 3;
+        return counts[base] + occurrences(base, row);
+    }
+
+    /**
+     * Locates the text position of the suffix at a row, by LF-mapping until a
+     * sampled row is reached. This takes fewer than the sampling rate steps.
+     *
+     * @param row the row
+     * @return the text position of the suffix
+     */
+    @Override
+    public int get(int row) {
+        int steps = 0;
+        long sampledWord;
+        while (((sampledWord = sampledRows.get(row >>> 6)) & (1L << (row & 63))) == 0) {
+            row = lf(row);
+            steps++;
+        }
+        int rank = sampledRowRanks.get(row >>> 6) + Long.bitCount(sampledWord & ((1L << (row & 63)) - 1));
+        return samples.get(rank) + steps;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the first row whose suffix starts with the given base.
+     *
+     * @param base the code of the base (A=0, C=1, G=2, T=3)
+     * @return the value of the C array for the base
+     */
+    public int count(int base) {
+        return counts[base];
+    }
+
+    public LongArray getBwt() {
+        return bwt;
+    }
+
+    public int getSentinelRow() {
+        return sentinelRow;
+    }
+
+    public int[] getSeparatorRows() {
+        return separatorRows;
+    }
+
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public IntArray getOccurrences() {
+        return occurrences;
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    public LongArray getSampledRows() {
+        return sampledRows;
+    }
+
+    public IntArray getSampledRowRanks() {
+        return sampledRowRanks;
+    }
+
+    public IntArray getSamples() {
+        return samples;
+    }
+
+    /**
+     * Sets the low bit of every 2-bit group of a word that equals the pattern's.
+     */
+    private static long matches(long word, long pattern) {
+        long difference = word ^ pattern;
+        return ~(difference | (difference >>> 1)) & LOW_BITS;
+    }
+
+    @Override
+    public String toString() {
+        return "FmIndex [length=" + length + ", sentinelRow=" + sentinelRow + ", samplingRate=" + samplingRate
+                + ", samples=" + samples.length() + "]";
+    }
+}
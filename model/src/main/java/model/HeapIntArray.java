@@ -0,0 +1,36 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * An {@link IntArray} backed by an array of integers on the heap.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class HeapIntArray implements IntArray {
+    private final int[] values;
+
+    public HeapIntArray(int[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public int get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,36 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A {@link LongArray} backed by an array of longs on the heap.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class HeapLongArray implements LongArray {
+    private final long[] values;
+
+    public HeapLongArray(long[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public long get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,548 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class to write a {@link SerializeableSuffixArray} to a binary index file,
+ * and to open such a file again by memory-mapping it, so that the suffix array
+ * is queried in place instead of being deserialized onto the heap. Processes
+ * that map the same index share its pages through the operating system's page
+ * cache.
+ * <p>
+ * The file is little-endian and consists of a fixed header, a table of
+ * sections and the sections themselves, each starting on an 8-byte boundary:
+ * <ul>
+ * <li>header - the magic number, the format version, the text length, the
+ * prefix length k (0 if there is no prefix table) and the number of
+ * sections</li>
+ * <li>section table - for each section, its id, its byte offset in the file
+ * and its byte length</li>
+ * <li>{@link #TEXT} - the words of the {@link PackedText}</li>
+ * <li>{@link #SUFFIX_ARRAY} - one int per text position</li>
+ * <li>{@link #PREFIX_OFFSETS} - the 4^k + 1 cumulative counts of a
+ * {@link PrefixTable}, mapped in place</li>
+ * <li>{@link #PREFIX_SHORT_SUFFIXES} - the suffixes of the prefix table with
+ * fewer than k bases, one long each</li>
+ * <li>{@link #EYTZINGER_INDEX} - the sampling interval of the
+ * {@link EytzingerIndex}</li>
+ * <li>{@link #EYTZINGER_KEYS} - the words of its samples in Eytzinger
+ * order</li>
+ * <li>{@link #EYTZINGER_ROWS} - the suffix array rows of its samples in the
+ * same order</li>
+ * <li>{@link #LCP} - one byte per suffix array index with the LCP value of a
+ * {@link CompactLcpArray}</li>
+ * <li>{@link #LCP_OVERFLOW} - an index and a value int for each LCP value that
+ * did not fit in a byte</li>
+ * <li>{@link #LEFT_LCP}, {@link #LEFT_LCP_OVERFLOW}, {@link #RIGHT_LCP} and
+ * {@link #RIGHT_LCP_OVERFLOW} - the LCP-LR arrays used by
+ * {@link QueryMode#SUPERACCEL}, stored in the same way as the LCP array</li>
+ * <li>{@link #FM_INDEX} - the sampling rate, the sentinel row and the C array
+ * of the {@link FmIndex}</li>
+ * <li>{@link #FM_BWT} - the words of the packed BWT</li>
+ * <li>{@link #FM_OCCURRENCES} - four ints per occurrence checkpoint</li>
+ * <li>{@link #FM_SAMPLED_ROWS} - a bit per row marking the sampled rows,
+ * followed by an int per word of those bits with the rank of its first
+ * row</li>
+ * <li>{@link #FM_SAMPLES} - the text position of each sampled row</li>
+ * <li>{@link #FM_SEPARATOR_ROWS} - the rows of the FM-index holding a
+ * separator, for a text of several records</li>
+ * <li>{@link #SEQUENCE_ENDS} - the position of the terminator at the end of
+ * each record of the text</li>
+ * <li>{@link #SEQUENCE_NAMES} - the name of each record of the
+ * {@link SequenceTable}, in UTF-8, each followed by a newline</li>
+ * </ul>
+ * Readers skip sections with ids they do not know, so new sections can be
+ * added without breaking older readers.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class IndexFile {
+    /**
+     * The magic number at the start of every index file ("SAIX").
+     */
+    public static final int MAGIC = 0x58494153;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 2;
+
+    public static final int TEXT = 1;
+    public static final int SUFFIX_ARRAY = 2;
+    // 3 is retired: it held the start and end of each prefix's interval
+    public static final int LCP = 4;
+    public static final int LCP_OVERFLOW = 5;
+    public static final int LEFT_LCP = 6;
+    public static final int LEFT_LCP_OVERFLOW = 7;
+    public static final int RIGHT_LCP = 8;
+    public static final int RIGHT_LCP_OVERFLOW = 9;
+    public static final int FM_INDEX = 10;
+    public static final int FM_BWT = 11;
+    public static final int FM_OCCURRENCES = 12;
+    public static final int FM_SAMPLED_ROWS = 13;
+    public static final int FM_SAMPLES = 14;
+    public static final int PREFIX_OFFSETS = 15;
+    public static final int PREFIX_SHORT_SUFFIXES = 16;
+    public static final int EYTZINGER_INDEX = 17;
+    public static final int EYTZINGER_KEYS = 18;
+    public static final int EYTZINGER_ROWS = 19;
+    public static final int SEQUENCE_ENDS = 20;
+    public static final int SEQUENCE_NAMES = 21;
+    public static final int FM_SEPARATOR_ROWS = 22;
+
+    private static final int HEADER_BYTES = 24;
+    private static final int SECTION_ENTRY_BYTES = 24;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private IndexFile() {
+    }
+
+    /**
+     * Writes a suffix array, its text, and its prefix table, LCP array, LCP-LR
+     * arrays and FM-index (if any) to an index file.
+     *
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} to write
+     * @param outputFile               the path of the index file
+     * @throws IOException if there is an issue writing to the file
+     */
+    public static void write(SerializeableSuffixArray serializeableSuffixArray, Path outputFile) throws IOException {
+        PackedText text = serializeableSuffixArray.getText();
+        int textLength = text.length();
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
+        PrefixTable prefixTable = serializeableSuffixArray.getPrefixTable();
+
+        List<Section> sections = new ArrayList<>();
+        addLongsSection(sections, TEXT, text.getWords());
+        sections.add(new Section(SUFFIX_ARRAY, (long) textLength * Integer.BYTES, writer -> {
+            for (int i = 0; i < textLength; i++) {
+                writer.putInt(suffixArray.get(i));
+            }
+        }));
+        if (prefixTable != null) {
+            IntArray offsets = prefixTable.getOffsets();
+            sections.add(new Section(PREFIX_OFFSETS, (long) offsets.length() * Integer.BYTES, writer -> {
+                for (int i = 0; i < offsets.length(); i++) {
+                    writer.putInt(offsets.get(i));
+                }
+            }));
+            long[] shortSuffixes = prefixTable.getShortSuffixes();
+            sections.add(new Section(PREFIX_SHORT_SUFFIXES, (long) shortSuffixes.length * Long.BYTES, writer -> {
+                for (long shortSuffix : shortSuffixes) {
+                    writer.putLong(shortSuffix);
+                }
+            }));
+        }
+        addLcpSections(sections, LCP, LCP_OVERFLOW, serializeableSuffixArray.getLcpArray());
+        addLcpSections(sections, LEFT_LCP, LEFT_LCP_OVERFLOW, serializeableSuffixArray.getLeftLcpArray());
+        addLcpSections(sections, RIGHT_LCP, RIGHT_LCP_OVERFLOW, serializeableSuffixArray.getRightLcpArray());
+        addFmIndexSections(sections, serializeableSuffixArray.getFmIndex());
+        addEytzingerIndexSections(sections, serializeableSuffixArray.getEytzingerIndex());
+        boolean hasSeparators = text.getTerminators().length > 1;
+        SequenceTable sequenceTable = serializeableSuffixArray.getSequenceTable();
+        if (hasSeparators || sequenceTable != null) {
+            addIntsSection(sections, SEQUENCE_ENDS, text.getTerminators());
+        }
+        if (sequenceTable != null) {
+            StringBuilder names = new StringBuilder();
+            for (String name : sequenceTable.getNames()) {
+                names.append(name).append('\n');
+            }
+            byte[] bytes = names.toString().getBytes(StandardCharsets.UTF_8);
+            sections.add(new Section(SEQUENCE_NAMES, bytes.length, writer -> writer.put(ByteBuffer.wrap(bytes))));
+        }
+
+        try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter writer = new SectionWriter(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putInt(textLength);
+            writer.putInt(prefixTable == null ? 0 : serializeableSuffixArray.getPrefixLength());
+            writer.putInt(sections.size());
+            writer.putInt(0);
+            long offset = align(HEADER_BYTES + (long) sections.size() * SECTION_ENTRY_BYTES);
+            for (Section section : sections) {
+                writer.putInt(section.id);
+                writer.putInt(0);
+                writer.putLong(offset);
+                writer.putLong(section.length);
+                offset = align(offset + section.length);
+            }
+            for (Section section : sections) {
+                writer.padTo(8);
+                section.content.write(writer);
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Opens an index file by memory-mapping it. The packed text, the suffix
+     * array, the prefix table offsets, the LCP arrays and the FM-index are read
+     * in place from the mapping, so a section that is never queried is never
+     * read. The other sections, whose size is at most a small fraction of the
+     * text's, are copied onto the heap with a single bulk read each.
+     *
+     * @param inputFile the path of the index file
+     * @return the {@link SerializeableSuffixArray}
+     * @throws IOException if the file cannot be read or is not an index file of a
+     *                     supported version
+     */
+    public static SerializeableSuffixArray map(Path inputFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_BYTES))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException(inputFile + " is not a suffix array index file");
+            }
+            int version = header.getInt(4);
+            if (version > VERSION) {
+                throw new IOException(inputFile + " has index format version " + version
+                        + ", but only versions up to " + VERSION + " are supported");
+            }
+            int textLength = header.getInt(8);
+            int prefixLength = header.getInt(12);
+            int sectionCount = header.getInt(16);
+            ByteBuffer sectionTable = channel
+                    .map(MapMode.READ_ONLY, HEADER_BYTES, (long) sectionCount * SECTION_ENTRY_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            LongArray textWords = null;
+            int[] sequenceEnds = null;
+            String[] sequenceNames = null;
+            IntArray suffixArray = null;
+            IntArray prefixOffsets = null;
+            long[] prefixShortSuffixes = null;
+            Map<Integer, Long> lcpOffsets = new HashMap<>();
+            Map<Integer, int[]> lcpOverflows = new HashMap<>();
+            Map<Integer, int[]> fmSections = new HashMap<>();
+            Map<Integer, IntArray> fmArrays = new HashMap<>();
+            LongArray fmBwt = null;
+            LongArray fmSampledRows = null;
+            int[] eytzingerHeader = null;
+            long[] eytzingerKeys = null;
+            int[] eytzingerRows = null;
+            for (int i = 0; i < sectionCount; i++) {
+                int entry = i * SECTION_ENTRY_BYTES;
+                int id = sectionTable.getInt(entry);
+                long offset = sectionTable.getLong(entry + 8);
+                long length = sectionTable.getLong(entry + 16);
+                switch (id) {
+                case TEXT:
+                    textWords = MappedLongArray.map(channel, offset, (int) (length / Long.BYTES));
+                    break;
+                case SUFFIX_ARRAY:
+                    suffixArray = MappedIntArray.map(channel, offset, (int) (length / Integer.BYTES));
+                    break;
+                case PREFIX_OFFSETS:
+                    prefixOffsets = MappedIntArray.map(channel, offset, (int) (length / Integer.BYTES));
+                    break;
+                case PREFIX_SHORT_SUFFIXES:
+                    prefixShortSuffixes = readLongs(channel, offset, length);
+                    break;
+                case LCP:
+                case LEFT_LCP:
+                case RIGHT_LCP:
+                    lcpOffsets.put(id, offset);
+                    break;
+                case LCP_OVERFLOW:
+                case LEFT_LCP_OVERFLOW:
+                case RIGHT_LCP_OVERFLOW:
+                    lcpOverflows.put(id, readInts(channel, offset, length));
+                    break;
+                case FM_INDEX:
+                case FM_SEPARATOR_ROWS:
+                    fmSections.put(id, readInts(channel, offset, length));
+                    break;
+                case FM_OCCURRENCES:
+                case FM_SAMPLES:
+                    fmArrays.put(id, MappedIntArray.map(channel, offset, (int) (length / Integer.BYTES)));
+                    break;
+                case FM_BWT:
+                    fmBwt = MappedLongArray.map(channel, offset, (int) (length / Long.BYTES));
+                    break;
+                case FM_SAMPLED_ROWS:
+                    int sampledRowWords = (int) (length / (Long.BYTES + Integer.BYTES));
+                    fmSampledRows = MappedLongArray.map(channel, offset, sampledRowWords);
+                    fmArrays.put(id, MappedIntArray.map(channel, offset + (long) sampledRowWords * Long.BYTES,
+                            sampledRowWords));
+                    break;
+                case EYTZINGER_INDEX:
+                    eytzingerHeader = readInts(channel, offset, length);
+                    break;
+                case EYTZINGER_KEYS:
+                    eytzingerKeys = readLongs(channel, offset, length);
+                    break;
+                case EYTZINGER_ROWS:
+                    eytzingerRows = readInts(channel, offset, length);
+                    break;
+                case SEQUENCE_ENDS:
+                    sequenceEnds = readInts(channel, offset, length);
+                    break;
+                case SEQUENCE_NAMES:
+                    sequenceNames = readNames(channel, offset, length);
+                    break;
+                default:
+                    // a section added by a later version of the format
+                    break;
+                }
+            }
+            if (textWords == null || suffixArray == null) {
+                throw new IOException(inputFile + " is missing its text or its suffix array");
+            }
+            // the last record is ended by the sentinel
+            int[] separators = sequenceEnds == null ? new int[0]
+                    : Arrays.copyOf(sequenceEnds, sequenceEnds.length - 1);
+            PackedText text = new PackedText(textWords, textLength, separators, true);
+
+            SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+            if (prefixOffsets != null && prefixShortSuffixes != null) {
+                serializeableSuffixArray
+                        .setPrefixTable(new PrefixTable(prefixLength, prefixOffsets, prefixShortSuffixes));
+            }
+            serializeableSuffixArray
+                    .setLcpArray(mapLcpArray(channel, textLength, lcpOffsets, lcpOverflows, LCP, LCP_OVERFLOW));
+            serializeableSuffixArray.setLeftLcpArray(
+                    mapLcpArray(channel, textLength, lcpOffsets, lcpOverflows, LEFT_LCP, LEFT_LCP_OVERFLOW));
+            serializeableSuffixArray.setRightLcpArray(
+                    mapLcpArray(channel, textLength, lcpOffsets, lcpOverflows, RIGHT_LCP, RIGHT_LCP_OVERFLOW));
+            int[] fmHeader = fmSections.get(FM_INDEX);
+            if (fmHeader != null && fmBwt != null && fmSampledRows != null) {
+                serializeableSuffixArray.setFmIndex(new FmIndex(fmBwt, textLength, fmHeader[1],
+                        fmSections.getOrDefault(FM_SEPARATOR_ROWS, new int[0]), Arrays.copyOfRange(fmHeader, 2, 6),
+                        fmArrays.get(FM_OCCURRENCES), fmHeader[0], fmSampledRows, fmArrays.get(FM_SAMPLED_ROWS),
+                        fmArrays.get(FM_SAMPLES)));
+            }
+            if (eytzingerHeader != null && eytzingerKeys != null && eytzingerRows != null) {
+                serializeableSuffixArray.setEytzingerIndex(
+                        new EytzingerIndex(eytzingerHeader[0], textLength, eytzingerKeys, eytzingerRows));
+            }
+            if (sequenceNames != null && sequenceNames.length == text.getTerminators().length) {
+                serializeableSuffixArray.setSequenceTable(new SequenceTable(sequenceNames, text.getTerminators()));
+            }
+            return serializeableSuffixArray;
+        }
+    }
+
+    private static void addLcpSections(List<Section> sections, int id, int overflowId, CompactLcpArray lcpArray) {
+        if (lcpArray == null) {
+            return;
+        }
+        sections.add(new Section(id, lcpArray.length(), writer -> writer.put(lcpArray.getSmallValues())));
+        int[] overflowIndices = lcpArray.getOverflowIndices();
+        int[] overflowValues = lcpArray.getOverflowValues();
+        sections.add(new Section(overflowId, (long) overflowIndices.length * 2 * Integer.BYTES, writer -> {
+            for (int i = 0; i < overflowIndices.length; i++) {
+                writer.putInt(overflowIndices[i]);
+                writer.putInt(overflowValues[i]);
+            }
+        }));
+    }
+
+    private static void addFmIndexSections(List<Section> sections, FmIndex fmIndex) {
+        if (fmIndex == null) {
+            return;
+        }
+        int[] counts = fmIndex.getCounts();
+        sections.add(new Section(FM_INDEX, (long) (2 + counts.length) * Integer.BYTES, writer -> {
+            writer.putInt(fmIndex.getSamplingRate());
+            writer.putInt(fmIndex.getSentinelRow());
+            for (int count : counts) {
+                writer.putInt(count);
+            }
+        }));
+        addLongsSection(sections, FM_BWT, fmIndex.getBwt());
+        addIntsSection(sections, FM_OCCURRENCES, fmIndex.getOccurrences());
+        LongArray sampledRows = fmIndex.getSampledRows();
+        IntArray sampledRowRanks = fmIndex.getSampledRowRanks();
+        sections.add(new Section(FM_SAMPLED_ROWS, (long) sampledRows.length() * (Long.BYTES + Integer.BYTES),
+                writer -> {
+                    for (int i = 0; i < sampledRows.length(); i++) {
+                        writer.putLong(sampledRows.get(i));
+                    }
+                    for (int i = 0; i < sampledRowRanks.length(); i++) {
+                        writer.putInt(sampledRowRanks.get(i));
+                    }
+                }));
+        addIntsSection(sections, FM_SAMPLES, fmIndex.getSamples());
+        if (fmIndex.getSeparatorRows().length > 0) {
+            addIntsSection(sections, FM_SEPARATOR_ROWS, fmIndex.getSeparatorRows());
+        }
+    }
+
+    private static void addEytzingerIndexSections(List<Section> sections, EytzingerIndex eytzingerIndex) {
+        if (eytzingerIndex == null) {
+            return;
+        }
+        addIntsSection(sections, EYTZINGER_INDEX, new int[] { eytzingerIndex.getSamplingInterval() });
+        long[] keys = eytzingerIndex.getKeys();
+        sections.add(new Section(EYTZINGER_KEYS, (long) keys.length * Long.BYTES, writer -> {
+            for (long key : keys) {
+                writer.putLong(key);
+            }
+        }));
+        addIntsSection(sections, EYTZINGER_ROWS, eytzingerIndex.getRows());
+    }
+
+    private static void addLongsSection(List<Section> sections, int id, LongArray values) {
+        sections.add(new Section(id, (long) values.length() * Long.BYTES, writer -> {
+            for (int i = 0; i < values.length(); i++) {
+                writer.putLong(values.get(i));
+            }
+        }));
+    }
+
+    private static void addIntsSection(List<Section> sections, int id, IntArray values) {
+        sections.add(new Section(id, (long) values.length() * Integer.BYTES, writer -> {
+            for (int i = 0; i < values.length(); i++) {
+                writer.putInt(values.get(i));
+            }
+        }));
+    }
+
+    private static void addIntsSection(List<Section> sections, int id, int[] values) {
+        sections.add(new Section(id, (long) values.length * Integer.BYTES, writer -> {
+            for (int value : values) {
+                writer.putInt(value);
+            }
+        }));
+    }
+
+    private static CompactLcpArray mapLcpArray(FileChannel channel, int textLength, Map<Integer, Long> lcpOffsets,
+            Map<Integer, int[]> lcpOverflows, int id, int overflowId) throws IOException {
+        Long offset = lcpOffsets.get(id);
+        int[] overflow = lcpOverflows.get(overflowId);
+        if (offset == null || overflow == null) {
+            return null;
+        }
+        int[] overflowIndices = new int[overflow.length / 2];
+        int[] overflowValues = new int[overflow.length / 2];
+        for (int i = 0; i < overflowIndices.length; i++) {
+            overflowIndices[i] = overflow[2 * i];
+            overflowValues[i] = overflow[2 * i + 1];
+        }
+        return CompactLcpArray.map(channel, offset, textLength, overflowIndices, overflowValues);
+    }
+
+    private static int[] readInts(FileChannel channel, long offset, long length) throws IOException {
+        int[] values = new int[(int) (length / Integer.BYTES)];
+        if (length > 0) {
+            channel.map(MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        }
+        return values;
+    }
+
+    private static String[] readNames(FileChannel channel, long offset, long length) throws IOException {
+        byte[] bytes = new byte[(int) length];
+        if (length > 0) {
+            channel.map(MapMode.READ_ONLY, offset, length).get(bytes);
+        }
+        String names = new String(bytes, StandardCharsets.UTF_8);
+        return names.isEmpty() ? new String[0] : names.substring(0, names.length() - 1).split("\n", -1);
+    }
+
+    private static long[] readLongs(FileChannel channel, long offset, long length) throws IOException {
+        long[] values = new long[(int) (length / Long.BYTES)];
+        if (length > 0) {
+            channel.map(MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(values);
+        }
+        return values;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * A section of the index file, with the code that writes its content.
+     */
+    private static class Section {
+        private final int id;
+        private final long length;
+        private final SectionContent content;
+
+        Section(int id, long length, SectionContent content) {
+            this.id = id;
+            this.length = length;
+            this.content = content;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SectionContent {
+        void write(SectionWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes little-endian values to a file channel through a direct buffer.
+     */
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void put(ByteBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(buffer.remaining(), values.remaining());
+                ByteBuffer slice = values.slice();
+                slice.limit(count);
+                buffer.put(slice);
+                values.position(values.position() + count);
+                position += count;
+            }
+        }
+
+        void padTo(int alignment) throws IOException {
+            while (position % alignment != 0) {
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package model;
+
+/**
+ * An interface for a read-only array of integers, such as a suffix array, that
+ * may live on the heap or be mapped from an index file.
+ *
+ * @author Valerie Wray
+ *
+ */
+public interface IntArray {
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    int get(int index);
+
+    /**
+     * Returns the number of values in the array.
+     *
+     * @return the length of the array
+     */
+    int length();
+
+    /**
+     * Wraps an array of integers on the heap.
+     *
+     * @param values the values
+     * @return the {@link IntArray}
+     */
+    static IntArray of(int[] values) {
+        return new HeapIntArray(values);
+    }
+}
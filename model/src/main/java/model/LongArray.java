@@ -0,0 +1,36 @@
+package model;
+
+/**
+ * An interface for a read-only array of longs, such as the words of a packed
+ * text, that may live on the heap or be mapped from an index file.
+ *
+ * @author Valerie Wray
+ *
+ */
+public interface LongArray {
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    long get(int index);
+
+    /**
+     * Returns the number of values in the array.
+     *
+     * @return the length of the array
+     */
+    int length();
+
+    /**
+     * Wraps an array of longs on the heap.
+     *
+     * @param values the values
+     * @return the {@link LongArray}
+     */
+    static LongArray of(long[] values) {
+        return new HeapLongArray(values);
+    }
+}
@@ -0,0 +1,63 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * An {@link IntArray} read in place from a memory-mapped file. A single mapping
+ * is limited to 2 GiB, so larger arrays are mapped as several segments.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class MappedIntArray implements IntArray {
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final IntBuffer[] segments;
+    private final int length;
+
+    private MappedIntArray(IntBuffer[] segments, int length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * Maps an array of little-endian integers from a file.
+     *
+     * @param channel  the file channel to map from
+     * @param position the byte offset of the array in the file
+     * @param length   the number of integers in the array
+     * @return the {@link MappedIntArray}
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedIntArray map(FileChannel channel, long position, int length) throws IOException {
+        int segmentCount = Math.max(1, (int) (((long) length + SEGMENT_MASK) >>> SEGMENT_SHIFT));
+        IntBuffer[] segments = new IntBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long count = Math.min(length - first, 1L << SEGMENT_SHIFT);
+            segments[i] = channel.map(MapMode.READ_ONLY, position + first * Integer.BYTES, count * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return new MappedIntArray(segments, length);
+    }
+
+    @Override
+    public int get(int index) {
+        return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedIntArray [length=" + length + "]";
+    }
+}
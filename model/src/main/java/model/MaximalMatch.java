@@ -0,0 +1,47 @@
+package model;
+
+/**
+ * A class to represent a maximal exact match between a query and the text: the
+ * bases of the query that it covers, and the interval of the suffix array
+ * whose suffixes start with them, which are its occurrences in the text.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class MaximalMatch {
+    private int queryStart;
+    private final int length;
+    private final IndexInterval hitsRange;
+
+    public MaximalMatch(int queryStart, int length, IndexInterval hitsRange) {
+        this.queryStart = queryStart;
+        this.length = length;
+        this.hitsRange = hitsRange;
+    }
+
+    /**
+     * Returns the position in the query of the first base of the match.
+     *
+     * @return the start of the match in the query
+     */
+    public int getQueryStart() {
+        return queryStart;
+    }
+
+    public void setQueryStart(int queryStart) {
+        this.queryStart = queryStart;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public IndexInterval getHitsRange() {
+        return hitsRange;
+    }
+
+    @Override
+    public String toString() {
+        return "MaximalMatch [queryStart=" + queryStart + ", length=" + length + ", hitsRange=" + hitsRange + "]";
+    }
+}
@@ -0,0 +1,551 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A class to represent a nucleotide text packed at 2 bits per base (4 bases
+ * per byte), with A=0, C=1, G=2 and T=3. The bases are stored 32 to a
+ * {@code long} word, most significant bits first, so that comparing two words
+ * as unsigned numbers compares the 32 bases they hold lexicographically.
+ * <p>
+ * The text may end in a sentinel ('$'), which is not stored in the words but
+ * tracked as a separate terminator position. The sentinel sorts before every
+ * base, as '$' does in ASCII. A text of several records, such as the sequences
+ * of a multi-FASTA file, also has a separator terminator at the end of every
+ * record but the last, so that no suffix runs from one record into the next.
+ * Every terminator reads as A in the words, and a suffix ends at the first
+ * terminator at or after its start, so two suffixes with the same bases up to
+ * their terminators are ordered by those terminators: the one ending at the
+ * later terminator sorts first, and the sentinel before every separator.
+ *
+ * <p>
+ * The words are a {@link LongArray}, so the text of an index file is read in
+ * place from its mapping rather than copied onto the heap.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class PackedText implements CharSequence {
+
+    /**
+     * The character used to display the sentinel at the end of a text.
+     */
+    public static final char SENTINEL = '$';
+
+    /**
+     * The number of bases held in one word.
+     */
+    public static final int BASES_PER_WORD = 32;
+
+    private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+    private final LongArray words;
+    private final int length;
+    private final int sentinelPosition;
+    private final int[] terminators;
+
+    /**
+     * Creates a new PackedText from packed words.
+     *
+     * @param words       the packed bases, which must hold at least one word more
+     *                    than is needed for the bases so that a full word can be
+     *                    read starting at any position
+     * @param length      the length of the text, including the sentinel if there
+     *                    is one
+     * @param hasSentinel whether the last position of the text is a sentinel
+     */
+    public PackedText(long[] words, int length, boolean hasSentinel) {
+        this(words, length, new int[0], hasSentinel);
+    }
+
+    /**
+     * Creates a new PackedText of several records from packed words.
+     *
+     * @param words       the packed bases, which must hold at least one word more
+     *                    than is needed for the bases so that a full word can be
+     *                    read starting at any position
+     * @param length      the length of the text, including the sentinel if there
+     *                    is one
+     * @param separators  the positions of the separators at the ends of all but
+     *                    the last record, in ascending order
+     * @param hasSentinel whether the last position of the text is a sentinel,
+     *                    which it must be if there are separators
+     */
+    public PackedText(long[] words, int length, int[] separators, boolean hasSentinel) {
+        this(LongArray.of(words), length, separators, hasSentinel);
+    }
+
+    /**
+     * Creates a new PackedText of several records from packed words that may be
+     * mapped from an index file, so that the text is read in place.
+     *
+     * @param words       the packed bases, which must hold at least one word more
+     *                    than is needed for the bases so that a full word can be
+     *                    read starting at any position
+     * @param length      the length of the text, including the sentinel if there
+     *                    is one
+     * @param separators  the positions of the separators at the ends of all but
+     *                    the last record, in ascending order
+     * @param hasSentinel whether the last position of the text is a sentinel,
+     *                    which it must be if there are separators
+     */
+    public PackedText(LongArray words, int length, int[] separators, boolean hasSentinel) {
+        if (separators.length > 0 && !hasSentinel) {
+            throw new IllegalArgumentException("A text of several records must end in the sentinel");
+        }
+        this.words = words;
+        this.length = length;
+        this.sentinelPosition = hasSentinel ? length - 1 : length;
+        this.terminators = hasSentinel ? Arrays.copyOf(separators, separators.length + 1) : separators;
+        if (hasSentinel) {
+            terminators[separators.length] = sentinelPosition;
+        }
+    }
+
+    /**
+     * Packs a string of bases, optionally ending with a sentinel '$'. Lower case
+     * bases are accepted, and in a string that ends with the sentinel, any other
+     * '$' separates two records.
+     *
+     * @param sequence the string of bases
+     * @return the packed text
+     * @throws IllegalArgumentException if the string contains anything other than
+     *                                  A, C, G or T, apart from the '$' of a
+     *                                  string that ends with one
+     */
+    public static PackedText valueOf(CharSequence sequence) {
+        return valueOf(sequence, new long[wordsFor(sequence.length())]);
+    }
+
+    /**
+     * Packs a string of bases, optionally ending with a sentinel '$', into the
+     * given words, so that a buffer can be reused from one pattern to the next.
+     * Lower case bases are accepted, and in a string that ends with the sentinel,
+     * any other '$' separates two records.
+     *
+     * @param sequence the string of bases
+     * @param words    the words to pack into, of which at least
+     *                 {@link #wordsFor(int)} are overwritten
+     * @return the packed text, backed by the given words
+     * @throws IllegalArgumentException if the string contains anything other than
+     *                                  A, C, G or T, apart from the '$' of a
+     *                                  string that ends with one
+     */
+    public static PackedText valueOf(CharSequence sequence, long[] words) {
+        int sequenceLength = sequence.length();
+        boolean hasSentinel = sequenceLength > 0 && sequence.charAt(sequenceLength - 1) == SENTINEL;
+        int baseCount = hasSentinel ? sequenceLength - 1 : sequenceLength;
+        Arrays.fill(words, 0, wordsFor(sequenceLength), 0L);
+        int[] separators = new int[0];
+        int separatorCount = 0;
+        for (int i = 0; i < baseCount; i++) {
+            int code = BasePair.codeOf(sequence.charAt(i));
+            if (code < 0) {
+                if (hasSentinel && sequence.charAt(i) == SENTINEL) {
+                    // a separator between two records, stored as an A
+                    if (separatorCount == separators.length) {
+                        separators = Arrays.copyOf(separators, Math.max(4, separatorCount * 2));
+                    }
+                    separators[separatorCount++] = i;
+                    continue;
+                }
+                throw new IllegalArgumentException(
+                        "Not a base: '" + sequence.charAt(i) + "' at position " + i + " of " + sequence);
+            }
+            words[i >>> 5] |= ((long) code) << shiftOf(i);
+        }
+        return new PackedText(words, sequenceLength, Arrays.copyOf(separators, separatorCount), hasSentinel);
+    }
+
+    /**
+     * Packs the reverse complement of a string of bases into the given words, by
+     * reading it from its last base to its first, so that the reverse complement
+     * is never built as a string.
+     *
+     * @param sequence the string of bases, which must consist only of bases
+     * @param words    the words to pack into, of which at least
+     *                 {@link #wordsFor(int)} are overwritten
+     * @return the packed reverse complement, backed by the given words
+     * @throws IllegalArgumentException if the string contains anything other than
+     *                                  A, C, G or T
+     */
+    public static PackedText reverseComplementOf(CharSequence sequence, long[] words) {
+        int sequenceLength = sequence.length();
+        Arrays.fill(words, 0, wordsFor(sequenceLength), 0L);
+        for (int i = 0; i < sequenceLength; i++) {
+            char c = sequence.charAt(sequenceLength - 1 - i);
+            int code = BasePair.codeOf(c);
+            if (code < 0) {
+                throw new IllegalArgumentException(
+                        "Not a base: '" + c + "' at position " + (sequenceLength - 1 - i) + " of " + sequence);
+            }
+            words[i >>> 5] |= ((long) BasePair.complementOf(code)) << shiftOf(i);
+        }
+        return new PackedText(words, sequenceLength, false);
+    }
+
+    /**
+     * Checks whether a sequence is its own reverse complement, as the recognition
+     * sites of many restriction enzymes are, so that its hits on both strands are
+     * the same.
+     *
+     * @param sequence the sequence of bases
+     * @return true if the sequence equals its reverse complement
+     */
+    public static boolean isReverseComplementPalindrome(CharSequence sequence) {
+        int sequenceLength = sequence.length();
+        for (int i = 0, j = sequenceLength - 1; i <= j; i++, j--) {
+            int code = BasePair.codeOf(sequence.charAt(i));
+            if (code < 0 || code != BasePair.complementOf(BasePair.codeOf(sequence.charAt(j)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a sequence consists only of bases, so that it can be packed
+     * by {@link #valueOf(CharSequence)} as a pattern.
+     *
+     * @param sequence the sequence to check
+     * @return true if every character is A, C, G or T (in either case)
+     */
+    public static boolean isPackable(CharSequence sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            if (BasePair.codeOf(sequence.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of words needed to pack a text of the given length,
+     * including the extra trailing word.
+     *
+     * @param length the length of the text
+     * @return the number of words
+     */
+    public static int wordsFor(int length) {
+        return (length >>> 5) + 2;
+    }
+
+    private static int shiftOf(int position) {
+        return 62 - ((position & 31) << 1);
+    }
+
+    public LongArray getWords() {
+        return words;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    public boolean hasSentinel() {
+        return sentinelPosition < length;
+    }
+
+    /**
+     * Returns the positions of the terminators: the separator at the end of each
+     * record but the last, and then the sentinel, if there is one.
+     *
+     * @return the terminator positions, in ascending order
+     */
+    public int[] getTerminators() {
+        return terminators;
+    }
+
+    /**
+     * Returns the first terminator position at or after the given position, which
+     * is where any suffix starting at the given position ends for matching
+     * purposes: the end of its record, or the end of the text. A text of several
+     * records finds it by binary search over the terminators.
+     *
+     * @param position a position in the text
+     * @return the position of the next terminator
+     */
+    public int limit(int position) {
+        if (terminators.length <= 1) {
+            return sentinelPosition;
+        }
+        int index = terminatorIndex(position);
+        return index < terminators.length ? terminators[index] : length;
+    }
+
+    /**
+     * Returns the index of the first terminator at or after the given position,
+     * which is the index of the record that the position belongs to.
+     *
+     * @param position a position in the text
+     * @return the index of the terminator, or the number of terminators if there
+     *         is none at or after the position
+     */
+    public int terminatorIndex(int position) {
+        int low = 0;
+        int high = terminators.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terminators[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks whether the given position holds the sentinel or a separator.
+     *
+     * @param position a position in the text
+     * @return true if the position is a terminator
+     */
+    public boolean isTerminator(int position) {
+        if (terminators.length <= 1) {
+            return position == sentinelPosition;
+        }
+        return limit(position) == position;
+    }
+
+    /**
+     * Returns the 2-bit code of the base at the given position. The result is
+     * undefined at a terminator position.
+     *
+     * @param position a position in the text
+     * @return the code of the base (A=0, C=1, G=2, T=3)
+     */
+    public int baseAt(int position) {
+        return (int) (words.get(position >>> 5) >>> shiftOf(position)) & 3;
+    }
+
+    @Override
+    public char charAt(int position) {
+        if (position < 0 || position >= length) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for length " + length);
+        }
+        return isTerminator(position) ? SENTINEL : BASES[baseAt(position)];
+    }
+
+    /**
+     * Returns the 32 bases starting at the given position, packed into a word with
+     * the first base in the most significant bits. Terminators read as A.
+     *
+     * @param position a position in the text
+     * @return the packed word
+     */
+    public long wordAt(int position) {
+        int wordIndex = position >>> 5;
+        int offset = (position & 31) << 1;
+        if (offset == 0) {
+            return words.get(wordIndex);
+        }
+        return (words.get(wordIndex) << offset) | (words.get(wordIndex + 1) >>> (64 - offset));
+    }
+
+    /**
+     * Returns the code of the k bases starting at the given position, read as a
+     * number in base 4 with the first base as the most significant digit (the
+     * same value as {@link BasePair#convertDNAStringToInt(String)}).
+     *
+     * @param position a position in the text
+     * @param k        the number of bases, at most 15
+     * @return the code of the k-mer
+     */
+    public int prefixCode(int position, int k) {
+        return k == 0 ? 0 : (int) (wordAt(position) >>> (64 - (k << 1)));
+    }
+
+    /**
+     * Counts how many bases two packed texts have in common starting at the given
+     * positions, comparing a word at a time, up to the given maximum. The caller is
+     * responsible for keeping the maximum within the terminators of both texts.
+     *
+     * @param first       the first text
+     * @param firstStart  the position in the first text
+     * @param second      the second text
+     * @param secondStart the position in the second text
+     * @param max         the maximum number of bases to compare
+     * @return the number of equal bases, at most max
+     */
+    public static int matchLength(PackedText first, int firstStart, PackedText second, int secondStart, int max) {
+        int matched = 0;
+        while (matched < max) {
+            long difference = first.wordAt(firstStart + matched) ^ second.wordAt(secondStart + matched);
+            if (difference != 0) {
+                return Math.min(max, matched + (Long.numberOfLeadingZeros(difference) >>> 1));
+            }
+            matched += BASES_PER_WORD;
+        }
+        return max;
+    }
+
+    /**
+     * Counts how many bases differ between two packed texts over the given number
+     * of bases from the given positions, comparing a word at a time, and stopping
+     * once more than the given maximum differ. The caller is responsible for
+     * keeping the length within the terminators of both texts.
+     *
+     * @param first       the first text
+     * @param firstStart  the position in the first text
+     * @param second      the second text
+     * @param secondStart the position in the second text
+     * @param length      the number of bases to compare
+     * @param max         the number of differences after which to stop counting
+     * @return the number of bases that differ, or a number greater than max
+     */
+    public static int mismatches(PackedText first, int firstStart, PackedText second, int secondStart, int length,
+            int max) {
+        int mismatches = 0;
+        for (int compared = 0; compared < length && mismatches <= max; compared += BASES_PER_WORD) {
+            long difference = first.wordAt(firstStart + compared) ^ second.wordAt(secondStart + compared);
+            // one bit per base that differs, in the low bit of its pair
+            long differentBases = (difference | (difference >>> 1)) & 0x5555555555555555L;
+            int remaining = length - compared;
+            if (remaining < BASES_PER_WORD) {
+                differentBases &= -1L << (64 - (remaining << 1));
+            }
+            mismatches += Long.bitCount(differentBases);
+        }
+        return mismatches;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        StringBuilder stringBuilder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            stringBuilder.append(charAt(i));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < words.length(); i++) {
+            hashCode = 31 * hashCode + Long.hashCode(words.get(i));
+        }
+        return 31 * hashCode + length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PackedText)) {
+            return false;
+        }
+        PackedText other = (PackedText) obj;
+        return length == other.length && sentinelPosition == other.sentinelPosition
+                && Arrays.equals(terminators, other.terminators) && wordsEqual(words, other.words);
+    }
+
+    private static boolean wordsEqual(LongArray first, LongArray second) {
+        if (first.length() != second.length()) {
+            return false;
+        }
+        for (int i = 0; i < first.length(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A builder that packs a text one character at a time, for example while
+     * reading a FASTA file, so that the text never exists as a String.
+     */
+    public static class Builder {
+        private long[] words = new long[16];
+        private int length;
+        private int[] separators = new int[0];
+        private int separatorCount;
+        private final Random random;
+
+        /**
+         * Creates a new Builder.
+         *
+         * @param random the random number generator used to pick a base for any
+         *               character that is not A, C, G or T (such as N)
+         */
+        public Builder(Random random) {
+            this.random = random;
+        }
+
+        /**
+         * Appends a character to the text. Lower case bases are accepted, and any
+         * other character (such as N) is replaced by a randomly chosen base.
+         *
+         * @param c the character to append
+         * @return this builder
+         */
+        public Builder append(char c) {
+            int code = BasePair.codeOf(c);
+            if (code < 0) {
+                code = random.nextInt(4);
+            }
+            return appendCode(code);
+        }
+
+        private Builder appendCode(int code) {
+            if ((length >>> 5) + 2 > words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            words[length >>> 5] |= ((long) code) << shiftOf(length);
+            length++;
+            return this;
+        }
+
+        /**
+         * Ends the current record by appending a separator, so that the next
+         * character starts a new record.
+         *
+         * @return this builder
+         */
+        public Builder endRecord() {
+            if (separatorCount == separators.length) {
+                separators = Arrays.copyOf(separators, Math.max(16, separatorCount * 2));
+            }
+            separators[separatorCount++] = length;
+            // the separator is stored as an A
+            return appendCode(0);
+        }
+
+        /**
+         * Appends every character of a sequence to the text.
+         *
+         * @param sequence the characters to append
+         * @return this builder
+         */
+        public Builder append(CharSequence sequence) {
+            for (int i = 0; i < sequence.length(); i++) {
+                append(sequence.charAt(i));
+            }
+            return this;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Finishes the text by adding the sentinel, which ends the last record.
+         *
+         * @return the packed text
+         */
+        public PackedText build() {
+            int textLength = length + 1;
+            return new PackedText(Arrays.copyOf(words, wordsFor(textLength)), textLength,
+                    Arrays.copyOf(separators, separatorCount), true);
+        }
+    }
+}
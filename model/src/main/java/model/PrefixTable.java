@@ -0,0 +1,176 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A class to represent a prefix table, which finds the suffix array interval
+ * of the suffixes starting with any prefix of up to k bases. It is stored as
+ * the cumulative counts of the suffixes with at least k bases by their first k
+ * bases, in 4^k + 1 ints, so the interval of a k-mer is between the counts of
+ * its code and the next, and that of a shorter prefix is between the counts of
+ * the first and one past the last k-mer that starts with it. The few suffixes
+ * with fewer than k bases (the ones just before each terminator) are kept apart,
+ * sorted by their bases padded with A and then by their length, which is their
+ * order in the suffix array, and are added to the counts by binary search.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class PrefixTable {
+    private static final int LENGTH_BITS = 5;
+
+    private final int prefixLength;
+    private final IntArray offsets;
+    private final long[] shortSuffixes;
+
+    /**
+     * Creates a new PrefixTable.
+     *
+     * @param prefixLength  the length k of the prefixes
+     * @param offsets       for each k-mer code, and one past the last, the number
+     *                      of suffixes with at least k bases whose first k bases
+     *                      have a smaller code
+     * @param shortSuffixes the suffixes with fewer than k bases, each as its
+     *                      bases padded with A to a k-mer code shifted left by
+     *                      five bits, or'ed with its length, in ascending order
+     */
+    public PrefixTable(int prefixLength, IntArray offsets, long[] shortSuffixes) {
+        this.prefixLength = prefixLength;
+        this.offsets = offsets;
+        this.shortSuffixes = shortSuffixes;
+    }
+
+    /**
+     * Builds the prefix table of a text in a single pass over the text, counting
+     * each suffix by its first k bases.
+     *
+     * @param text the packed text
+     * @param k    the length of the prefixes, from 1 to 15
+     * @return the {@link PrefixTable}
+     */
+    public static PrefixTable build(PackedText text, int k) {
+        if (k < 1 || k > 15) {
+            throw new IllegalArgumentException("The prefix length must be from 1 to 15, but was " + k);
+        }
+        int[] offsets = new int[(1 << (2 * k)) + 1];
+        int textLength = text.length();
+        int limit = -1;
+        for (int position = 0; position < textLength; position++) {
+            if (position > limit) {
+                limit = text.limit(position);
+            }
+            if (position + k <= limit) {
+                offsets[text.prefixCode(position, k) + 1]++;
+            }
+        }
+        for (int code = 1; code < offsets.length; code++) {
+            offsets[code] += offsets[code - 1];
+        }
+        return new PrefixTable(k, IntArray.of(offsets), shortSuffixes(text, k));
+    }
+
+    /**
+     * Finds the suffixes of a text with fewer than k bases, which are not counted
+     * in the offsets of its prefix table.
+     *
+     * @param text the packed text
+     * @param k    the length of the prefixes
+     * @return the short suffixes, in the form and order of the prefix table
+     */
+    private static long[] shortSuffixes(PackedText text, int k) {
+        int[] terminators = text.getTerminators();
+        long[] shortSuffixes = new long[(terminators.length + 1) * k];
+        int count = 0;
+        int recordStart = 0;
+        for (int record = 0; record <= terminators.length; record++) {
+            // a text without the sentinel ends its last record at its end
+            int limit = record < terminators.length ? terminators[record] : text.length();
+            for (int position = Math.max(recordStart, limit - k + 1); position <= limit
+                    && position < text.length(); position++) {
+                int length = limit - position;
+                // the bases past the end of the suffix are stored as A
+                long paddedCode = length == 0 ? 0 : (long) text.prefixCode(position, length) << (2 * (k - length));
+                shortSuffixes[count++] = key(paddedCode, length);
+            }
+            recordStart = limit + 1;
+        }
+        shortSuffixes = Arrays.copyOf(shortSuffixes, count);
+        Arrays.sort(shortSuffixes);
+        return shortSuffixes;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public IntArray getOffsets() {
+        return offsets;
+    }
+
+    public long[] getShortSuffixes() {
+        return shortSuffixes;
+    }
+
+    /**
+     * Returns the start (inclusive) of the suffix array interval of the suffixes
+     * starting with a prefix, which is the number of suffixes that sort before
+     * the prefix.
+     *
+     * @param code   the code of the prefix, as returned by
+     *               {@link PackedText#prefixCode(int, int)}
+     * @param length the length of the prefix, from 1 to k
+     * @return the start of the interval
+     */
+    public int getStart(int code, int length) {
+        long first = (long) code << (2 * (prefixLength - length));
+        return offsets.get((int) first) + countShortSuffixesBefore(key(first, length));
+    }
+
+    /**
+     * Returns the end (exclusive) of the suffix array interval of the suffixes
+     * starting with a prefix, which equals its start if the prefix does not
+     * occur.
+     *
+     * @param code   the code of the prefix, as returned by
+     *               {@link PackedText#prefixCode(int, int)}
+     * @param length the length of the prefix, from 1 to k
+     * @return the end of the interval
+     */
+    public int getEnd(int code, int length) {
+        long next = (long) (code + 1) << (2 * (prefixLength - length));
+        return offsets.get((int) next) + countShortSuffixesBefore(key(next, 0));
+    }
+
+    /**
+     * Returns the number of k-mers in the table, which is 4^k.
+     *
+     * @return the number of k-mers
+     */
+    public int size() {
+        return offsets.length() - 1;
+    }
+
+    private int countShortSuffixesBefore(long key) {
+        int low = 0;
+        int high = shortSuffixes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (shortSuffixes[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long key(long paddedCode, int length) {
+        return (paddedCode << LENGTH_BITS) | length;
+    }
+
+    @Override
+    public String toString() {
+        return "PrefixTable [prefixLength=" + prefixLength + ", size=" + size() + ", shortSuffixes="
+                + shortSuffixes.length + "]";
+    }
+}
@@ -1,43 +1,71 @@
 package model;
 
+import java.util.List;
+
 /**
- * A class representing a query to be made on a suffix array.
+ * A class representing a query to be made on a suffix array. The name and the
+ * sequence are held in growable buffers, so appending to them takes time
+ * proportional to what is appended, and a query can be reset and reused for the
+ * next record when reading a large query file in chunks.
  * 
  * @author Valerie Wray
  *
  */
 public class Query {
 
-    private String name;
-    private String sequence;
+    private final StringBuilder name;
+    private final StringBuilder sequence;
     private IndexInterval hitsRange;
+    private IndexInterval reverseHitsRange;
+    private List<IndexInterval> hitsRanges;
+    private List<IndexInterval> reverseHitsRanges;
+    private List<MaximalMatch> matches;
+    private List<MaximalMatch> reverseMatches;
 
     public Query() {
-        this.name = "";
-        this.sequence = "";
+        this.name = new StringBuilder();
+        this.sequence = new StringBuilder();
         this.hitsRange = null;
     }
 
     public Query(String name) {
-        this.name = name;
-        this.sequence = "";
+        this.name = new StringBuilder(name);
+        this.sequence = new StringBuilder();
         this.hitsRange = null;
     }
 
-    public String getName() {
+    public CharSequence getName() {
         return name;
     }
 
-    public void appendName(String name) {
-        this.name = this.name.concat(name);
+    public void appendName(CharSequence name) {
+        this.name.append(name);
+    }
+
+    /**
+     * Appends a single character to the name.
+     * 
+     * @param c the character to append
+     */
+    public void appendName(char c) {
+        this.name.append(c);
     }
 
-    public String getSequence() {
+    public CharSequence getSequence() {
         return sequence;
     }
 
-    public void appendSequence(String sequence) {
-        this.sequence = this.sequence.concat(sequence);
+    public void appendSequence(CharSequence sequence) {
+        this.sequence.append(sequence);
+    }
+
+    /**
+     * Appends a single character to the sequence.
+     * 
+     * @param c the character to append
+     */
+    public void appendSequence(char c) {
+        this.sequence.append(c);
     }
 
     public IndexInterval getHitsRange() {
@@ -48,8 +76,92 @@ public class Query {
         this.hitsRange = hitsRange;
     }
 
+    /**
+     * Returns the suffix array interval of the hits of the reverse complement of
+     * the sequence, which are the hits of the query on the reverse strand.
+     * 
+     * @return the interval, or null if only the forward strand was searched
+     */
+    public IndexInterval getReverseHitsRange() {
+        return reverseHitsRange;
+    }
+
+    public void setReverseHitsRange(IndexInterval reverseHitsRange) {
+        this.reverseHitsRange = reverseHitsRange;
+    }
+
+    /**
+     * Returns the suffix array intervals of the hits of a search with mismatches,
+     * which are disjoint and in the order of the suffix array.
+     * 
+     * @return the intervals, or null if the query was searched for exactly
+     */
+    public List<IndexInterval> getHitsRanges() {
+        return hitsRanges;
+    }
+
+    public void setHitsRanges(List<IndexInterval> hitsRanges) {
+        this.hitsRanges = hitsRanges;
+    }
+
+    /**
+     * Returns the suffix array intervals of the hits of a search with mismatches
+     * on the reverse strand.
+     * 
+     * @return the intervals, or null if the query was searched for exactly or
+     *         only on the forward strand
+     */
+    public List<IndexInterval> getReverseHitsRanges() {
+        return reverseHitsRanges;
+    }
+
+    public void setReverseHitsRanges(List<IndexInterval> reverseHitsRanges) {
+        this.reverseHitsRanges = reverseHitsRanges;
+    }
+
+    /**
+     * Returns the super-maximal exact matches of the query, in the order of their
+     * start in the query.
+     * 
+     * @return the matches, or null if the query was not searched for them
+     */
+    public List<MaximalMatch> getMatches() {
+        return matches;
+    }
+
+    public void setMatches(List<MaximalMatch> matches) {
+        this.matches = matches;
+    }
+
+    /**
+     * Returns the super-maximal exact matches of the reverse complement of the
+     * query, each with its start given on the query itself, so that it covers the
+     * bases of the query whose reverse complement occurs in the text.
+     * 
+     * @return the matches, or null if the query was not searched for them or
+     *         only on the forward strand
+     */
+    public List<MaximalMatch> getReverseMatches() {
+        return reverseMatches;
+    }
+
+    public void setReverseMatches(List<MaximalMatch> reverseMatches) {
+        this.reverseMatches = reverseMatches;
+    }
+
+    /**
+     * Clears the name and the sequence so that the query can be reused for another
+     * record. The hits range objects are kept so that they can be reused too.
+     */
+    public void reset() {
+        this.name.setLength(0);
+        this.sequence.setLength(0);
+    }
+
     @Override
     public String toString() {
-        return "Query [name=" + name + ", sequence=" + sequence + ", hitsRange=" + hitsRange + "]";
+        return "Query [name=" + name + ", sequence=" + sequence + ", hitsRange=" + hitsRange + ", reverseHitsRange="
+                + reverseHitsRange + ", hitsRanges=" + hitsRanges + ", reverseHitsRanges=" + reverseHitsRanges
+                + ", matches=" + matches + ", reverseMatches=" + reverseMatches + "]";
     }
 }
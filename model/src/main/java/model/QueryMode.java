@@ -1,5 +1,5 @@
 package model;
 
 public enum QueryMode {
-    NAIVE, SIMPACCEL
+    NAIVE, SIMPACCEL, SUPERACCEL, FMINDEX, EYTZINGER, MISMATCH, SMEM
 }
@@ -0,0 +1,107 @@
+package model;
+
+/**
+ * A class to represent the records of a text built from a multi-FASTA file:
+ * the name of each sequence and the position of the terminator that ends it,
+ * in text order. A text position is translated to its sequence and the offset
+ * within it by a binary search over the ends, so it takes O(log s) time for s
+ * sequences, and the table takes one int and one name per sequence.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class SequenceTable {
+    private final String[] names;
+    private final int[] ends;
+
+    /**
+     * Creates a new SequenceTable.
+     *
+     * @param names the name of each sequence, in text order
+     * @param ends  the position of the terminator that ends each sequence, in
+     *              ascending order, as returned by
+     *              {@link PackedText#getTerminators()}
+     * @throws IllegalArgumentException if there is not one name per end
+     */
+    public SequenceTable(String[] names, int[] ends) {
+        if (names.length != ends.length) {
+            throw new IllegalArgumentException(
+                    "There are " + names.length + " sequence names but " + ends.length + " sequence ends");
+        }
+        this.names = names;
+        this.ends = ends;
+    }
+
+    /**
+     * Returns the number of sequences.
+     *
+     * @return the number of sequences
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the index of the sequence that a text position belongs to, which is
+     * that of the first end at or after it.
+     *
+     * @param position a position in the text
+     * @return the index of the sequence
+     */
+    public int indexOf(int position) {
+        int low = 0;
+        int high = ends.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the text position of the first base of a sequence.
+     *
+     * @param index the index of the sequence
+     * @return the start of the sequence
+     */
+    public int getStart(int index) {
+        return index == 0 ? 0 : ends[index - 1] + 1;
+    }
+
+    /**
+     * Returns the text position of the terminator that ends a sequence.
+     *
+     * @param index the index of the sequence
+     * @return the end (exclusive) of the sequence
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the name of a sequence.
+     *
+     * @param index the index of the sequence
+     * @return the name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    public int[] getEnds() {
+        return ends;
+    }
+
+    @Override
+    public String toString() {
+        return "SequenceTable [sequences=" + names.length + "]";
+    }
+}
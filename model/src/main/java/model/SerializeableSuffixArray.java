@@ -1,60 +1,127 @@
 package model;
 
-import java.io.Serializable;
-import java.util.Arrays;
-
 /**
- * A class for serializing a suffix array along with the original text string
- * and an optional prefix table.
+ * A class for serializing a suffix array along with the original text, packed
+ * at 2 bits per base, an optional prefix table, an optional LCP array,
+ * optional LCP-LR arrays, an optional {@link FmIndex}, an optional
+ * {@link EytzingerIndex} and an optional {@link SequenceTable} of the records
+ * of the text. It is written to and mapped from a binary index file
+ * by {@link IndexFile}.
  * 
  * @author Valerie Wray
  *
  */
-public class SerializeableSuffixArray implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private int[] suffixArray;
-    private String text;
-    private IndexInterval[] prefixTable;
-    private int prefixLength;
+public class SerializeableSuffixArray {
+    private IntArray suffixArray;
+    private PackedText text;
+    private PrefixTable prefixTable;
+    private CompactLcpArray lcpArray;
+    private CompactLcpArray leftLcpArray;
+    private CompactLcpArray rightLcpArray;
+    private FmIndex fmIndex;
+    private EytzingerIndex eytzingerIndex;
+    private SequenceTable sequenceTable;
+
+    /**
+     * Creates a new SerializeableSuffixArray from a suffix array and packed text.
+     * 
+     * @param suffixArray the suffix array
+     * @param text        the original text
+     */
+    public SerializeableSuffixArray(int[] suffixArray, PackedText text) {
+        this(IntArray.of(suffixArray), text);
+    }
 
     /**
-     * Creates a new SerializeableSuffixArray from a suffix array and text string.
+     * Creates a new SerializeableSuffixArray from a suffix array, which may be
+     * mapped from an index file, and packed text.
      * 
      * @param suffixArray the suffix array
-     * @param text        the original text string
+     * @param text        the original text
      */
-    public SerializeableSuffixArray(int[] suffixArray, String text) {
+    public SerializeableSuffixArray(IntArray suffixArray, PackedText text) {
         this.suffixArray = suffixArray;
         this.text = text;
     }
 
-    public int[] getSuffixArray() {
+    public IntArray getSuffixArray() {
         return suffixArray;
     }
 
-    public String getText() {
+    public PackedText getText() {
         return text;
     }
 
-    public IndexInterval[] getPrefixTable() {
+    public PrefixTable getPrefixTable() {
         return prefixTable;
     }
 
-    public void setPrefixTable(IndexInterval[] prefixTable) {
+    public void setPrefixTable(PrefixTable prefixTable) {
         this.prefixTable = prefixTable;
     }
 
+    /**
+     * Returns the length k of the prefixes in the prefix table.
+     * 
+     * @return the prefix length, or 0 if there is no prefix table
+     */
     public int getPrefixLength() {
-        return prefixLength;
+        return prefixTable == null ? 0 : prefixTable.getPrefixLength();
+    }
+
+    public CompactLcpArray getLcpArray() {
+        return lcpArray;
+    }
+
+    public void setLcpArray(CompactLcpArray lcpArray) {
+        this.lcpArray = lcpArray;
+    }
+
+    public CompactLcpArray getLeftLcpArray() {
+        return leftLcpArray;
+    }
+
+    public void setLeftLcpArray(CompactLcpArray leftLcpArray) {
+        this.leftLcpArray = leftLcpArray;
+    }
+
+    public CompactLcpArray getRightLcpArray() {
+        return rightLcpArray;
+    }
+
+    public void setRightLcpArray(CompactLcpArray rightLcpArray) {
+        this.rightLcpArray = rightLcpArray;
+    }
+
+    public FmIndex getFmIndex() {
+        return fmIndex;
+    }
+
+    public void setFmIndex(FmIndex fmIndex) {
+        this.fmIndex = fmIndex;
+    }
+
+    public EytzingerIndex getEytzingerIndex() {
+        return eytzingerIndex;
+    }
+
+    public void setEytzingerIndex(EytzingerIndex eytzingerIndex) {
+        this.eytzingerIndex = eytzingerIndex;
+    }
+
+    public SequenceTable getSequenceTable() {
+        return sequenceTable;
     }
 
-    public void setPrefixLength(int prefixLength) {
-        this.prefixLength = prefixLength;
+    public void setSequenceTable(SequenceTable sequenceTable) {
+        this.sequenceTable = sequenceTable;
     }
 
     @Override
     public String toString() {
-        return "SerializeableSuffixArray [suffixArray=" + Arrays.toString(suffixArray) + ", text=" + text
-                + ", prefixTable=" + Arrays.toString(prefixTable) + ", prefixLength=" + prefixLength + "]";
+        return "SerializeableSuffixArray [suffixArray=" + suffixArray + ", text=" + text + ", prefixTable="
+                + prefixTable + ", lcpArray=" + lcpArray
+                + ", leftLcpArray=" + leftLcpArray + ", rightLcpArray=" + rightLcpArray + ", fmIndex=" + fmIndex
+                + ", eytzingerIndex=" + eytzingerIndex + ", sequenceTable=" + sequenceTable + "]";
     }
 }
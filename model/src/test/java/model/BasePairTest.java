@@ -36,4 +36,15 @@ class BasePairTest {
         assertEquals(63, BasePair.convertDNAStringToInt("TTT"));
         assertEquals(11, BasePair.convertDNAStringToInt("AGT"));
     }
+
+    @Test
+    void testReverseComplementCode() {
+        assertEquals(BasePair.T.ordinal(), BasePair.complementOf(BasePair.A.ordinal()));
+        assertEquals(BasePair.G.ordinal(), BasePair.complementOf(BasePair.C.ordinal()));
+        assertEquals(BasePair.convertDNAStringToInt("CTTG"),
+                BasePair.reverseComplementCode(BasePair.convertDNAStringToInt("CAAG"), 4));
+        assertEquals(BasePair.convertDNAStringToInt("ACGT"),
+                BasePair.reverseComplementCode(BasePair.convertDNAStringToInt("ACGT"), 4));
+        assertEquals(0, BasePair.reverseComplementCode(0, 0));
+    }
 }
@@ -0,0 +1,93 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link EytzingerIndex}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class EytzingerIndexTest {
+
+    /**
+     * The samples of every second row of the suffix array 6 5 2 3 0 4 1 of
+     * ACAACA$ are rows 0, 2, 4 and 6, which are laid out in the order 4, 2, 6, 0.
+     */
+    @Test
+    void testBuild() {
+        EytzingerIndex eytzingerIndex = EytzingerIndex.build(PackedText.valueOf("ACAACA$"),
+                IntArray.of(new int[] { 6, 5, 2, 3, 0, 4, 1 }), 2);
+        assertArrayEquals(new int[] { 0, 4, 2, 6, 0 }, eytzingerIndex.getRows());
+        // the sentinel's suffix has no bases, so its word is 0
+        assertEquals(0, eytzingerIndex.getKeys()[4]);
+        assertThrows(IllegalArgumentException.class, () -> EytzingerIndex.build(PackedText.valueOf("ACAACA$"),
+                IntArray.of(new int[] { 6, 5, 2, 3, 0, 4, 1 }), 0));
+    }
+
+    /**
+     * Checks that the rows returned for random patterns, some longer than a word,
+     * bound the interval of the suffixes starting with them.
+     */
+    @Test
+    void testRowsBoundTheHits() {
+        Random random = new Random(11);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            stringBuilder.append("ACGT".charAt(random.nextInt(i < 250 ? 4 : 2)));
+        }
+        String sequence = stringBuilder.append('$').toString();
+        Integer[] suffixes = new Integer[sequence.length()];
+        for (int i = 0; i < suffixes.length; i++) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, (a, b) -> sequence.substring(a).compareTo(sequence.substring(b)));
+        int[] suffixArray = Arrays.stream(suffixes).mapToInt(Integer::intValue).toArray();
+
+        for (int samplingInterval : new int[] { 1, 3, 16 }) {
+            EytzingerIndex eytzingerIndex = EytzingerIndex.build(PackedText.valueOf(sequence),
+                    IntArray.of(suffixArray), samplingInterval);
+            for (int i = 0; i < 300; i++) {
+                int start = random.nextInt(sequence.length() - 1);
+                int length = 1 + random.nextInt(Math.min(40, sequence.length() - 1 - start));
+                String pattern = sequence.substring(start, start + length);
+                if (i % 2 == 0) {
+                    char[] chars = pattern.toCharArray();
+                    chars[random.nextInt(chars.length)] = "ACGT".charAt(random.nextInt(4));
+                    pattern = new String(chars);
+                }
+                PackedText packedPattern = PackedText.valueOf(pattern);
+                int lowerRow = eytzingerIndex.lowerRow(packedPattern);
+                int upperRow = eytzingerIndex.upperRow(packedPattern);
+                for (int row = 0; row <= lowerRow; row++) {
+                    assertTrue(sequence.substring(suffixArray[row]).compareTo(pattern) < 0, pattern);
+                }
+                for (int row = upperRow; row < suffixArray.length; row++) {
+                    assertTrue(sequence.substring(suffixArray[row]).compareTo(pattern) > 0
+                            && !sequence.startsWith(pattern, suffixArray[row]), pattern);
+                }
+                if (samplingInterval == 1 && length >= 32) {
+                    // a word tells apart all but the suffixes sharing the pattern's first 32 bases
+                    assertTrue(upperRow - lowerRow <= 2 + countStartingWith(sequence, pattern.substring(0, 32)),
+                            pattern);
+                }
+            }
+        }
+    }
+
+    private static int countStartingWith(String sequence, String prefix) {
+        int count = 0;
+        for (int i = sequence.indexOf(prefix); i >= 0; i = sequence.indexOf(prefix, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
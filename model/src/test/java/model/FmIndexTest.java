@@ -0,0 +1,100 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link FmIndex}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class FmIndexTest {
+
+    /**
+     * The BWT of ACAACA$ is ACCA$AA, with the suffix array 6 5 2 3 0 4 1.
+     */
+    @Test
+    void testBuild() {
+        FmIndex fmIndex = FmIndex.build(PackedText.valueOf("ACAACA$"), IntArray.of(new int[] { 6, 5, 2, 3, 0, 4, 1 }),
+                3);
+        assertEquals(4, fmIndex.getSentinelRow());
+        assertEquals(1, fmIndex.count(0));
+        assertEquals(5, fmIndex.count(1));
+        assertEquals(7, fmIndex.count(2));
+        assertEquals(7, fmIndex.count(3));
+        assertEquals(4, fmIndex.occurrences(0, 7));
+        assertEquals(2, fmIndex.occurrences(1, 7));
+        assertEquals(2, fmIndex.occurrences(0, 4));
+        assertEquals(2, fmIndex.occurrences(0, 5));
+        assertEquals(3, fmIndex.occurrences(0, 6));
+        assertEquals(6, fmIndex.get(0));
+        assertEquals(1, fmIndex.get(6));
+        assertThrows(IllegalArgumentException.class,
+                () -> FmIndex.build(PackedText.valueOf("ACA"), IntArray.of(new int[] { 2, 0, 1 }), 3));
+    }
+
+    /**
+     * The suffix array of AC$GAC$ is 6 2 4 0 5 1 3, since the suffixes ending at
+     * the sentinel sort before the equal ones ending at the separator, so its
+     * BWT is CCG$AA with the separator in the last row.
+     */
+    @Test
+    void testBuildSeveralRecords() {
+        FmIndex fmIndex = FmIndex.build(PackedText.valueOf("AC$GAC$"), IntArray.of(new int[] { 6, 2, 4, 0, 5, 1, 3 }),
+                4);
+        assertEquals(3, fmIndex.getSentinelRow());
+        assertArrayEquals(new int[] { 6 }, fmIndex.getSeparatorRows());
+        assertArrayEquals(new int[] { 2, 4, 6, 7 }, fmIndex.getCounts());
+        assertEquals(2, fmIndex.occurrences(0, 7));
+        assertEquals(0, fmIndex.occurrences(0, 4));
+        assertEquals(2, fmIndex.occurrences(1, 7));
+        assertEquals(1, fmIndex.occurrences(2, 7));
+        int[] suffixArray = { 6, 2, 4, 0, 5, 1, 3 };
+        for (int row = 0; row < suffixArray.length; row++) {
+            assertEquals(suffixArray[row], fmIndex.get(row), "row " + row);
+        }
+    }
+
+    /**
+     * Checks the occurrence counts and the located suffix array of a random text
+     * spanning several checkpoints against a direct scan of its BWT.
+     */
+    @Test
+    void testAgreesWithSuffixArray() {
+        Random random = new Random(11);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+        }
+        String sequence = stringBuilder.append('$').toString();
+        Integer[] sortedSuffixes = new Integer[sequence.length()];
+        for (int i = 0; i < sortedSuffixes.length; i++) {
+            sortedSuffixes[i] = i;
+        }
+        Arrays.sort(sortedSuffixes, (a, b) -> sequence.substring(a).compareTo(sequence.substring(b)));
+        int[] suffixArray = Arrays.stream(sortedSuffixes).mapToInt(Integer::intValue).toArray();
+
+        for (int samplingRate : new int[] { 1, 7, 32 }) {
+            FmIndex fmIndex = FmIndex.build(PackedText.valueOf(sequence), IntArray.of(suffixArray), samplingRate);
+            int[] counts = new int[4];
+            for (int row = 0; row <= suffixArray.length; row++) {
+                for (int base = 0; base < 4; base++) {
+                    assertEquals(counts[base], fmIndex.occurrences(base, row), "base " + base + " row " + row);
+                }
+                if (row < suffixArray.length) {
+                    assertEquals(suffixArray[row], fmIndex.get(row), "row " + row);
+                    if (suffixArray[row] > 0) {
+                        counts[BasePair.codeOf(sequence.charAt(suffixArray[row] - 1))]++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link IndexFile}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class IndexFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteAndMap() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        serializeableSuffixArray.setPrefixTable(PrefixTable.build(serializeableSuffixArray.getText(), 2));
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        SerializeableSuffixArray mapped = IndexFile.map(indexFile);
+
+        assertEquals("ACAACA$", mapped.getText().toString());
+        // the text is read in place from the mapping
+        assertTrue(mapped.getText().getWords() instanceof MappedLongArray);
+        assertEquals(serializeableSuffixArray.getText(), mapped.getText());
+        assertEquals(7, mapped.getSuffixArray().length());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(serializeableSuffixArray.getSuffixArray().get(i), mapped.getSuffixArray().get(i));
+        }
+        assertEquals(2, mapped.getPrefixLength());
+        assertEquals(16, mapped.getPrefixTable().size());
+        assertEquals(3, mapped.getPrefixTable().getStart(1, 2));
+        assertEquals(5, mapped.getPrefixTable().getEnd(1, 2));
+        assertEquals(1, mapped.getPrefixTable().getStart(0, 1));
+        assertEquals(5, mapped.getPrefixTable().getEnd(0, 1));
+    }
+
+    @Test
+    void testWriteAndMapLcpArray() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        // not a real LCP array, but one with values that overflow a byte
+        int[] lcpValues = { 0, 0, 1, 300, 3, 255, 2 };
+        serializeableSuffixArray.setLcpArray(CompactLcpArray.of(IntArray.of(lcpValues)));
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        SerializeableSuffixArray mapped = IndexFile.map(indexFile);
+
+        assertNull(mapped.getPrefixTable());
+        assertEquals(7, mapped.getLcpArray().length());
+        for (int i = 0; i < lcpValues.length; i++) {
+            assertEquals(lcpValues[i], mapped.getLcpArray().get(i));
+        }
+    }
+
+    @Test
+    void testWriteAndMapLcpLrArrays() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        int[] leftLcpValues = { 0, 0, 1, 0, 300, 0, 2 };
+        int[] rightLcpValues = { 0, 1, 1, 0, 0, 0, 256 };
+        serializeableSuffixArray.setLcpArray(CompactLcpArray.of(IntArray.of(new int[] { 0, 0, 1, 1, 3, 0, 2 })));
+        serializeableSuffixArray.setLeftLcpArray(CompactLcpArray.of(IntArray.of(leftLcpValues)));
+        serializeableSuffixArray.setRightLcpArray(CompactLcpArray.of(IntArray.of(rightLcpValues)));
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        SerializeableSuffixArray mapped = IndexFile.map(indexFile);
+
+        for (int i = 0; i < leftLcpValues.length; i++) {
+            assertEquals(leftLcpValues[i], mapped.getLeftLcpArray().get(i));
+            assertEquals(rightLcpValues[i], mapped.getRightLcpArray().get(i));
+        }
+        assertEquals(3, mapped.getLcpArray().get(4));
+    }
+
+    @Test
+    void testWriteAndMapFmIndex() throws IOException {
+        int[] suffixArray = { 6, 5, 2, 3, 0, 4, 1 };
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray,
+                PackedText.valueOf("ACAACA$"));
+        serializeableSuffixArray.setFmIndex(
+                FmIndex.build(serializeableSuffixArray.getText(), serializeableSuffixArray.getSuffixArray(), 2));
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        FmIndex mapped = IndexFile.map(indexFile).getFmIndex();
+
+        assertEquals(2, mapped.getSamplingRate());
+        assertEquals(4, mapped.getSentinelRow());
+        assertTrue(mapped.getBwt() instanceof MappedLongArray);
+        assertTrue(mapped.getOccurrences() instanceof MappedIntArray);
+        for (int row = 0; row < suffixArray.length; row++) {
+            assertEquals(suffixArray[row], mapped.get(row));
+        }
+    }
+
+    @Test
+    void testWriteAndMapEytzingerIndex() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        EytzingerIndex eytzingerIndex = EytzingerIndex.build(serializeableSuffixArray.getText(),
+                serializeableSuffixArray.getSuffixArray(), 2);
+        serializeableSuffixArray.setEytzingerIndex(eytzingerIndex);
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        EytzingerIndex mapped = IndexFile.map(indexFile).getEytzingerIndex();
+
+        assertEquals(2, mapped.getSamplingInterval());
+        assertEquals(7, mapped.length());
+        assertArrayEquals(eytzingerIndex.getKeys(), mapped.getKeys());
+        assertArrayEquals(eytzingerIndex.getRows(), mapped.getRows());
+    }
+
+    @Test
+    void testWriteAndMapSequences() throws IOException {
+        int[] suffixArray = { 6, 2, 4, 0, 5, 1, 3 };
+        PackedText text = PackedText.valueOf("AC$GAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        serializeableSuffixArray.setFmIndex(FmIndex.build(text, serializeableSuffixArray.getSuffixArray(), 4));
+        Path indexFile = tempDir.resolve("index.bin");
+
+        IndexFile.write(serializeableSuffixArray, indexFile);
+        SerializeableSuffixArray mapped = IndexFile.map(indexFile);
+
+        assertEquals(text, mapped.getText());
+        assertArrayEquals(new int[] { 2, 6 }, mapped.getText().getTerminators());
+        assertArrayEquals(new String[] { "chr1", "chr2" }, mapped.getSequenceTable().getNames());
+        assertArrayEquals(new int[] { 6 }, mapped.getFmIndex().getSeparatorRows());
+        for (int row = 0; row < suffixArray.length; row++) {
+            assertEquals(suffixArray[row], mapped.getFmIndex().get(row));
+        }
+    }
+
+    @Test
+    void testMapRejectsOtherFiles() throws IOException {
+        Path notAnIndex = tempDir.resolve("notAnIndex.bin");
+        Files.writeString(notAnIndex, "ACGTACGTACGTACGTACGTACGTACGT");
+        assertThrows(IOException.class, () -> IndexFile.map(notAnIndex));
+    }
+}
@@ -0,0 +1,129 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link PackedText}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class PackedTextTest {
+
+    @Test
+    void testValueOf() {
+        PackedText text = PackedText.valueOf("ACCAAGATAGCTAC$");
+        assertEquals(15, text.length());
+        assertEquals("ACCAAGATAGCTAC$", text.toString());
+        assertEquals('$', text.charAt(14));
+        assertEquals(14, text.limit(0));
+        assertTrue(text.isTerminator(14));
+        assertEquals(BasePair.G.ordinal(), text.baseAt(5));
+        assertThrows(IllegalArgumentException.class, () -> PackedText.valueOf("ACNT"));
+    }
+
+    @Test
+    void testPrefixCode() {
+        PackedText text = PackedText.valueOf("ACAGTTTACGATTACAGATTACCCAGATAGATTAGAC$");
+        for (int position = 0; position + 5 < text.length(); position++) {
+            assertEquals(BasePair.convertDNAStringToInt(text.subSequence(position, position + 5).toString()),
+                    text.prefixCode(position, 5));
+        }
+    }
+
+    @Test
+    void testMatchLength() {
+        Random random = new Random(42);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(2)).getDnaChar());
+        }
+        String sequence = stringBuilder.toString();
+        PackedText text = PackedText.valueOf(sequence);
+        for (int first = 0; first < 200; first += 7) {
+            for (int second = 0; second < 200; second += 3) {
+                int max = 200 - Math.max(first, second);
+                int expected = 0;
+                while (expected < max && sequence.charAt(first + expected) == sequence.charAt(second + expected)) {
+                    expected++;
+                }
+                assertEquals(expected, PackedText.matchLength(text, first, text, second, max));
+            }
+        }
+    }
+
+    @Test
+    void testMismatches() {
+        Random random = new Random(43);
+        StringBuilder first = new StringBuilder();
+        StringBuilder second = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            int base = random.nextInt(4);
+            first.append(BasePair.convertIntToBasePair(base).getDnaChar());
+            second.append(BasePair.convertIntToBasePair(random.nextInt(10) == 0 ? (base + 1) & 3 : base)
+                    .getDnaChar());
+        }
+        PackedText firstText = PackedText.valueOf(first);
+        PackedText secondText = PackedText.valueOf(second);
+        for (int start = 0; start < 100; start += 9) {
+            for (int length = 0; start + length <= 100; length += 7) {
+                int expected = 0;
+                for (int i = start; i < start + length; i++) {
+                    expected += first.charAt(i) == second.charAt(i) ? 0 : 1;
+                }
+                assertEquals(expected, PackedText.mismatches(firstText, start, secondText, start, length, 100));
+                assertTrue(PackedText.mismatches(firstText, start, secondText, start, length, 0) > 0 == expected > 0);
+            }
+        }
+    }
+
+    @Test
+    void testSeveralRecords() {
+        PackedText text = PackedText.valueOf("AC$GTA$T$");
+        assertEquals("AC$GTA$T$", text.toString());
+        assertArrayEquals(new int[] { 2, 6, 8 }, text.getTerminators());
+        assertEquals(2, text.limit(0));
+        assertEquals(2, text.limit(2));
+        assertEquals(6, text.limit(3));
+        assertEquals(8, text.limit(7));
+        assertEquals(1, text.terminatorIndex(4));
+        assertTrue(text.isTerminator(6));
+        assertFalse(text.isTerminator(5));
+        assertEquals(BasePair.T.ordinal(), text.baseAt(7));
+        assertThrows(IllegalArgumentException.class, () -> PackedText.valueOf("AC$GT"));
+
+        PackedText built = new PackedText.Builder(new Random()).append("AC").endRecord().append("GTA").endRecord()
+                .append("T").build();
+        assertEquals(text, built);
+    }
+
+    @Test
+    void testReverseComplementOf() {
+        long[] words = new long[3];
+        PackedText reverseComplement = PackedText.reverseComplementOf("AACGTTTGCAAGCTAGCTTAGCATGCAAAGGCCTTAG", words);
+        assertEquals("CTAAGGCCTTTGCATGCTAAGCTAGCTTGCAAACGTT", reverseComplement.toString());
+        assertEquals("CTTG", PackedText.reverseComplementOf("caag", words).toString());
+        assertThrows(IllegalArgumentException.class, () -> PackedText.reverseComplementOf("ACN", words));
+        assertTrue(PackedText.isReverseComplementPalindrome("GAATTC"));
+        assertTrue(PackedText.isReverseComplementPalindrome("acgt"));
+        assertFalse(PackedText.isReverseComplementPalindrome("ACG"));
+        assertFalse(PackedText.isReverseComplementPalindrome("ANNT"));
+    }
+
+    @Test
+    void testBuilder() {
+        PackedText text = new PackedText.Builder(new Random()).append("acgtN").build();
+        assertEquals(6, text.length());
+        assertEquals("ACGT", text.subSequence(0, 4));
+        assertTrue(PackedText.isPackable("ACGTacgt"));
+        assertFalse(PackedText.isPackable("ACGN"));
+    }
+}
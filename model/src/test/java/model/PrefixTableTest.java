@@ -0,0 +1,131 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link PrefixTable}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class PrefixTableTest {
+
+    /**
+     * Checks the interval of every prefix of up to k bases against a scan of the
+     * sorted suffixes, on a text whose last bases are repeated so that the
+     * suffixes shorter than k fall inside the intervals of longer prefixes.
+     */
+    @Test
+    void testIntervalsOfAllPrefixes() {
+        Random random = new Random(3);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            stringBuilder.append("ACGT".charAt(random.nextInt(i < 100 ? 4 : 2)));
+        }
+        String sequence = stringBuilder.append("AAAA$").toString();
+        Integer[] suffixes = new Integer[sequence.length()];
+        for (int i = 0; i < suffixes.length; i++) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, (a, b) -> sequence.substring(a).compareTo(sequence.substring(b)));
+
+        int k = 4;
+        PrefixTable prefixTable = PrefixTable.build(PackedText.valueOf(sequence), k);
+        assertEquals(k, prefixTable.getShortSuffixes().length);
+        for (int length = 1; length <= k; length++) {
+            for (int code = 0; code < 1 << (2 * length); code++) {
+                String prefix = decode(code, length);
+                int start = 0;
+                while (start < suffixes.length && sequence.substring(suffixes[start]).compareTo(prefix) < 0) {
+                    start++;
+                }
+                int end = start;
+                while (end < suffixes.length && sequence.startsWith(prefix, suffixes[end])) {
+                    end++;
+                }
+                assertEquals(start, prefixTable.getStart(code, length), prefix);
+                assertEquals(end, prefixTable.getEnd(code, length), prefix);
+            }
+        }
+    }
+
+    /**
+     * Checks the intervals on a text of several records, some shorter than k and
+     * some equal, so that there are short suffixes before every separator.
+     */
+    @Test
+    void testIntervalsWithSeveralRecords() {
+        Random random = new Random(4);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 20; record++) {
+            int length = random.nextInt(record % 4 == 0 ? 3 : 30);
+            for (int i = 0; i < length; i++) {
+                stringBuilder.append("ACGT".charAt(random.nextInt(4)));
+            }
+            stringBuilder.append(record % 5 == 0 ? "ACA$ACA$" : "$");
+        }
+        String sequence = stringBuilder.toString();
+        Integer[] suffixes = new Integer[sequence.length()];
+        for (int i = 0; i < suffixes.length; i++) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, (a, b) -> compareSuffixes(sequence, a, b));
+
+        int k = 4;
+        PrefixTable prefixTable = PrefixTable.build(PackedText.valueOf(sequence), k);
+        for (int length = 1; length <= k; length++) {
+            for (int code = 0; code < 1 << (2 * length); code++) {
+                String prefix = decode(code, length);
+                int start = 0;
+                while (start < suffixes.length && compareSuffixes(sequence, suffixes[start], prefix) < 0) {
+                    start++;
+                }
+                int end = start;
+                while (end < suffixes.length && sequence.startsWith(prefix, suffixes[end])) {
+                    end++;
+                }
+                assertEquals(start, prefixTable.getStart(code, length), prefix);
+                assertEquals(end, prefixTable.getEnd(code, length), prefix);
+            }
+        }
+    }
+
+    @Test
+    void testBuildRejectsInvalidPrefixLengths() {
+        PackedText text = PackedText.valueOf("ACAACA$");
+        assertThrows(IllegalArgumentException.class, () -> PrefixTable.build(text, 0));
+        assertThrows(IllegalArgumentException.class, () -> PrefixTable.build(text, 16));
+    }
+
+    /**
+     * Compares two suffixes of a text of several records, each up to the end of
+     * its record, with the one ending at the later terminator first if they are
+     * equal.
+     */
+    private static int compareSuffixes(String sequence, int first, int second) {
+        String firstSuffix = sequence.substring(first, sequence.indexOf('$', first) + 1);
+        String secondSuffix = sequence.substring(second, sequence.indexOf('$', second) + 1);
+        int comparison = firstSuffix.compareTo(secondSuffix);
+        return comparison != 0 ? comparison
+                : Integer.compare(second + secondSuffix.length(), first + firstSuffix.length());
+    }
+
+    private static int compareSuffixes(String sequence, int suffix, String prefix) {
+        return sequence.substring(suffix, sequence.indexOf('$', suffix) + 1).compareTo(prefix);
+    }
+
+    private static String decode(int code, int length) {
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = "ACGT".charAt(code & 3);
+            code >>>= 2;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link SequenceTable}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class SequenceTableTest {
+
+    @Test
+    void testIndexOf() {
+        PackedText text = PackedText.valueOf("ACG$T$$GGA$");
+        SequenceTable sequenceTable = new SequenceTable(new String[] { "a", "b", "empty", "c" },
+                text.getTerminators());
+        assertEquals(4, sequenceTable.size());
+        int[] expected = { 0, 0, 0, 0, 1, 1, 2, 3, 3, 3, 3 };
+        for (int position = 0; position < expected.length; position++) {
+            assertEquals(expected[position], sequenceTable.indexOf(position), "position " + position);
+        }
+        assertEquals(0, sequenceTable.getStart(0));
+        assertEquals(4, sequenceTable.getStart(1));
+        assertEquals(6, sequenceTable.getStart(2));
+        assertEquals(6, sequenceTable.getEnd(2));
+        assertEquals(7, sequenceTable.getStart(3));
+        assertEquals("c", sequenceTable.getName(3));
+    }
+
+    @Test
+    void testRejectsMismatchedNames() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceTable(new String[] { "a" }, new int[] { 2, 5 }));
+    }
+}
@@ -0,0 +1,322 @@
+package querysa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import model.SequenceTable;
+
+/**
+ * A class to read a binary result file written by {@link BinaryResultWriter},
+ * one record at a time, as the line of text that {@link QueryResultWriter}
+ * would have written for it, with the hits of each strand, or of each match,
+ * in ascending order of their positions. Its main method converts a whole file
+ * to text.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class BinaryResultReader implements Closeable {
+    private final String source;
+    private final InputStream input;
+    private final int flags;
+    private final SequenceTable sequenceTable;
+    private final Inflater inflater;
+    private byte[] block = new byte[BinaryResultWriter.BLOCK_SIZE];
+    private int position;
+    private int limit;
+    private byte[] compressedBlock = new byte[BinaryResultWriter.BLOCK_SIZE];
+
+    /**
+     * A main method for converting a binary result file to text. It takes as input
+     * the binary result file and optionally the name of the text file to write,
+     * and writes to standard output if there is none.
+     *
+     * @param args
+     *             <ul>
+     *             <li>input - the binary result file, as written by querysa with
+     *             the --binary option</li>
+     *             <li>output - the text file to write (optional)</li>
+     *             </ul>
+     * @throws IOException if the input is not a binary result file, or an error
+     *                     occurs during file I/O
+     */
+    public static void main(String[] args) throws IOException {
+        try (BinaryResultReader reader = new BinaryResultReader(args[0]);
+                Writer writer = new BufferedWriter(args.length > 1 ? new FileWriter(args[1])
+                        : new OutputStreamWriter(System.out), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
+            while (reader.readRecord(line)) {
+                writer.append(line).write('\n');
+                line.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Opens a binary result file and reads its header.
+     *
+     * @param filename the file name of the binary result file
+     * @throws IOException if the file cannot be read or is not a binary result
+     *                     file
+     */
+    public BinaryResultReader(String filename) throws IOException {
+        this(new FileInputStream(filename), filename);
+    }
+
+    /**
+     * Creates a BinaryResultReader reading a binary result file from the given
+     * stream, and reads its header.
+     *
+     * @param input  the stream, which is closed along with this reader
+     * @param source the name of the stream, for error messages
+     * @throws IOException if the stream cannot be read or is not a binary result
+     *                     file
+     */
+    public BinaryResultReader(InputStream input, String source) throws IOException {
+        this.source = source;
+        this.input = new BufferedInputStream(input, BinaryResultWriter.BLOCK_SIZE);
+        int magic = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            int b = this.input.read();
+            if (b < 0) {
+                throw new IOException(source + " is not a binary result file");
+            }
+            magic |= b << (i << 3);
+        }
+        if (magic != BinaryResultWriter.MAGIC) {
+            throw new IOException(source + " is not a binary result file");
+        }
+        int version = readRawVarint();
+        if (version != BinaryResultWriter.VERSION) {
+            throw new IOException(source + " has binary result format version " + version + ", but only version "
+                    + BinaryResultWriter.VERSION + " is supported");
+        }
+        flags = readRawVarint();
+        int knownFlags = BinaryResultWriter.COMPRESSED | BinaryResultWriter.BOTH_STRANDS
+                | BinaryResultWriter.MATCHES | BinaryResultWriter.LIMITED;
+        if ((flags & ~knownFlags) != 0) {
+            throw new IOException(source + " has unknown flags " + (flags & ~knownFlags));
+        }
+        int sequences = readRawVarint();
+        if (sequences == 0) {
+            sequenceTable = null;
+        } else {
+            String[] names = new String[sequences];
+            int[] ends = new int[sequences];
+            int previousEnd = 0;
+            for (int i = 0; i < sequences; i++) {
+                byte[] name = this.input.readNBytes(readRawVarint());
+                names[i] = new String(name, StandardCharsets.UTF_8);
+                ends[i] = previousEnd + readRawVarint();
+                previousEnd = ends[i];
+            }
+            sequenceTable = new SequenceTable(names, ends);
+        }
+        inflater = isCompressed() ? new Inflater(true) : null;
+    }
+
+    public boolean isCompressed() {
+        return (flags & BinaryResultWriter.COMPRESSED) != 0;
+    }
+
+    public boolean isBothStrands() {
+        return (flags & BinaryResultWriter.BOTH_STRANDS) != 0;
+    }
+
+    /**
+     * Returns whether the file holds the maximal exact matches of each query,
+     * rather than its hits.
+     *
+     * @return whether the file holds matches
+     */
+    public boolean hasMatches() {
+        return (flags & BinaryResultWriter.MATCHES) != 0;
+    }
+
+    /**
+     * Returns whether the file was written with a {@link HitLimit}, so that its
+     * lists of hits may hold fewer hits than they count.
+     *
+     * @return whether the file has a hit limit
+     */
+    public boolean isLimited() {
+        return (flags & BinaryResultWriter.LIMITED) != 0;
+    }
+
+    /**
+     * Returns the sequences of the text that was queried.
+     *
+     * @return the {@link SequenceTable}, or null if the text had only one
+     *         sequence
+     */
+    public SequenceTable getSequenceTable() {
+        return sequenceTable;
+    }
+
+    /**
+     * Reads the next record and appends it to the line as text, without a line
+     * terminator.
+     *
+     * @param line the line to append to
+     * @return false if there are no more records
+     * @throws IOException if the file cannot be read or ends in the middle of a
+     *                     record
+     */
+    public boolean readRecord(StringBuilder line) throws IOException {
+        if (position == limit && !readBlock()) {
+            return false;
+        }
+        int nameLength = readVarint();
+        for (int i = 0; i < nameLength; i++) {
+            line.append((char) readByte());
+        }
+        int strands = isBothStrands() ? 2 : 1;
+        int countAt = line.length();
+        int count = 0;
+        for (int strand = 0; strand < strands; strand++) {
+            String suffix = strands == 1 ? "" : strand == 0 ? "+" : "-";
+            if (hasMatches()) {
+                int matches = readVarint();
+                for (int i = 0; i < matches; i++) {
+                    line.append(' ').append(readVarint()).append(',').append(readVarint());
+                    readHits(line, suffix);
+                }
+                count += matches;
+            } else {
+                count += readHits(line, suffix);
+            }
+        }
+        line.insert(countAt, ' ').insert(countAt + 1, count);
+        return true;
+    }
+
+    /**
+     * Reads a number of hits followed by the hits, and appends them to the line,
+     * each followed by the strand suffix, and returns the number of hits.
+     */
+    private int readHits(StringBuilder line, String suffix) throws IOException {
+        int count = readVarint();
+        int written = isLimited() ? readVarint() : count;
+        int hit = 0;
+        int sequence = 0;
+        for (int i = 0; i < written; i++) {
+            hit += readVarint();
+            line.append(' ');
+            if (sequenceTable == null) {
+                line.append(hit);
+            } else {
+                // the hits are in ascending order, and so are their sequences
+                while (sequenceTable.getEnd(sequence) < hit) {
+                    sequence++;
+                }
+                line.append(sequenceTable.getName(sequence)).append(':')
+                        .append(hit - sequenceTable.getStart(sequence));
+            }
+            line.append(suffix);
+        }
+        return count;
+    }
+
+    private int readRawVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException(source + " is truncated");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit && !readBlock()) {
+            throw new EOFException(source + " ends in the middle of a record");
+        }
+        return block[position++] & 0xFF;
+    }
+
+    /**
+     * Reads the next block into the buffer, inflating it if the file is
+     * compressed.
+     *
+     * @return false if there are no more blocks
+     */
+    private boolean readBlock() throws IOException {
+        input.mark(1);
+        if (input.read() < 0) {
+            return false;
+        }
+        input.reset();
+        int length = readRawVarint();
+        int storedLength = readRawVarint();
+        if (block.length < length) {
+            block = new byte[length];
+        }
+        if (inflater == null) {
+            if (storedLength != length) {
+                throw new IOException(source + " has a block of " + storedLength + " bytes instead of " + length);
+            }
+            readFully(block, storedLength);
+        } else {
+            if (compressedBlock.length < storedLength) {
+                compressedBlock = Arrays.copyOf(compressedBlock, storedLength);
+            }
+            readFully(compressedBlock, storedLength);
+            inflater.reset();
+            inflater.setInput(compressedBlock, 0, storedLength);
+            try {
+                if (inflater.inflate(block, 0, length) != length || !inflater.finished()) {
+                    throw new IOException(source + " has a block that does not inflate to " + length + " bytes");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(source + " has a corrupt block", e);
+            }
+        }
+        position = 0;
+        limit = length;
+        return true;
+    }
+
+    private void readFully(byte[] bytes, int length) throws IOException {
+        if (input.readNBytes(bytes, 0, length) != length) {
+            throw new EOFException(source + " ends in the middle of a block");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            input.close();
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
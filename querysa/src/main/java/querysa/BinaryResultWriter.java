@@ -0,0 +1,317 @@
+package querysa;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import model.IndexInterval;
+import model.IntArray;
+import model.MaximalMatch;
+import model.Query;
+import model.QueryMode;
+import model.SequenceTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * A class to write query results to a compact binary file, for queries with
+ * so many hits that writing them as text would take longer than finding them.
+ * The hits of each query are written as their text positions in ascending
+ * order, each as the difference from the one before it in a variable-length
+ * integer of 7 bits per byte, so the hits of a repetitive query take a byte or
+ * two each. The positions are sorted by a {@link HitSorter}, on several
+ * threads for a large interval. The file is read back by
+ * {@link BinaryResultReader}.
+ * <p>
+ * The file starts with a header:
+ * <ul>
+ * <li>the magic number, as a little-endian int</li>
+ * <li>the format version</li>
+ * <li>the flags: {@link #COMPRESSED}, {@link #BOTH_STRANDS}, {@link #MATCHES}
+ * and {@link #LIMITED}</li>
+ * <li>the number of sequences of the text, or 0 if it has only one, followed
+ * by the length of the UTF-8 name of each, its name and the difference between
+ * the position of the terminator that ends it and the one before</li>
+ * </ul>
+ * followed by blocks, each of which holds the length of its records, the
+ * length of its bytes and its bytes, which are the records themselves, or the
+ * records compressed with the deflate algorithm if the file is compressed.
+ * The records run from one block into the next, and each chunk of queries ends
+ * a block, so the results can be read while later chunks are still being
+ * searched. A record holds the length of the name of its query, the name in
+ * ISO-8859-1, and for each strand searched, either the number of hits followed
+ * by the hits, or the number of maximal exact matches followed by the start in
+ * the query, the length and the number of hits of each, each followed by its
+ * hits. In a file with a {@link HitLimit}, the number of hits of each list is
+ * followed by the number of them that are written. Every number after the
+ * magic number is a variable-length integer.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class BinaryResultWriter implements ResultWriter {
+    /**
+     * The magic number at the start of every binary result file ("SAHT").
+     */
+    public static final int MAGIC = 0x54484153;
+    /**
+     * The version of the format that this class writes.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The flag of a file whose blocks are compressed.
+     */
+    public static final int COMPRESSED = 1;
+    /**
+     * The flag of a file whose queries were searched for on both strands, so
+     * that each record holds the forward strand followed by the reverse strand.
+     */
+    public static final int BOTH_STRANDS = 2;
+    /**
+     * The flag of a file of maximal exact matches, from the
+     * {@link QueryMode#SMEM} query mode.
+     */
+    public static final int MATCHES = 4;
+    /**
+     * The flag of a file written with a {@link HitLimit}, whose lists of hits
+     * hold only some of the hits that they count.
+     */
+    public static final int LIMITED = 8;
+    /**
+     * The largest number of record bytes in a block.
+     */
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final OutputStream output;
+    private final int flags;
+    private final Deflater deflater;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int length;
+    private byte[] compressedBlock = new byte[BLOCK_SIZE];
+    private final HitSorter hitSorter;
+    private final HitSelector hitSelector;
+
+    /**
+     * Creates a new BinaryResultWriter that writes to an output file, and writes
+     * the header of the file.
+     *
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} that
+     *                                 was queried
+     * @param options                  the {@link ResultWriterOptions}
+     * @param outputFile               the output file to write to
+     * @throws IOException if the file cannot be opened or written
+     */
+    public BinaryResultWriter(SerializeableSuffixArray serializeableSuffixArray, ResultWriterOptions options,
+            String outputFile) throws IOException {
+        this(serializeableSuffixArray, options, new FileOutputStream(outputFile));
+    }
+
+    /**
+     * Creates a new BinaryResultWriter that writes to the given stream, and writes
+     * the header of the file. The sort-hits option is ignored, as the hits are
+     * always sorted.
+     *
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} that
+     *                                 was queried
+     * @param options                  the {@link ResultWriterOptions}
+     * @param output                   the stream to write to, which is closed
+     *                                 along with this writer
+     * @throws IOException if the header cannot be written
+     */
+    public BinaryResultWriter(SerializeableSuffixArray serializeableSuffixArray, ResultWriterOptions options,
+            OutputStream output) throws IOException {
+        QueryMode queryMode = options.getQueryMode();
+        HitLimit hitLimit = options.getHitLimit();
+        boolean compressed = options.isCompressed();
+        this.output = new BufferedOutputStream(output, BLOCK_SIZE);
+        IntArray suffixArray = queryMode == QueryMode.FMINDEX ? serializeableSuffixArray.getFmIndex()
+                : serializeableSuffixArray.getSuffixArray();
+        this.flags = (compressed ? COMPRESSED : 0) | (options.isBothStrands() ? BOTH_STRANDS : 0)
+                | (queryMode == QueryMode.SMEM ? MATCHES : 0) | (hitLimit == HitLimit.ALL ? 0 : LIMITED);
+        this.hitSorter = new HitSorter(suffixArray, options.getThreads());
+        this.hitSelector = new HitSelector(suffixArray, hitLimit, hitSorter);
+        this.deflater = compressed ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        writeHeader(serializeableSuffixArray.getSequenceTable());
+    }
+
+    private void writeHeader(SequenceTable sequenceTable) throws IOException {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            output.write(MAGIC >>> (i << 3));
+        }
+        writeVarint(output, VERSION);
+        writeVarint(output, flags);
+        if (sequenceTable == null || sequenceTable.size() < 2) {
+            writeVarint(output, 0);
+            return;
+        }
+        writeVarint(output, sequenceTable.size());
+        int previousEnd = 0;
+        for (int i = 0; i < sequenceTable.size(); i++) {
+            byte[] name = sequenceTable.getName(i).getBytes(StandardCharsets.UTF_8);
+            writeVarint(output, name.length);
+            output.write(name);
+            writeVarint(output, sequenceTable.getEnd(i) - previousEnd);
+            previousEnd = sequenceTable.getEnd(i);
+        }
+    }
+
+    @Override
+    public void write(List<Query> queries) throws IOException {
+        for (Query query : queries) {
+            CharSequence name = query.getName();
+            putVarint(name.length());
+            for (int i = 0; i < name.length(); i++) {
+                put(name.charAt(i));
+            }
+            boolean bothStrands = (flags & BOTH_STRANDS) != 0;
+            if (query.getMatches() != null) {
+                putMatches(query.getMatches());
+                if (bothStrands) {
+                    putMatches(query.getReverseMatches());
+                }
+            } else if (query.getHitsRanges() != null) {
+                // the hits of both strands share the limit, as on a line of text
+                hitSelector.select(count(query.getHitsRanges())
+                        + (bothStrands ? count(query.getReverseHitsRanges()) : 0));
+                putHits(query.getHitsRanges());
+                if (bothStrands) {
+                    putHits(query.getReverseHitsRanges());
+                }
+            } else {
+                hitSelector.select(count(query.getHitsRange())
+                        + (bothStrands ? count(query.getReverseHitsRange()) : 0));
+                putHits(query.getHitsRange());
+                if (bothStrands) {
+                    putHits(query.getReverseHitsRange());
+                }
+            }
+        }
+        writeBlock();
+        output.flush();
+    }
+
+    private void putMatches(List<MaximalMatch> matches) throws IOException {
+        putVarint(matches.size());
+        for (MaximalMatch match : matches) {
+            putVarint(match.getQueryStart());
+            putVarint(match.getLength());
+            hitSelector.select(count(match.getHitsRange()));
+            putHits(match.getHitsRange());
+        }
+    }
+
+    private void putHits(List<IndexInterval> hitsRanges) throws IOException {
+        for (IndexInterval hitsRange : hitsRanges) {
+            hitSelector.collect(hitsRange);
+        }
+        putPositions(count(hitsRanges));
+    }
+
+    private void putHits(IndexInterval hitsRange) throws IOException {
+        hitSelector.collect(hitsRange);
+        putPositions(count(hitsRange));
+    }
+
+    private static int count(List<IndexInterval> hitsRanges) {
+        int count = 0;
+        for (IndexInterval hitsRange : hitsRanges) {
+            count += count(hitsRange);
+        }
+        return count;
+    }
+
+    private static int count(IndexInterval hitsRange) {
+        return hitsRange.getEnd() - hitsRange.getStart();
+    }
+
+    /**
+     * Puts the number of hits, and in a file with a hit limit the number of
+     * located positions, followed by the positions in ascending order, each as
+     * the difference from the one before it.
+     */
+    private void putPositions(int total) throws IOException {
+        hitSelector.sortLocated();
+        int[] positions = hitSelector.getPositions();
+        int count = hitSelector.getLocated();
+        putVarint(total);
+        if ((flags & LIMITED) != 0) {
+            putVarint(count);
+        }
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            putVarint(positions[i] - previous);
+            previous = positions[i];
+        }
+        hitSelector.clearLocated();
+    }
+
+    private void put(int b) throws IOException {
+        if (length == BLOCK_SIZE) {
+            writeBlock();
+        }
+        block[length++] = (byte) b;
+    }
+
+    private void putVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            put((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    /**
+     * Writes the bytes put since the last block as a block, compressing them if
+     * the file is compressed.
+     */
+    private void writeBlock() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        writeVarint(output, length);
+        if (deflater == null) {
+            writeVarint(output, length);
+            output.write(block, 0, length);
+        } else {
+            deflater.reset();
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressedBlock.length) {
+                    compressedBlock = Arrays.copyOf(compressedBlock, compressedBlock.length * 2);
+                }
+                compressedLength += deflater.deflate(compressedBlock, compressedLength,
+                        compressedBlock.length - compressedLength);
+            }
+            writeVarint(output, compressedLength);
+            output.write(compressedBlock, 0, compressedLength);
+        }
+        length = 0;
+    }
+
+    private static void writeVarint(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+            output.close();
+        } finally {
+            hitSorter.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package querysa;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Query;
+
+/**
+ * A class to read the records of a FASTA query file in bounded chunks, so that a
+ * query file of any size can be processed in constant memory. The file is
+ * parsed a character at a time straight into the name and sequence buffers of
+ * the {@link Query} objects, and the same {@link Query} objects are reused from
+ * one chunk to the next.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class FastaQueryReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean atLineStart = true;
+    private final List<Query> pool = new ArrayList<>();
+
+    /**
+     * Opens a FASTA query file.
+     * 
+     * @param filename the file name of the FASTA file
+     * @throws IOException if the file cannot be opened
+     */
+    public FastaQueryReader(String filename) throws IOException {
+        this(new InputStreamReader(new FileInputStream(filename), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Creates a FastaQueryReader reading FASTA records from the given reader.
+     * 
+     * @param reader the reader
+     */
+    public FastaQueryReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next chunk of records. The chunk ends after the given number of
+     * records, or after the first record that brings the total sequence length of
+     * the chunk to the given number of bases, whichever comes first. The returned
+     * {@link Query} objects are reused by the next call, so the caller must be
+     * done with them by then.
+     * 
+     * @param maxRecords the maximum number of records in the chunk
+     * @param maxBases   the number of bases after which the chunk is ended
+     * @return the records of the chunk, which is empty at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public List<Query> readChunk(int maxRecords, long maxBases) throws IOException {
+        int count = 0;
+        long bases = 0;
+        while (count < maxRecords && bases < maxBases && skipToHeader()) {
+            if (count == pool.size()) {
+                pool.add(new Query());
+            }
+            Query query = pool.get(count++);
+            query.reset();
+            readName(query);
+            bases += readSequence(query);
+        }
+        return pool.subList(0, count);
+    }
+
+    /**
+     * Skips ahead to the next header line and consumes its '>'.
+     * 
+     * @return false if the end of the file was reached first
+     */
+    private boolean skipToHeader() throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '>' && atLineStart) {
+                atLineStart = false;
+                return true;
+            }
+            updateLineStart(c);
+        }
+        return false;
+    }
+
+    /**
+     * Reads the name of a record, which runs up to the first whitespace of the
+     * header line, and skips the rest of the line.
+     */
+    private void readName(Query query) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && !Character.isWhitespace(c)) {
+            query.appendName((char) c);
+        }
+        while (c >= 0 && c != '\n') {
+            c = read();
+        }
+        atLineStart = true;
+    }
+
+    /**
+     * Reads the sequence lines of a record, up to the next header line or the end
+     * of the file.
+     * 
+     * @return the number of characters in the sequence
+     */
+    private int readSequence(Query query) throws IOException {
+        int length = 0;
+        int c;
+        while ((c = peek()) >= 0 && !(c == '>' && atLineStart)) {
+            position++;
+            if (!Character.isWhitespace(c)) {
+                query.appendSequence((char) c);
+                length++;
+            }
+            updateLineStart(c);
+        }
+        return length;
+    }
+
+    private void updateLineStart(int c) {
+        if (c == '\n') {
+            atLineStart = true;
+        } else if (!Character.isWhitespace(c)) {
+            atLineStart = false;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+        }
+        return c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,187 @@
+package querysa;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A class to represent how many of the hits of a query are written: all of
+ * them, none but their number, the first few in the order of the suffix array,
+ * or a random sample of a few. The number of hits is always written in full,
+ * as it is the size of the interval of the suffix array that the search ends
+ * with, so a query with a million hits is answered in the time of its search
+ * when only a few hits are needed, rather than in the time it takes to locate
+ * all of them, which for the FM-index is a walk of the sampled suffix array for
+ * each.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class HitLimit {
+    /**
+     * The limit that writes every hit.
+     */
+    public static final HitLimit ALL = new HitLimit(Integer.MAX_VALUE, false);
+    /**
+     * The limit that writes only the number of hits.
+     */
+    public static final HitLimit COUNT_ONLY = new HitLimit(0, false);
+
+    /**
+     * The seed of the random samples, which is fixed so that the same queries
+     * give the same output.
+     */
+    private static final long SEED = 0x5A5A17L;
+
+    private final int maxHits;
+    private final boolean sample;
+
+    private HitLimit(int maxHits, boolean sample) {
+        this.maxHits = maxHits;
+        this.sample = sample;
+    }
+
+    /**
+     * Returns the limit that writes up to the given number of hits of each query,
+     * the first in the order of the suffix array.
+     *
+     * @param maxHits the maximum number of hits to write
+     * @return the {@link HitLimit}
+     * @throws IllegalArgumentException if the maximum is less than 1
+     */
+    public static HitLimit first(int maxHits) {
+        return new HitLimit(checkMaxHits(maxHits), false);
+    }
+
+    /**
+     * Returns the limit that writes up to the given number of hits of each query,
+     * chosen at random from its hits with equal probability, in the order of the
+     * suffix array.
+     *
+     * @param maxHits the maximum number of hits to write
+     * @return the {@link HitLimit}
+     * @throws IllegalArgumentException if the maximum is less than 1
+     */
+    public static HitLimit sample(int maxHits) {
+        return new HitLimit(checkMaxHits(maxHits), true);
+    }
+
+    /**
+     * Returns the limit described by a string: all, count, first:&lt;n&gt; or
+     * sample:&lt;n&gt;.
+     *
+     * @param value the string
+     * @return the {@link HitLimit}
+     * @throws IllegalArgumentException if the string does not describe a limit
+     */
+    public static HitLimit valueOf(String value) {
+        if (value.equals("all")) {
+            return ALL;
+        }
+        if (value.equals("count")) {
+            return COUNT_ONLY;
+        }
+        int separator = value.indexOf(':');
+        if (separator > 0) {
+            String kind = value.substring(0, separator);
+            int maxHits;
+            try {
+                maxHits = Integer.parseInt(value.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unknown hit limit: " + value);
+            }
+            if (kind.equals("first")) {
+                return first(maxHits);
+            }
+            if (kind.equals("sample")) {
+                return sample(maxHits);
+            }
+        }
+        throw new IllegalArgumentException("Unknown hit limit: " + value);
+    }
+
+    private static int checkMaxHits(int maxHits) {
+        if (maxHits < 1) {
+            throw new IllegalArgumentException("The maximum number of hits must be at least 1, but was " + maxHits);
+        }
+        return maxHits;
+    }
+
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    public boolean isSample() {
+        return sample;
+    }
+
+    /**
+     * Returns the number of hits to write out of the given number.
+     *
+     * @param count the number of hits
+     * @return the number of hits to write
+     */
+    public int limit(int count) {
+        return Math.min(count, maxHits);
+    }
+
+    /**
+     * Returns a new generator of the random samples.
+     *
+     * @return the generator, with the fixed seed
+     */
+    SplittableRandom newRandom() {
+        return new SplittableRandom(SEED);
+    }
+
+    /**
+     * Chooses the hits to write out of a number of hits that is over the limit,
+     * and puts their indices among the hits in the array, in ascending order. A
+     * sample out of no more than twice its size is chosen by selection sampling,
+     * which decides on each hit in turn. A sample out of more is drawn at random,
+     * and the draws that repeat one are drawn again, which takes few draws beyond
+     * the size of the sample.
+     *
+     * @param count   the number of hits, which is more than the maximum
+     * @param indices the array to put the indices in, with room for the maximum
+     * @param random  the generator of the random samples
+     */
+    void select(int count, int[] indices, SplittableRandom random) {
+        if (!sample) {
+            for (int i = 0; i < maxHits; i++) {
+                indices[i] = i;
+            }
+        } else if (count <= 2L * maxHits) {
+            int chosen = 0;
+            for (int i = 0; chosen < maxHits; i++) {
+                if (random.nextInt(count - i) < maxHits - chosen) {
+                    indices[chosen++] = i;
+                }
+            }
+        } else {
+            int chosen = 0;
+            while (chosen < maxHits) {
+                for (int i = chosen; i < maxHits; i++) {
+                    indices[i] = random.nextInt(count);
+                }
+                Arrays.sort(indices, 0, maxHits);
+                chosen = 1;
+                for (int i = 1; i < maxHits; i++) {
+                    if (indices[i] != indices[chosen - 1]) {
+                        indices[chosen++] = indices[i];
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (maxHits == Integer.MAX_VALUE) {
+            return "all";
+        }
+        if (maxHits == 0) {
+            return "count";
+        }
+        return (sample ? "sample:" : "first:") + maxHits;
+    }
+}
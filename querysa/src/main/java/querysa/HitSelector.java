@@ -0,0 +1,142 @@
+package querysa;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import model.IndexInterval;
+import model.IntArray;
+
+/**
+ * A class to choose which hits of a list to write under a {@link HitLimit},
+ * and to locate them, for the {@link ResultWriter} implementations. A list is
+ * the hits of a query on both strands, or the hits of a maximal exact match,
+ * and may span several intervals of the suffix array. The writer starts a list
+ * with {@link #select(int)}, and then collects its intervals in order, which
+ * puts the text positions of their selected hits into a buffer that is reused
+ * from list to list. The hits that are not selected are never located. Each
+ * writer needs its own instance.
+ *
+ * @author Valerie Wray
+ *
+ */
+class HitSelector {
+    private final IntArray suffixArray;
+    private final HitLimit hitLimit;
+    private final SplittableRandom random;
+    private final HitSorter hitSorter;
+    private int[] selected = new int[0];
+    /**
+     * Whether only the selected hits of the list are located.
+     */
+    private boolean limited;
+    private int selectedCount;
+    private int nextSelected;
+    /**
+     * The number of hits of the list in the intervals before the next one.
+     */
+    private int offset;
+    private int[] positions = new int[1 << 10];
+    private int located;
+
+    /**
+     * Creates a new HitSelector.
+     *
+     * @param suffixArray the suffix array, or the FM-index, to locate hits in
+     * @param hitLimit    the {@link HitLimit} of each list
+     * @param hitSorter   the {@link HitSorter} to locate whole intervals and sort
+     *                    the positions with, or null to locate them on the
+     *                    calling thread and never sort them
+     */
+    HitSelector(IntArray suffixArray, HitLimit hitLimit, HitSorter hitSorter) {
+        this.suffixArray = suffixArray;
+        this.hitLimit = hitLimit;
+        this.random = hitLimit.isSample() ? hitLimit.newRandom() : null;
+        this.hitSorter = hitSorter;
+    }
+
+    /**
+     * Starts a list of the given number of hits, and chooses which of them to
+     * locate.
+     *
+     * @param count the number of hits of the list
+     */
+    void select(int count) {
+        selectedCount = hitLimit.limit(count);
+        limited = selectedCount < count;
+        if (limited) {
+            if (selected.length < selectedCount) {
+                selected = new int[selectedCount];
+            }
+            hitLimit.select(count, selected, random);
+        }
+        nextSelected = 0;
+        offset = 0;
+    }
+
+    /**
+     * Adds the text positions of the selected hits of the next interval of the
+     * list to the located positions.
+     *
+     * @param hitsRange the interval
+     */
+    void collect(IndexInterval hitsRange) {
+        int start = hitsRange.getStart();
+        int count = hitsRange.getEnd() - start;
+        if (count <= 0) {
+            return;
+        }
+        int room = limited ? Math.min(count, selectedCount - nextSelected) : count;
+        if (positions.length < located + room) {
+            positions = Arrays.copyOf(positions, Math.max(located + room, positions.length * 2));
+        }
+        if (!limited) {
+            if (hitSorter != null) {
+                hitSorter.locate(start, start + count, positions, located);
+            } else {
+                for (int row = start; row < start + count; row++) {
+                    positions[located + row - start] = suffixArray.get(row);
+                }
+            }
+            located += count;
+            return;
+        }
+        int end = offset + count;
+        while (nextSelected < selectedCount && selected[nextSelected] < end) {
+            positions[located++] = suffixArray.get(start + selected[nextSelected++] - offset);
+        }
+        offset = end;
+    }
+
+    /**
+     * Sorts the located positions into ascending order.
+     *
+     * @throws IllegalStateException if this selector has no {@link HitSorter}
+     */
+    void sortLocated() {
+        if (hitSorter == null) {
+            throw new IllegalStateException("The hits cannot be sorted without a hit sorter");
+        }
+        hitSorter.sort(positions, 0, located);
+    }
+
+    /**
+     * Returns the buffer of located positions, which is only valid until the next
+     * call to {@link #collect(IndexInterval)}.
+     *
+     * @return the buffer, whose first {@link #getLocated()} positions are located
+     */
+    int[] getPositions() {
+        return positions;
+    }
+
+    int getLocated() {
+        return located;
+    }
+
+    /**
+     * Empties the located positions, once they have been written.
+     */
+    void clearLocated() {
+        located = 0;
+    }
+}
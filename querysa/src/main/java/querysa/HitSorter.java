@@ -0,0 +1,263 @@
+package querysa;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import model.IntArray;
+
+/**
+ * A class to locate the hits of a query in the text and sort their positions,
+ * for the writers that write hits in the order of the text rather than of the
+ * suffix array. The positions are sorted by a least significant digit radix
+ * sort of {@link #DIGIT_BITS} bits per pass, which skips the passes above the
+ * largest position and those in which every position has the same digit, so
+ * the hits of a text of up to 4 million bases take two passes. A few hundred
+ * hits or fewer are sorted by comparison instead. Its buffers are kept for the
+ * next sort, so sorting allocates nothing once they have grown to the largest
+ * interval. An interval of at least {@link #PARALLEL_SIZE} hits is
+ * located and sorted on several threads, each of which counts the digits of
+ * its own part of the positions and then moves them to their place. Each
+ * writer needs its own instance.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class HitSorter implements Closeable {
+    /**
+     * The number of bits of each digit of the radix sort.
+     */
+    static final int DIGIT_BITS = 11;
+    /**
+     * The number of hits at or above which they are located and sorted on
+     * several threads.
+     */
+    static final int PARALLEL_SIZE = 1 << 18;
+
+    private static final int RADIX = 1 << DIGIT_BITS;
+    /**
+     * The number of hits at or below which they are sorted by
+     * {@link Arrays#sort(int[], int, int)}, which sorts so few in place and is
+     * faster than counting the digits of each pass.
+     */
+    private static final int SMALL_SIZE = 256;
+
+    private final IntArray suffixArray;
+    private final int threads;
+    private final ExecutorService executorService;
+    private final int[][] counts;
+    private final int[] partMax;
+    private int[] buffer = new int[0];
+
+    /**
+     * Creates a new HitSorter that locates hits on the calling thread.
+     *
+     * @param suffixArray the suffix array, or the FM-index, to locate hits in
+     */
+    public HitSorter(IntArray suffixArray) {
+        this(suffixArray, 1);
+    }
+
+    /**
+     * Creates a new HitSorter that locates and sorts large intervals of hits on
+     * the given number of threads.
+     *
+     * @param suffixArray the suffix array, or the FM-index, to locate hits in
+     * @param threads     the number of threads
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public HitSorter(IntArray suffixArray, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        this.suffixArray = suffixArray;
+        this.threads = threads;
+        this.executorService = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hit-sorter");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.counts = new int[threads][RADIX];
+        this.partMax = new int[threads];
+    }
+
+    /**
+     * Puts the text positions of the suffixes of some rows into an array.
+     *
+     * @param start     the first row
+     * @param end       the row after the last
+     * @param positions the array to put the positions in
+     * @param at        the index of the array to put the first position at
+     */
+    public void locate(int start, int end, int[] positions, int at) {
+        int length = end - start;
+        if (executorService == null || length < PARALLEL_SIZE) {
+            locate(start, end, positions, at, 0, 1);
+        } else {
+            runInParallel(part -> locate(start, end, positions, at, part, threads));
+        }
+    }
+
+    private void locate(int start, int end, int[] positions, int at, int part, int parts) {
+        int index = at + partStart(end - start, part, parts);
+        int to = start + partStart(end - start, part + 1, parts);
+        for (int row = start + partStart(end - start, part, parts); row < to; row++) {
+            positions[index++] = suffixArray.get(row);
+        }
+    }
+
+    /**
+     * Sorts part of an array of text positions, which are never negative, into
+     * ascending order.
+     *
+     * @param positions the array
+     * @param from      the index of the first position to sort
+     * @param to        the index after the last position to sort
+     */
+    public void sort(int[] positions, int from, int to) {
+        int length = to - from;
+        if (length <= SMALL_SIZE) {
+            Arrays.sort(positions, from, to);
+            return;
+        }
+        if (buffer.length < length) {
+            buffer = new int[Math.max(length, buffer.length * 2)];
+        }
+        int parts = executorService == null || length < PARALLEL_SIZE ? 1 : threads;
+        if (parts == 1) {
+            findMax(positions, from, length, 0, 1);
+        } else {
+            runInParallel(part -> findMax(positions, from, length, part, parts));
+        }
+        int max = 0;
+        for (int part = 0; part < parts; part++) {
+            max = Math.max(max, partMax[part]);
+        }
+        int[] source = positions;
+        int sourceFrom = from;
+        int[] target = buffer;
+        int targetFrom = 0;
+        for (int shift = 0; shift < Integer.SIZE && (max >>> shift) != 0; shift += DIGIT_BITS) {
+            if (pass(source, sourceFrom, target, targetFrom, length, shift, parts)) {
+                int[] swap = source;
+                source = target;
+                target = swap;
+                int swapFrom = sourceFrom;
+                sourceFrom = targetFrom;
+                targetFrom = swapFrom;
+            }
+        }
+        if (source != positions) {
+            System.arraycopy(source, sourceFrom, positions, from, length);
+        }
+    }
+
+    /**
+     * Moves the positions from the source to the target in order of one digit,
+     * keeping the order of the positions with the same digit, unless they all
+     * have the same digit.
+     *
+     * @return whether the positions were moved
+     */
+    private boolean pass(int[] source, int sourceFrom, int[] target, int targetFrom, int length, int shift,
+            int parts) {
+        if (parts == 1) {
+            countDigits(source, sourceFrom, length, shift, 0, 1);
+        } else {
+            runInParallel(part -> countDigits(source, sourceFrom, length, shift, part, parts));
+        }
+        // each part's positions with a digit go after those of the smaller digits,
+        // and after those of the earlier parts with the same digit
+        int offset = targetFrom;
+        for (int digit = 0; digit < RADIX; digit++) {
+            int digitCount = 0;
+            for (int part = 0; part < parts; part++) {
+                int count = counts[part][digit];
+                counts[part][digit] = offset;
+                offset += count;
+                digitCount += count;
+            }
+            if (digitCount == length) {
+                return false;
+            }
+        }
+        if (parts == 1) {
+            moveDigits(source, sourceFrom, target, length, shift, 0, 1);
+        } else {
+            runInParallel(part -> moveDigits(source, sourceFrom, target, length, shift, part, parts));
+        }
+        return true;
+    }
+
+    private void findMax(int[] positions, int from, int length, int part, int parts) {
+        int max = 0;
+        int to = from + partStart(length, part + 1, parts);
+        for (int i = from + partStart(length, part, parts); i < to; i++) {
+            max = Math.max(max, positions[i]);
+        }
+        partMax[part] = max;
+    }
+
+    private void countDigits(int[] source, int from, int length, int shift, int part, int parts) {
+        int[] partCounts = counts[part];
+        Arrays.fill(partCounts, 0);
+        int to = from + partStart(length, part + 1, parts);
+        for (int i = from + partStart(length, part, parts); i < to; i++) {
+            partCounts[(source[i] >>> shift) & (RADIX - 1)]++;
+        }
+    }
+
+    /**
+     * Moves the positions of a part to the target, each to the next place of its
+     * digit in the part.
+     */
+    private void moveDigits(int[] source, int from, int[] target, int length, int shift, int part, int parts) {
+        int[] partOffsets = counts[part];
+        int to = from + partStart(length, part + 1, parts);
+        for (int i = from + partStart(length, part, parts); i < to; i++) {
+            target[partOffsets[(source[i] >>> shift) & (RADIX - 1)]++] = source[i];
+        }
+    }
+
+    private static int partStart(int length, int part, int parts) {
+        return (int) ((long) length * part / parts);
+    }
+
+    /**
+     * Runs a task once for each thread index on the threads of this sorter, and
+     * waits for all of them to finish.
+     */
+    private void runInParallel(IntConsumer task) {
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int index = thread;
+            futures.add(executorService.submit(() -> task.accept(index)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sorting hits", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("A hit sorting worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package querysa;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import util.LatencyHistogram;
+import util.SearchScratch;
+
+/**
+ * A class to collect the metrics of a querysa run: the number of queries, the
+ * probes of the binary searches and the bases they compared, how many queries
+ * the prefix table answered alone, a histogram of the latency of each query,
+ * and the time spent loading the index, parsing the queries, searching and
+ * writing the results. The counts of the searches and the latencies of the
+ * queries are kept in each thread's {@link SearchScratch} and added here after
+ * every block of queries, so counting and timing cost the searches no
+ * synchronization; only the merge of a block's latencies takes a lock. The
+ * metrics can be written as a JSON or CSV report, and read while the run is
+ * going on through JMX.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+    /**
+     * The name that the metrics are registered under with the platform MBean
+     * server.
+     */
+    public static final String OBJECT_NAME = "querysa:type=QueryMetrics";
+
+    /**
+     * The phases of a querysa run that are timed.
+     */
+    public enum Phase {
+        LOAD, PARSE, SEARCH, WRITE
+    }
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder comparedBases = new LongAdder();
+    private final LongAdder prefixTableHits = new LongAdder();
+    private final LongAdder prefixTableMisses = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private ObjectName objectName;
+
+    /**
+     * Creates a new, empty QueryMetrics.
+     */
+    public QueryMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the latency of a query that was not timed in a
+     * {@link SearchScratch}.
+     *
+     * @param nanos the time the query took in nanoseconds
+     */
+    public void recordQuery(long nanos) {
+        queries.increment();
+        synchronized (latencies) {
+            latencies.record(nanos);
+        }
+    }
+
+    /**
+     * Adds the counts of the searches and the latencies of the queries that a
+     * thread has run since the last call, and clears them.
+     *
+     * @param scratch the {@link SearchScratch} of the thread
+     */
+    public void addCounts(SearchScratch scratch) {
+        probes.add(scratch.getProbes());
+        comparedBases.add(scratch.getComparedBases());
+        prefixTableHits.add(scratch.getPrefixTableHits());
+        prefixTableMisses.add(scratch.getPrefixTableMisses());
+        LatencyHistogram scratchLatencies = scratch.getLatencies();
+        if (scratchLatencies != null && scratchLatencies.getCount() > 0) {
+            queries.add(scratchLatencies.getCount());
+            synchronized (latencies) {
+                latencies.add(scratchLatencies);
+            }
+        }
+        scratch.resetCounts();
+    }
+
+    /**
+     * Adds time spent in a phase of the run.
+     *
+     * @param phase the {@link Phase}
+     * @param nanos the time in nanoseconds
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, so that they can be
+     * read over JMX while queries are running.
+     *
+     * @throws IllegalStateException if the metrics cannot be registered, for
+     *                               example because another instance already is
+     */
+    public void register() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the query metrics with JMX", e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they were
+     * registered.
+     */
+    public void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not unregister the query metrics from JMX", e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Writes a report of the metrics to a file, in CSV if its name ends with
+     * ".csv" and in JSON otherwise.
+     *
+     * @param file the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            if (file.getFileName().toString().endsWith(".csv")) {
+                writeCsv(writer);
+            } else {
+                writeJson(writer);
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics as a JSON object.
+     *
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\n");
+        writer.write("  \"queries\": " + getQueries() + ",\n");
+        writer.write("  \"probes\": " + getProbes() + ",\n");
+        writer.write("  \"comparedBases\": " + getComparedBases() + ",\n");
+        writer.write("  \"prefixTableHits\": " + getPrefixTableHits() + ",\n");
+        writer.write("  \"prefixTableMisses\": " + getPrefixTableMisses() + ",\n");
+        writer.write("  \"prefixTableHitRate\": " + format(getPrefixTableHitRate()) + ",\n");
+        writer.write("  \"latencyNanos\": {\"mean\": " + format(getMeanLatencyNanos()) + ", \"p50\": "
+                + getLatencyP50Nanos() + ", \"p90\": " + getLatencyP90Nanos() + ", \"p99\": " + getLatencyP99Nanos()
+                + ", \"p999\": " + getLatencyP999Nanos() + ", \"max\": " + getMaxLatencyNanos() + "},\n");
+        writer.write("  \"phaseMillis\": {\"load\": " + getLoadMillis() + ", \"parse\": " + getParseMillis()
+                + ", \"search\": " + getSearchMillis() + ", \"write\": " + getWriteMillis() + "}\n");
+        writer.write("}\n");
+    }
+
+    /**
+     * Writes the metrics as CSV, with a row of each metric's name and value.
+     *
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("metric,value\n");
+        writer.write("queries," + getQueries() + "\n");
+        writer.write("probes," + getProbes() + "\n");
+        writer.write("comparedBases," + getComparedBases() + "\n");
+        writer.write("prefixTableHits," + getPrefixTableHits() + "\n");
+        writer.write("prefixTableMisses," + getPrefixTableMisses() + "\n");
+        writer.write("prefixTableHitRate," + format(getPrefixTableHitRate()) + "\n");
+        writer.write("latencyMeanNanos," + format(getMeanLatencyNanos()) + "\n");
+        writer.write("latencyP50Nanos," + getLatencyP50Nanos() + "\n");
+        writer.write("latencyP90Nanos," + getLatencyP90Nanos() + "\n");
+        writer.write("latencyP99Nanos," + getLatencyP99Nanos() + "\n");
+        writer.write("latencyP999Nanos," + getLatencyP999Nanos() + "\n");
+        writer.write("latencyMaxNanos," + getMaxLatencyNanos() + "\n");
+        writer.write("loadMillis," + getLoadMillis() + "\n");
+        writer.write("parseMillis," + getParseMillis() + "\n");
+        writer.write("searchMillis," + getSearchMillis() + "\n");
+        writer.write("writeMillis," + getWriteMillis() + "\n");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private long millis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[phase.ordinal()].sum());
+    }
+
+    @Override
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    @Override
+    public long getComparedBases() {
+        return comparedBases.sum();
+    }
+
+    @Override
+    public long getPrefixTableHits() {
+        return prefixTableHits.sum();
+    }
+
+    @Override
+    public long getPrefixTableMisses() {
+        return prefixTableMisses.sum();
+    }
+
+    @Override
+    public double getPrefixTableHitRate() {
+        long hits = getPrefixTableHits();
+        long lookups = hits + getPrefixTableMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public double getMeanLatencyNanos() {
+        synchronized (latencies) {
+            return latencies.getMean();
+        }
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        synchronized (latencies) {
+            return latencies.getValueAtPercentile(50);
+        }
+    }
+
+    @Override
+    public long getLatencyP90Nanos() {
+        synchronized (latencies) {
+            return latencies.getValueAtPercentile(90);
+        }
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        synchronized (latencies) {
+            return latencies.getValueAtPercentile(99);
+        }
+    }
+
+    @Override
+    public long getLatencyP999Nanos() {
+        synchronized (latencies) {
+            return latencies.getValueAtPercentile(99.9);
+        }
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        synchronized (latencies) {
+            return latencies.getMax();
+        }
+    }
+
+    @Override
+    public long getLoadMillis() {
+        return millis(Phase.LOAD);
+    }
+
+    @Override
+    public long getParseMillis() {
+        return millis(Phase.PARSE);
+    }
+
+    @Override
+    public long getSearchMillis() {
+        return millis(Phase.SEARCH);
+    }
+
+    @Override
+    public long getWriteMillis() {
+        return millis(Phase.WRITE);
+    }
+}
@@ -0,0 +1,43 @@
+package querysa;
+
+/**
+ * The management interface of {@link QueryMetrics}, through which the metrics
+ * of a running querysa can be read over JMX, for example with JConsole.
+ *
+ * @author Valerie Wray
+ *
+ */
+public interface QueryMetricsMXBean {
+
+    long getQueries();
+
+    long getProbes();
+
+    long getComparedBases();
+
+    long getPrefixTableHits();
+
+    long getPrefixTableMisses();
+
+    double getPrefixTableHitRate();
+
+    double getMeanLatencyNanos();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP90Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyP999Nanos();
+
+    long getMaxLatencyNanos();
+
+    long getLoadMillis();
+
+    long getParseMillis();
+
+    long getSearchMillis();
+
+    long getWriteMillis();
+}
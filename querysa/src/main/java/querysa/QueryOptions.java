@@ -0,0 +1,130 @@
+package querysa;
+
+import model.QueryMode;
+import util.ApproximateSearch;
+import util.MaximalMatchSearch;
+
+/**
+ * A class holding the options of how queries are run, beyond the index and the
+ * {@link QueryMode}: whether they are run in sorted order, whether the reverse
+ * strand is searched as well, the number of mismatches of the
+ * {@link QueryMode#MISMATCH} query mode, the minimum match length of the
+ * {@link QueryMode#SMEM} query mode, and the {@link QueryMetrics} to collect.
+ * A new instance has the defaults of the command line, and each setter returns
+ * the instance, so that only the options that differ need to be set.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class QueryOptions {
+    private boolean sorted;
+    private boolean bothStrands;
+    private int maxMismatches = ApproximateSearch.DEFAULT_MISMATCHES;
+    private int minLength = MaximalMatchSearch.DEFAULT_MIN_LENGTH;
+    private QueryMetrics metrics;
+
+    /**
+     * Creates a new QueryOptions with the defaults.
+     */
+    public QueryOptions() {
+    }
+
+    /**
+     * Creates a new QueryOptions with the same options as another.
+     *
+     * @param other the options to copy
+     */
+    public QueryOptions(QueryOptions other) {
+        this.sorted = other.sorted;
+        this.bothStrands = other.bothStrands;
+        this.maxMismatches = other.maxMismatches;
+        this.minLength = other.minLength;
+        this.metrics = other.metrics;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Sets whether to run the queries in lexicographic order of their sequences.
+     *
+     * @param sorted whether to run the queries in sorted order
+     * @return this
+     */
+    public QueryOptions setSorted(boolean sorted) {
+        this.sorted = sorted;
+        return this;
+    }
+
+    public boolean isBothStrands() {
+        return bothStrands;
+    }
+
+    /**
+     * Sets whether to search for the reverse complement of each query as well.
+     *
+     * @param bothStrands whether to search both strands
+     * @return this
+     */
+    public QueryOptions setBothStrands(boolean bothStrands) {
+        this.bothStrands = bothStrands;
+        return this;
+    }
+
+    public int getMaxMismatches() {
+        return maxMismatches;
+    }
+
+    /**
+     * Sets the number of bases that a hit may differ from the query in, in the
+     * {@link QueryMode#MISMATCH} query mode.
+     *
+     * @param maxMismatches the number of mismatches
+     * @return this
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public QueryOptions setMaxMismatches(int maxMismatches) {
+        if (maxMismatches < 0) {
+            throw new IllegalArgumentException("The number of mismatches must be at least 0, but was "
+                    + maxMismatches);
+        }
+        this.maxMismatches = maxMismatches;
+        return this;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Sets the minimum length of a match in the {@link QueryMode#SMEM} query
+     * mode.
+     *
+     * @param minLength the minimum length
+     * @return this
+     * @throws IllegalArgumentException if the length is less than 1
+     */
+    public QueryOptions setMinLength(int minLength) {
+        if (minLength < 1) {
+            throw new IllegalArgumentException("The minimum match length must be at least 1, but was " + minLength);
+        }
+        this.minLength = minLength;
+        return this;
+    }
+
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link QueryMetrics} to add the metrics of the queries to.
+     *
+     * @param metrics the metrics, or null to not collect any
+     * @return this
+     */
+    public QueryOptions setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+}
@@ -0,0 +1,294 @@
+package querysa;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import model.IndexInterval;
+import model.IntArray;
+import model.MaximalMatch;
+import model.Query;
+import model.QueryMode;
+import model.SequenceTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * A {@link ResultWriter} that writes query results as text, one line per query
+ * with its name, its number of hits and its hits, all space-separated. Each
+ * chunk is flushed once it has been written, so results appear in the output
+ * file while later chunks are still being searched, and the lines are built in
+ * a reused buffer of characters, so writing a hit allocates nothing.
+ * <p>
+ * A hit is written as its position in the text, or as {@code name:position}
+ * when the text has several records, followed by + or - when both strands were
+ * searched. The line of a maximal exact match search gives the number of
+ * matches instead, each written as {@code start,length} followed by its hits.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class QueryResultWriter implements ResultWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_DIGITS = 10;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+    private final SequenceTable sequenceTable;
+    private final HitSorter hitSorter;
+    private final HitSelector hitSelector;
+
+    /**
+     * Creates a new QueryResultWriter that writes to an output file.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} that
+     *                                 was queried
+     * @param options                  the {@link ResultWriterOptions}
+     * @param outputFile               the output file to write to
+     * @throws IOException if the file cannot be opened
+     */
+    public QueryResultWriter(SerializeableSuffixArray serializeableSuffixArray, ResultWriterOptions options,
+            String outputFile) throws IOException {
+        this(serializeableSuffixArray, options, new FileWriter(outputFile));
+    }
+
+    /**
+     * Creates a new QueryResultWriter that writes to the given writer, for
+     * example the body of a response of the {@link QueryServer}. The hits are
+     * located in the way that suits the query mode of the options: from the
+     * FM-index for {@link QueryMode#FMINDEX}, and from the suffix array
+     * otherwise.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} that
+     *                                 was queried
+     * @param options                  the {@link ResultWriterOptions}
+     * @param writer                   the writer to write to, which is closed
+     *                                 along with this one
+     */
+    public QueryResultWriter(SerializeableSuffixArray serializeableSuffixArray, ResultWriterOptions options,
+            Writer writer) {
+        this.writer = writer;
+        IntArray suffixArray = options.getQueryMode() == QueryMode.FMINDEX ? serializeableSuffixArray.getFmIndex()
+                : serializeableSuffixArray.getSuffixArray();
+        SequenceTable table = serializeableSuffixArray.getSequenceTable();
+        this.sequenceTable = table != null && table.size() > 1 ? table : null;
+        this.hitSorter = options.isSortHits() ? new HitSorter(suffixArray, options.getThreads()) : null;
+        this.hitSelector = new HitSelector(suffixArray, options.getHitLimit(), hitSorter);
+    }
+
+    /**
+     * Writes the results of a chunk of queries and flushes them to the file.
+     * 
+     * @param queries the list of {@link Query}, which must have been performed
+     * @throws IOException if an error occurs while trying to write to the file
+     */
+    @Override
+    public void write(List<Query> queries) throws IOException {
+        for (Query query : queries) {
+            if (query.getMatches() != null) {
+                writeMatches(query, query.getMatches(), query.getReverseMatches());
+            } else if (query.getHitsRanges() != null) {
+                writeHits(query, query.getHitsRanges(), query.getReverseHitsRanges());
+            } else {
+                writeHits(query, query.getHitsRange(), query.getReverseHitsRange());
+            }
+        }
+        flushBuffer();
+        writer.flush();
+    }
+
+    /**
+     * Writes the line of a query, given the interval of its hits on the forward
+     * strand, and on the reverse strand if it was searched.
+     */
+    private void writeHits(Query query, IndexInterval hitsRange, IndexInterval reverseHitsRange)
+            throws IOException {
+        int count = count(hitsRange);
+        if (reverseHitsRange != null) {
+            count += count(reverseHitsRange);
+        }
+        writeStart(query, count);
+        hitSelector.select(count);
+        if (reverseHitsRange == null) {
+            writeHits(hitsRange, "");
+            writeLocated("");
+        } else {
+            writeHits(hitsRange, "+");
+            writeLocated("+");
+            writeHits(reverseHitsRange, "-");
+            writeLocated("-");
+        }
+        append('\n');
+    }
+
+    /**
+     * Writes the line of a query, given the intervals of its hits on the forward
+     * strand, and on the reverse strand if it was searched.
+     */
+    private void writeHits(Query query, List<IndexInterval> hitsRanges, List<IndexInterval> reverseHitsRanges)
+            throws IOException {
+        int count = 0;
+        for (IndexInterval hitsRange : hitsRanges) {
+            count += count(hitsRange);
+        }
+        if (reverseHitsRanges != null) {
+            for (IndexInterval hitsRange : reverseHitsRanges) {
+                count += count(hitsRange);
+            }
+        }
+        writeStart(query, count);
+        hitSelector.select(count);
+        String strand = reverseHitsRanges == null ? "" : "+";
+        for (IndexInterval hitsRange : hitsRanges) {
+            writeHits(hitsRange, strand);
+        }
+        writeLocated(strand);
+        if (reverseHitsRanges != null) {
+            for (IndexInterval hitsRange : reverseHitsRanges) {
+                writeHits(hitsRange, "-");
+            }
+            writeLocated("-");
+        }
+        append('\n');
+    }
+
+    /**
+     * Writes the line of a query, given its maximal exact matches on the forward
+     * strand, and on the reverse strand if it was searched.
+     */
+    private void writeMatches(Query query, List<MaximalMatch> matches, List<MaximalMatch> reverseMatches)
+            throws IOException {
+        writeStart(query, matches.size() + (reverseMatches == null ? 0 : reverseMatches.size()));
+        writeMatches(matches, reverseMatches == null ? "" : "+");
+        if (reverseMatches != null) {
+            writeMatches(reverseMatches, "-");
+        }
+        append('\n');
+    }
+
+    private void writeMatches(List<MaximalMatch> matches, String strand) throws IOException {
+        for (MaximalMatch match : matches) {
+            append(' ');
+            append(match.getQueryStart());
+            append(',');
+            append(match.getLength());
+            hitSelector.select(count(match.getHitsRange()));
+            writeHits(match.getHitsRange(), strand);
+            writeLocated(strand);
+        }
+    }
+
+    private static int count(IndexInterval hitsRange) {
+        return hitsRange.getEnd() - hitsRange.getStart();
+    }
+
+    private void writeStart(Query query, int count) throws IOException {
+        CharSequence name = query.getName();
+        for (int i = 0; i < name.length(); i++) {
+            append(name.charAt(i));
+        }
+        append(' ');
+        append(count);
+    }
+
+    /**
+     * Locates the selected hits of an interval of the suffix array, and writes
+     * them each followed by the strand, or when the hits are sorted, leaves them
+     * to be written with the rest of the strand.
+     */
+    private void writeHits(IndexInterval hitsRange, String strand) throws IOException {
+        hitSelector.collect(hitsRange);
+        if (hitSorter == null) {
+            writeLocated(strand);
+        }
+    }
+
+    /**
+     * Writes the hits that have been located, in ascending order of their
+     * positions when the hits are sorted.
+     */
+    private void writeLocated(String strand) throws IOException {
+        if (hitSorter != null) {
+            hitSelector.sortLocated();
+        }
+        int[] positions = hitSelector.getPositions();
+        for (int i = 0; i < hitSelector.getLocated(); i++) {
+            writePosition(positions[i], strand);
+        }
+        hitSelector.clearLocated();
+    }
+
+    private void writePosition(int position, String strand) throws IOException {
+        append(' ');
+        if (sequenceTable != null) {
+            int sequence = sequenceTable.indexOf(position);
+            append(sequenceTable.getName(sequence));
+            append(':');
+            position -= sequenceTable.getStart(sequence);
+        }
+        append(position);
+        append(strand);
+    }
+
+    private void append(char c) throws IOException {
+        if (length == buffer.length) {
+            flushBuffer();
+        }
+        buffer[length++] = c;
+    }
+
+    private void append(String string) throws IOException {
+        for (int start = 0; start < string.length();) {
+            if (length == buffer.length) {
+                flushBuffer();
+            }
+            int end = Math.min(string.length(), start + buffer.length - length);
+            string.getChars(start, end, buffer, length);
+            length += end - start;
+            start = end;
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a number that is not negative straight into
+     * the buffer.
+     */
+    private void append(int number) throws IOException {
+        if (buffer.length - length < MAX_DIGITS) {
+            flushBuffer();
+        }
+        int end = length + digits(number);
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        length = end;
+    }
+
+    private static int digits(int number) {
+        int digits = 1;
+        while (number >= 10) {
+            number /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void flushBuffer() throws IOException {
+        writer.write(buffer, 0, length);
+        length = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            writer.close();
+        } finally {
+            if (hitSorter != null) {
+                hitSorter.close();
+            }
+        }
+    }
+}
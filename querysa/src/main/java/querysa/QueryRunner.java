@@ -0,0 +1,168 @@
+package querysa;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Query;
+import model.QueryMode;
+import model.SerializeableSuffixArray;
+import util.SearchScratch;
+
+/**
+ * A class to run queries on a suffix array with a fixed pool of worker threads.
+ * The index is read-only, so all of the workers share it. The workers take
+ * blocks of consecutive queries from the list until none are left, and store
+ * each result in its {@link Query}, so the results come out in the order of the
+ * list no matter which worker ran which query. Each worker thread keeps its own
+ * {@link SearchScratch} for as long as the pool lives.
+ * <p>
+ * In sorted mode, the queries are run in lexicographic order of their
+ * sequences instead of in the order of the list. Each search then starts no
+ * earlier in the suffix array than the one before it, and a query that extends
+ * the one before it is only searched for among that one's hits, so neighbouring
+ * queries touch neighbouring parts of the suffix array and text.
+ * <p>
+ * In both-strands mode, each query is also searched for on the reverse strand,
+ * as its reverse complement, and the hits of each strand are stored in the
+ * query separately.
+ * <p>
+ * In the {@link QueryMode#MISMATCH} query mode, the hits may differ from the
+ * query in up to a given number of bases. In the {@link QueryMode#SMEM} query
+ * mode, the maximal exact matches of each query of at least a given length are
+ * found instead of its hits.
+ * <p>
+ * The options of the run are given as {@link QueryOptions}. If they include
+ * {@link QueryMetrics}, each query is timed, and the counts of
+ * each worker's searches are added to the metrics after every block.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class QueryRunner implements AutoCloseable {
+    private static final int BLOCK_SIZE = 256;
+    private static final Comparator<Query> SEQUENCE_ORDER = (first, second) -> CharSequence
+            .compare(first.getSequence(), second.getSequence());
+
+    private final SerializeableSuffixArray serializeableSuffixArray;
+    private final QueryMode queryMode;
+    private final int threads;
+    private final boolean sorted;
+    private final QueryOptions options;
+    private final QueryMetrics metrics;
+    private final ExecutorService executorService;
+    private final ThreadLocal<SearchScratch> scratch = ThreadLocal.withInitial(SearchScratch::new);
+
+    /**
+     * Creates a new QueryRunner with the default {@link QueryOptions}.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} to
+     *                                 query
+     * @param queryMode                the {@link QueryMode} to run the queries in
+     * @param threads                  the number of worker threads; with a single
+     *                                 thread, queries run on the calling thread
+     */
+    public QueryRunner(SerializeableSuffixArray serializeableSuffixArray, QueryMode queryMode, int threads) {
+        this(serializeableSuffixArray, queryMode, threads, new QueryOptions());
+    }
+
+    /**
+     * Creates a new QueryRunner with the given {@link QueryOptions}, which are
+     * copied, so changing them afterwards does not change this runner.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray} to
+     *                                 query
+     * @param queryMode                the {@link QueryMode} to run the queries in
+     * @param threads                  the number of worker threads; with a single
+     *                                 thread, queries run on the calling thread
+     * @param options                  the {@link QueryOptions}
+     */
+    public QueryRunner(SerializeableSuffixArray serializeableSuffixArray, QueryMode queryMode, int threads,
+            QueryOptions options) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        this.serializeableSuffixArray = serializeableSuffixArray;
+        this.queryMode = queryMode;
+        this.threads = threads;
+        this.options = new QueryOptions(options);
+        this.sorted = options.isSorted();
+        this.metrics = options.getMetrics();
+        this.executorService = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "querysa-worker");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Performs the queries, returning once all of them are done.
+     * 
+     * @param queries the list of {@link Query} to perform
+     */
+    public void performQueries(List<Query> queries) {
+        List<Query> order = queries;
+        if (sorted) {
+            order = new ArrayList<>(queries);
+            order.sort(SEQUENCE_ORDER);
+        }
+        if (executorService == null) {
+            runBlocks(order, new AtomicInteger());
+            return;
+        }
+        List<Query> blocks = order;
+        AtomicInteger nextBlock = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> runBlocks(blocks, nextBlock)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for queries", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("A query worker failed", e.getCause());
+            }
+        }
+    }
+
+    private void runBlocks(List<Query> queries, AtomicInteger nextBlock) {
+        SearchScratch searchScratch = scratch.get();
+        int size = queries.size();
+        int start;
+        while ((start = nextBlock.getAndIncrement() * BLOCK_SIZE) < size) {
+            int end = Math.min(size, start + BLOCK_SIZE);
+            if (metrics == null) {
+                for (int i = start; i < end; i++) {
+                    QuerySuffixArray.performQuery(serializeableSuffixArray, queries.get(i), queryMode, searchScratch,
+                            options);
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    long queryStart = System.nanoTime();
+                    QuerySuffixArray.performQuery(serializeableSuffixArray, queries.get(i), queryMode, searchScratch,
+                            options);
+                    searchScratch.recordLatency(System.nanoTime() - queryStart);
+                }
+                metrics.addCounts(searchScratch);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package querysa;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.IndexFile;
+import model.Query;
+import model.QueryMode;
+import model.SerializeableSuffixArray;
+import util.ApproximateSearch;
+import util.MaximalMatchSearch;
+
+/**
+ * A long-running server that keeps one or more suffix array indexes mapped and
+ * answers batches of queries on them over HTTP, so that the cost of opening an
+ * index is paid once rather than by every batch. It has two endpoints:
+ * <ul>
+ * <li>GET /indexes - lists the name and text length of each index, one per
+ * line.</li>
+ * <li>POST /query/&lt;name&gt;?mode=&lt;query mode&gt; - runs the FASTA
+ * records in the request body on the named index in the given query mode
+ * (simpaccel by default), and streams back the results in the format of
+ * querysa's output file. With strand=both, the reverse complement of each
+ * query is searched for as well, as querysa --both-strands does. With
+ * mode=mismatch, mismatches=&lt;k&gt; sets the number of bases that a hit may
+ * differ from the query in, as querysa --mismatches does, and with mode=smem,
+ * min-length=&lt;n&gt; sets the minimum length of a match, as querysa
+ * --min-length does. hits=&lt;limit&gt; limits the hits written for each
+ * query, as querysa --hits does, and with sort-hits=true, the hits are
+ * written in ascending order of their positions, as querysa --sort-hits
+ * does. The queries are read, searched and written in chunks, so the first
+ * results are sent back before the whole batch has been read.</li>
+ * </ul>
+ * Requests are served concurrently by a fixed pool of threads, each of which
+ * runs the queries of its request itself; the indexes are read-only, so all of
+ * the requests share them.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class QueryServer implements AutoCloseable {
+    /**
+     * The port that the server listens on by default.
+     */
+    static final int DEFAULT_PORT = 8701;
+
+    private final Map<String, SerializeableSuffixArray> indexes;
+    private final boolean sorted;
+    private final int chunkSize;
+    private final HttpServer httpServer;
+    private final ExecutorService executorService;
+
+    /**
+     * Creates a new QueryServer and starts it.
+     *
+     * @param indexes   the indexes to serve, by name
+     * @param address   the address to listen on
+     * @param threads   the number of requests to serve at a time
+     * @param sorted    whether to run the queries of each chunk in lexicographic
+     *                  order, as querysa --sorted does
+     * @param chunkSize the number of query records to read, search and write at a
+     *                  time
+     * @throws IOException if the server cannot listen on the address
+     */
+    public QueryServer(Map<String, SerializeableSuffixArray> indexes, InetSocketAddress address, int threads,
+            boolean sorted, int chunkSize) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        this.indexes = new LinkedHashMap<>(indexes);
+        this.sorted = sorted;
+        this.chunkSize = chunkSize;
+        this.executorService = Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable,
+                "querysa-server"));
+        this.httpServer = HttpServer.create(address, 0);
+        httpServer.createContext("/indexes", this::handleIndexes);
+        httpServer.createContext("/query/", this::handleQuery);
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+    }
+
+    /**
+     * A main method to run the query server until the process is stopped.
+     *
+     * @param args
+     *             <ul>
+     *             <li>--port <port> - the port to listen on (8701 by
+     *             default). The server only listens on the loopback
+     *             address.</li>
+     *             <li>--threads <n> - the number of requests to serve at a time
+     *             (the number of processors by default).</li>
+     *             <li>--sorted - run the queries of each chunk in lexicographic
+     *             order, as querysa --sorted does.</li>
+     *             <li>--chunk-size <n> - the number of query records to read,
+     *             search and write at a time (65536 by default).</li>
+     *             <li>indexes - one or more index files written by buildsa, each
+     *             either as name=path, or as a path, in which case the index is
+     *             named after the file without its extension.</li>
+     *             </ul>
+     * @throws IOException if an index cannot be opened, or the server cannot
+     *                     listen on the port
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean sorted = false;
+        int chunkSize = QuerySuffixArray.DEFAULT_CHUNK_SIZE;
+        int i = 0;
+        while (args[i].startsWith("--")) {
+            switch (args[i++]) {
+            case "--port":
+                port = Integer.parseInt(args[i++]);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(args[i++]);
+                break;
+            case "--sorted":
+                sorted = true;
+                break;
+            case "--chunk-size":
+                chunkSize = Integer.parseInt(args[i++]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+
+        Map<String, SerializeableSuffixArray> indexes = new LinkedHashMap<>();
+        for (; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            Path indexFile = Path.of(separator < 0 ? args[i] : args[i].substring(separator + 1));
+            String name = separator < 0 ? nameOf(indexFile) : args[i].substring(0, separator);
+            if (indexes.containsKey(name)) {
+                throw new IllegalArgumentException("Two indexes are named " + name);
+            }
+            Instant start = Instant.now();
+            indexes.put(name, IndexFile.map(indexFile));
+            System.out.println("Loaded " + name + " from " + indexFile + ": " + Duration.between(start, Instant.now()));
+        }
+        if (indexes.isEmpty()) {
+            throw new IllegalArgumentException("No index files were given");
+        }
+
+        QueryServer queryServer = new QueryServer(indexes,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads, sorted, chunkSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(queryServer::close));
+        System.out.println("Serving " + indexes.keySet() + " on http://" + InetAddress.getLoopbackAddress()
+                .getHostAddress() + ":" + queryServer.getPort() + "/");
+    }
+
+    /**
+     * Returns the name of an index file without its extension.
+     */
+    private static String nameOf(Path indexFile) {
+        String fileName = indexFile.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    /**
+     * Returns the port that the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handleIndexes(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "The index list must be requested with GET");
+                return;
+            }
+            StringBuilder body = new StringBuilder();
+            for (Map.Entry<String, SerializeableSuffixArray> index : indexes.entrySet()) {
+                body.append(index.getKey()).append(' ').append(index.getValue().getText().length() - 1)
+                        .append('\n');
+            }
+            send(exchange, 200, body.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Queries must be sent with POST");
+                return;
+            }
+            String name = exchange.getRequestURI().getPath().substring("/query/".length());
+            SerializeableSuffixArray index = indexes.get(name);
+            if (index == null) {
+                sendError(exchange, 404, "No index is named " + name);
+                return;
+            }
+            String mode = parameter(exchange.getRequestURI().getRawQuery(), "mode", "simpaccel");
+            QueryMode queryMode;
+            try {
+                queryMode = QueryMode.valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "Unknown query mode: " + mode);
+                return;
+            }
+            String strand = parameter(exchange.getRequestURI().getRawQuery(), "strand", "forward");
+            if (!strand.equals("forward") && !strand.equals("both")) {
+                sendError(exchange, 400, "Unknown strand: " + strand);
+                return;
+            }
+            String mismatches = parameter(exchange.getRequestURI().getRawQuery(), "mismatches",
+                    Integer.toString(ApproximateSearch.DEFAULT_MISMATCHES));
+            int maxMismatches;
+            try {
+                maxMismatches = Integer.parseInt(mismatches);
+            } catch (NumberFormatException e) {
+                maxMismatches = -1;
+            }
+            if (maxMismatches < 0) {
+                sendError(exchange, 400, "The number of mismatches must be at least 0, but was " + mismatches);
+                return;
+            }
+            String minLengthValue = parameter(exchange.getRequestURI().getRawQuery(), "min-length",
+                    Integer.toString(MaximalMatchSearch.DEFAULT_MIN_LENGTH));
+            int minLength;
+            try {
+                minLength = Integer.parseInt(minLengthValue);
+            } catch (NumberFormatException e) {
+                minLength = 0;
+            }
+            if (minLength < 1) {
+                sendError(exchange, 400, "The minimum match length must be at least 1, but was " + minLengthValue);
+                return;
+            }
+            HitLimit hitLimit;
+            try {
+                hitLimit = HitLimit.valueOf(parameter(exchange.getRequestURI().getRawQuery(), "hits", "all"));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            String sortHits = parameter(exchange.getRequestURI().getRawQuery(), "sort-hits", "false");
+            if (!sortHits.equals("true") && !sortHits.equals("false")) {
+                sendError(exchange, 400, "sort-hits must be true or false, but was " + sortHits);
+                return;
+            }
+            runQueries(exchange, index, queryMode, strand.equals("both"), maxMismatches, minLength, hitLimit,
+                    sortHits.equals("true"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs the queries of a request and streams back their results. The first
+     * chunk is run before the response is started, so that a query mode that the
+     * index was not built for is reported as an error.
+     */
+    private void runQueries(HttpExchange exchange, SerializeableSuffixArray index, QueryMode queryMode,
+            boolean bothStrands, int maxMismatches, int minLength, HitLimit hitLimit, boolean sortHits)
+            throws IOException {
+        try (FastaQueryReader fastaQueryReader = new FastaQueryReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.ISO_8859_1));
+                QueryRunner queryRunner = new QueryRunner(index, queryMode, 1, new QueryOptions().setSorted(sorted)
+                        .setBothStrands(bothStrands).setMaxMismatches(maxMismatches).setMinLength(minLength))) {
+            List<Query> chunk = fastaQueryReader.readChunk(chunkSize, QuerySuffixArray.CHUNK_BASES);
+            try {
+                queryRunner.performQueries(chunk);
+            } catch (IllegalStateException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+            exchange.sendResponseHeaders(200, 0);
+            ResultWriterOptions writerOptions = new ResultWriterOptions().setQueryMode(queryMode).setHitLimit(hitLimit)
+                    .setSortHits(sortHits);
+            try (QueryResultWriter queryResultWriter = new QueryResultWriter(index, writerOptions,
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.ISO_8859_1))) {
+                while (!chunk.isEmpty()) {
+                    queryResultWriter.write(chunk);
+                    chunk = fastaQueryReader.readChunk(chunkSize, QuerySuffixArray.CHUNK_BASES);
+                    queryRunner.performQueries(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a parameter of a query string, or the default value if
+     * it is not there.
+     */
+    private static String parameter(String rawQuery, String name, String defaultValue) {
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                    return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, message + "\n");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.ISO_8859_1);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    /**
+     * Stops the server, letting the requests being served finish for up to a
+     * second.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(1);
+        executorService.shutdown();
+    }
+}
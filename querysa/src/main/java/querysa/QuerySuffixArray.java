@@ -1,23 +1,29 @@
 package querysa;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Scanner;
 
 import model.BasePair;
+import model.EytzingerIndex;
+import model.IndexFile;
 import model.IndexInterval;
+import model.MaximalMatch;
+import model.PackedText;
+import model.PrefixTable;
 import model.Query;
 import model.QueryMode;
 import model.SerializeableSuffixArray;
+import querysa.QueryMetrics.Phase;
+import util.ApproximateSearch;
+import util.BackwardSearch;
 import util.BinarySearch;
+import util.MaximalMatchSearch;
+import util.SearchScratch;
 
 /**
  * A main class for querying a suffix array. This program will take as input 4
@@ -29,6 +35,16 @@ import util.BinarySearch;
  *
  */
 public class QuerySuffixArray {
+    /**
+     * The default number of query records that are read, searched and written
+     * together.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    /**
+     * The number of query bases after which a chunk is ended early, which bounds
+     * the memory used by chunks of long queries.
+     */
+    static final long CHUNK_BASES = 1L << 26;
 
     /**
      * A main method for querying a suffix array. This program will take as input 4
@@ -38,65 +54,195 @@ public class QuerySuffixArray {
      * 
      * @param args
      *             <ul>
-     *             <li>index - the path to the binary file containing your
-     *             serialized suffix array (as written by buildsa)</li>
+     *             <li>--threads <n> - if the option --threads is passed in (with
+     *             the parameter n), then the queries will be run on n worker
+     *             threads sharing the index. The results are written in the
+     *             same order either way.</li>
+     *             <li>--sorted - if the option --sorted is passed in, then the
+     *             queries of each chunk will be run in lexicographic order, so
+     *             that each search can start from where the one before it ended.
+     *             The results are written in the same order either way.</li>
+     *             <li>--both-strands - if the option --both-strands is passed
+     *             in, then the reverse complement of each query is searched for
+     *             as well, and each hit is written with its strand, + or -.</li>
+     *             <li>--mismatches <k> - the number of bases that a hit may
+     *             differ from the query in, in the mismatch query mode (1 by
+     *             default).</li>
+     *             <li>--min-length <n> - the minimum length of a match in the
+     *             smem query mode (19 by default).</li>
+     *             <li>--hits <limit> - how many of the hits of each query, or
+     *             of each match, to write: all (the default), count for none,
+     *             first:<n> for the first n in the order of the suffix array, or
+     *             sample:<n> for a random sample of n. The number of hits is
+     *             always written in full, and the hits that are not written are
+     *             not located.</li>
+     *             <li>--sort-hits - if the option --sort-hits is passed in, then
+     *             the hits of each query are written in ascending order of their
+     *             positions on each strand, rather than in the order of the suffix
+     *             array. The hits of a large interval are located and sorted on
+     *             the --threads threads.</li>
+     *             <li>--binary - if the option --binary is passed in, then the
+     *             results are written to a compact binary file, with the hits of
+     *             each query as the differences of their sorted positions, which
+     *             are sorted whether or not --sort-hits is passed in, and which
+     *             BinaryResultReader converts back to text.</li>
+     *             <li>--compress - if the option --compress is passed in, then
+     *             the results are written to a binary file whose blocks are
+     *             compressed with the deflate algorithm.</li>
+     *             <li>--chunk-size <n> - the number of query records to read,
+     *             search and write at a time (65536 by default). Queries are
+     *             streamed through in chunks, so memory use does not grow with the
+     *             size of the query file.</li>
+     *             <li>--metrics <file> - if the option --metrics is passed in
+     *             (with the parameter file), then the metrics of the run are
+     *             collected and written to the file as a report: the probes and
+     *             compared bases of the searches, the prefix table hit rate, the
+     *             percentiles of the query latency and the time spent loading,
+     *             parsing, searching and writing. The report is in CSV if the
+     *             file name ends with .csv, and in JSON otherwise. While the
+     *             queries run, the metrics can also be read over JMX.</li>
+     *             <li>index - the path to the binary index file containing
+     *             your suffix array (as written by buildsa)</li>
      *             <li>queries - the path to an input file in FASTA format
      *             containing a set of records</li>
-     *             <li>query mode - this argument should be one of two strings;
-     *             either naive or simpaccel. If the string is naive, the queries
-     *             will be performed using the naive binary search algorithm. If the
-     *             string is simpaccel, the queries will be performed using the
-     *             “simple accelerant” algorithm. Note: If the serialized input file
-     *             contains no prefix lookup table, then these algorithms will be
-     *             run on each query on the full suffix array, and if you are
-     *             reading in a prefix lookup table as well, then this is the
-     *             algorithm that will be used on the relevant interval for each
-     *             query.</li>
+     *             <li>query mode - one of naive, simpaccel, superaccel,
+     *             fmindex, eytzinger, mismatch or smem, as described in the
+     *             README. superaccel, fmindex and eytzinger need an index built
+     *             with the --lcplr, --fmindex or --eytzinger option of buildsa.
+     *             Note: If the index contains no prefix lookup table, then the
+     *             search is run on each query on the full suffix array, and
+     *             otherwise on the interval of its first k bases.</li>
      *             <li>output - the name to use for the resulting output</li>
      * 
      *             </ul>
-     * @throws IOException            if an error occurs during file I/O
-     * @throws ClassNotFoundException if a class to be deserialized is not found
-     *                                during file I/O
+     * @throws IOException if an error occurs during file I/O
      */
-    public static void main(String[] args) throws IOException, ClassNotFoundException {
+    public static void main(String[] args) throws IOException {
         SerializeableSuffixArray suffixArray = null;
 
-        String indexFile = args[0];
-        String queriesFile = args[1];
-        QueryMode queryMode = QueryMode.valueOf(args[2].toUpperCase());
-        String outputFile = args[3];
+        int threads = 1;
+        boolean sorted = false;
+        boolean bothStrands = false;
+        int maxMismatches = ApproximateSearch.DEFAULT_MISMATCHES;
+        int minLength = MaximalMatchSearch.DEFAULT_MIN_LENGTH;
+        HitLimit hitLimit = HitLimit.ALL;
+        boolean sortHits = false;
+        boolean binary = false;
+        boolean compress = false;
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        Path metricsFile = null;
+        int i = 0;
+        while (args[i].startsWith("--")) {
+            switch (args[i++]) {
+            case "--threads":
+                threads = Integer.parseInt(args[i++]);
+                break;
+            case "--sorted":
+                sorted = true;
+                break;
+            case "--both-strands":
+                bothStrands = true;
+                break;
+            case "--mismatches":
+                maxMismatches = Integer.parseInt(args[i++]);
+                break;
+            case "--min-length":
+                minLength = Integer.parseInt(args[i++]);
+                break;
+            case "--hits":
+                hitLimit = HitLimit.valueOf(args[i++]);
+                break;
+            case "--sort-hits":
+                sortHits = true;
+                break;
+            case "--binary":
+                binary = true;
+                break;
+            case "--compress":
+                binary = true;
+                compress = true;
+                break;
+            case "--chunk-size":
+                chunkSize = Integer.parseInt(args[i++]);
+                break;
+            case "--metrics":
+                metricsFile = Path.of(args[i++]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+
+        String indexFile = args[i++];
+        String queriesFile = args[i++];
+        QueryMode queryMode = QueryMode.valueOf(args[i++].toUpperCase());
+        String outputFile = args[i++];
+
+        QueryMetrics metrics = null;
+        if (metricsFile != null) {
+            metrics = new QueryMetrics();
+            metrics.register();
+        }
 
+        long phaseStart = System.nanoTime();
         suffixArray = readBinaryFile(indexFile);
+        phaseStart = addTime(metrics, Phase.LOAD, phaseStart);
 
         Instant start = Instant.now();
+        ResultWriterOptions writerOptions = new ResultWriterOptions().setQueryMode(queryMode).setHitLimit(hitLimit)
+                .setSortHits(sortHits).setThreads(threads).setBothStrands(bothStrands).setCompressed(compress);
 
-        List<Query> queries = readFastaQueriesFile(queriesFile);
-        performQueries(suffixArray, queries, queryMode);
+        try (FastaQueryReader fastaQueryReader = new FastaQueryReader(queriesFile);
+                QueryRunner queryRunner = new QueryRunner(suffixArray, queryMode, threads,
+                        new QueryOptions().setSorted(sorted).setBothStrands(bothStrands)
+                                .setMaxMismatches(maxMismatches).setMinLength(minLength).setMetrics(metrics));
+                ResultWriter resultWriter = binary
+                        ? new BinaryResultWriter(suffixArray, writerOptions, outputFile)
+                        : new QueryResultWriter(suffixArray, writerOptions, outputFile)) {
+            List<Query> chunk;
+            while (!(chunk = fastaQueryReader.readChunk(chunkSize, CHUNK_BASES)).isEmpty()) {
+                phaseStart = addTime(metrics, Phase.PARSE, phaseStart);
+                queryRunner.performQueries(chunk);
+                phaseStart = addTime(metrics, Phase.SEARCH, phaseStart);
+                resultWriter.write(chunk);
+                phaseStart = addTime(metrics, Phase.WRITE, phaseStart);
+            }
+        }
+        addTime(metrics, Phase.WRITE, phaseStart);
 
         Instant end = Instant.now();
         System.out.println(Duration.between(start, end));
 
-        writeToFile(suffixArray, queries, outputFile);
+        if (metrics != null) {
+            metrics.unregister();
+            metrics.writeReport(metricsFile);
+        }
+    }
+
+    /**
+     * Adds the time since the start of a phase to the metrics, if they are being
+     * collected, and returns the start of the next phase.
+     */
+    private static long addTime(QueryMetrics metrics, Phase phase, long phaseStart) {
+        long now = System.nanoTime();
+        if (metrics != null) {
+            metrics.addTime(phase, now - phaseStart);
+        }
+        return now;
     }
 
     /**
-     * Reads in a binary file containing a suffix array, created by buildsa.
+     * Opens a binary index file containing a suffix array, created by buildsa. The
+     * file is memory-mapped, so the suffix array is queried in place rather than
+     * read onto the heap.
      * 
      * @param filename the file name of the file containing the suffix array
      * @return the {@link SerializeableSuffixArray}
-     * @throws IOException            if an I/O error occurs while handling the
-     *                                input stream
-     * @throws ClassNotFoundException if the {@link SerializeableSuffixArray} class
-     *                                cannot be found
+     * @throws IOException if an I/O error occurs while mapping the file, or if it
+     *                     is not an index file
      */
-    protected static SerializeableSuffixArray readBinaryFile(String filename)
-            throws IOException, ClassNotFoundException {
-        ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
-        SerializeableSuffixArray serializeableSuffixArray = (SerializeableSuffixArray) objectInputStream.readObject();
-        objectInputStream.close();
-        return serializeableSuffixArray;
-
+    protected static SerializeableSuffixArray readBinaryFile(String filename) throws IOException {
+        return IndexFile.map(Path.of(filename));
     }
 
     /**
@@ -105,25 +251,12 @@ public class QuerySuffixArray {
      * 
      * @param filename the file name of the FASTA file
      * @return the list of {@link Query}
-     * @throws FileNotFoundException if the file cannot be found
+     * @throws IOException if the file cannot be found or read
      */
-    protected static List<Query> readFastaQueriesFile(String filename) throws FileNotFoundException {
-        int currentQuery = -1;
-        List<Query> queries = new ArrayList<>();
-
-        try (Scanner scanner = new Scanner(new File(filename))) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.charAt(0) == '>') {
-                    Query query = new Query(line.substring(1).split(" ")[0]);
-                    queries.add(query);
-                    currentQuery++;
-                } else {
-                    queries.get(currentQuery).appendSequence(line);
-                }
-            }
+    protected static List<Query> readFastaQueriesFile(String filename) throws IOException {
+        try (FastaQueryReader fastaQueryReader = new FastaQueryReader(filename)) {
+            return new ArrayList<>(fastaQueryReader.readChunk(Integer.MAX_VALUE, Long.MAX_VALUE));
         }
-        return (queries);
     }
 
     /**
@@ -132,42 +265,329 @@ public class QuerySuffixArray {
      * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
      * @param queries                  the list of {@link Query} to perform
      * @param queryMode                specifies whether to run the naive binary
-     *                                 search algorithm on the suffix array or the
-     *                                 simple accelerant using LCP values
+     *                                 search algorithm on the suffix array, the
+     *                                 simple accelerant using LCP values or the
+     *                                 super accelerant using LCP-LR arrays
      */
     protected static void performQueries(SerializeableSuffixArray serializeableSuffixArray, List<Query> queries,
             QueryMode queryMode) {
-        String text = serializeableSuffixArray.getText();
-        int lastIndex = text.length() - 1;
+        SearchScratch scratch = new SearchScratch();
+        QueryOptions options = new QueryOptions();
         for (Query query : queries) {
-            String pattern = query.getSequence();
-
-            IndexInterval[] prefixTable = serializeableSuffixArray.getPrefixTable();
-            int startIndex = 0;
-            int endIndex = lastIndex;
-            if (prefixTable != null) {
-                // Take the first k characters of the pattern and lookup in the prefix table
-                int prefixTableIndex = BasePair
-                        .convertDNAStringToInt(pattern.substring(0, serializeableSuffixArray.getPrefixLength()));
-                IndexInterval indexInterval = prefixTable[prefixTableIndex];
-                if (indexInterval != null) {
-                    startIndex = indexInterval.getStart() > 0 && queryMode == QueryMode.NAIVE
-                            ? indexInterval.getStart() - 1
-                            : startIndex;
-                    endIndex = indexInterval.getEnd();
-                    if (queryMode == QueryMode.SIMPACCEL) {
-                        endIndex--; // Improve performance on simpaccel if we stay within prefix range
+            performQuery(serializeableSuffixArray, query, queryMode, scratch, options);
+        }
+    }
+
+    /**
+     * Performs a single query on the provided suffix array, storing the intervals
+     * of its hits in the query. The query's existing hits range is reused if it
+     * has one. With the both-strands option, the reverse strand is searched as
+     * well, for the reverse complement of the query, which is packed straight
+     * from the query's sequence. It shares what it can with the forward search: a
+     * query that is its own reverse complement has the same hits on both strands,
+     * a prefix table lookup of the reverse complement is made from the code of
+     * the last bases of the packed query, so a reverse complement with no hits or
+     * of at most k bases is never packed, and the FM-index searches the
+     * complement of the packed query from its first base. In the
+     * {@link QueryMode#MISMATCH} query mode, the hits may differ from the query in
+     * up to the options' number of bases, and are stored as a list of intervals
+     * for each strand; in the {@link QueryMode#SMEM} query mode, the maximal exact
+     * matches of at least the options' minimum length are stored instead.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param query                    the {@link Query} to perform
+     * @param queryMode                the {@link QueryMode} to search in
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread
+     * @param options                  the {@link QueryOptions}
+     */
+    protected static void performQuery(SerializeableSuffixArray serializeableSuffixArray, Query query,
+            QueryMode queryMode, SearchScratch scratch, QueryOptions options) {
+        boolean bothStrands = options.isBothStrands();
+        if (queryMode == QueryMode.SMEM) {
+            performMatchQuery(serializeableSuffixArray, query, scratch, bothStrands, options.getMinLength());
+            return;
+        }
+        if (queryMode == QueryMode.MISMATCH) {
+            performMismatchQuery(serializeableSuffixArray, query, scratch, bothStrands, options.getMaxMismatches());
+            return;
+        }
+        IndexInterval hitsRange = query.getHitsRange();
+        if (hitsRange == null) {
+            hitsRange = new IndexInterval(-1, -1);
+            query.setHitsRange(hitsRange);
+        }
+        IndexInterval reverseHitsRange = null;
+        if (bothStrands) {
+            reverseHitsRange = query.getReverseHitsRange();
+            if (reverseHitsRange == null) {
+                reverseHitsRange = new IndexInterval(-1, -1);
+                query.setReverseHitsRange(reverseHitsRange);
+            }
+        }
+        CharSequence sequence = query.getSequence();
+        if (!PackedText.isPackable(sequence)) {
+            // a pattern with anything other than A, C, G or T cannot occur in the text
+            hitsRange.setStart(-1);
+            hitsRange.setEnd(-1);
+            if (bothStrands) {
+                reverseHitsRange.setStart(-1);
+                reverseHitsRange.setEnd(-1);
+            }
+            return;
+        }
+        PackedText pattern = scratch.pack(sequence);
+        searchStrand(serializeableSuffixArray, pattern, sequence, queryMode, scratch, hitsRange);
+        if (bothStrands) {
+            searchReverseStrand(serializeableSuffixArray, pattern, sequence, queryMode, scratch, hitsRange,
+                    reverseHitsRange);
+        }
+    }
+
+    /**
+     * Performs a query allowing up to the given number of mismatches, on one or
+     * both strands.
+     */
+    private static void performMismatchQuery(SerializeableSuffixArray serializeableSuffixArray, Query query,
+            SearchScratch scratch, boolean bothStrands, int maxMismatches) {
+        List<IndexInterval> hitsRanges = query.getHitsRanges();
+        if (hitsRanges == null) {
+            hitsRanges = new ArrayList<>();
+            query.setHitsRanges(hitsRanges);
+        }
+        List<IndexInterval> reverseHitsRanges = null;
+        if (bothStrands) {
+            reverseHitsRanges = query.getReverseHitsRanges();
+            if (reverseHitsRanges == null) {
+                reverseHitsRanges = new ArrayList<>();
+                query.setReverseHitsRanges(reverseHitsRanges);
+            }
+        }
+        CharSequence sequence = query.getSequence();
+        if (!PackedText.isPackable(sequence)) {
+            hitsRanges.clear();
+            if (bothStrands) {
+                reverseHitsRanges.clear();
+            }
+            return;
+        }
+        ApproximateSearch.search(serializeableSuffixArray, scratch.pack(sequence), maxMismatches, scratch,
+                hitsRanges);
+        if (!bothStrands) {
+            return;
+        }
+        if (PackedText.isReverseComplementPalindrome(sequence)) {
+            reverseHitsRanges.clear();
+            reverseHitsRanges.addAll(hitsRanges);
+            return;
+        }
+        ApproximateSearch.search(serializeableSuffixArray, scratch.packReverseComplement(sequence), maxMismatches,
+                scratch, reverseHitsRanges);
+    }
+
+    /**
+     * Finds the maximal exact matches of a query, on one or both strands. A query
+     * with characters other than bases is split at them, as no match can span
+     * one, and each run of bases in between is searched on its own.
+     */
+    private static void performMatchQuery(SerializeableSuffixArray serializeableSuffixArray, Query query,
+            SearchScratch scratch, boolean bothStrands, int minLength) {
+        List<MaximalMatch> matches = query.getMatches();
+        if (matches == null) {
+            matches = new ArrayList<>();
+            query.setMatches(matches);
+        }
+        matches.clear();
+        List<MaximalMatch> reverseMatches = null;
+        if (bothStrands) {
+            reverseMatches = query.getReverseMatches();
+            if (reverseMatches == null) {
+                reverseMatches = new ArrayList<>();
+                query.setReverseMatches(reverseMatches);
+            }
+            reverseMatches.clear();
+        }
+        CharSequence sequence = query.getSequence();
+        int length = sequence.length();
+        int runStart = 0;
+        while (runStart < length) {
+            int runEnd = runStart;
+            while (runEnd < length && BasePair.codeOf(sequence.charAt(runEnd)) >= 0) {
+                runEnd++;
+            }
+            if (runEnd - runStart >= minLength) {
+                CharSequence run = runEnd - runStart == length ? sequence : sequence.subSequence(runStart, runEnd);
+                int first = matches.size();
+                MaximalMatchSearch.search(serializeableSuffixArray, scratch.pack(run), minLength, scratch, matches);
+                for (MaximalMatch match : matches.subList(first, matches.size())) {
+                    match.setQueryStart(runStart + match.getQueryStart());
+                }
+                if (bothStrands) {
+                    first = reverseMatches.size();
+                    MaximalMatchSearch.search(serializeableSuffixArray, scratch.packReverseComplement(run), minLength,
+                            scratch, reverseMatches);
+                    // a match that starts later on the reverse complement starts earlier on the query
+                    List<MaximalMatch> runMatches = reverseMatches.subList(first, reverseMatches.size());
+                    for (MaximalMatch match : runMatches) {
+                        match.setQueryStart(runEnd - match.getQueryStart() - match.getLength());
                     }
-                } else {
-                    // if indexInterval is null, then pattern does not exist in text
-                    query.setHitsRange(new IndexInterval(-1, -1));
-                    continue;
+                    Collections.reverse(runMatches);
                 }
             }
+            runStart = runEnd + 1;
+        }
+    }
 
-            query.setHitsRange(BinarySearch.binaryIntervalSearch(serializeableSuffixArray, pattern, startIndex,
-                    endIndex == lastIndex ? lastIndex + 1 : endIndex, queryMode));
+    /**
+     * Searches for the reverse complement of a query whose forward strand has
+     * been searched.
+     */
+    private static void searchReverseStrand(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            CharSequence sequence, QueryMode queryMode, SearchScratch scratch, IndexInterval hitsRange,
+            IndexInterval reverseHitsRange) {
+        if (PackedText.isReverseComplementPalindrome(sequence)) {
+            reverseHitsRange.setStart(hitsRange.getStart());
+            reverseHitsRange.setEnd(hitsRange.getEnd());
+            return;
         }
+        if (queryMode == QueryMode.FMINDEX) {
+            BackwardSearch.backwardSearchReverseComplement(serializeableSuffixArray, pattern, reverseHitsRange);
+            return;
+        }
+        PrefixTable prefixTable = serializeableSuffixArray.getPrefixTable();
+        if (prefixTable != null) {
+            // the reverse complement starts with the reverse complement of the last bases
+            int length = Math.min(pattern.length(), prefixTable.getPrefixLength());
+            int code = BasePair.reverseComplementCode(pattern.prefixCode(pattern.length() - length, length),
+                    length);
+            int start = prefixTable.getStart(code, length);
+            int end = prefixTable.getEnd(code, length);
+            if (start == end || pattern.length() == length) {
+                scratch.countPrefixTableHit();
+                reverseHitsRange.setStart(start == end ? -1 : start);
+                reverseHitsRange.setEnd(start == end ? -1 : end);
+                return;
+            }
+        }
+        // the forward searches of a sorted run are not bounded by the reverse ones
+        searchStrand(serializeableSuffixArray, scratch.packReverseComplement(sequence), null, queryMode, scratch,
+                reverseHitsRange);
+    }
+
+    /**
+     * Searches for a packed pattern on the forward strand. In a sorted run, the
+     * search is bounded by the previous query, which is given by its sequence.
+     *
+     * @param sequence the sequence of the query that was packed into the pattern,
+     *                 or null for a search that is neither bounded by the previous
+     *                 query nor recorded as the previous query
+     */
+    private static void searchStrand(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            CharSequence sequence, QueryMode queryMode, SearchScratch scratch, IndexInterval hitsRange) {
+        if (queryMode == QueryMode.FMINDEX) {
+            BackwardSearch.backwardSearch(serializeableSuffixArray, pattern, hitsRange);
+            return;
+        }
+        int lastIndex = serializeableSuffixArray.getText().length() - 1;
+        int prefixLength = serializeableSuffixArray.getPrefixLength();
+
+        PrefixTable prefixTable = serializeableSuffixArray.getPrefixTable();
+        int startIndex = 0;
+        int endIndex = lastIndex;
+        if (prefixTable != null) {
+            // Take the first k characters of the pattern, or all of a shorter one,
+            // and lookup in the prefix table
+            int length = Math.min(pattern.length(), prefixLength);
+            int code = pattern.prefixCode(0, length);
+            int start = prefixTable.getStart(code, length);
+            int end = prefixTable.getEnd(code, length);
+            if (start == end) {
+                // if the interval is empty, then pattern does not exist in text
+                scratch.countPrefixTableHit();
+                hitsRange.setStart(-1);
+                hitsRange.setEnd(-1);
+                return;
+            }
+            if (pattern.length() <= prefixLength) {
+                // the interval of the whole pattern is the interval of its hits
+                scratch.countPrefixTableHit();
+                hitsRange.setStart(start);
+                hitsRange.setEnd(end);
+                if (sequence != null) {
+                    scratch.recordQuery(sequence, start, end);
+                }
+                return;
+            }
+            scratch.countPrefixTableMiss();
+            if (queryMode == QueryMode.SUPERACCEL || queryMode == QueryMode.EYTZINGER) {
+                // these searches skip the parts of the suffix array outside of the interval
+                startIndex = start;
+            } else if (start > 0 && queryMode == QueryMode.NAIVE) {
+                startIndex = start - 1;
+            }
+            endIndex = end;
+            if (queryMode == QueryMode.SIMPACCEL) {
+                endIndex--; // Improve performance on simpaccel if we stay within prefix range
+            }
+        }
+
+        if (queryMode == QueryMode.EYTZINGER) {
+            EytzingerIndex eytzingerIndex = serializeableSuffixArray.getEytzingerIndex();
+            if (eytzingerIndex == null) {
+                throw new IllegalStateException(
+                        "The eytzinger query mode needs an index built with the top-level index (--eytzinger)");
+            }
+            // narrow the search down to the samples that the top-level index cannot tell apart
+            startIndex = Math.max(startIndex, eytzingerIndex.lowerRow(pattern));
+            endIndex = Math.min(endIndex, eytzingerIndex.upperRow(pattern));
+        }
+
+        // a query that sorts after the previous one cannot start before it, and one
+        // that extends the previous one has its hits among the previous hits
+        CharSequence previous = sequence == null ? null : scratch.getPreviousSequence();
+        if (previous != null) {
+            int matched = matchedBases(sequence, previous);
+            int previousStart = scratch.getPreviousStart();
+            if (matched == previous.length() && matched == sequence.length()) {
+                hitsRange.setStart(previousStart);
+                hitsRange.setEnd(scratch.getPreviousEnd());
+                return;
+            }
+            if (matched == previous.length() || (matched < sequence.length()
+                    && BasePair.codeOf(sequence.charAt(matched)) > BasePair.codeOf(previous.charAt(matched)))) {
+                startIndex = Math.max(startIndex,
+                        queryMode == QueryMode.NAIVE ? Math.max(0, previousStart - 1) : previousStart);
+            }
+            if (matched == previous.length()) {
+                endIndex = Math.min(endIndex, scratch.getPreviousEnd());
+            }
+            if (startIndex > lastIndex) {
+                // the previous query sorts after every suffix, and so does this one
+                hitsRange.setStart(-1);
+                hitsRange.setEnd(-1);
+                return;
+            }
+        }
+
+        BinarySearch.binaryIntervalSearch(serializeableSuffixArray, pattern, startIndex,
+                endIndex == lastIndex ? lastIndex + 1 : endIndex, queryMode, scratch, hitsRange);
+        if (sequence != null) {
+            scratch.recordQuery(sequence, hitsRange.getStart(), hitsRange.getEnd());
+        }
+    }
+
+    /**
+     * Counts the bases at the start of a sequence that match those of another,
+     * whatever their case.
+     */
+    private static int matchedBases(CharSequence sequence, CharSequence other) {
+        int length = Math.min(sequence.length(), other.length());
+        int matched = 0;
+        while (matched < length
+                && BasePair.codeOf(sequence.charAt(matched)) == BasePair.codeOf(other.charAt(matched))) {
+            matched++;
+        }
+        return matched;
     }
 
     /**
@@ -181,19 +601,9 @@ public class QuerySuffixArray {
      */
     protected static void writeToFile(SerializeableSuffixArray serializeableSuffixArray, List<Query> queries,
             String outputFile) throws IOException {
-        FileWriter fileWriter = new FileWriter(outputFile);
-        int[] suffixArray = serializeableSuffixArray.getSuffixArray();
-        for (Query query : queries) {
-            int startIndex = query.getHitsRange().getStart();
-            int endIndex = query.getHitsRange().getEnd();
-            fileWriter.write(query.getName() + " " + (endIndex - startIndex));
-            for (int i = startIndex; i < endIndex; i++) {
-                fileWriter.write(" " + suffixArray[i]);
-            }
-            fileWriter.write("\n");
+        try (QueryResultWriter queryResultWriter = new QueryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions(), outputFile)) {
+            queryResultWriter.write(queries);
         }
-        fileWriter.close();
-
     }
-
 }
@@ -0,0 +1,24 @@
+package querysa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import model.Query;
+
+/**
+ * An interface for the writers of query results, which write the results of
+ * one chunk of queries at a time, in the order of the chunk.
+ *
+ * @author Valerie Wray
+ *
+ */
+public interface ResultWriter extends Closeable {
+    /**
+     * Writes the results of a chunk of queries and flushes them to the output.
+     *
+     * @param queries the list of {@link Query}, which must have been performed
+     * @throws IOException if an error occurs while trying to write to the output
+     */
+    void write(List<Query> queries) throws IOException;
+}
@@ -0,0 +1,123 @@
+package querysa;
+
+import model.QueryMode;
+
+/**
+ * A class holding the options of a {@link ResultWriter}, which both the
+ * {@link QueryResultWriter} and the {@link BinaryResultWriter} take: the
+ * {@link QueryMode} the queries were run in, which decides whether the hits are
+ * located from the FM-index or the suffix array, the {@link HitLimit} of each
+ * query, and the number of threads to locate and sort large intervals of hits
+ * on. The text writer may also sort the hits of each strand by position, and
+ * the binary writer, which always sorts them, records whether both strands were
+ * searched and may compress its blocks. A new instance has the defaults of the
+ * command line, and each setter returns the instance, so that only the options
+ * that differ need to be set.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ResultWriterOptions {
+    private QueryMode queryMode = QueryMode.NAIVE;
+    private HitLimit hitLimit = HitLimit.ALL;
+    private boolean sortHits;
+    private int threads = 1;
+    private boolean bothStrands;
+    private boolean compressed;
+
+    public QueryMode getQueryMode() {
+        return queryMode;
+    }
+
+    /**
+     * Sets the {@link QueryMode} the queries were run in.
+     *
+     * @param queryMode the query mode
+     * @return this
+     */
+    public ResultWriterOptions setQueryMode(QueryMode queryMode) {
+        this.queryMode = queryMode;
+        return this;
+    }
+
+    public HitLimit getHitLimit() {
+        return hitLimit;
+    }
+
+    /**
+     * Sets the {@link HitLimit} of each query.
+     *
+     * @param hitLimit the hit limit
+     * @return this
+     */
+    public ResultWriterOptions setHitLimit(HitLimit hitLimit) {
+        this.hitLimit = hitLimit;
+        return this;
+    }
+
+    public boolean isSortHits() {
+        return sortHits;
+    }
+
+    /**
+     * Sets whether the text writer writes the hits of each strand in ascending
+     * order of their positions.
+     *
+     * @param sortHits whether to sort the hits
+     * @return this
+     */
+    public ResultWriterOptions setSortHits(boolean sortHits) {
+        this.sortHits = sortHits;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads to locate and sort large intervals of hits on.
+     *
+     * @param threads the number of threads
+     * @return this
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public ResultWriterOptions setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public boolean isBothStrands() {
+        return bothStrands;
+    }
+
+    /**
+     * Sets whether the queries were searched for on both strands, which the
+     * binary writer records in its header.
+     *
+     * @param bothStrands whether both strands were searched
+     * @return this
+     */
+    public ResultWriterOptions setBothStrands(boolean bothStrands) {
+        this.bothStrands = bothStrands;
+        return this;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Sets whether the binary writer compresses its blocks.
+     *
+     * @param compressed whether to compress the blocks
+     * @return this
+     */
+    public ResultWriterOptions setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+}
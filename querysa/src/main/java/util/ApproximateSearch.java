@@ -0,0 +1,310 @@
+package util;
+
+import java.util.Comparator;
+import java.util.List;
+
+import model.FmIndex;
+import model.IndexInterval;
+import model.IntArray;
+import model.PackedText;
+import model.PrefixTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * A class to provide search with up to a given number of mismatches, for
+ * lookups that tolerate SNPs and sequencing errors. Every string of the length
+ * of the pattern that differs from it in at most that many bases has an
+ * interval of suffixes starting with it, and those intervals are found by
+ * backtracking, one base at a time, as a depth-first walk over the suffix
+ * trie that the index represents, which is cut off as soon as an interval is
+ * empty. Once the mismatches are used up, the rest of the pattern is searched
+ * for exactly.
+ * <p>
+ * The walk follows the suffix array from the first base of the pattern. All of
+ * the suffixes of an interval share the bases walked so far, so they are sorted
+ * by the base that follows, and each probe of the binary searches that split an
+ * interval by that base compares a single base. While the walk is no deeper
+ * than the prefix table, the intervals are read from the table instead, and
+ * once an interval holds only a few suffixes, each is compared with the rest of
+ * the pattern a word at a time, so a long pattern does not branch at every one
+ * of its bases.
+ * <p>
+ * Most of the cost is in the first bases, where the intervals are large, and
+ * each further mismatch allowed there multiplies it. If the index has an
+ * FM-index, two or more mismatches are found by two walks instead: one over the
+ * suffix array that allows one mismatch fewer in the first bases, and one
+ * backward over the FM-index that matches the rest of the pattern exactly
+ * before allowing all of the mismatches in the first bases. Every hit is found
+ * by at least one of them.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ApproximateSearch {
+    /**
+     * The number of mismatches allowed when none is given.
+     */
+    public static final int DEFAULT_MISMATCHES = 1;
+
+    /**
+     * The size of an interval of the suffix array at or below which its suffixes
+     * are compared with the rest of the pattern directly, rather than split by
+     * their next base.
+     */
+    private static final int VERIFY_INTERVAL = 4;
+
+    private static final Comparator<IndexInterval> START_ORDER = Comparator.comparingInt(IndexInterval::getStart);
+
+    private final PackedText text;
+    private final IntArray suffixArray;
+    private final PrefixTable prefixTable;
+    private final PackedText pattern;
+    private final SearchScratch scratch;
+    private final List<IndexInterval> hitsRanges;
+
+    private ApproximateSearch(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            SearchScratch scratch, List<IndexInterval> hitsRanges) {
+        this.text = serializeableSuffixArray.getText();
+        this.suffixArray = serializeableSuffixArray.getSuffixArray();
+        this.prefixTable = serializeableSuffixArray.getPrefixTable();
+        this.pattern = pattern;
+        this.scratch = scratch;
+        this.hitsRanges = hitsRanges;
+    }
+
+    /**
+     * Finds the intervals of the suffixes that start with a string differing from
+     * the pattern in at most the given number of bases. The intervals are
+     * disjoint, and are stored in the order of the suffix array, but an interval
+     * may hold the hits of several such strings, and the hits of one string may
+     * be split over several intervals.
+     *
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param pattern                  the packed pattern to search for
+     * @param maxMismatches            the number of bases that may differ
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread, in which the probes are counted
+     * @param hitsRanges               the list to store the non-empty intervals
+     *                                 of the hits in, which is cleared first
+     * @return the hitsRanges
+     * @throws IllegalArgumentException if the number of mismatches is negative
+     */
+    public static List<IndexInterval> search(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            int maxMismatches, SearchScratch scratch, List<IndexInterval> hitsRanges) {
+        if (maxMismatches < 0) {
+            throw new IllegalArgumentException("The number of mismatches must be at least 0, but was "
+                    + maxMismatches);
+        }
+        hitsRanges.clear();
+        ApproximateSearch search = new ApproximateSearch(serializeableSuffixArray, pattern, scratch, hitsRanges);
+        FmIndex fmIndex = serializeableSuffixArray.getFmIndex();
+        int split = Math.min(pattern.length() / 2, uniqueDepth(search.text.length()));
+        if (fmIndex == null || maxMismatches < 2 || split == 0) {
+            search.searchForward(0, 0, 0, search.text.length(), 0, 0, maxMismatches, maxMismatches);
+            return hitsRanges;
+        }
+        // a hit has either fewer than all of its mismatches before the split, or
+        // none after it
+        search.searchForward(0, 0, 0, search.text.length(), 0, split, maxMismatches - 1, maxMismatches);
+        int start = 0;
+        int end = fmIndex.length();
+        for (int position = pattern.length() - 1; position >= split && start < end; position--) {
+            int base = pattern.baseAt(position);
+            start = fmIndex.count(base) + fmIndex.occurrences(base, start);
+            end = fmIndex.count(base) + fmIndex.occurrences(base, end);
+        }
+        search.searchBackward(fmIndex, split - 1, start, end, maxMismatches);
+        // the two walks find some of the same hits, in a different order
+        hitsRanges.sort(START_ORDER);
+        int merged = 0;
+        for (IndexInterval hitsRange : hitsRanges) {
+            IndexInterval last = merged == 0 ? null : hitsRanges.get(merged - 1);
+            if (last != null && hitsRange.getStart() <= last.getEnd()) {
+                last.setEnd(Math.max(last.getEnd(), hitsRange.getEnd()));
+            } else {
+                hitsRanges.set(merged++, hitsRange);
+            }
+        }
+        hitsRanges.subList(merged, hitsRanges.size()).clear();
+        return hitsRanges;
+    }
+
+    /**
+     * Returns the number of bases after which an interval of a random text of the
+     * given length holds about one suffix.
+     */
+    private static int uniqueDepth(int length) {
+        return (33 - Integer.numberOfLeadingZeros(Math.max(1, length - 1))) >>> 1;
+    }
+
+    /**
+     * Splits the interval of the suffixes starting with a string of the given
+     * depth, whose code is given while the depth is no more than the length of the
+     * prefix table, by each base in turn after that string. Up to the cut depth,
+     * the string may differ from the pattern in no more than the low number of
+     * bases, and in no more than the high number after it.
+     */
+    private void searchForward(int depth, int code, int start, int end, int mismatches, int cut, int low,
+            int high) {
+        if (start >= end) {
+            return;
+        }
+        int patternLength = pattern.length();
+        if (depth == patternLength) {
+            addHits(start, end);
+            return;
+        }
+        if (end - start <= VERIFY_INTERVAL) {
+            verify(depth, start, end, high - mismatches);
+            return;
+        }
+        boolean inTable = prefixTable != null && depth < prefixTable.getPrefixLength();
+        if (mismatches == high && inTable) {
+            // the rest of the string is read from the table as far as it goes
+            int tableDepth = Math.min(patternLength, prefixTable.getPrefixLength());
+            code = (code << ((tableDepth - depth) << 1)) | pattern.prefixCode(depth, tableDepth - depth);
+            searchForward(tableDepth, code, prefixTable.getStart(code, tableDepth),
+                    prefixTable.getEnd(code, tableDepth), mismatches, cut, low, high);
+            return;
+        }
+        if (mismatches == high) {
+            int first = searchRest(depth, start, end, false);
+            addHits(first, searchRest(depth, first, end, true));
+            return;
+        }
+        int patternBase = pattern.baseAt(depth);
+        // only the base of the pattern is tried once the mismatches before the cut
+        // are used up
+        boolean exact = depth < cut && mismatches == low;
+        int firstBase = exact ? patternBase : 0;
+        int lastBase = exact ? patternBase : 3;
+        // the suffixes that end right after the string come first, and are skipped
+        int childStart = inTable ? 0 : searchBase(depth, firstBase, start, end);
+        for (int base = firstBase; base <= lastBase; base++) {
+            int childCode = (code << 2) | base;
+            int childEnd;
+            if (inTable) {
+                childStart = prefixTable.getStart(childCode, depth + 1);
+                childEnd = prefixTable.getEnd(childCode, depth + 1);
+            } else {
+                childEnd = base == 3 ? end : searchBase(depth, base + 1, childStart, end);
+            }
+            searchForward(depth + 1, childCode, childStart, childEnd,
+                    base == patternBase ? mismatches : mismatches + 1, cut, low, high);
+            childStart = childEnd;
+        }
+    }
+
+    /**
+     * Extends the rows of the suffixes starting with the bases of the pattern
+     * after the given position, with the given number of mismatches left, by each
+     * base in turn at that position.
+     */
+    private void searchBackward(FmIndex fmIndex, int position, int start, int end, int mismatches) {
+        if (mismatches == 0) {
+            for (; position >= 0 && start < end; position--) {
+                int base = pattern.baseAt(position);
+                start = fmIndex.count(base) + fmIndex.occurrences(base, start);
+                end = fmIndex.count(base) + fmIndex.occurrences(base, end);
+            }
+        }
+        if (start >= end) {
+            return;
+        }
+        if (position < 0) {
+            hitsRanges.add(new IndexInterval(start, end));
+            return;
+        }
+        int patternBase = pattern.baseAt(position);
+        for (int base = 0; base < 4; base++) {
+            searchBackward(fmIndex, position - 1, fmIndex.count(base) + fmIndex.occurrences(base, start),
+                    fmIndex.count(base) + fmIndex.occurrences(base, end),
+                    base == patternBase ? mismatches : mismatches - 1);
+        }
+    }
+
+    /**
+     * Adds the suffixes of an interval, all of which share the bases before the
+     * given depth, that differ from the rest of the pattern in no more than the
+     * given number of bases.
+     */
+    private void verify(int depth, int start, int end, int mismatches) {
+        int remaining = pattern.length() - depth;
+        for (int i = start; i < end; i++) {
+            int suffix = suffixArray.get(i);
+            if (text.limit(suffix) - suffix - depth < remaining) {
+                // the suffix ends before the pattern does
+                continue;
+            }
+            scratch.countProbe(remaining);
+            if (PackedText.mismatches(text, suffix + depth, pattern, depth, remaining, mismatches) <= mismatches) {
+                addHits(i, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Adds an interval of hits, merging it into the last one if they are
+     * neighbours.
+     */
+    private void addHits(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        IndexInterval last = hitsRanges.isEmpty() ? null : hitsRanges.get(hitsRanges.size() - 1);
+        if (last != null && last.getEnd() == start) {
+            last.setEnd(end);
+        } else {
+            hitsRanges.add(new IndexInterval(start, end));
+        }
+    }
+
+    /**
+     * Finds the first suffix of an interval whose base at the given depth is at
+     * least the given base, where all of the suffixes share the bases before it,
+     * and a suffix that ends at the depth sorts first.
+     */
+    private int searchBase(int depth, int base, int start, int end) {
+        while (start < end) {
+            int middle = (start + end) >>> 1;
+            int position = suffixArray.get(middle) + depth;
+            scratch.countProbe(1);
+            if (text.isTerminator(position) || text.baseAt(position) < base) {
+                start = middle + 1;
+            } else {
+                end = middle;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Finds the first suffix of an interval, all of whose suffixes share the bases
+     * before the given depth, that does not sort before the rest of the pattern
+     * from that depth on, or with upperBound, the first that sorts after the
+     * suffixes starting with it.
+     */
+    private int searchRest(int depth, int start, int end, boolean upperBound) {
+        int remaining = pattern.length() - depth;
+        while (start < end) {
+            int middle = (start + end) >>> 1;
+            int suffix = suffixArray.get(middle);
+            int position = suffix + depth;
+            int available = text.limit(suffix) - position;
+            int matched = PackedText.matchLength(text, position, pattern, depth, Math.min(remaining, available));
+            scratch.countProbe(matched + 1);
+            boolean before;
+            if (matched == remaining) {
+                before = upperBound;
+            } else {
+                before = matched == available || text.baseAt(position + matched) < pattern.baseAt(depth + matched);
+            }
+            if (before) {
+                start = middle + 1;
+            } else {
+                end = middle;
+            }
+        }
+        return start;
+    }
+}
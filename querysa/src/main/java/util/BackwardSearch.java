@@ -0,0 +1,91 @@
+package util;
+
+import model.BasePair;
+import model.FmIndex;
+import model.IndexInterval;
+import model.PackedText;
+import model.SerializeableSuffixArray;
+
+/**
+ * A class to provide backward search over an {@link FmIndex}. The pattern is
+ * matched from its last base to its first, narrowing the interval of rows with
+ * two occurrence counts per base, so counting the hits of a pattern of length m
+ * takes O(m) time no matter how large the text is, and never touches the text
+ * or the suffix array.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class BackwardSearch {
+
+    private BackwardSearch() {
+    }
+
+    /**
+     * Performs backward search for a pattern to find the interval of rows, which
+     * are also suffix array indices, of the suffixes starting with it.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}, which
+     *                                 has an FM-index
+     * @param pattern                  the packed pattern to search for
+     * @param hitsRange                the {@link IndexInterval} to store the start
+     *                                 (inclusive) and the end (exclusive) of all
+     *                                 occurrences of the pattern in. If the pattern
+     *                                 does not occur, then start and end are equal
+     * @return the hitsRange
+     * @throws IllegalStateException if the suffix array has no FM-index
+     */
+    public static IndexInterval backwardSearch(SerializeableSuffixArray serializeableSuffixArray,
+            PackedText pattern, IndexInterval hitsRange) {
+        FmIndex fmIndex = serializeableSuffixArray.getFmIndex();
+        if (fmIndex == null) {
+            throw new IllegalStateException(
+                    "The fmindex query mode needs an index built with the FM-index (--fmindex)");
+        }
+        int start = 0;
+        int end = fmIndex.length();
+        for (int i = pattern.length() - 1; i >= 0 && start < end; i--) {
+            int base = pattern.baseAt(i);
+            start = fmIndex.count(base) + fmIndex.occurrences(base, start);
+            end = fmIndex.count(base) + fmIndex.occurrences(base, end);
+        }
+        hitsRange.setStart(start);
+        hitsRange.setEnd(Math.max(start, end));
+        return hitsRange;
+    }
+
+    /**
+     * Performs backward search for the reverse complement of a pattern. The last
+     * base of the reverse complement is the complement of the first base of the
+     * pattern, so the pattern is read from its first base to its last, and its
+     * reverse complement is never packed.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}, which
+     *                                 has an FM-index
+     * @param pattern                  the packed pattern whose reverse complement
+     *                                 to search for
+     * @param hitsRange                the {@link IndexInterval} to store the start
+     *                                 (inclusive) and the end (exclusive) of all
+     *                                 occurrences of the reverse complement in
+     * @return the hitsRange
+     * @throws IllegalStateException if the suffix array has no FM-index
+     */
+    public static IndexInterval backwardSearchReverseComplement(SerializeableSuffixArray serializeableSuffixArray,
+            PackedText pattern, IndexInterval hitsRange) {
+        FmIndex fmIndex = serializeableSuffixArray.getFmIndex();
+        if (fmIndex == null) {
+            throw new IllegalStateException(
+                    "The fmindex query mode needs an index built with the FM-index (--fmindex)");
+        }
+        int start = 0;
+        int end = fmIndex.length();
+        for (int i = 0; i < pattern.length() && start < end; i++) {
+            int base = BasePair.complementOf(pattern.baseAt(i));
+            start = fmIndex.count(base) + fmIndex.occurrences(base, start);
+            end = fmIndex.count(base) + fmIndex.occurrences(base, end);
+        }
+        hitsRange.setStart(start);
+        hitsRange.setEnd(Math.max(start, end));
+        return hitsRange;
+    }
+}
@@ -1,7 +1,9 @@
 package util;
 
 import model.IndexInterval;
+import model.IntArray;
 import model.LCPPair;
+import model.PackedText;
 import model.QueryMode;
 import model.SerializeableSuffixArray;
 
@@ -12,27 +14,64 @@ import model.SerializeableSuffixArray;
  *
  */
 public class BinarySearch {
+    /**
+     * The number of LCP array entries scanned after the start of an interval
+     * before falling back to a binary search for its end.
+     */
+    private static final int LCP_SCAN_LIMIT = 32;
 
     /**
      * Performs binary search on a given suffix array with the given starting left
      * and right indices and the pattern to search for.
      * 
      * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
-     * @param prefix                   the prefix to search for
+     * @param prefix                   the packed prefix to search for
+     * @param leftIndex                the starting left index
+     * @param rightIndex               the starting right index
+     * @param upperBound               whether to search for the first suffix after
+     *                                 the ones starting with the prefix, rather than
+     *                                 for the first suffix starting with it
+     * @return the suffix array index of the first occurrence of the prefix, if it
+     *         occurs, othewise the closest index to where it would occur
+     */
+    public static int binarySearch(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix,
+            int leftIndex, int rightIndex, boolean upperBound) {
+        return binarySearch(serializeableSuffixArray, prefix, leftIndex, rightIndex, upperBound, new SearchScratch());
+    }
+
+    /**
+     * Performs binary search on a given suffix array with the given starting left
+     * and right indices and the pattern to search for. When searching for the
+     * first suffix starting with the prefix, the suffixes it probes that sort
+     * after the prefix are recorded in the scratch, to bound the search for the
+     * end of the interval.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param prefix                   the packed prefix to search for
      * @param leftIndex                the starting left index
      * @param rightIndex               the starting right index
+     * @param upperBound               whether to search for the first suffix after
+     *                                 the ones starting with the prefix, rather than
+     *                                 for the first suffix starting with it
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread
      * @return the suffix array index of the first occurrence of the prefix, if it
      *         occurs, othewise the closest index to where it would occur
      */
-    public static int binarySearch(SerializeableSuffixArray serializeableSuffixArray, String prefix, int leftIndex,
-            int rightIndex) {
-        String text = serializeableSuffixArray.getText();
-        int[] suffixArray = serializeableSuffixArray.getSuffixArray();
+    public static int binarySearch(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix,
+            int leftIndex, int rightIndex, boolean upperBound, SearchScratch scratch) {
+        PackedText text = serializeableSuffixArray.getText();
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
         int left = leftIndex;
         int right = rightIndex;
         while (true) {
             int center = (left + right) / 2;
-            if (prefix.compareTo(text.substring(suffixArray[center])) < 0) {
+            int suffixStart = suffixArray.get(center);
+            int matched = matchLength(text, suffixStart, prefix, 0, scratch);
+            if (SuffixComparator.compare(prefix, text, suffixStart, matched, upperBound) < 0) {
+                if (!upperBound) {
+                    scratch.recordProbe(center, matched == prefix.length());
+                }
                 if (center == left + 1) {
                     return center;
                 } else {
@@ -53,29 +92,136 @@ public class BinarySearch {
      * pattern occurs.
      * 
      * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
-     * @param prefix                   the prefix to search for
+     * @param prefix                   the packed prefix to search for
      * @param leftIndex                the starting left index
      * @param rightIndex               the starting right index
      * @param queryMode                specifies whether to run the naive binary
-     *                                 search algorithm on the suffix array or the
-     *                                 simple accelerant using LCP values
+     *                                 search algorithm on the suffix array, the
+     *                                 simple accelerant using LCP values or the
+     *                                 super accelerant using LCP-LR arrays
      * @return the {@link IndexInterval} containing the suffix array indices of the
      *         start (inclusive) and the end (exclusive) of all occurrences of the
      *         prefix. If the prefix does not occur, then returns indices with start
      *         and end equal
      */
-    public static IndexInterval binaryIntervalSearch(SerializeableSuffixArray serializeableSuffixArray, String prefix,
-            int leftIndex, int rightIndex, QueryMode queryMode) {
-        int start = queryMode == QueryMode.NAIVE ? binarySearch(serializeableSuffixArray, prefix, leftIndex, rightIndex)
-                : binarySearchWithLCP(serializeableSuffixArray, prefix, leftIndex, rightIndex);
-        int lastIndex = prefix.length() - 1;
-        char lastChar = prefix.charAt(lastIndex);
-        String prefixNext = prefix.substring(0, lastIndex) + (++lastChar);
-        int end = queryMode == QueryMode.NAIVE
-                ? binarySearch(serializeableSuffixArray, prefixNext, start > 0 ? start - 1 : start, rightIndex)
-                : binarySearchWithLCP(serializeableSuffixArray, prefixNext, start, rightIndex);
-        return new IndexInterval(start, end);
+    public static IndexInterval binaryIntervalSearch(SerializeableSuffixArray serializeableSuffixArray,
+            PackedText prefix, int leftIndex, int rightIndex, QueryMode queryMode) {
+        return binaryIntervalSearch(serializeableSuffixArray, prefix, leftIndex, rightIndex, queryMode,
+                new SearchScratch(), new IndexInterval(0, 0));
+    }
 
+    /**
+     * Performs binary search on a suffix array to find the interval on which the
+     * pattern occurs, using the given scratch state and storing the result in the
+     * given interval instead of allocating new ones.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param prefix                   the packed prefix to search for
+     * @param leftIndex                the starting left index
+     * @param rightIndex               the starting right index
+     * @param queryMode                specifies whether to run the naive binary
+     *                                 search algorithm on the suffix array, the
+     *                                 simple accelerant using LCP values or the
+     *                                 super accelerant using LCP-LR arrays
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread
+     * @param hitsRange                the {@link IndexInterval} to store the start
+     *                                 (inclusive) and the end (exclusive) of all
+     *                                 occurrences of the prefix in. If the prefix
+     *                                 does not occur, then start and end are equal
+     * @return the hitsRange
+     */
+    public static IndexInterval binaryIntervalSearch(SerializeableSuffixArray serializeableSuffixArray,
+            PackedText prefix, int leftIndex, int rightIndex, QueryMode queryMode, SearchScratch scratch,
+            IndexInterval hitsRange) {
+        scratch.resetEndBounds(rightIndex);
+        int start;
+        switch (queryMode) {
+        case NAIVE:
+            start = binarySearch(serializeableSuffixArray, prefix, leftIndex, rightIndex, false, scratch);
+            break;
+        case SUPERACCEL:
+            start = binarySearchWithLcpLr(serializeableSuffixArray, prefix, leftIndex, rightIndex, false, scratch);
+            break;
+        default:
+            start = binarySearchWithLCP(serializeableSuffixArray, prefix, leftIndex, rightIndex, false, scratch);
+            break;
+        }
+        hitsRange.setStart(start);
+        hitsRange.setEnd(searchEnd(serializeableSuffixArray, prefix, start, queryMode, scratch));
+        return hitsRange;
+    }
+
+    /**
+     * Finds the end of the interval of suffixes starting with the prefix, given
+     * its start. If the suffix at the start does not begin with the prefix, the
+     * interval is empty. Otherwise the end is found from the LCP array if there is
+     * one, or else by a second search, which only has to cover the suffixes
+     * between the last one that the search for the start found to begin with the
+     * prefix and the first one that it found to sort after all of them.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param prefix                   the packed prefix to search for
+     * @param start                    the start of the interval
+     * @param queryMode                the {@link QueryMode} of the second search
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread, holding the bounds recorded by the
+     *                                 search for the start
+     * @return the suffix array index of the end (exclusive) of the occurrences of
+     *         the prefix
+     */
+    private static int searchEnd(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix, int start,
+            QueryMode queryMode, SearchScratch scratch) {
+        PackedText text = serializeableSuffixArray.getText();
+        // if the prefix sorts after every suffix, there is nothing left to search
+        if (start >= text.length() || matchLength(text,
+                serializeableSuffixArray.getSuffixArray().get(start), prefix, 0, scratch) < prefix.length()) {
+            return start;
+        }
+        if (serializeableSuffixArray.getLcpArray() != null) {
+            int end = scanLcpArray(serializeableSuffixArray, prefix, start);
+            if (end >= 0) {
+                return end;
+            }
+        }
+        // the suffix at left starts with the prefix, so the end is after it
+        int left = Math.max(start, scratch.getLastMatch());
+        int right = scratch.getFirstAfter();
+        switch (queryMode) {
+        case NAIVE:
+            return binarySearch(serializeableSuffixArray, prefix, left, right, true, scratch);
+        case SUPERACCEL:
+            return binarySearchWithLcpLr(serializeableSuffixArray, prefix, left, right, true, scratch);
+        default:
+            return binarySearchWithLCP(serializeableSuffixArray, prefix, left, right, true, scratch);
+        }
+    }
+
+    /**
+     * Finds the end of the interval of suffixes starting with the prefix from the
+     * LCP array of the suffix array: the interval continues for as long as the LCP
+     * of a suffix with the one before it is at least the length of the prefix.
+     * Most patterns occur only a few times, so a short scan replaces the second
+     * binary search.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}, which
+     *                                 has an LCP array
+     * @param prefix                   the packed prefix to search for
+     * @param start                    the suffix array index of the first suffix
+     *                                 starting with the prefix
+     * @return the suffix array index of the end (exclusive) of the occurrences of
+     *         the prefix, or -1 if there are too many to scan
+     */
+    private static int scanLcpArray(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix, int start) {
+        int prefixLength = prefix.length();
+        IntArray lcpArray = serializeableSuffixArray.getLcpArray();
+        int limit = Math.min(lcpArray.length(), start + 1 + LCP_SCAN_LIMIT);
+        for (int end = start + 1; end < limit; end++) {
+            if (lcpArray.get(end) < prefixLength) {
+                return end;
+            }
+        }
+        return limit == lcpArray.length() ? limit : -1;
     }
 
     /**
@@ -84,64 +230,210 @@ public class BinarySearch {
      * part of the simple accelerant algorithm.
      * 
      * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
-     * @param prefix                   the prefix to search for
+     * @param prefix                   the packed prefix to search for
      * @param leftIndex                the starting left index
      * @param rightIndex               the starting right index
+     * @param upperBound               whether to search for the first suffix after
+     *                                 the ones starting with the prefix, rather than
+     *                                 for the first suffix starting with it
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread, whose LCP bounds are reused, and
+     *                                 in which the suffixes probed by a search for
+     *                                 the start of an interval are recorded
      * @return the suffix array index of the first occurrence of the prefix, if it
      *         occurs, othewise the closest index to where it would occur
      */
-    public static int binarySearchWithLCP(SerializeableSuffixArray serializeableSuffixArray, String prefix,
-            int leftIndex, int rightIndex) {
-        String text = serializeableSuffixArray.getText();
-        int[] suffixArray = serializeableSuffixArray.getSuffixArray();
-        LCPPair left = new LCPPair(leftIndex, computeLCP(text.substring(suffixArray[leftIndex]), prefix));
-        LCPPair right = new LCPPair(rightIndex,
-                rightIndex < text.length() - 1 ? computeLCP(text.substring(suffixArray[rightIndex]), prefix) : 0);
+    public static int binarySearchWithLCP(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix,
+            int leftIndex, int rightIndex, boolean upperBound, SearchScratch scratch) {
+        PackedText text = serializeableSuffixArray.getText();
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
+        LCPPair left = scratch.getLeft();
+        left.setIndex(leftIndex);
+        left.setLcp(matchLength(text, suffixArray.get(leftIndex), prefix, 0, scratch));
+        LCPPair right = scratch.getRight();
+        right.setIndex(rightIndex);
+        right.setLcp(rightIndex < text.length() - 1
+                ? matchLength(text, suffixArray.get(rightIndex), prefix, 0, scratch)
+                : 0);
 
         while (true) {
             int charsToSkip = Math.min(left.getLcp(), right.getLcp());
             int center = (left.getIndex() + right.getIndex()) / 2;
-            int centerLCP = charsToSkip;
-            int comparison = 0;
-            while (comparison == 0) {
-                char prefixChar = prefix.charAt(centerLCP);
-                char suffixArrayChar = text.charAt(suffixArray[center] + centerLCP);
-                if (prefixChar == suffixArrayChar) {
-                    centerLCP++;
-                } else {
-                    comparison = prefixChar - suffixArrayChar;
-                }
-                if (prefix.length() <= centerLCP) {
-                    comparison = -1;
-                }
-            }
+            int centerLCP = matchLength(text, suffixArray.get(center), prefix, charsToSkip, scratch);
+            int comparison = SuffixComparator.compare(prefix, text, suffixArray.get(center), centerLCP, upperBound);
 
             if (comparison < 0) {
+                if (!upperBound) {
+                    scratch.recordProbe(center, centerLCP == prefix.length());
+                }
                 if (center <= left.getIndex() + 1) {
-                    if (left.getIndex() == leftIndex && left.getLcp() < prefix.length()
-                            && left.getLcp() < text.length() - suffixArray[leftIndex]
-                            && prefix.charAt(left.getLcp()) < text.charAt(suffixArray[leftIndex] + left.getLcp())) {
+                    if (left.getIndex() == leftIndex && SuffixComparator.compare(prefix, text,
+                            suffixArray.get(leftIndex), left.getLcp(), upperBound) < 0) {
                         return leftIndex;
                     }
                     return center;
                 } else {
-                    right = new LCPPair(center, centerLCP);
+                    right.setIndex(center);
+                    right.setLcp(centerLCP);
                 }
             } else {
                 if (center >= right.getIndex() - 1) {
-                    if (right.getIndex() == rightIndex && rightIndex < text.length() && right.getLcp() < prefix.length()
-                            && right.getLcp() < text.length() - suffixArray[rightIndex]
-                            && prefix.charAt(right.getLcp()) > text.charAt(suffixArray[rightIndex] + right.getLcp())) {
+                    if (right.getIndex() == rightIndex && rightIndex < text.length() && SuffixComparator
+                            .compare(prefix, text, suffixArray.get(rightIndex), right.getLcp(), upperBound) > 0) {
                         right.setIndex(rightIndex + 1);
                     }
                     return right.getIndex();
                 } else {
-                    left = new LCPPair(center, centerLCP);
+                    left.setIndex(center);
+                    left.setLcp(centerLCP);
                 }
             }
         }
     }
 
+    /**
+     * Performs binary search with the super accelerant algorithm, using the LCP-LR
+     * arrays built by buildsa. The search descends the same tree of intervals
+     * that the arrays were built for, starting from the whole suffix array, while
+     * keeping the LCP of the prefix with the suffixes at both ends of the current
+     * interval. Whenever the two differ, the LCP of the center with the end that
+     * matches more of the prefix decides the side without comparing any
+     * characters, unless it is equal to that end's LCP, in which case the
+     * comparison resumes where that end left off. No character of the prefix is
+     * then compared more than once after a mismatch, so a search costs O(m + log
+     * n) character comparisons. The levels of the tree whose centers lie outside
+     * of the given bounds are skipped without comparisons.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}, which
+     *                                 has LCP-LR arrays
+     * @param prefix                   the packed prefix to search for
+     * @param leftIndex                the lowest suffix array index that the
+     *                                 result can be
+     * @param rightIndex               the highest suffix array index that the
+     *                                 result can be
+     * @param upperBound               whether to search for the first suffix after
+     *                                 the ones starting with the prefix, rather than
+     *                                 for the first suffix starting with it
+     * @return the suffix array index of the first occurrence of the prefix, if it
+     *         occurs, othewise the closest index to where it would occur
+     * @throws IllegalStateException if the suffix array has no LCP-LR arrays
+     */
+    public static int binarySearchWithLcpLr(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix,
+            int leftIndex, int rightIndex, boolean upperBound) {
+        return binarySearchWithLcpLr(serializeableSuffixArray, prefix, leftIndex, rightIndex, upperBound,
+                new SearchScratch());
+    }
+
+    /**
+     * Performs binary search with the super accelerant algorithm, as
+     * {@link #binarySearchWithLcpLr(SerializeableSuffixArray, PackedText, int, int, boolean)}
+     * does, recording the suffixes probed by a search for the start of an
+     * interval in the scratch.
+     * 
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}, which
+     *                                 has LCP-LR arrays
+     * @param prefix                   the packed prefix to search for
+     * @param leftIndex                the lowest suffix array index that the
+     *                                 result can be
+     * @param rightIndex               the highest suffix array index that the
+     *                                 result can be
+     * @param upperBound               whether to search for the first suffix after
+     *                                 the ones starting with the prefix, rather than
+     *                                 for the first suffix starting with it
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread
+     * @return the suffix array index of the first occurrence of the prefix, if it
+     *         occurs, othewise the closest index to where it would occur
+     * @throws IllegalStateException if the suffix array has no LCP-LR arrays
+     */
+    public static int binarySearchWithLcpLr(SerializeableSuffixArray serializeableSuffixArray, PackedText prefix,
+            int leftIndex, int rightIndex, boolean upperBound, SearchScratch scratch) {
+        IntArray leftLcpArray = serializeableSuffixArray.getLeftLcpArray();
+        IntArray rightLcpArray = serializeableSuffixArray.getRightLcpArray();
+        if (leftLcpArray == null || rightLcpArray == null) {
+            throw new IllegalStateException(
+                    "The superaccel query mode needs an index built with the LCP-LR arrays (--lcplr)");
+        }
+        PackedText text = serializeableSuffixArray.getText();
+        IntArray suffixArray = serializeableSuffixArray.getSuffixArray();
+        int textLength = text.length();
+        // the suffix at 0 is the sentinel, which sorts before any prefix, and the
+        // suffix at textLength is an imaginary one that sorts after all of them
+        int left = 0;
+        int right = textLength;
+        int center;
+        while (right - left > 1 && ((center = (left + right) >>> 1) < leftIndex || center >= rightIndex)) {
+            if (center < leftIndex) {
+                left = center;
+            } else {
+                right = center;
+            }
+        }
+        int leftLcp = matchLength(text, suffixArray.get(left), prefix, 0, scratch);
+        int rightLcp = right < textLength ? matchLength(text, suffixArray.get(right), prefix, 0, scratch) : 0;
+
+        while (right - left > 1) {
+            center = (left + right) >>> 1;
+            int centerLcp;
+            if (leftLcp >= rightLcp) {
+                int lcp = leftLcpArray.get(center);
+                if (lcp > leftLcp) {
+                    // the center agrees with the left end where the prefix sorts after it
+                    left = center;
+                    continue;
+                } else if (lcp < leftLcp) {
+                    // the center sorts after the left end before the prefix does
+                    if (!upperBound) {
+                        scratch.recordProbe(center, false);
+                    }
+                    right = center;
+                    rightLcp = lcp;
+                    continue;
+                }
+                centerLcp = matchLength(text, suffixArray.get(center), prefix, leftLcp, scratch);
+            } else {
+                int lcp = rightLcpArray.get(center);
+                if (lcp > rightLcp) {
+                    // the center agrees with the right end where the prefix sorts before it
+                    if (!upperBound) {
+                        scratch.recordProbe(center, rightLcp == prefix.length());
+                    }
+                    right = center;
+                    continue;
+                } else if (lcp < rightLcp) {
+                    // the center sorts before the right end before the prefix does
+                    left = center;
+                    leftLcp = lcp;
+                    continue;
+                }
+                centerLcp = matchLength(text, suffixArray.get(center), prefix, rightLcp, scratch);
+            }
+            if (SuffixComparator.compare(prefix, text, suffixArray.get(center), centerLcp, upperBound) < 0) {
+                if (!upperBound) {
+                    scratch.recordProbe(center, centerLcp == prefix.length());
+                }
+                right = center;
+                rightLcp = centerLcp;
+            } else {
+                left = center;
+                leftLcp = centerLcp;
+            }
+        }
+        return right;
+    }
+
+    /**
+     * Counts the bases of the prefix that match the suffix starting at the given
+     * position, past the given offset, counting the probe and the bases it
+     * compared in the scratch.
+     */
+    private static int matchLength(PackedText text, int suffixStart, PackedText prefix, int offset,
+            SearchScratch scratch) {
+        int matched = SuffixComparator.matchLength(text, suffixStart, prefix, offset);
+        scratch.countProbe(Math.min(matched + 1, prefix.length()) - offset);
+        return matched;
+    }
+
     /**
      * Computes the longest common prefix (LCP) values between a pair of strings.
      * 
@@ -151,19 +443,6 @@ public class BinarySearch {
      *         strings
      */
     protected static int computeLCP(String thisSuffix, String nextSuffix) {
-        boolean isMatch = true;
-        int lcp = 0;
-        int currentCharIndex = 0;
-        int thisSuffixLength = thisSuffix.length();
-        int nextSuffixLength = nextSuffix.length();
-        while (isMatch && currentCharIndex < thisSuffixLength && currentCharIndex < nextSuffixLength) {
-            if (thisSuffix.charAt(currentCharIndex) == nextSuffix.charAt(currentCharIndex)) {
-                lcp++;
-                currentCharIndex++;
-            } else {
-                isMatch = false;
-            }
-        }
-        return lcp;
+        return SuffixComparator.matchLength(thisSuffix, 0, nextSuffix, 0);
     }
 }
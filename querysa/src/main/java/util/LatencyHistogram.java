@@ -0,0 +1,146 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies in nanoseconds with log-linear buckets, like
+ * HdrHistogram: the values below 32 each have their own bucket, and every power
+ * of two range above that is split into 16 buckets, so any recorded value is
+ * known to within 1/16 of it, with a fixed 960 buckets covering every long.
+ * A histogram is not thread-safe: each search thread records into its own, in
+ * its {@link SearchScratch}, and the histograms are added together after every
+ * block of queries, so recording a value is a plain increment.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+
+    /**
+     * Records a value.
+     *
+     * @param nanos the value, which is counted as 0 if negative
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        count++;
+        total += value;
+    }
+
+    /**
+     * Adds the values recorded in another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void add(LatencyHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        count += other.count;
+        total += other.total;
+    }
+
+    /**
+     * Clears the recorded values.
+     */
+    public void reset() {
+        if (count > 0) {
+            Arrays.fill(counts, 0);
+            count = 0;
+            total = 0;
+        }
+    }
+
+    /**
+     * Returns the bucket of a value: the value itself below 2 * SUB_BUCKETS, and
+     * otherwise its power of two range and its top bits after the highest.
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value that falls in a bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value that the given percentage of the recorded values are at
+     * or below, to within the precision of the buckets.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value, or 0 if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be from 0 to 100, but was " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return highestValueOf(bucket);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the highest value recorded, to within the precision of the
+     * buckets.
+     *
+     * @return the value, or 0 if no values have been recorded
+     */
+    public long getMax() {
+        for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] > 0) {
+                return highestValueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, or 0 if no values have been recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+}
@@ -0,0 +1,261 @@
+package util;
+
+import java.util.List;
+
+import model.IndexInterval;
+import model.IntArray;
+import model.MaximalMatch;
+import model.PackedText;
+import model.PrefixTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * A class to find the super-maximal exact matches (SMEMs) between a query and
+ * the text, the seeds that long-read and assembly aligners extend: the
+ * substrings of the query that occur in the text, cannot be extended at either
+ * end and still occur, and are not contained in a longer such substring of the
+ * query. Every occurrence of an SMEM is a maximal exact match (MEM) of the
+ * query and the text, as any base that extended it would extend the SMEM too.
+ * <p>
+ * Let e(i) be the end of the longest prefix of the query from position i that
+ * occurs in the text. It never decreases as i grows, as a match from i without
+ * its first base is a match from i + 1, so the match from i is an SMEM exactly
+ * when e(i) is greater than e(i - 1). After the match from i, the next SMEM
+ * therefore starts at the first position j after i from which the bases up to
+ * and including the one after e(i) occur, and as that holds for every position
+ * after j too, j is found by a binary search over the positions, each step of
+ * which looks up one substring of the query. So each SMEM takes about log l
+ * lookups for a match of l bases, rather than one search for each of its
+ * bases. When the match from i is shorter than the minimum length, the search
+ * is for the first position from which the match reaches past i plus the
+ * minimum length instead, as one that ends no later is too short.
+ * <p>
+ * A lookup starts from the prefix table's interval of the first k bases, and
+ * compares each suffix of a small interval with the query a word at a time. The
+ * binary searches of a larger interval skip the bases that the suffixes at both
+ * of its ends share with the query. A position whose first bases do not occur
+ * for as long as the minimum length is passed over with a single lookup.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class MaximalMatchSearch {
+    /**
+     * The minimum length of a match when none is given, which is the minimum
+     * seed length of BWA-MEM.
+     */
+    public static final int DEFAULT_MIN_LENGTH = 19;
+
+    /**
+     * The size of an interval of the suffix array at or below which each of its
+     * suffixes is compared with the query, rather than searched.
+     */
+    private static final int SCAN_INTERVAL = 4;
+
+    private final PackedText text;
+    private final IntArray suffixArray;
+    private final PrefixTable prefixTable;
+    private final PackedText pattern;
+    private final int minLength;
+    private final SearchScratch scratch;
+    private int first;
+    private int last;
+
+    private MaximalMatchSearch(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            int minLength, SearchScratch scratch) {
+        this.text = serializeableSuffixArray.getText();
+        this.suffixArray = serializeableSuffixArray.getSuffixArray();
+        this.prefixTable = serializeableSuffixArray.getPrefixTable();
+        this.pattern = pattern;
+        this.minLength = minLength;
+        this.scratch = scratch;
+    }
+
+    /**
+     * Finds the super-maximal exact matches of at least the given length between
+     * a query and the text, and adds them to the list in the order of their start
+     * in the query.
+     *
+     * @param serializeableSuffixArray the {@link SerializeableSuffixArray}
+     * @param pattern                  the packed query
+     * @param minLength                the minimum length of a match
+     * @param scratch                  the {@link SearchScratch} of the calling
+     *                                 thread, in which the probes are counted
+     * @param matches                  the list to add the matches to
+     * @return the matches
+     * @throws IllegalArgumentException if the minimum length is less than 1
+     */
+    public static List<MaximalMatch> search(SerializeableSuffixArray serializeableSuffixArray, PackedText pattern,
+            int minLength, SearchScratch scratch, List<MaximalMatch> matches) {
+        if (minLength < 1) {
+            throw new IllegalArgumentException("The minimum match length must be at least 1, but was " + minLength);
+        }
+        MaximalMatchSearch search = new MaximalMatchSearch(serializeableSuffixArray, pattern, minLength, scratch);
+        int patternLength = pattern.length();
+        int start = 0;
+        while (start + minLength <= patternLength) {
+            int end = start + search.longestMatch(start);
+            if (end - start >= minLength) {
+                matches.add(new MaximalMatch(start, end - start, new IndexInterval(search.first, search.last)));
+            } else {
+                // a match that ends no later than this is too short from any later start
+                end = start + minLength;
+            }
+            if (end >= patternLength) {
+                break;
+            }
+            // the first later start from which the match reaches past the end
+            int low = start + 1;
+            int high = end + 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (search.occurs(middle, end + 1)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            start = low;
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the length of the longest prefix of the query from the offset that
+     * occurs in the text, and sets the first and last rows of its interval. If
+     * that is shorter than the minimum length, it may return any length that is no
+     * shorter and still is, without setting the rows.
+     */
+    private int longestMatch(int offset) {
+        int remaining = pattern.length() - offset;
+        int depth = 0;
+        int start = 0;
+        int end = text.length();
+        if (prefixTable != null) {
+            depth = Math.min(prefixTable.getPrefixLength(), remaining);
+            int code = pattern.prefixCode(offset, depth);
+            start = prefixTable.getStart(code, depth);
+            end = prefixTable.getEnd(code, depth);
+            if (start == end && depth > minLength) {
+                // the first bases may still occur for as long as the minimum length
+                code >>>= (depth - minLength) << 1;
+                depth = minLength;
+                start = prefixTable.getStart(code, depth);
+                end = prefixTable.getEnd(code, depth);
+            }
+            if (start == end) {
+                scratch.countPrefixTableHit();
+                return depth - 1;
+            }
+            scratch.countPrefixTableMiss();
+        }
+        int length = depth;
+        if (end - start <= SCAN_INTERVAL) {
+            // the rows that share the most bases with the query are next to each other
+            for (int row = start; row < end; row++) {
+                int matched = matchLength(offset, row, depth, remaining);
+                if (matched > length || row == start) {
+                    length = matched;
+                    first = row;
+                    last = row + 1;
+                } else if (matched == length) {
+                    last = row + 1;
+                }
+            }
+            return length;
+        }
+        int insertion = bound(offset, depth, remaining, start, end, false);
+        if (insertion < end) {
+            length = Math.max(length, matchLength(offset, insertion, depth, remaining));
+        }
+        if (insertion > start) {
+            length = Math.max(length, matchLength(offset, insertion - 1, depth, remaining));
+        }
+        first = bound(offset, depth, length, start, end, false);
+        last = bound(offset, depth, length, first, end, true);
+        return length;
+    }
+
+    /**
+     * Returns whether the bases of the query from the offset up to the given end
+     * occur in the text.
+     */
+    private boolean occurs(int offset, int until) {
+        int length = until - offset;
+        int depth = 0;
+        int start = 0;
+        int end = text.length();
+        if (prefixTable != null) {
+            depth = Math.min(prefixTable.getPrefixLength(), length);
+            int code = pattern.prefixCode(offset, depth);
+            start = prefixTable.getStart(code, depth);
+            end = prefixTable.getEnd(code, depth);
+            if (start == end || depth == length) {
+                scratch.countPrefixTableHit();
+                return start < end;
+            }
+            scratch.countPrefixTableMiss();
+        }
+        if (end - start <= SCAN_INTERVAL) {
+            for (int row = start; row < end; row++) {
+                if (matchLength(offset, row, depth, length) == length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int insertion = bound(offset, depth, length, start, end, false);
+        return insertion < end && matchLength(offset, insertion, depth, length) == length;
+    }
+
+    /**
+     * Returns the number of bases, up to the given length, that the suffix at a
+     * row shares with the query from the offset, given that it shares the first
+     * few.
+     */
+    private int matchLength(int offset, int row, int depth, int length) {
+        int position = suffixArray.get(row) + depth;
+        int matched = PackedText.matchLength(text, position, pattern, offset + depth,
+                Math.min(length - depth, text.limit(position) - position));
+        scratch.countProbe(matched + 1);
+        return depth + matched;
+    }
+
+    /**
+     * Finds the first suffix of an interval, all of whose suffixes share the given
+     * number of bases with the query from the offset, that does not sort before
+     * the bases of the query from the offset up to the given length, or with
+     * upperBound, the first that sorts after the suffixes starting with them.
+     */
+    private int bound(int offset, int depth, int length, int start, int end, boolean upperBound) {
+        int remaining = length - depth;
+        // the bases after the depth that the suffixes at either end of the interval
+        // are known to share with the query
+        int startMatch = 0;
+        int endMatch = 0;
+        while (start < end) {
+            int middle = (start + end) >>> 1;
+            int skip = Math.min(startMatch, endMatch);
+            int position = suffixArray.get(middle) + depth;
+            int available = text.limit(position) - position;
+            int matched = skip + PackedText.matchLength(text, position + skip, pattern, offset + depth + skip,
+                    Math.min(remaining, available) - skip);
+            scratch.countProbe(matched - skip + 1);
+            boolean before;
+            if (matched == remaining) {
+                before = upperBound;
+            } else {
+                before = matched == available
+                        || text.baseAt(position + matched) < pattern.baseAt(offset + depth + matched);
+            }
+            if (before) {
+                start = middle + 1;
+                startMatch = matched;
+            } else {
+                end = middle;
+                endMatch = matched;
+            }
+        }
+        return start;
+    }
+}
@@ -0,0 +1,234 @@
+package util;
+
+import model.LCPPair;
+import model.PackedText;
+
+/**
+ * A class holding the reusable state of one search thread: the buffer that
+ * query patterns are packed into, the LCP bounds of the simple accelerant, the
+ * bounds on the end of the interval that the search for its start found along
+ * the way, and the previous query and its hits, which bound the hits of the
+ * next query when the queries are run in sorted order. It also counts the work
+ * that the searches do and records the latency of each query, until the counts
+ * and latencies are drained into the metrics of a run.
+ * Each thread that runs queries needs its own instance, and reuses it for every
+ * query it runs, so that a query does not allocate a new pattern buffer or new
+ * bounds.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class SearchScratch {
+    private long[] words = new long[PackedText.wordsFor(0)];
+    private final LCPPair left = new LCPPair(0, 0);
+    private final LCPPair right = new LCPPair(0, 0);
+    private int lastMatch;
+    private int firstAfter;
+    private final StringBuilder previousSequence = new StringBuilder();
+    private boolean hasPrevious;
+    private int previousStart;
+    private int previousEnd;
+    private long probes;
+    private long comparedBases;
+    private long prefixTableHits;
+    private long prefixTableMisses;
+    private LatencyHistogram latencies;
+
+    /**
+     * Packs a pattern into this scratch's buffer, growing the buffer if needed.
+     * The returned text is only valid until the next call.
+     *
+     * @param pattern the pattern, which must consist only of bases
+     * @return the packed pattern
+     */
+    public PackedText pack(CharSequence pattern) {
+        int wordCount = PackedText.wordsFor(pattern.length());
+        if (words.length < wordCount) {
+            words = new long[Math.max(wordCount, words.length * 2)];
+        }
+        return PackedText.valueOf(pattern, words);
+    }
+
+    /**
+     * Packs the reverse complement of a pattern into this scratch's buffer,
+     * growing the buffer if needed. The returned text is only valid until the
+     * next call, and replaces the one returned by {@link #pack(CharSequence)}.
+     *
+     * @param pattern the pattern, which must consist only of bases
+     * @return the packed reverse complement of the pattern
+     */
+    public PackedText packReverseComplement(CharSequence pattern) {
+        int wordCount = PackedText.wordsFor(pattern.length());
+        if (words.length < wordCount) {
+            words = new long[Math.max(wordCount, words.length * 2)];
+        }
+        return PackedText.reverseComplementOf(pattern, words);
+    }
+
+    public LCPPair getLeft() {
+        return left;
+    }
+
+    public LCPPair getRight() {
+        return right;
+    }
+
+    /**
+     * Clears the bounds on the end of an interval before the search for its
+     * start.
+     *
+     * @param rightIndex the highest suffix array index that the end can be
+     */
+    public void resetEndBounds(int rightIndex) {
+        lastMatch = -1;
+        firstAfter = rightIndex;
+    }
+
+    /**
+     * Records a suffix that the search for the start of an interval found to sort
+     * after the prefix: if it starts with the prefix, the end of the interval is
+     * after it, and otherwise the end is at or before it.
+     *
+     * @param index   the suffix array index of the suffix
+     * @param matches whether the suffix starts with the prefix
+     */
+    public void recordProbe(int index, boolean matches) {
+        if (matches) {
+            lastMatch = Math.max(lastMatch, index);
+        } else {
+            firstAfter = Math.min(firstAfter, index);
+        }
+    }
+
+    /**
+     * Returns the highest suffix array index recorded that starts with the
+     * prefix.
+     *
+     * @return the index, or -1 if none was recorded
+     */
+    public int getLastMatch() {
+        return lastMatch;
+    }
+
+    /**
+     * Returns the lowest suffix array index recorded that sorts after all of the
+     * suffixes starting with the prefix, or the right index the bounds were reset
+     * to.
+     *
+     * @return the index
+     */
+    public int getFirstAfter() {
+        return firstAfter;
+    }
+
+    /**
+     * Remembers a query that has been run and the interval of its hits. The
+     * sequence is copied, since query records may be reused once they have been
+     * written.
+     *
+     * @param sequence the sequence of the query
+     * @param start    the start (inclusive) of the interval
+     * @param end      the end (exclusive) of the interval
+     */
+    public void recordQuery(CharSequence sequence, int start, int end) {
+        previousSequence.setLength(0);
+        previousSequence.append(sequence);
+        hasPrevious = true;
+        previousStart = start;
+        previousEnd = end;
+    }
+
+    /**
+     * Returns the sequence of the previous query.
+     *
+     * @return the sequence, or null if no query has been run yet
+     */
+    public CharSequence getPreviousSequence() {
+        return hasPrevious ? previousSequence : null;
+    }
+
+    public int getPreviousStart() {
+        return previousStart;
+    }
+
+    public int getPreviousEnd() {
+        return previousEnd;
+    }
+
+    /**
+     * Counts a comparison of the prefix with a suffix.
+     *
+     * @param bases the number of bases of the prefix compared
+     */
+    public void countProbe(int bases) {
+        probes++;
+        comparedBases += bases;
+    }
+
+    /**
+     * Counts a query that the prefix table answered alone.
+     */
+    public void countPrefixTableHit() {
+        prefixTableHits++;
+    }
+
+    /**
+     * Counts a query that still had to be searched for after the prefix table
+     * lookup.
+     */
+    public void countPrefixTableMiss() {
+        prefixTableMisses++;
+    }
+
+    /**
+     * Records the latency of a query. The histogram is only created by the first
+     * call, so a scratch that is not timed does not allocate it.
+     *
+     * @param nanos the time the query took in nanoseconds
+     */
+    public void recordLatency(long nanos) {
+        if (latencies == null) {
+            latencies = new LatencyHistogram();
+        }
+        latencies.record(nanos);
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getComparedBases() {
+        return comparedBases;
+    }
+
+    public long getPrefixTableHits() {
+        return prefixTableHits;
+    }
+
+    public long getPrefixTableMisses() {
+        return prefixTableMisses;
+    }
+
+    /**
+     * Returns the latencies recorded since the counts were last cleared.
+     *
+     * @return the histogram, or null if no latency has been recorded yet
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Clears the counts and latencies, once they have been added to the metrics
+     * of a run.
+     */
+    public void resetCounts() {
+        probes = 0;
+        comparedBases = 0;
+        prefixTableHits = 0;
+        prefixTableMisses = 0;
+        if (latencies != null) {
+            latencies.reset();
+        }
+    }
+}
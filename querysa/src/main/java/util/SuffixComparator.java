@@ -0,0 +1,132 @@
+package util;
+
+import model.PackedText;
+
+/**
+ * A class to compare a search pattern against a suffix of the text in place,
+ * without copying the suffix out of the text. All comparisons stop as soon as
+ * the pattern is exhausted, so a probe costs at most one pass over the
+ * pattern, no matter how long the suffix is. Packed texts are compared a word
+ * (32 bases) at a time.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class SuffixComparator {
+
+    private SuffixComparator() {
+    }
+
+    /**
+     * Counts the characters that the pattern and the suffix starting at the given
+     * text position have in common, starting the comparison at the given offset
+     * into both of them (the first offset characters are assumed to match).
+     *
+     * @param text        the text containing the suffix
+     * @param suffixStart the position in the text at which the suffix starts
+     * @param pattern     the pattern to compare against the suffix
+     * @param offset      the number of characters already known to match
+     * @return the length of the longest common prefix of the pattern and the
+     *         suffix, which is never more than the length of the pattern
+     */
+    public static int matchLength(CharSequence text, int suffixStart, CharSequence pattern, int offset) {
+        int patternLength = pattern.length();
+        int textLength = text.length();
+        int patternIndex = offset;
+        int textIndex = suffixStart + offset;
+        while (patternIndex < patternLength && textIndex < textLength
+                && pattern.charAt(patternIndex) == text.charAt(textIndex)) {
+            patternIndex++;
+            textIndex++;
+        }
+        return patternIndex;
+    }
+
+    /**
+     * Compares the pattern lexicographically to the suffix starting at the given
+     * text position. The result has the same sign as
+     * {@code pattern.compareTo(text.substring(suffixStart))}.
+     *
+     * @param pattern     the pattern to compare
+     * @param text        the text containing the suffix
+     * @param suffixStart the position in the text at which the suffix starts
+     * @return a negative number if the pattern sorts before the suffix (which
+     *         includes the case where the pattern is a proper prefix of the
+     *         suffix), zero if they are equal, or a positive number otherwise
+     */
+    public static int compare(CharSequence pattern, CharSequence text, int suffixStart) {
+        return compare(pattern, text, suffixStart, matchLength(text, suffixStart, pattern, 0));
+    }
+
+    /**
+     * Compares the pattern lexicographically to the suffix starting at the given
+     * text position, given the number of characters they have in common.
+     *
+     * @param pattern     the pattern to compare
+     * @param text        the text containing the suffix
+     * @param suffixStart the position in the text at which the suffix starts
+     * @param matched     the length of the longest common prefix of the pattern
+     *                    and the suffix, as returned by
+     *                    {@link #matchLength(CharSequence, int, CharSequence, int)}
+     * @return a negative number if the pattern sorts before the suffix, zero if
+     *         they are equal, or a positive number otherwise
+     */
+    public static int compare(CharSequence pattern, CharSequence text, int suffixStart, int matched) {
+        int patternLength = pattern.length();
+        int suffixLength = text.length() - suffixStart;
+        if (matched == patternLength || matched == suffixLength) {
+            return patternLength - suffixLength;
+        }
+        return pattern.charAt(matched) - text.charAt(suffixStart + matched);
+    }
+
+    /**
+     * Counts the bases that a packed pattern and the suffix starting at the given
+     * text position have in common, starting the comparison at the given offset
+     * into both of them (the first offset bases are assumed to match). The suffix
+     * ends at the next terminator of the text.
+     *
+     * @param text        the packed text containing the suffix
+     * @param suffixStart the position in the text at which the suffix starts
+     * @param pattern     the packed pattern to compare against the suffix
+     * @param offset      the number of bases already known to match
+     * @return the length of the longest common prefix of the pattern and the
+     *         suffix, which is never more than the length of the pattern
+     */
+    public static int matchLength(PackedText text, int suffixStart, PackedText pattern, int offset) {
+        int max = Math.min(pattern.length(), text.limit(suffixStart) - suffixStart);
+        if (offset >= max) {
+            return Math.min(offset, pattern.length());
+        }
+        return offset + PackedText.matchLength(text, suffixStart + offset, pattern, offset, max - offset);
+    }
+
+    /**
+     * Compares a packed pattern to the suffix starting at the given text position,
+     * given the number of bases they have in common. A lower bound comparison
+     * treats a pattern that is a prefix of the suffix as smaller than the suffix,
+     * so that a binary search finds the first suffix starting with the pattern. An
+     * upper bound comparison treats it as larger, so that a binary search finds
+     * the first suffix after the ones starting with the pattern.
+     *
+     * @param pattern     the packed pattern to compare
+     * @param text        the packed text containing the suffix
+     * @param suffixStart the position in the text at which the suffix starts
+     * @param matched     the length of the longest common prefix of the pattern
+     *                    and the suffix, as returned by
+     *                    {@link #matchLength(PackedText, int, PackedText, int)}
+     * @param upperBound  whether to make an upper bound comparison
+     * @return a negative number if the pattern sorts before the suffix, or a
+     *         positive number otherwise
+     */
+    public static int compare(PackedText pattern, PackedText text, int suffixStart, int matched, boolean upperBound) {
+        if (matched == pattern.length()) {
+            return upperBound ? 1 : -1;
+        }
+        int textPosition = suffixStart + matched;
+        if (textPosition == text.limit(suffixStart)) {
+            return 1;
+        }
+        return pattern.baseAt(matched) - text.baseAt(textPosition);
+    }
+}
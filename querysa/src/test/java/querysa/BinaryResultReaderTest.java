@@ -0,0 +1,216 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import model.PackedText;
+import model.PrefixTable;
+import model.Query;
+import model.QueryMode;
+import model.SequenceTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * Test class for {@link BinaryResultReader}, which reads back what
+ * {@link BinaryResultWriter} writes.
+ *
+ * @author Valerie Wray
+ *
+ */
+class BinaryResultReaderTest {
+
+    /**
+     * Writes the hits of queries on both strands of a text of two sequences, with
+     * and without compression, and checks that they are read back in order of
+     * their positions.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadHitsOnBothStrands() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = twoSequences();
+        List<Query> queries = queries("AC", "GT", "GTA", "CG", "N");
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1,
+                new QueryOptions().setBothStrands(true))) {
+            queryRunner.performQueries(queries);
+        }
+        for (boolean compressed : new boolean[] { false, true }) {
+            byte[] bytes = write(serializeableSuffixArray, QueryMode.NAIVE, true, compressed, queries);
+            try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(bytes), "hits")) {
+                assertEquals(compressed, reader.isCompressed());
+                assertTrue(reader.isBothStrands());
+                assertFalse(reader.hasMatches());
+                assertEquals(List.of("AC 3 chr1:0+ chr2:2+ chr2:0-", "GT 3 chr2:0+ chr1:0- chr2:2-",
+                        "GTA 2 chr2:0+ chr2:1-", "CG 0", "N 0"), readAll(reader));
+            }
+        }
+    }
+
+    @Test
+    void testReadMatches() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = twoSequences();
+        List<Query> queries = queries("GTACNAC", "CG");
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.SMEM, 1,
+                new QueryOptions().setBothStrands(true).setMinLength(2))) {
+            queryRunner.performQueries(queries);
+        }
+        byte[] bytes = write(serializeableSuffixArray, QueryMode.SMEM, true, true, queries);
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(bytes), "matches")) {
+            assertTrue(reader.hasMatches());
+            assertEquals(List.of("GTACNAC 4 0,4 chr2:0+ 5,2 chr1:0+ chr2:2+ 0,4 chr2:0- 5,2 chr2:0-", "CG 0"),
+                    readAll(reader));
+        }
+    }
+
+    /**
+     * Writes the first of the hits of each query, and no hits but their number,
+     * and checks that the number is read back in full.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadLimitedHits() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = twoSequences();
+        List<Query> queries = queries("AC", "GTA", "CG");
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1,
+                new QueryOptions().setBothStrands(true))) {
+            queryRunner.performQueries(queries);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setBothStrands(true).setHitLimit(HitLimit.first(1)), output)) {
+            writer.write(queries);
+        }
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(output.toByteArray()),
+                "first")) {
+            assertTrue(reader.isLimited());
+            // the first hit in the order of the suffix array, forward strand first
+            assertEquals(List.of("AC 3 chr2:2+", "GTA 2 chr2:0+", "CG 0"), readAll(reader));
+        }
+        output = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setBothStrands(true).setCompressed(true).setHitLimit(HitLimit.COUNT_ONLY),
+                output)) {
+            writer.write(queries);
+        }
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(output.toByteArray()),
+                "count")) {
+            assertEquals(List.of("AC 3", "GTA 2", "CG 0"), readAll(reader));
+        }
+    }
+
+    /**
+     * Writes a query with more hits than fit in a block, in several chunks, and
+     * checks that the hits are read back in order across the blocks.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadAcrossBlocks() throws IOException {
+        char[] bases = new char[100000];
+        Arrays.fill(bases, 'A');
+        String sequence = new String(bases) + "$";
+        int[] suffixArray = new int[sequence.length()];
+        for (int i = 0; i < suffixArray.length; i++) {
+            // the shorter runs of A sort first, after the terminator
+            suffixArray[i] = suffixArray.length - 1 - i;
+        }
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray,
+                PackedText.valueOf(sequence));
+        List<Query> queries = queries("A", "AAAAA");
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.SIMPACCEL, 1)) {
+            queryRunner.performQueries(queries);
+        }
+        for (boolean compressed : new boolean[] { false, true }) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (BinaryResultWriter writer = new BinaryResultWriter(serializeableSuffixArray,
+                    new ResultWriterOptions().setQueryMode(QueryMode.SIMPACCEL).setCompressed(compressed), output)) {
+                writer.write(queries.subList(0, 1));
+                writer.write(queries.subList(1, 2));
+            }
+            try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(output.toByteArray()),
+                    "hits")) {
+                List<String> lines = readAll(reader);
+                assertEquals(2, lines.size());
+                for (int i = 0; i < lines.size(); i++) {
+                    String[] fields = lines.get(i).split(" ");
+                    int count = bases.length - queries.get(i).getSequence().length() + 1;
+                    assertEquals(Integer.toString(count), fields[1]);
+                    assertEquals(count + 2, fields.length);
+                    for (int hit = 0; hit < count; hit++) {
+                        assertEquals(Integer.toString(hit), fields[hit + 2]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testReadOtherFile() throws IOException {
+        assertThrows(IOException.class,
+                () -> new BinaryResultReader(new ByteArrayInputStream("Query1 2 11 7\n".getBytes()), "text"));
+        SerializeableSuffixArray serializeableSuffixArray = twoSequences();
+        List<Query> queries = queries("AC");
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1)) {
+            queryRunner.performQueries(queries);
+        }
+        byte[] bytes = write(serializeableSuffixArray, QueryMode.NAIVE, false, false, queries);
+        try (BinaryResultReader reader = new BinaryResultReader(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)), "truncated")) {
+            assertThrows(EOFException.class, () -> reader.readRecord(new StringBuilder()));
+        }
+    }
+
+    private static SerializeableSuffixArray twoSequences() {
+        PackedText text = PackedText.valueOf("AC$GTAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 7, 2, 5, 0, 6, 1, 3, 4 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, 1));
+        return serializeableSuffixArray;
+    }
+
+    private static List<Query> queries(String... patterns) {
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : patterns) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    private static byte[] write(SerializeableSuffixArray serializeableSuffixArray, QueryMode queryMode,
+            boolean bothStrands, boolean compressed, List<Query> queries) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setQueryMode(queryMode).setBothStrands(bothStrands).setCompressed(compressed),
+                output)) {
+            writer.write(queries);
+        }
+        return output.toByteArray();
+    }
+
+    private static List<String> readAll(BinaryResultReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        while (reader.readRecord(line)) {
+            lines.add(line.toString());
+            line.setLength(0);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,53 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import model.Query;
+
+/**
+ * Test class for {@link FastaQueryReader}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class FastaQueryReaderTest {
+
+    @Test
+    void testReadChunks() throws IOException {
+        String fasta = ">first query one\nACGT\nAC\n\n>second\r\nTTTT\r\n>third\nG\n";
+        try (FastaQueryReader fastaQueryReader = new FastaQueryReader(new StringReader(fasta))) {
+            List<Query> chunk = fastaQueryReader.readChunk(2, Long.MAX_VALUE);
+            assertEquals(2, chunk.size());
+            assertEquals("first", chunk.get(0).getName().toString());
+            assertEquals("ACGTAC", chunk.get(0).getSequence().toString());
+            assertEquals("second", chunk.get(1).getName().toString());
+            assertEquals("TTTT", chunk.get(1).getSequence().toString());
+            Query reused = chunk.get(0);
+
+            chunk = fastaQueryReader.readChunk(2, Long.MAX_VALUE);
+            assertEquals(1, chunk.size());
+            assertSame(reused, chunk.get(0));
+            assertEquals("third", chunk.get(0).getName().toString());
+            assertEquals("G", chunk.get(0).getSequence().toString());
+
+            assertTrue(fastaQueryReader.readChunk(2, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    void testChunkEndsAfterBaseBudget() throws IOException {
+        String fasta = ">a\nACGTACGT\n>b\nACGT\n>c\nA\n";
+        try (FastaQueryReader fastaQueryReader = new FastaQueryReader(new StringReader(fasta))) {
+            assertEquals(1, fastaQueryReader.readChunk(10, 8).size());
+            assertEquals(2, fastaQueryReader.readChunk(10, 8).size());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link HitLimit}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class HitLimitTest {
+
+    @Test
+    void testValueOf() {
+        assertEquals(HitLimit.ALL, HitLimit.valueOf("all"));
+        assertEquals(HitLimit.COUNT_ONLY, HitLimit.valueOf("count"));
+        HitLimit first = HitLimit.valueOf("first:10");
+        assertEquals(10, first.getMaxHits());
+        assertFalse(first.isSample());
+        HitLimit sample = HitLimit.valueOf("sample:3");
+        assertEquals(3, sample.getMaxHits());
+        assertTrue(sample.isSample());
+        assertEquals("sample:3", sample.toString());
+        for (String value : new String[] { "none", "first", "first:", "first:0", "sample:-1", "last:2", "first:x" }) {
+            assertThrows(IllegalArgumentException.class, () -> HitLimit.valueOf(value));
+        }
+    }
+
+    @Test
+    void testLimit() {
+        assertEquals(1000000, HitLimit.ALL.limit(1000000));
+        assertEquals(0, HitLimit.COUNT_ONLY.limit(1000000));
+        assertEquals(5, HitLimit.first(10).limit(5));
+        assertEquals(10, HitLimit.first(10).limit(1000000));
+    }
+
+    @Test
+    void testSelectFirst() {
+        int[] indices = new int[3];
+        HitLimit.first(3).select(100, indices, null);
+        assertArrayEquals(new int[] { 0, 1, 2 }, indices);
+    }
+
+    /**
+     * Draws many samples, out of both few and many more hits than the limit, and
+     * checks that each is of distinct hits in ascending order, and that every hit
+     * is chosen about as often as any other.
+     */
+    @Test
+    void testSelectSample() {
+        SplittableRandom random = HitLimit.sample(1).newRandom();
+        for (int count : new int[] { 7, 50 }) {
+            HitLimit hitLimit = HitLimit.sample(5);
+            int[] indices = new int[5];
+            int[] chosen = new int[count];
+            int samples = 20000;
+            for (int i = 0; i < samples; i++) {
+                hitLimit.select(count, indices, random);
+                for (int j = 0; j < indices.length; j++) {
+                    assertTrue(indices[j] >= 0 && indices[j] < count);
+                    assertTrue(j == 0 || indices[j - 1] < indices[j]);
+                    chosen[indices[j]]++;
+                }
+            }
+            double expected = (double) samples * indices.length / count;
+            for (int hit = 0; hit < count; hit++) {
+                assertEquals(expected, chosen[hit], expected * 0.1);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import model.IndexInterval;
+import model.IntArray;
+
+/**
+ * Test class for {@link HitSelector}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class HitSelectorTest {
+    private static final int[] SUFFIX_ARRAY = { 9, 3, 7, 1, 8, 0, 5, 2, 6, 4 };
+
+    @Test
+    void testCollectAll() {
+        HitSelector hitSelector = new HitSelector(IntArray.of(SUFFIX_ARRAY), HitLimit.ALL, null);
+        hitSelector.select(5);
+        hitSelector.collect(new IndexInterval(1, 3));
+        hitSelector.collect(new IndexInterval(6, 9));
+        assertArrayEquals(new int[] { 3, 7, 5, 2, 6 }, located(hitSelector));
+    }
+
+    /**
+     * Selects the first hits of a list of two intervals, the second of which
+     * holds only some of them, and then sorts them.
+     */
+    @Test
+    void testCollectFirstAcrossIntervals() {
+        try (HitSorter hitSorter = new HitSorter(IntArray.of(SUFFIX_ARRAY))) {
+            HitSelector hitSelector = new HitSelector(IntArray.of(SUFFIX_ARRAY), HitLimit.first(3), hitSorter);
+            hitSelector.select(6);
+            hitSelector.collect(new IndexInterval(0, 2));
+            hitSelector.collect(new IndexInterval(5, 9));
+            hitSelector.sortLocated();
+            assertArrayEquals(new int[] { 0, 3, 9 }, located(hitSelector));
+
+            hitSelector.clearLocated();
+            hitSelector.select(0);
+            hitSelector.collect(new IndexInterval(4, 4));
+            assertEquals(0, hitSelector.getLocated());
+        }
+    }
+
+    private static int[] located(HitSelector hitSelector) {
+        return Arrays.copyOf(hitSelector.getPositions(), hitSelector.getLocated());
+    }
+}
@@ -0,0 +1,67 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import model.IntArray;
+
+/**
+ * Test class for {@link HitSorter}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class HitSorterTest {
+
+    /**
+     * Sorts parts of arrays of random positions, of sizes that take the insertion
+     * sort, one or more radix passes and the parallel path, and checks them
+     * against {@link Arrays#sort(int[], int, int)}.
+     */
+    @Test
+    void testSort() {
+        Random random = new Random(25);
+        for (int threads : new int[] { 1, 3 }) {
+            try (HitSorter hitSorter = new HitSorter(IntArray.of(new int[0]), threads)) {
+                for (int length : new int[] { 0, 1, 20, 1000, HitSorter.PARALLEL_SIZE + 7 }) {
+                    for (int bound : new int[] { 1, 1 << HitSorter.DIGIT_BITS, 1 << 20, Integer.MAX_VALUE }) {
+                        int[] positions = new int[length + 10];
+                        for (int i = 0; i < positions.length; i++) {
+                            positions[i] = random.nextInt(bound);
+                        }
+                        int[] expected = positions.clone();
+                        Arrays.sort(expected, 5, 5 + length);
+                        hitSorter.sort(positions, 5, 5 + length);
+                        assertArrayEquals(expected, positions);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testLocate() {
+        int[] suffixArray = new int[HitSorter.PARALLEL_SIZE + 100];
+        for (int i = 0; i < suffixArray.length; i++) {
+            suffixArray[i] = suffixArray.length - 1 - i;
+        }
+        for (int threads : new int[] { 1, 4 }) {
+            try (HitSorter hitSorter = new HitSorter(IntArray.of(suffixArray), threads)) {
+                int length = suffixArray.length - 50;
+                int[] positions = new int[length + 3];
+                hitSorter.locate(50, suffixArray.length, positions, 3);
+                assertArrayEquals(Arrays.copyOfRange(suffixArray, 50, suffixArray.length),
+                        Arrays.copyOfRange(positions, 3, positions.length));
+                hitSorter.sort(positions, 3, positions.length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(i, positions[3 + i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import querysa.QueryMetrics.Phase;
+import util.SearchScratch;
+
+/**
+ * Test class for {@link QueryMetrics}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class QueryMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAddCountsDrainsTheScratch() {
+        QueryMetrics metrics = new QueryMetrics();
+        SearchScratch scratch = new SearchScratch();
+        scratch.countProbe(3);
+        scratch.countProbe(5);
+        scratch.countPrefixTableHit();
+        scratch.countPrefixTableHit();
+        scratch.countPrefixTableHit();
+        scratch.countPrefixTableMiss();
+        scratch.recordLatency(100);
+        scratch.recordLatency(300);
+
+        metrics.addCounts(scratch);
+        metrics.addCounts(scratch);
+
+        assertEquals(2, metrics.getProbes());
+        assertEquals(8, metrics.getComparedBases());
+        assertEquals(3, metrics.getPrefixTableHits());
+        assertEquals(1, metrics.getPrefixTableMisses());
+        assertEquals(0.75, metrics.getPrefixTableHitRate(), 1e-9);
+        assertEquals(2, metrics.getQueries());
+        assertEquals(200, metrics.getMeanLatencyNanos(), 1e-9);
+        assertEquals(0, scratch.getProbes());
+        assertEquals(0, scratch.getLatencies().getCount());
+    }
+
+    @Test
+    void testWriteReports() throws IOException {
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.recordQuery(100);
+        metrics.recordQuery(300);
+        metrics.addTime(Phase.SEARCH, 7_000_000);
+        metrics.addTime(Phase.SEARCH, 5_000_000);
+        Path json = tempDir.resolve("metrics.json");
+        Path csv = tempDir.resolve("metrics.csv");
+
+        metrics.writeReport(json);
+        metrics.writeReport(csv);
+
+        String report = Files.readString(json);
+        assertTrue(report.startsWith("{"));
+        assertTrue(report.contains("\"queries\": 2,"));
+        assertTrue(report.contains("\"mean\": 200.0000"));
+        assertTrue(report.contains("\"search\": 12,"));
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals("metric,value", lines.get(0));
+        assertTrue(lines.contains("queries,2"));
+        assertTrue(lines.contains("searchMillis,12"));
+    }
+
+    @Test
+    void testRegisterWithJmx() throws JMException {
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.recordQuery(100);
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(QueryMetrics.OBJECT_NAME);
+
+        metrics.register();
+        try {
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "Queries"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(mBeanServer.isRegistered(objectName));
+    }
+}
@@ -0,0 +1,54 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import util.ApproximateSearch;
+import util.MaximalMatchSearch;
+
+/**
+ * Test class for {@link QueryOptions}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class QueryOptionsTest {
+
+    @Test
+    void testDefaults() {
+        QueryOptions options = new QueryOptions();
+        assertFalse(options.isSorted());
+        assertFalse(options.isBothStrands());
+        assertEquals(ApproximateSearch.DEFAULT_MISMATCHES, options.getMaxMismatches());
+        assertEquals(MaximalMatchSearch.DEFAULT_MIN_LENGTH, options.getMinLength());
+        assertNull(options.getMetrics());
+    }
+
+    @Test
+    void testCopy() {
+        QueryMetrics metrics = new QueryMetrics();
+        QueryOptions options = new QueryOptions().setSorted(true).setBothStrands(true).setMaxMismatches(3)
+                .setMinLength(25).setMetrics(metrics);
+        QueryOptions copy = new QueryOptions(options);
+        options.setSorted(false).setMaxMismatches(0);
+
+        assertTrue(copy.isSorted());
+        assertTrue(copy.isBothStrands());
+        assertEquals(3, copy.getMaxMismatches());
+        assertEquals(25, copy.getMinLength());
+        assertSame(metrics, copy.getMetrics());
+    }
+
+    @Test
+    void testRejectsInvalidOptions() {
+        QueryOptions options = new QueryOptions();
+        assertThrows(IllegalArgumentException.class, () -> options.setMaxMismatches(-1));
+        assertThrows(IllegalArgumentException.class, () -> options.setMinLength(0));
+    }
+}
@@ -0,0 +1,90 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import model.BasePair;
+import model.Query;
+import model.QueryMode;
+import model.SerializeableSuffixArray;
+
+/**
+ * Test class for {@link QueryRunner}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class QueryRunnerTest {
+
+    @Test
+    void testParallelResultsMatchSequentialResults() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = QuerySuffixArray
+                .readBinaryFile("src/test/resources/testOutput.bin");
+        Random random = new Random(3);
+        List<Query> sequentialQueries = new ArrayList<>();
+        List<Query> parallelQueries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder pattern = new StringBuilder();
+            for (int j = 0, length = 2 + random.nextInt(3); j < length; j++) {
+                pattern.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+            }
+            Query sequentialQuery = new Query("q" + i);
+            sequentialQuery.appendSequence(pattern.toString());
+            sequentialQueries.add(sequentialQuery);
+            Query parallelQuery = new Query("q" + i);
+            parallelQuery.appendSequence(pattern.toString());
+            parallelQueries.add(parallelQuery);
+        }
+
+        QuerySuffixArray.performQueries(serializeableSuffixArray, sequentialQueries, QueryMode.SIMPACCEL);
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.SIMPACCEL, 4)) {
+            queryRunner.performQueries(parallelQueries);
+        }
+
+        for (int i = 0; i < sequentialQueries.size(); i++) {
+            assertEquals(sequentialQueries.get(i).getHitsRange().getStart(),
+                    parallelQueries.get(i).getHitsRange().getStart());
+            assertEquals(sequentialQueries.get(i).getHitsRange().getEnd(),
+                    parallelQueries.get(i).getHitsRange().getEnd());
+        }
+    }
+
+    @Test
+    void testMetricsCountEveryQuery() throws IOException {
+        SerializeableSuffixArray serializeableSuffixArray = QuerySuffixArray
+                .readBinaryFile("src/test/resources/testOutput.bin");
+        Random random = new Random(5);
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Query query = new Query("q" + i);
+            for (int j = 0, length = 1 + random.nextInt(4); j < length; j++) {
+                query.appendSequence(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+            }
+            queries.add(query);
+        }
+        QueryMetrics metrics = new QueryMetrics();
+
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 4,
+                new QueryOptions().setMetrics(metrics))) {
+            queryRunner.performQueries(queries);
+        }
+
+        assertEquals(2000, metrics.getQueries());
+        // the index has a prefix table of length 2, which answers the queries of
+        // up to 2 bases, and the ones whose first 2 bases do not occur
+        assertEquals(2000, metrics.getPrefixTableHits() + metrics.getPrefixTableMisses());
+        assertTrue(metrics.getPrefixTableHits() > 0);
+        assertTrue(metrics.getPrefixTableMisses() > 0);
+        assertTrue(metrics.getProbes() > 0);
+        assertTrue(metrics.getComparedBases() > 0);
+        assertTrue(metrics.getLatencyP50Nanos() <= metrics.getLatencyP99Nanos());
+        assertTrue(metrics.getLatencyP99Nanos() <= metrics.getMaxLatencyNanos());
+    }
+}
@@ -0,0 +1,131 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link QueryServer}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class QueryServerTest {
+    private static final String QUERIES = ">Query1 two hits\nT\nA\n>Query2\nGGG\n>Query3\nCTAC\n";
+
+    private QueryServer queryServer;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        queryServer = new QueryServer(Map.of("test", QuerySuffixArray.readBinaryFile("src/test/resources/testOutput.bin")),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, false, 1);
+    }
+
+    @AfterEach
+    void stopServer() {
+        queryServer.close();
+    }
+
+    @Test
+    void testQueryStreamsResults() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/query/test?mode=naive", QUERIES);
+        assertEquals(200, response.statusCode());
+        assertEquals("Query1 2 11 7\nQuery2 0\nQuery3 1 10\n", response.body());
+        // the default query mode is simpaccel
+        assertEquals(response.body(), post("/query/test", QUERIES).body());
+    }
+
+    @Test
+    void testQueryBothStrands() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/query/test?mode=naive&strand=both", QUERIES);
+        assertEquals(200, response.statusCode());
+        // TA is its own reverse complement
+        assertEquals("Query1 4 11+ 7+ 11- 7-\nQuery2 0\nQuery3 1 10+\n", response.body());
+    }
+
+    @Test
+    void testQueryWithMismatches() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/query/test?mode=mismatch&mismatches=1", QUERIES);
+        assertEquals(200, response.statusCode());
+        // TA is one base away from CA, AA and GA as well
+        String[] lines = response.body().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(List.of("11", "2", "3", "5", "7"), Arrays.stream(lines[0].split(" ")).skip(2).sorted().toList());
+        assertTrue(lines[0].startsWith("Query1 5 "));
+        assertEquals("Query2 0", lines[1]);
+        assertEquals("Query3 1 10", lines[2]);
+        assertEquals(response.body(), post("/query/test?mode=mismatch", QUERIES).body());
+    }
+
+    @Test
+    void testQueryMatches() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/query/test?mode=smem&min-length=2", QUERIES);
+        assertEquals(200, response.statusCode());
+        assertEquals("Query1 1 0,2 11 7\nQuery2 0\nQuery3 1 0,4 10\n", response.body());
+        // no match is as long as the default minimum length
+        assertEquals("Query1 0\nQuery2 0\nQuery3 0\n", post("/query/test?mode=smem", QUERIES).body());
+    }
+
+    @Test
+    void testQueryWithHitLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/query/test?mode=naive&hits=first:1", QUERIES);
+        assertEquals(200, response.statusCode());
+        assertEquals("Query1 2 11\nQuery2 0\nQuery3 1 10\n", response.body());
+        assertEquals("Query1 2\nQuery2 0\nQuery3 1\n", post("/query/test?hits=count", QUERIES).body());
+        // the first hit is the first in the order of the suffix array
+        assertEquals("Query1 2 7 11\nQuery2 0\nQuery3 1 10\n",
+                post("/query/test?mode=naive&sort-hits=true", QUERIES).body());
+    }
+
+    @Test
+    void testListIndexes() throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri("/indexes")).build(),
+                BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals("test 14\n", response.body());
+    }
+
+    @Test
+    void testErrors() throws IOException, InterruptedException {
+        assertEquals(404, post("/query/other", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?mode=fast", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?strand=reverse", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?mode=mismatch&mismatches=-1", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?mode=mismatch&mismatches=two", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?mode=smem&min-length=0", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?mode=smem&min-length=long", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?hits=first:0", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?hits=some", QUERIES).statusCode());
+        assertEquals(400, post("/query/test?sort-hits=yes", QUERIES).statusCode());
+        // the test index has no FM-index
+        HttpResponse<String> response = post("/query/test?mode=fmindex", QUERIES);
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().contains("--fmindex"));
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        return httpClient.send(HttpRequest.newBuilder(uri(path)).POST(BodyPublishers.ofString(body)).build(),
+                BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + queryServer.getPort() + path);
+    }
+}
@@ -2,15 +2,37 @@ package querysa;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static util.SearchOracle.bruteForceHits;
+import static util.SearchOracle.hits;
+import static util.SearchOracle.sortSuffixes;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import model.BasePair;
+import model.CompactLcpArray;
+import model.EytzingerIndex;
+import model.FmIndex;
+import model.IntArray;
+import model.PackedText;
+import model.PrefixTable;
 import model.Query;
 import model.QueryMode;
+import model.SequenceTable;
 import model.SerializeableSuffixArray;
+import util.ApproximateSearch;
+import util.SuffixComparator;
 
 /**
  * Test class for {@link QuerySuffixArray}.
@@ -19,12 +41,31 @@ import model.SerializeableSuffixArray;
  *
  */
 class QuerySuffixArrayTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Runs querysa from end to end on the test index, streaming the queries
+     * through one record at a time.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testMain() throws IOException {
+        Path queriesFile = tempDir.resolve("queries.fna");
+        Path outputFile = tempDir.resolve("output.txt");
+        Files.writeString(queriesFile, ">Query1 two hits\nT\nA\n>Query2\nGGG\n>Query3\nCTAC\n");
+        QuerySuffixArray.main(new String[] { "--chunk-size", "1", "src/test/resources/testOutput.bin",
+                queriesFile.toString(), "simpaccel", outputFile.toString() });
+        assertEquals(List.of("Query1 2 11 7", "Query2 0", "Query3 1 10"), Files.readAllLines(outputFile));
+    }
     @Test
     void testPerformNaiveBinarySearch2Hits() {
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
-                new int[] { 6, 5, 2, 3, 0, 4, 1 }, "abaaba$");
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
         Query query = new Query();
-        query.appendSequence("aba");
+        query.appendSequence("ACA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query), QueryMode.NAIVE);
         assertNotNull(query.getHitsRange());
         assertEquals(3, query.getHitsRange().getStart());
@@ -34,9 +75,9 @@ class QuerySuffixArrayTest {
     @Test
     void testPerformNaiveBinarySearch0Hits() {
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
-                new int[] { 6, 5, 2, 3, 0, 4, 1 }, "abaaba$");
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
         Query query = new Query();
-        query.appendSequence("aga");
+        query.appendSequence("AGA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query), QueryMode.NAIVE);
         assertNotNull(query.getHitsRange());
         assertEquals(5, query.getHitsRange().getStart());
@@ -59,22 +100,22 @@ class QuerySuffixArrayTest {
         query.appendName("Query1");
         query.appendSequence("TA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query), QueryMode.NAIVE);
-        assertEquals("ACCAAGATAGCTAC$", serializeableSuffixArray.getText());
+        assertEquals("ACCAAGATAGCTAC$", serializeableSuffixArray.getText().toString());
         assertNotNull(query.getHitsRange());
         int start = query.getHitsRange().getStart();
         int end = query.getHitsRange().getEnd();
         assertEquals(13, start);
         assertEquals(15, end);
-        assertEquals(11, serializeableSuffixArray.getSuffixArray()[13]);
-        assertEquals(7, serializeableSuffixArray.getSuffixArray()[14]);
+        assertEquals(11, serializeableSuffixArray.getSuffixArray().get(13));
+        assertEquals(7, serializeableSuffixArray.getSuffixArray().get(14));
     }
 
     @Test
     void testPerformSimpAccelBinarySearch2Hits() {
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
-                new int[] { 6, 5, 2, 3, 0, 4, 1 }, "abaaba$");
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
         Query query = new Query();
-        query.appendSequence("aba");
+        query.appendSequence("ACA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query),
                 QueryMode.SIMPACCEL);
         assertNotNull(query.getHitsRange());
@@ -82,12 +123,32 @@ class QuerySuffixArrayTest {
         assertEquals(5, query.getHitsRange().getEnd());
     }
 
+    @Test
+    void testPerformSuperAccelBinarySearchWithoutLcpLrArrays() {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        Query query = new Query();
+        query.appendSequence("ACA");
+        assertThrows(IllegalStateException.class, () -> QuerySuffixArray.performQueries(serializeableSuffixArray,
+                Collections.singletonList(query), QueryMode.SUPERACCEL));
+    }
+
+    @Test
+    void testPerformEytzingerSearchWithoutEytzingerIndex() {
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
+        Query query = new Query();
+        query.appendSequence("ACA");
+        assertThrows(IllegalStateException.class, () -> QuerySuffixArray.performQueries(serializeableSuffixArray,
+                Collections.singletonList(query), QueryMode.EYTZINGER));
+    }
+
     @Test
     void testPerformSimpAccelBinarySearch0Hits() {
         SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
-                new int[] { 6, 5, 2, 3, 0, 4, 1 }, "abaaba$");
+                new int[] { 6, 5, 2, 3, 0, 4, 1 }, PackedText.valueOf("ACAACA$"));
         Query query = new Query();
-        query.appendSequence("aga");
+        query.appendSequence("AGA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query),
                 QueryMode.SIMPACCEL);
         assertNotNull(query.getHitsRange());
@@ -112,13 +173,373 @@ class QuerySuffixArrayTest {
         query.appendSequence("TA");
         QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query),
                 QueryMode.SIMPACCEL);
-        assertEquals("ACCAAGATAGCTAC$", serializeableSuffixArray.getText());
+        assertEquals("ACCAAGATAGCTAC$", serializeableSuffixArray.getText().toString());
         assertNotNull(query.getHitsRange());
         int start = query.getHitsRange().getStart();
         int end = query.getHitsRange().getEnd();
         assertEquals(13, start);
         assertEquals(15, end);
-        assertEquals(11, serializeableSuffixArray.getSuffixArray()[13]);
-        assertEquals(7, serializeableSuffixArray.getSuffixArray()[14]);
+        assertEquals(11, serializeableSuffixArray.getSuffixArray().get(13));
+        assertEquals(7, serializeableSuffixArray.getSuffixArray().get(14));
+    }
+
+    /**
+     * Runs random queries in every query mode, with and without a prefix table, on
+     * a random text and checks the hits against a brute force scan of the text.
+     */
+    @Test
+    void testAllModesAgreeWithBruteForce() {
+        Random random = new Random(7);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(i < 150 ? 4 : 2)).getDnaChar());
+        }
+        String sequence = stringBuilder.append('$').toString();
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(sequence.length() - 1);
+            int length = 1 + random.nextInt(Math.min(12, sequence.length() - 1 - start));
+            String pattern = sequence.substring(start, start + length);
+            if (i % 3 == 0) {
+                // mutate one base so that some patterns do not occur
+                char[] chars = pattern.toCharArray();
+                chars[random.nextInt(chars.length)] = BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar();
+                pattern = new String(chars);
+            }
+            patterns.add(pattern);
+            if (i % 5 == 0) {
+                // repeat a pattern and a prefix of it, as in overlapping reads
+                patterns.add(pattern);
+                patterns.add(pattern.substring(0, 1 + random.nextInt(pattern.length())));
+            }
+        }
+        // patterns that are their own reverse complements
+        patterns.addAll(List.of("AT", "ACGT", "GAATTC", "TTAA"));
+        assertAllModesAgreeWithBruteForce(sequence, patterns);
+    }
+
+    /**
+     * Runs random queries in every query mode on a text of several records, some
+     * of them equal, including patterns that span two records and so must not
+     * be found there.
+     */
+    @Test
+    void testSeveralRecordsAgreeWithBruteForce() {
+        Random random = new Random(8);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 30; record++) {
+            for (int i = random.nextInt(record % 4 == 0 ? 3 : 40); i > 0; i--) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(2)).getDnaChar());
+            }
+            stringBuilder.append(record % 6 == 0 ? "ACGA$ACGA$" : "$");
+        }
+        String sequence = stringBuilder.toString();
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(sequence.length() - 1);
+            int length = 1 + random.nextInt(Math.min(12, sequence.length() - 1 - start));
+            // dropping the separators joins the end of one record to the next
+            String pattern = sequence.substring(start, start + length).replace("$", "");
+            if (!pattern.isEmpty()) {
+                patterns.add(pattern);
+            }
+        }
+        assertAllModesAgreeWithBruteForce(sequence, patterns);
+    }
+
+    /**
+     * Writes the hits of queries on a text of two records by sequence name and
+     * position.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testWriteHitsBySequence() throws IOException {
+        PackedText text = PackedText.valueOf("AC$GAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 6, 2, 4, 0, 5, 1, 3 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : new String[] { "AC", "CG", "GA" }) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        QuerySuffixArray.performQueries(serializeableSuffixArray, queries, QueryMode.SIMPACCEL);
+        StringWriter stringWriter = new StringWriter();
+        try (QueryResultWriter queryResultWriter = new QueryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setQueryMode(QueryMode.SIMPACCEL), stringWriter)) {
+            queryResultWriter.write(queries);
+        }
+        assertEquals("AC 2 chr2:1 chr1:0\nCG 0\nGA 1 chr2:0\n", stringWriter.toString());
+    }
+
+    /**
+     * Writes the hits of queries searched for on both strands with their strands,
+     * including a query that is its own reverse complement.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testWriteHitsOnBothStrands() throws IOException {
+        PackedText text = PackedText.valueOf("AC$GTAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 7, 2, 5, 0, 6, 1, 3, 4 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, 1));
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : new String[] { "AC", "GT", "GTA", "CG", "N" }) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1,
+                new QueryOptions().setBothStrands(true))) {
+            queryRunner.performQueries(queries);
+        }
+        StringWriter stringWriter = new StringWriter();
+        try (QueryResultWriter queryResultWriter = new QueryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setQueryMode(QueryMode.NAIVE), stringWriter)) {
+            queryResultWriter.write(queries);
+        }
+        assertEquals("AC 3 chr2:2+ chr1:0+ chr2:0-\nGT 3 chr2:0+ chr2:2- chr1:0-\nGTA 2 chr2:0+ chr2:1-\nCG 0\nN 0\n",
+                stringWriter.toString());
+    }
+
+    /**
+     * Tests writing only some of the hits of queries on both strands, which keeps
+     * the count of all of them.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testWriteHitsWithLimit() throws IOException {
+        PackedText text = PackedText.valueOf("AC$GTAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 7, 2, 5, 0, 6, 1, 3, 4 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : new String[] { "AC", "GT", "GTA", "CG" }) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1,
+                new QueryOptions().setBothStrands(true))) {
+            queryRunner.performQueries(queries);
+        }
+        assertEquals("AC 3\nGT 3\nGTA 2\nCG 0\n", write(serializeableSuffixArray, HitLimit.COUNT_ONLY, queries));
+        assertEquals("AC 3 chr2:2+ chr1:0+\nGT 3 chr2:0+ chr2:2-\nGTA 2 chr2:0+ chr2:1-\nCG 0\n",
+                write(serializeableSuffixArray, HitLimit.first(2), queries));
+        List<String> all = List.of("AC 3 chr2:2+ chr1:0+ chr2:0-", "GT 3 chr2:0+ chr2:2- chr1:0-");
+        String[] lines = write(serializeableSuffixArray, HitLimit.sample(2), queries).split("\n");
+        for (int i = 0; i < all.size(); i++) {
+            // the sample is two of the three hits, in the same order
+            String[] hits = lines[i].split(" ");
+            assertEquals(4, hits.length);
+            List<String> allHits = List.of(all.get(i).split(" "));
+            assertTrue(allHits.indexOf(hits[2]) < allHits.indexOf(hits[3]));
+            assertTrue(allHits.indexOf(hits[2]) > 1);
+        }
+        assertEquals("GTA 2 chr2:0+ chr2:1-", lines[2]);
+    }
+
+    /**
+     * Tests writing the hits of queries on both strands in ascending order of
+     * their positions on each strand.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testWriteSortedHits() throws IOException {
+        PackedText text = PackedText.valueOf("AC$GTAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 7, 2, 5, 0, 6, 1, 3, 4 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : new String[] { "AC", "GT", "A", "CG" }) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.NAIVE, 1,
+                new QueryOptions().setBothStrands(true))) {
+            queryRunner.performQueries(queries);
+        }
+        assertEquals("AC 3 chr1:0+ chr2:2+ chr2:0-\nGT 3 chr2:0+ chr1:0- chr2:2-\n"
+                + "A 3 chr1:0+ chr2:2+ chr2:1-\nCG 0\n",
+                write(serializeableSuffixArray, HitLimit.ALL, true, queries));
+        assertEquals("AC 3 chr1:0+ chr2:2+\nGT 3 chr2:0+ chr2:2-\nA 3 chr1:0+ chr2:2+\nCG 0\n",
+                write(serializeableSuffixArray, HitLimit.first(2), true, queries));
+    }
+
+    private static String write(SerializeableSuffixArray serializeableSuffixArray, HitLimit hitLimit,
+            List<Query> queries) throws IOException {
+        return write(serializeableSuffixArray, hitLimit, false, queries);
+    }
+
+    private static String write(SerializeableSuffixArray serializeableSuffixArray, HitLimit hitLimit,
+            boolean sortHits, List<Query> queries) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (QueryResultWriter queryResultWriter = new QueryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setHitLimit(hitLimit).setSortHits(sortHits), stringWriter)) {
+            queryResultWriter.write(queries);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Tests writing the maximal exact matches of queries on both strands, where a
+     * query is split at a character that is not a base.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testWriteMatchesOnBothStrands() throws IOException {
+        PackedText text = PackedText.valueOf("AC$GTAC$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(
+                new int[] { 7, 2, 5, 0, 6, 1, 3, 4 }, text);
+        serializeableSuffixArray.setSequenceTable(new SequenceTable(new String[] { "chr1", "chr2" },
+                text.getTerminators()));
+        serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, 1));
+        List<Query> queries = new ArrayList<>();
+        for (String pattern : new String[] { "GTACNAC", "CG" }) {
+            Query query = new Query(pattern);
+            query.appendSequence(pattern);
+            queries.add(query);
+        }
+        try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, QueryMode.SMEM, 1,
+                new QueryOptions().setBothStrands(true).setMinLength(2))) {
+            queryRunner.performQueries(queries);
+        }
+        StringWriter stringWriter = new StringWriter();
+        try (QueryResultWriter queryResultWriter = new QueryResultWriter(serializeableSuffixArray,
+                new ResultWriterOptions().setQueryMode(QueryMode.SMEM), stringWriter)) {
+            queryResultWriter.write(queries);
+        }
+        assertEquals("GTACNAC 4 0,4 chr2:0+ 5,2 chr2:2+ chr1:0+ 0,4 chr2:0- 5,2 chr2:0-\nCG 0\n",
+                stringWriter.toString());
+    }
+
+    /**
+     * Runs the patterns in every query mode, with and without a prefix table, and
+     * checks the hits against a brute force scan of the text, whose records are
+     * ended by '$'.
+     */
+    private static void assertAllModesAgreeWithBruteForce(String sequence, List<String> patterns) {
+        PackedText text = PackedText.valueOf(sequence);
+        int[] suffixArray = sortSuffixes(sequence);
+
+        int[] lcpValues = new int[suffixArray.length];
+        for (int i = 1; i < suffixArray.length; i++) {
+            lcpValues[i] = SuffixComparator.matchLength(sequence, suffixArray[i - 1], recordSuffix(sequence,
+                    suffixArray[i]), 0);
+        }
+
+        int[] leftLcpValues = new int[suffixArray.length];
+        int[] rightLcpValues = new int[suffixArray.length];
+        buildsaLcpLrArrays(lcpValues, 0, suffixArray.length, leftLcpValues, rightLcpValues);
+
+        for (int k : new int[] { 0, 1, 3, 6 }) {
+            SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+            if (k > 0) {
+                serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, k));
+            }
+            serializeableSuffixArray.setLeftLcpArray(CompactLcpArray.of(IntArray.of(leftLcpValues)));
+            serializeableSuffixArray.setRightLcpArray(CompactLcpArray.of(IntArray.of(rightLcpValues)));
+            serializeableSuffixArray.setFmIndex(FmIndex.build(text, IntArray.of(suffixArray), 4));
+            serializeableSuffixArray.setEytzingerIndex(EytzingerIndex.build(text, IntArray.of(suffixArray), 5));
+            for (boolean lcp : new boolean[] { false, true }) {
+                serializeableSuffixArray.setLcpArray(lcp ? CompactLcpArray.of(IntArray.of(lcpValues)) : null);
+                for (QueryMode queryMode : QueryMode.values()) {
+                    if (queryMode == QueryMode.SMEM) {
+                        // finds matches rather than hits, and is checked in MaximalMatchSearchTest
+                        continue;
+                    }
+                    List<Query> batch = new ArrayList<>();
+                    for (String pattern : patterns) {
+                        Query query = new Query();
+                        query.appendSequence(pattern);
+                        QuerySuffixArray.performQueries(serializeableSuffixArray, Collections.singletonList(query),
+                                queryMode);
+                        assertEquals(expectedHits(sequence, pattern, queryMode), forwardHits(suffixArray, query),
+                                queryMode + " k=" + k + " lcp=" + lcp + " " + pattern);
+                        Query batchQuery = new Query();
+                        batchQuery.appendSequence(pattern);
+                        batch.add(batchQuery);
+                    }
+                    // in sorted order, each search reuses the bounds of the one before it, and
+                    // the searches of the reverse strand must not get in the way
+                    try (QueryRunner queryRunner = new QueryRunner(serializeableSuffixArray, queryMode, 1,
+                            new QueryOptions().setSorted(true).setBothStrands(true))) {
+                        queryRunner.performQueries(batch);
+                    }
+                    for (Query query : batch) {
+                        String pattern = query.getSequence().toString();
+                        assertEquals(expectedHits(sequence, pattern, queryMode), forwardHits(suffixArray, query),
+                                "sorted " + queryMode + " k=" + k + " lcp=" + lcp + " " + pattern);
+                        assertEquals(expectedHits(sequence, reverseComplement(pattern), queryMode),
+                                reverseHits(suffixArray, query),
+                                "reverse " + queryMode + " k=" + k + " lcp=" + lcp + " " + pattern);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the LCP-LR arrays in the same way as buildsa, by taking the minimum of
+     * the LCP array over every interval of the super accelerant's search tree.
+     */
+    private static int buildsaLcpLrArrays(int[] lcpValues, int left, int right, int[] leftLcpValues,
+            int[] rightLcpValues) {
+        if (right - left == 1) {
+            return right < lcpValues.length ? lcpValues[right] : 0;
+        }
+        int center = (left + right) >>> 1;
+        leftLcpValues[center] = buildsaLcpLrArrays(lcpValues, left, center, leftLcpValues, rightLcpValues);
+        rightLcpValues[center] = buildsaLcpLrArrays(lcpValues, center, right, leftLcpValues, rightLcpValues);
+        return Math.min(leftLcpValues[center], rightLcpValues[center]);
+    }
+
+    /**
+     * Returns a suffix of the text up to the end of its record, without the
+     * terminator.
+     */
+    private static String recordSuffix(String sequence, int suffix) {
+        return sequence.substring(suffix, sequence.indexOf('$', suffix));
+    }
+
+    /**
+     * Finds the hits of a pattern by a brute force scan of the text, allowing the
+     * default number of mismatches in the mismatch query mode.
+     */
+    private static List<Integer> expectedHits(String sequence, String pattern, QueryMode queryMode) {
+        if (queryMode != QueryMode.MISMATCH) {
+            return bruteForceHits(sequence, pattern);
+        }
+        return bruteForceHits(sequence, pattern, ApproximateSearch.DEFAULT_MISMATCHES);
+    }
+
+    private static String reverseComplement(String pattern) {
+        StringBuilder reverseComplement = new StringBuilder();
+        for (int i = pattern.length() - 1; i >= 0; i--) {
+            reverseComplement.append("TGCA".charAt("ACGT".indexOf(pattern.charAt(i))));
+        }
+        return reverseComplement.toString();
+    }
+
+    private static List<Integer> forwardHits(int[] suffixArray, Query query) {
+        return hits(suffixArray, query.getHitsRanges() != null ? query.getHitsRanges()
+                : Collections.singletonList(query.getHitsRange()));
+    }
+
+    private static List<Integer> reverseHits(int[] suffixArray, Query query) {
+        return hits(suffixArray, query.getReverseHitsRanges() != null ? query.getReverseHitsRanges()
+                : Collections.singletonList(query.getReverseHitsRange()));
     }
 }
@@ -0,0 +1,34 @@
+package querysa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import model.QueryMode;
+
+/**
+ * Test class for {@link ResultWriterOptions}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ResultWriterOptionsTest {
+
+    @Test
+    void testDefaults() {
+        ResultWriterOptions options = new ResultWriterOptions();
+        assertEquals(QueryMode.NAIVE, options.getQueryMode());
+        assertEquals(HitLimit.ALL, options.getHitLimit());
+        assertFalse(options.isSortHits());
+        assertEquals(1, options.getThreads());
+        assertFalse(options.isBothStrands());
+        assertFalse(options.isCompressed());
+    }
+
+    @Test
+    void testRejectsThreadsBelowOne() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultWriterOptions().setThreads(0));
+    }
+}
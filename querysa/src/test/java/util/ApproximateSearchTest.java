@@ -0,0 +1,96 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static util.SearchOracle.bruteForceHits;
+import static util.SearchOracle.hits;
+import static util.SearchOracle.sortSuffixes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import model.BasePair;
+import model.FmIndex;
+import model.IndexInterval;
+import model.IntArray;
+import model.PackedText;
+import model.PrefixTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * Test class for {@link ApproximateSearch}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ApproximateSearchTest {
+
+    /**
+     * Searches for random patterns with up to two mismatches on the suffix array,
+     * with and without a prefix table, and on the FM-index, of a text of several
+     * records, and checks the hits against a brute force scan of the text.
+     */
+    @Test
+    void testSearchAgreesWithBruteForce() {
+        Random random = new Random(21);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 8; record++) {
+            for (int i = random.nextInt(60); i > 0; i--) {
+                stringBuilder.append(BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar());
+            }
+            stringBuilder.append('$');
+        }
+        String sequence = stringBuilder.toString();
+        PackedText text = PackedText.valueOf(sequence);
+        int[] suffixArray = sortSuffixes(sequence);
+
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            int start = random.nextInt(sequence.length() - 1);
+            int length = 1 + random.nextInt(Math.min(9, sequence.length() - 1 - start));
+            String pattern = sequence.substring(start, start + length).replace("$", "");
+            if (!pattern.isEmpty()) {
+                patterns.add(pattern);
+            }
+        }
+
+        SearchScratch scratch = new SearchScratch();
+        List<IndexInterval> hitsRanges = new ArrayList<>();
+        for (int k : new int[] { 0, 2, 4 }) {
+            for (boolean fmIndex : new boolean[] { false, true }) {
+                SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+                if (k > 0) {
+                    serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, k));
+                }
+                if (fmIndex) {
+                    serializeableSuffixArray.setFmIndex(FmIndex.build(text, IntArray.of(suffixArray), 4));
+                }
+                for (int maxMismatches = 0; maxMismatches <= 2; maxMismatches++) {
+                    for (String pattern : patterns) {
+                        ApproximateSearch.search(serializeableSuffixArray, PackedText.valueOf(pattern),
+                                maxMismatches, scratch, hitsRanges);
+                        String message = "k=" + k + " fmIndex=" + fmIndex + " mismatches=" + maxMismatches + " "
+                                + pattern;
+                        for (int i = 1; i < hitsRanges.size(); i++) {
+                            assertTrue(hitsRanges.get(i - 1).getEnd() <= hitsRanges.get(i).getStart(), message);
+                        }
+                        assertEquals(bruteForceHits(sequence, pattern, maxMismatches),
+                                hits(suffixArray, hitsRanges), message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSearchWithNegativeMismatches() {
+        PackedText text = PackedText.valueOf("ACGT$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(sortSuffixes("ACGT$"), text);
+        assertThrows(IllegalArgumentException.class, () -> ApproximateSearch.search(serializeableSuffixArray,
+                PackedText.valueOf("AC"), -1, new SearchScratch(), new ArrayList<>()));
+    }
+}
@@ -0,0 +1,131 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static util.SearchOracle.sortSuffixes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import model.BasePair;
+import model.MaximalMatch;
+import model.PackedText;
+import model.PrefixTable;
+import model.SerializeableSuffixArray;
+
+/**
+ * Test class for {@link MaximalMatchSearch}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class MaximalMatchSearchTest {
+
+    /**
+     * Searches for the matches of random queries, made of pieces of the text with
+     * some of their bases changed, in a text of several records, with prefix
+     * tables shorter and longer than the minimum length, and checks them against
+     * the matching statistics of a brute force scan of the text.
+     */
+    @Test
+    void testSearchAgreesWithBruteForce() {
+        Random random = new Random(22);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int record = 0; record < 8; record++) {
+            for (int i = random.nextInt(60); i > 0; i--) {
+                stringBuilder.append(randomBase(random));
+            }
+            stringBuilder.append('$');
+        }
+        String sequence = stringBuilder.toString();
+        PackedText text = PackedText.valueOf(sequence);
+        int[] suffixArray = sortSuffixes(sequence);
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int piece = random.nextInt(4); piece >= 0; piece--) {
+                int start = random.nextInt(sequence.length() - 1);
+                int end = Math.min(sequence.length(), start + 1 + random.nextInt(20));
+                query.append(sequence, start, end);
+            }
+            for (int j = 0; j < query.length(); j++) {
+                if (query.charAt(j) == '$' || random.nextInt(10) == 0) {
+                    query.setCharAt(j, randomBase(random));
+                }
+            }
+            queries.add(query.toString());
+        }
+
+        SearchScratch scratch = new SearchScratch();
+        for (int k : new int[] { 0, 2, 4, 8 }) {
+            SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(suffixArray, text);
+            if (k > 0) {
+                serializeableSuffixArray.setPrefixTable(PrefixTable.build(text, k));
+            }
+            for (int minLength : new int[] { 1, 3, 6 }) {
+                for (String query : queries) {
+                    List<MaximalMatch> matches = MaximalMatchSearch.search(serializeableSuffixArray,
+                            PackedText.valueOf(query), minLength, scratch, new ArrayList<>());
+                    List<String> found = new ArrayList<>();
+                    for (MaximalMatch match : matches) {
+                        List<Integer> hits = new ArrayList<>();
+                        for (int i = match.getHitsRange().getStart(); i < match.getHitsRange().getEnd(); i++) {
+                            hits.add(suffixArray[i]);
+                        }
+                        hits.sort(null);
+                        found.add(match.getQueryStart() + "," + match.getLength() + " " + hits);
+                    }
+                    assertEquals(bruteForceMatches(sequence, query, minLength), found,
+                            "k=" + k + " minLength=" + minLength + " " + query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSearchWithMinLengthBelowOne() {
+        PackedText text = PackedText.valueOf("ACGT$");
+        SerializeableSuffixArray serializeableSuffixArray = new SerializeableSuffixArray(sortSuffixes("ACGT$"), text);
+        assertThrows(IllegalArgumentException.class, () -> MaximalMatchSearch.search(serializeableSuffixArray,
+                PackedText.valueOf("AC"), 0, new SearchScratch(), new ArrayList<>()));
+    }
+
+    private static char randomBase(Random random) {
+        return BasePair.convertIntToBasePair(random.nextInt(4)).getDnaChar();
+    }
+
+    /**
+     * Finds the longest match of the query from each position in the text, and
+     * returns the matches that end after the one from the position before, as
+     * their start, length and sorted hits.
+     */
+    private static List<String> bruteForceMatches(String sequence, String query, int minLength) {
+        List<String> matches = new ArrayList<>();
+        int previousEnd = 0;
+        for (int i = 0; i < query.length(); i++) {
+            int length = 0;
+            for (int position = 0; position < sequence.length(); position++) {
+                int matched = 0;
+                while (i + matched < query.length() && position + matched < sequence.length()
+                        && sequence.charAt(position + matched) == query.charAt(i + matched)) {
+                    matched++;
+                }
+                length = Math.max(length, matched);
+            }
+            if (length >= minLength && i + length > previousEnd) {
+                List<Integer> hits = new ArrayList<>();
+                for (int position = sequence.indexOf(query.substring(i, i + length)); position >= 0;
+                        position = sequence.indexOf(query.substring(i, i + length), position + 1)) {
+                    hits.add(position);
+                }
+                matches.add(i + "," + length + " " + hits);
+            }
+            previousEnd = i + length;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,113 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.IndexInterval;
+
+/**
+ * The brute force oracles that the search tests check the searches against: a
+ * suffix array sorted by comparing the suffixes as strings, and the hits of a
+ * pattern found by scanning the whole text. A text is a string of bases in
+ * which each record is ended by '$'.
+ *
+ * @author Valerie Wray
+ *
+ */
+public final class SearchOracle {
+
+    private SearchOracle() {
+    }
+
+    /**
+     * Compares two suffixes each up to the end of its record, with the one ending
+     * at the later terminator first if they are equal.
+     *
+     * @param sequence the text
+     * @param first    the position of the first suffix
+     * @param second   the position of the second suffix
+     * @return the comparison of the suffixes
+     */
+    public static int compareSuffixes(String sequence, int first, int second) {
+        String firstSuffix = sequence.substring(first, sequence.indexOf('$', first) + 1);
+        String secondSuffix = sequence.substring(second, sequence.indexOf('$', second) + 1);
+        int comparison = firstSuffix.compareTo(secondSuffix);
+        return comparison != 0 ? comparison
+                : Integer.compare(second + secondSuffix.length(), first + firstSuffix.length());
+    }
+
+    /**
+     * Sorts the suffixes of a text in the order of
+     * {@link #compareSuffixes(String, int, int)}.
+     *
+     * @param sequence the text
+     * @return the suffix array
+     */
+    public static int[] sortSuffixes(String sequence) {
+        Integer[] suffixes = new Integer[sequence.length()];
+        for (int i = 0; i < suffixes.length; i++) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, (first, second) -> compareSuffixes(sequence, first, second));
+        return Arrays.stream(suffixes).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Finds the positions at which a pattern occurs in a text.
+     *
+     * @param sequence the text
+     * @param pattern  the pattern
+     * @return the positions, in ascending order
+     */
+    public static List<Integer> bruteForceHits(String sequence, String pattern) {
+        List<Integer> hits = new ArrayList<>();
+        for (int i = sequence.indexOf(pattern); i >= 0; i = sequence.indexOf(pattern, i + 1)) {
+            hits.add(i);
+        }
+        return hits;
+    }
+
+    /**
+     * Finds the positions at which a pattern occurs in a text with up to the
+     * given number of substituted bases, within a record.
+     *
+     * @param sequence      the text
+     * @param pattern       the pattern
+     * @param maxMismatches the number of bases that may differ
+     * @return the positions, in ascending order
+     */
+    public static List<Integer> bruteForceHits(String sequence, String pattern, int maxMismatches) {
+        List<Integer> hits = new ArrayList<>();
+        for (int i = 0; i + pattern.length() <= sequence.length(); i++) {
+            int mismatches = 0;
+            for (int j = 0; j < pattern.length() && mismatches <= maxMismatches; j++) {
+                char c = sequence.charAt(i + j);
+                mismatches += c == '$' ? maxMismatches + 1 : c == pattern.charAt(j) ? 0 : 1;
+            }
+            if (mismatches <= maxMismatches) {
+                hits.add(i);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the positions of the suffixes in intervals of a suffix array.
+     *
+     * @param suffixArray the suffix array
+     * @param hitsRanges  the intervals
+     * @return the positions, in ascending order
+     */
+    public static List<Integer> hits(int[] suffixArray, List<IndexInterval> hitsRanges) {
+        List<Integer> hits = new ArrayList<>();
+        for (IndexInterval hitsRange : hitsRanges) {
+            for (int i = hitsRange.getStart(); i < hitsRange.getEnd(); i++) {
+                hits.add(suffixArray[i]);
+            }
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+}
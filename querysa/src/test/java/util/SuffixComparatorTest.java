@@ -0,0 +1,37 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link SuffixComparator}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class SuffixComparatorTest {
+
+    @Test
+    void testMatchLength() {
+        String text = "ACCAAGATAGCTAC$";
+        assertEquals(2, SuffixComparator.matchLength(text, 7, "TAC", 0));
+        assertEquals(3, SuffixComparator.matchLength(text, 11, "TAC", 0));
+        assertEquals(3, SuffixComparator.matchLength(text, 11, "TAC", 2));
+        assertEquals(0, SuffixComparator.matchLength(text, 14, "TAC", 0));
+        assertEquals(1, SuffixComparator.matchLength(text, 13, "CA", 0));
+    }
+
+    @Test
+    void testCompareAgreesWithSubstringCompare() {
+        String text = "ACCAAGATAGCTAC$";
+        String[] patterns = { "A", "TA", "TAC", "TAC$", "CA", "GATT", "C$", "ACCAAGATAGCTAC$", "ACCAAGATAGCTAC$A" };
+        for (String pattern : patterns) {
+            for (int suffixStart = 0; suffixStart < text.length(); suffixStart++) {
+                assertEquals(Integer.signum(pattern.compareTo(text.substring(suffixStart))),
+                        Integer.signum(SuffixComparator.compare(pattern, text, suffixStart)),
+                        pattern + " vs " + text.substring(suffixStart));
+            }
+        }
+    }
+}